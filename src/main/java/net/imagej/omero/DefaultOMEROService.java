@@ -37,6 +37,7 @@ import net.imagej.Dataset;
 import net.imagej.display.DatasetView;
 import net.imagej.display.ImageDisplay;
 import net.imagej.display.ImageDisplayService;
+import net.imagej.omero.roi.ConversionDispatcher;
 import net.imagej.omero.roi.ROICache;
 import net.imglib2.roi.MaskPredicate;
 
@@ -99,7 +100,8 @@ public class DefaultOMEROService extends AbstractService implements
 
 //-- Fields --
 
-	private ROICache roiCache = new ROICache();
+	private final ROICache roiCache = new ROICache();
+	private ConversionDispatcher roiConversions;
 	private final HashMap<OMEROServer, OMEROSession> sessions = new HashMap<>();
 	private final ThreadLocal<List<OMEROSession>> localSessions =
 		new ThreadLocal<List<OMEROSession>>()
@@ -216,6 +218,14 @@ public class DefaultOMEROService extends AbstractService implements
 		return roiCache;
 	}
 
+	@Override
+	public synchronized ConversionDispatcher roiConversions() {
+		if (roiConversions == null) {
+			roiConversions = new ConversionDispatcher(convertService);
+		}
+		return roiConversions;
+	}
+
 	@Override
 	public void addROIMapping(final Object roi, final ROIData shape) {
 		roiCache().addROIMapping(roi, shape);
@@ -316,5 +326,6 @@ public class DefaultOMEROService extends AbstractService implements
 			s.close();
 		}
 		sessions.clear();
+		roiCache.clear();
 	}
 }
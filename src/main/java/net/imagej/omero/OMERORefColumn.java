@@ -25,9 +25,15 @@
 
 package net.imagej.omero;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.scijava.table.LongColumn;
+import org.scijava.util.TreeNode;
 
 import omero.gateway.facility.TablesFacility;
+import omero.gateway.model.DataObject;
 
 /**
  * Wrapper for OMERO reference columns (i.e. FileColumn, ImageColumn, RoiColumn,
@@ -36,6 +42,11 @@ import omero.gateway.facility.TablesFacility;
  * Note, when the {@link TablesFacility} gets a Table it does create DataObjects
  * but does not actually load them.
  * </p>
+ * <p>
+ * The referenced objects can be loaded in bulk using
+ * {@link OMEROSession#resolveReferences(OMERORefColumn)}, which caches them in
+ * the column.
+ * </p>
  *
  * @author Alison Walter
  */
@@ -43,6 +54,8 @@ public class OMERORefColumn extends LongColumn {
 
 	private final OMERORef ref;
 	private Object[] originalData;
+	private final Map<Long, DataObject> resolvedObjects = new HashMap<>();
+	private final Map<Long, TreeNode<?>> resolvedROIs = new HashMap<>();
 
 	public OMERORefColumn(final OMERORef referenceType) {
 		super();
@@ -66,4 +79,38 @@ public class OMERORefColumn extends LongColumn {
 		originalData = data;
 	}
 
+	/**
+	 * Gets the referenced objects which have been resolved so far, keyed by ID.
+	 *
+	 * @see OMEROSession#resolveReferences(OMERORefColumn)
+	 */
+	public Map<Long, DataObject> getResolvedObjects() {
+		return Collections.unmodifiableMap(resolvedObjects);
+	}
+
+	/**
+	 * Gets the referenced ROIs which have been resolved so far, keyed by ID.
+	 *
+	 * @see OMEROSession#resolveROIs(OMERORefColumn)
+	 */
+	public Map<Long, TreeNode<?>> getResolvedROIs() {
+		return Collections.unmodifiableMap(resolvedROIs);
+	}
+
+	/** Discards all resolved objects and ROIs. */
+	public void clearResolved() {
+		resolvedObjects.clear();
+		resolvedROIs.clear();
+	}
+
+	// -- Internal methods --
+
+	Map<Long, DataObject> resolvedObjects() {
+		return resolvedObjects;
+	}
+
+	Map<Long, TreeNode<?>> resolvedROIs() {
+		return resolvedROIs;
+	}
+
 }
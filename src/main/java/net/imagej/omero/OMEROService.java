@@ -29,6 +29,7 @@ import io.scif.services.DatasetIOService;
 
 import net.imagej.ImageJService;
 import net.imagej.display.ImageDisplayService;
+import net.imagej.omero.roi.ConversionDispatcher;
 import net.imagej.omero.roi.ROICache;
 
 import org.scijava.convert.ConvertService;
@@ -139,6 +140,16 @@ public interface OMEROService extends ImageJService {
 	 */
 	ROICache roiCache();
 
+	/**
+	 * @return The {@link ConversionDispatcher} used to convert ROIs in bulk,
+	 *         backed by this application context's {@link ConvertService}.
+	 *         Implementations should share one instance, the default creates
+	 *         a new one on each call.
+	 */
+	default ConversionDispatcher roiConversions() {
+		return new ConversionDispatcher(convert());
+	}
+
 	/**
 	 * Create a mapping from ImageJ to OMERO ROI types
 	 *
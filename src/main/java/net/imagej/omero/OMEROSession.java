@@ -40,26 +40,55 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import net.imagej.Dataset;
 import net.imagej.axis.Axes;
 import net.imagej.axis.AxisType;
 import net.imagej.display.DatasetView;
 import net.imagej.display.ImageDisplay;
+import net.imagej.omero.roi.ConversionDispatcher;
+import net.imagej.omero.roi.DefaultOMEROROICollection;
 import net.imagej.omero.roi.OMEROROICollection;
+import net.imagej.omero.roi.ROIConverters;
+import net.imagej.omero.roi.ROIDownloadCache;
+import net.imagej.omero.roi.ROISnapshotCache;
+import net.imagej.omero.roi.ROIStatistics;
 import net.imagej.omero.roi.ROIUtils;
+import net.imagej.omero.roi.TiledROIMeasurer;
+import net.imagej.omero.table.TableCache;
 import net.imagej.omero.table.TableUtils;
 import net.imagej.roi.DefaultROITree;
 import net.imagej.roi.ROITree;
 import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 import net.imglib2.RealInterval;
+import net.imglib2.roi.BoundaryType;
 import net.imglib2.roi.MaskPredicate;
 import net.imglib2.util.Pair;
 
@@ -67,7 +96,10 @@ import org.scijava.Context;
 import org.scijava.convert.ConvertService;
 import org.scijava.log.LogService;
 import org.scijava.table.Column;
+import org.scijava.table.DefaultGenericTable;
+import org.scijava.table.DoubleColumn;
 import org.scijava.table.GenericTable;
+import org.scijava.table.LongColumn;
 import org.scijava.table.Table;
 import org.scijava.table.TableDisplay;
 import org.scijava.util.DefaultTreeNode;
@@ -76,6 +108,8 @@ import org.scijava.util.Types;
 
 import omero.RLong;
 import omero.ServerError;
+import omero.api.IQueryPrx;
+import omero.api.IUpdatePrx;
 import omero.api.RawPixelsStorePrx;
 import omero.api.ServiceFactoryPrx;
 import omero.gateway.Gateway;
@@ -92,18 +126,30 @@ import omero.gateway.model.DatasetData;
 import omero.gateway.model.ExperimenterData;
 import omero.gateway.model.FileAnnotationData;
 import omero.gateway.model.ImageData;
+import omero.gateway.model.PixelsData;
 import omero.gateway.model.ROIData;
 import omero.gateway.model.ROIResult;
+import omero.gateway.model.ShapeData;
 import omero.gateway.model.TableData;
 import omero.gateway.model.TableDataColumn;
+import omero.gateway.model.TextData;
+import omero.gateway.util.PojoMapper;
+import omero.grid.TablePrx;
 import omero.log.SimpleLogger;
 import omero.model.DatasetI;
+import omero.model.FileAnnotation;
+import omero.model.FileAnnotationI;
 import omero.model.IObject;
 import omero.model.Image;
 import omero.model.ImageI;
 import omero.model.MapAnnotationI;
+import omero.model.OriginalFile;
+import omero.model.OriginalFileI;
 import omero.model.Pixels;
 import omero.model.PixelsType;
+import omero.model.Roi;
+import omero.model.RoiI;
+import omero.sys.ParametersI;
 
 /**
  * An OMERO session, the central access point for OMERO functions.
@@ -112,6 +158,24 @@ import omero.model.PixelsType;
  */
 public class OMEROSession /*extends AbstractContextual*/ implements Closeable {
 
+	/** Maximum number of IDs passed to a single query. */
+	private static final int QUERY_BATCH_SIZE = 1000;
+
+	/**
+	 * Maximum number of ROIs saved in a single request. Requests are also
+	 * limited to ten times as many shapes.
+	 */
+	private static final int SAVE_BATCH_SIZE = 500;
+
+	/** Default number of ROIs loaded per request by {@link #streamROIs}. */
+	public static final int DEFAULT_ROI_PAGE_SIZE = 1000;
+
+	/** Maximum number of ROIs converted by a single fork/join task. */
+	private static final int CONVERSION_CHUNK_SIZE = 64;
+
+	/** Default value of {@link #getMaxConcurrentRequests()}. */
+	public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
 	private final OMEROService omeroService;
 
 	private final OMEROServer server;
@@ -123,6 +187,13 @@ public class OMEROSession /*extends AbstractContextual*/ implements Closeable {
 	private SecurityContext ctx;
 	private String sessionID;
 
+	/** Maximum number of requests this session issues concurrently. */
+	private int maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+	private ThreadPoolExecutor executor;
+	private TableCache tableCache;
+	private ROISnapshotCache roiSnapshotCache;
+	private ROIDownloadCache roiDownloadCache;
+
 	// -- Constructors --
 
 	/**
@@ -491,6 +562,18 @@ public class OMEROSession /*extends AbstractContextual*/ implements Closeable {
 	 * @throws OMEROException if something goes wrong with OMERO.
 	 */
 	public Table<?, ?> downloadTable(final long tableID) throws OMEROException {
+		final TableCache cache = tableCache;
+		final String cacheKey = cache == null ? null : tableCacheKey(tableID);
+		if (cache != null) {
+			try {
+				final Table<?, ?> cached = cache.load(cacheKey);
+				if (cached != null) return cached;
+			}
+			catch (final IOException exc) {
+				log().warn("Cannot read cached table " + tableID, exc);
+			}
+		}
+
 		final TablesFacility tfac = facility(TablesFacility.class);
 		final TableData omeroTable = //
 			OMERO.ask(() -> tfac.getTable(ctx, tableID, 0, Integer.MAX_VALUE - 1));
@@ -521,17 +604,41 @@ public class OMEROSession /*extends AbstractContextual*/ implements Closeable {
 				sjTable.get(i).setHeader(omeroColumns[i].getName());
 			}
 		}
+
+		if (cache != null) {
+			try {
+				cache.store(cacheKey, sjTable);
+			}
+			catch (final IOException exc) {
+				log().warn("Cannot cache table " + tableID, exc);
+			}
+		}
 		return sjTable;
 	}
 
 	/**
-	 * Downloads all tables associated with the given image ID in OMERO.
+	 * Downloads the metadata of the table with the given ID from OMERO: its
+	 * column headers and number of rows, but none of its data.
+	 *
+	 * @param tableID OMERO table ID to query
+	 * @return OMERO table metadata, without any row data
+	 * @throws OMEROException if something goes wrong with OMERO.
+	 */
+	public TableData getTableInfo(final long tableID) throws OMEROException {
+		final TablesFacility tfac = facility(TablesFacility.class);
+		return OMERO.ask(() -> tfac.getTableInfo(ctx, tableID));
+	}
+
+	/**
+	 * Lists the tables associated with the given image ID in OMERO, without
+	 * downloading any of their contents.
 	 *
 	 * @param imageID OMERO image ID to query for table data
-	 * @return ImageJ table equivalents of the requested OMERO image's tables
+	 * @return The file annotations of the requested OMERO image's tables; the
+	 *         table ID of each is given by {@link FileAnnotationData#getFileID()}
 	 * @throws OMEROException if something goes wrong with OMERO.
 	 */
-	public List<Table<?, ?>> downloadTables(final long imageID)
+	public List<FileAnnotationData> getAvailableTables(final long imageID)
 		throws OMEROException
 	{
 		final TablesFacility tfac = facility(TablesFacility.class);
@@ -539,11 +646,72 @@ public class OMEROSession /*extends AbstractContextual*/ implements Closeable {
 		final ImageData imageData = new ImageData(new ImageI(imageID, false));
 		final Collection<FileAnnotationData> files = //
 			OMERO.ask(() -> tfac.getAvailableTables(ctx, imageData));
+		return files == null ? new ArrayList<>() : new ArrayList<>(files);
+	}
+
+	/**
+	 * Downloads all tables associated with the given image ID in OMERO.
+	 *
+	 * @param imageID OMERO image ID to query for table data
+	 * @return ImageJ table equivalents of the requested OMERO image's tables
+	 * @throws OMEROException if something goes wrong with OMERO.
+	 */
+	public List<Table<?, ?>> downloadTables(final long imageID)
+		throws OMEROException
+	{
+		return downloadTables(imageID, false);
+	}
+
+	/**
+	 * Downloads all tables associated with the given image ID in OMERO,
+	 * optionally several at once.
+	 * <p>
+	 * In parallel mode, the tables are downloaded using this session's
+	 * {@link #executor()}, so at most {@link #getMaxConcurrentRequests()}
+	 * tables are transferred at the same time.
+	 * </p>
+	 *
+	 * @param imageID OMERO image ID to query for table data
+	 * @param parallel Whether to download the tables concurrently
+	 * @return ImageJ table equivalents of the requested OMERO image's tables, in
+	 *         the same order as {@link #getAvailableTables(long)}
+	 * @throws OMEROException if something goes wrong with OMERO.
+	 */
+	public List<Table<?, ?>> downloadTables(final long imageID,
+		final boolean parallel) throws OMEROException
+	{
+		final List<FileAnnotationData> files = getAvailableTables(imageID);
 
 		final List<Table<?, ?>> tables = new ArrayList<>(files.size());
-		for (final FileAnnotationData file : files)
-			tables.add(downloadTable(file.getFileID()));
+		if (!parallel || files.size() < 2) {
+			for (final FileAnnotationData file : files)
+				tables.add(downloadTable(file.getFileID()));
+			return tables;
+		}
 
+		final List<Future<Table<?, ?>>> futures = new ArrayList<>(files.size());
+		for (final FileAnnotationData file : files) {
+			final long tableID = file.getFileID();
+			futures.add(executor().submit(() -> downloadTable(tableID)));
+		}
+		try {
+			for (final Future<Table<?, ?>> future : futures)
+				tables.add(future.get());
+		}
+		catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			throw new OMEROException(exc);
+		}
+		catch (final ExecutionException exc) {
+			if (exc.getCause() instanceof OMEROException) {
+				throw (OMEROException) exc.getCause();
+			}
+			throw new OMEROException(exc.getCause());
+		}
+		finally {
+			for (final Future<Table<?, ?>> future : futures)
+				future.cancel(true);
+		}
 		return tables;
 	}
 
@@ -578,6 +746,103 @@ public class OMEROSession /*extends AbstractContextual*/ implements Closeable {
 		});
 	}
 
+	/**
+	 * Appends the rows of a SciJava {@link Table} to an existing OMERO table.
+	 * Only the given rows are transferred; the columns of {@code rows} must
+	 * match the existing columns of the OMERO table in number, name and type.
+	 *
+	 * @param tableID OMERO table ID to append to
+	 * @param rows SciJava table containing the rows to append
+	 * @return The total number of rows in the OMERO table after the append
+	 * @throws IllegalArgumentException if the columns of {@code rows} do not
+	 *           match those of the OMERO table.
+	 * @throws OMEROException if something goes wrong with OMERO.
+	 */
+	public long appendToTable(final long tableID, final Table<?, ?> rows)
+		throws OMEROException
+	{
+		final TablePrx table = OMERO.ask(() -> sfp.sharedResources().openTable(
+			new OriginalFileI(tableID, false)));
+		if (table == null) throw new OMEROException("No such table: " + tableID);
+		try {
+			final omero.grid.Column[] headers = OMERO.ask(() -> table.getHeaders());
+			final omero.grid.Column[] columns = TableUtils.populateOMEROColumns(
+				headers, rows, omeroService.convert());
+			return OMERO.ask(() -> {
+				table.addData(columns);
+				return table.getNumberOfRows();
+			});
+		}
+		finally {
+			OMERO.tell(() -> table.close());
+		}
+	}
+
+	/**
+	 * Loads the objects referenced by the given column from OMERO, in as few
+	 * queries as possible. Objects are cached in the column, so only IDs which
+	 * were not resolved before are queried.
+	 * <p>
+	 * The IDs of an {@link OMERORef#FILE} column are {@link OriginalFile} IDs.
+	 * As in the original data of downloaded tables, they are resolved to
+	 * {@link FileAnnotationData} wrapping the loaded file, whose ID is given by
+	 * {@link FileAnnotationData#getFileID()}.
+	 * </p>
+	 *
+	 * @param column Column of OMERO object IDs to resolve
+	 * @return The referenced objects, keyed by ID. IDs which do not exist on
+	 *         the server, or are not accessible, are absent from the map.
+	 * @throws OMEROException if something goes wrong with OMERO.
+	 */
+	public Map<Long, DataObject> resolveReferences(final OMERORefColumn column)
+		throws OMEROException
+	{
+		final Set<Long> unresolved = new HashSet<>();
+		for (int i = 0; i < column.size(); i++) {
+			final long id = column.getValue(i);
+			if (!column.resolvedObjects().containsKey(id)) unresolved.add(id);
+		}
+		if (!unresolved.isEmpty()) {
+			final String query = referenceQuery(column.getOMERORef());
+			for (final IObject o : loadObjects(query, unresolved)) {
+				column.resolvedObjects().put(o.getId().getValue(), asReference(o));
+			}
+		}
+		return column.getResolvedObjects();
+	}
+
+	/**
+	 * Loads the ROIs referenced by the given column from OMERO, and converts
+	 * them to ImageJ ROIs. Like {@link #resolveReferences(OMERORefColumn)}, the
+	 * ROIs are loaded in bulk and cached in the column.
+	 *
+	 * @param column Column of OMERO ROI IDs to resolve
+	 * @return The referenced ROIs, keyed by ID
+	 * @throws IllegalArgumentException if the column does not reference ROIs.
+	 * @throws OMEROException if something goes wrong with OMERO.
+	 */
+	public Map<Long, TreeNode<?>> resolveROIs(final OMERORefColumn column)
+		throws OMEROException
+	{
+		if (column.getOMERORef() != OMERORef.ROI) {
+			throw new IllegalArgumentException("Not a ROI column: " + column
+				.getOMERORef());
+		}
+		for (final Map.Entry<Long, DataObject> entry : resolveReferences(column)
+			.entrySet())
+		{
+			if (column.resolvedROIs().containsKey(entry.getKey())) continue;
+			final TreeNode<?> ijRoi = omeroService.roiConversions().convert(entry
+				.getValue(), TreeNode.class);
+			if (ijRoi == null) {
+				throw new IllegalArgumentException(
+					"ROIData cannot be converted to ImageJ ROI");
+			}
+			column.resolvedROIs().put(entry.getKey(), ijRoi);
+		}
+		return column.getResolvedROIs();
+	}
+
 	// -- ROIs --
 
 	/**
@@ -608,30 +873,237 @@ public class OMEROSession /*extends AbstractContextual*/ implements Closeable {
 	public ROITree downloadROIs(final long imageID) throws OMEROException {
 		final ROITree roiTree = new DefaultROITree();
 
+		final String cacheKey = roiDownloadCache == null &&
+			roiSnapshotCache == null ? null : roiCacheKey(imageID);
+		final ParametersI params = new ParametersI();
+		params.addId(imageID);
+		final List<ROIData> cached = cachedROIs(imageID, cacheKey);
+		if (cached != null) {
+			roiTree.children().addAll(toTreeNodes(cached, boundaryTypes(cached,
+				"l.parent.roi.image.id = :id", params)));
+			return roiTree;
+		}
+
 		final ROIFacility roifac = facility(ROIFacility.class);
 		final int roiCount = OMERO.ask(() -> roifac.getROICount(ctx, imageID));
-		if (roiCount == 0) return roiTree;
+		if (roiCount == 0) {
+			cacheROIs(imageID, cacheKey, Collections.emptyList());
+			return roiTree;
+		}
 
 		final List<ROIResult> roiresults = //
 			OMERO.ask(() -> roifac.loadROIs(ctx, imageID));
+		final List<ROIData> rois = new ArrayList<>();
+		for (final ROIResult res : roiresults)
+			rois.addAll(res.getROIs());
 
-		final Iterator<ROIResult> r = roiresults.iterator();
-		while (r.hasNext()) {
-			final ROIResult res = r.next();
-			final Collection<ROIData> rois = res.getROIs();
-			for (final ROIData roi : rois) {
-				final TreeNode<?> ijRoi = omeroService.convert().convert(roi,
-					TreeNode.class);
-				if (ijRoi == null) {
-					throw new IllegalArgumentException(
-						"ROIData cannot be converted to ImageJ ROI");
-				}
-				roiTree.children().add(ijRoi);
-			}
+		cacheROIs(imageID, cacheKey, rois);
+		roiTree.children().addAll(toTreeNodes(rois, boundaryTypes(rois,
+			"l.parent.roi.image.id = :id", params)));
+		return roiTree;
+	}
+
+	/**
+	 * Downloads the ROIs associated with the given {@code imageID} which have
+	 * shapes on the given plane, and returns them as a {@link ROITree}. The
+	 * plane is matched by the server, so only the matching shapes are loaded and
+	 * converted. As in OMERO, shapes without a Z, T or C position lie on every
+	 * plane of that axis; likewise, passing -1 for {@code z}, {@code t} or
+	 * {@code c} matches every position along that axis.
+	 * <p>
+	 * The returned ROIs only contain their shapes on the given plane, so the
+	 * tree is a view for display and per-plane analysis. It must not be passed
+	 * to {@link #updateROIs}, which would treat ROIs absent from the view as
+	 * deleted.
+	 * </p>
+	 *
+	 * @param imageID OMERO image ID to query for ROI data
+	 * @param z Z position of the plane, or -1 for all Z positions
+	 * @param t T position of the plane, or -1 for all T positions
+	 * @param c C position of the plane, or -1 for all C positions
+	 * @return ImageJ equivalent for requested OMERO ROI data
+	 * @throws OMEROException if something goes wrong with OMERO.
+	 */
+	public ROITree downloadROIs(final long imageID, final int z, final int t,
+		final int c) throws OMEROException
+	{
+		if (z < -1 || t < -1 || c < -1) throw new IllegalArgumentException(
+			"Invalid position (z, time, channel): (" + z + ", " + t + ", " + c +
+				")");
+
+		final ParametersI params = new ParametersI();
+		params.addId(imageID);
+		final StringBuilder query = new StringBuilder("select distinct r " +
+			"from Roi as r join fetch r.shapes as s " +
+			"left outer join fetch s.transform where r.image.id = :id");
+		// NB: The boundary types are queried for the same shapes, by image and
+		// plane rather than by the IDs of the possibly many ROIs found
+		final StringBuilder shapeCondition = new StringBuilder(
+			"l.parent.roi.image.id = :id");
+		if (z != -1) {
+			query.append(" and (s.theZ is null or s.theZ = :z)");
+			shapeCondition.append(" and (l.parent.theZ is null or " +
+				"l.parent.theZ = :z)");
+			params.add("z", omero.rtypes.rint(z));
+		}
+		if (t != -1) {
+			query.append(" and (s.theT is null or s.theT = :t)");
+			shapeCondition.append(" and (l.parent.theT is null or " +
+				"l.parent.theT = :t)");
+			params.add("t", omero.rtypes.rint(t));
+		}
+		if (c != -1) {
+			query.append(" and (s.theC is null or s.theC = :c)");
+			shapeCondition.append(" and (l.parent.theC is null or " +
+				"l.parent.theC = :c)");
+			params.add("c", omero.rtypes.rint(c));
 		}
+		query.append(" order by r.id");
+		final List<IObject> objects = OMERO.ask(() -> gateway.getQueryService(ctx)
+			.findAllByQuery(query.toString(), params));
+
+		final ROITree roiTree = new DefaultROITree();
+		if (objects.isEmpty()) return roiTree;
+		final List<ROIData> rois = new ArrayList<>(objects.size());
+		for (final IObject o : objects)
+			rois.add(new ROIData((Roi) o));
+
+		roiTree.children().addAll(toTreeNodes(rois, boundaryTypes(rois,
+			shapeCondition.toString(), params)));
 		return roiTree;
 	}
 
+	/**
+	 * Downloads the ROIs associated with the given {@code imageID} from OMERO
+	 * page by page, in order of their IDs, using the
+	 * {@link #DEFAULT_ROI_PAGE_SIZE default page size}.
+	 *
+	 * @see #streamROIs(long, int)
+	 */
+	public Stream<TreeNode<?>> streamROIs(final long imageID) {
+		return streamROIs(imageID, DEFAULT_ROI_PAGE_SIZE);
+	}
+
+	/**
+	 * Downloads the ROIs associated with the given {@code imageID} from OMERO
+	 * page by page, in order of their IDs. Each page is only loaded once the
+	 * stream has consumed the previous one, and each ROI is converted to ImageJ
+	 * as it is consumed, so memory stays bounded by the page size regardless of
+	 * how many ROIs are attached to the image.
+	 * <p>
+	 * If something goes wrong with OMERO while loading a page, the stream throws
+	 * an {@link IllegalStateException} whose cause is the
+	 * {@link OMEROException}.
+	 * </p>
+	 *
+	 * @param imageID OMERO image ID to query for ROI data
+	 * @param pageSize maximum number of ROIs loaded per request
+	 * @return ImageJ equivalents of the requested OMERO ROI data
+	 */
+	public Stream<TreeNode<?>> streamROIs(final long imageID,
+		final int pageSize)
+	{
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("Invalid page size: " + pageSize);
+		}
+		final Iterator<List<ROIData>> pages = new Iterator<List<ROIData>>() {
+
+			private long lastID = -1;
+			private List<ROIData> page;
+			private boolean done;
+
+			@Override
+			public boolean hasNext() {
+				if (page == null && !done) {
+					try {
+						page = downloadROIPage(imageID, lastID, pageSize);
+					}
+					catch (final OMEROException exc) {
+						throw new IllegalStateException("Error retrieving ROIs", exc);
+					}
+					if (page.isEmpty()) {
+						page = null;
+						done = true;
+					}
+					else lastID = page.get(page.size() - 1).getId();
+				}
+				return page != null;
+			}
+
+			@Override
+			public List<ROIData> next() {
+				if (!hasNext()) throw new NoSuchElementException();
+				final List<ROIData> next = page;
+				page = null;
+				if (next.size() < pageSize) done = true;
+				return next;
+			}
+		};
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages,
+			Spliterator.ORDERED | Spliterator.NONNULL), false) //
+			.map(page -> {
+				final ParametersI params = new ParametersI();
+				params.addIds(page.stream().map(ROIData::getId).collect(Collectors
+					.toList()));
+				try {
+					return toTreeNodes(page, boundaryTypes(page,
+						"l.parent.roi.id in (:ids)", params));
+				}
+				catch (final OMEROException exc) {
+					throw new IllegalStateException("Error converting ROIs", exc);
+				}
+			}).flatMap(List::stream);
+	}
+
+	/**
+	 * Loads one page of the ROIs associated with the given {@code imageID},
+	 * consisting of the ROIs with the smallest IDs greater than {@code afterID}.
+	 * The next page is obtained by passing the ID of the last ROI of this page.
+	 *
+	 * @param imageID OMERO image ID to query for ROI data
+	 * @param afterID ID after which the page starts, or -1 for the first page
+	 * @param pageSize maximum number of ROIs to load
+	 * @return The loaded ROIs, in order of their IDs
+	 * @throws OMEROException if something goes wrong with OMERO.
+	 */
+	public List<ROIData> downloadROIPage(final long imageID, final long afterID,
+		final int pageSize) throws OMEROException
+	{
+		final ParametersI params = new ParametersI();
+		params.addId(imageID);
+		params.add("last", omero.rtypes.rlong(afterID));
+		params.page(0, pageSize);
+		final List<List<omero.RType>> rows = OMERO.ask(() -> gateway
+			.getQueryService(ctx).projection("select r.id from Roi as r " +
+				"where r.image.id = :id and r.id > :last order by r.id", params));
+		if (rows.isEmpty()) return new ArrayList<>();
+
+		final List<Long> ids = new ArrayList<>(rows.size());
+		for (final List<omero.RType> row : rows)
+			ids.add(((RLong) row.get(0)).getValue());
+		final List<ROIData> rois = new ArrayList<>(ids.size());
+		for (final IObject o : loadObjects(referenceQuery(OMERORef.ROI), ids))
+			rois.add(new ROIData((Roi) o));
+		rois.sort(Comparator.comparingLong(ROIData::getId));
+		return rois;
+	}
+
+	/**
+	 * Gets the boundary behaviors recorded in {@code boundaryType} tags on the
+	 * shapes of the given image, using a single query for all shapes.
+	 *
+	 * @param imageID OMERO image ID whose shapes are queried
+	 * @return boundary behaviors of the tagged shapes, keyed by shape ID
+	 * @throws OMEROException if something goes wrong with OMERO.
+	 */
+	public Map<Long, BoundaryType> getBoundaryTypes(final long imageID)
+		throws OMEROException
+	{
+		final ParametersI params = new ParametersI();
+		params.addId(imageID);
+		return getBoundaryTypes("l.parent.roi.image.id = :id", params);
+	}
+
 	/**
 	 * Converts the given {@link TreeNode} to OMERO ROI(s), uploads them to the
 	 * OMEROServer, and attaches them to the image with the specified ID. All ROIs
@@ -681,32 +1153,53 @@ public class OMEROSession /*extends AbstractContextual*/ implements Closeable {
 		final Interval interval = getImageInterval(imageID);
 		final Pair<List<OMEROROICollection>, List<TreeNode<?>>> splitROIs = //
 			ROIUtils.split(ijROIs);
-		final List<ROIData> savedOMERORois = new ArrayList<>();
-
-		final ROIFacility roifac = facility(ROIFacility.class);
+		final List<TreeNode<?>> ijOriginated = splitROIs.getB();
+		final List<OMEROROICollection> omeroOriginated = splitROIs.getA();
+
+		// Convert all ROIs up front, remembering the position of each source ROI
+		final List<ROIData> roiData = new ArrayList<>();
+		final List<List<ROIData>> ijConverted = convertOMEROROIs(ijOriginated,
+			interval);
+		final int[] ijPositions = new int[ijOriginated.size()];
+		for (int i = 0; i < ijPositions.length; i++) {
+			ijPositions[i] = roiData.size();
+			roiData.addAll(ijConverted.get(i));
+			if (roiData.size() == ijPositions[i]) {
+				throw new IllegalArgumentException("Cannot convert ROI: " +
+					ijOriginated.get(i).data());
+			}
+		}
+		final List<List<ROIData>> omeroConverted = convertOMEROROIs(
+			omeroOriginated, interval);
+		final int[] omeroPositions = new int[omeroOriginated.size()];
+		for (int i = 0; i < omeroPositions.length; i++) {
+			omeroPositions[i] = roiData.size();
+			final List<ROIData> converted = omeroConverted.get(i);
+			omeroService.roiCache().removeDownloaded(converted.get(0).getId());
+			roiData.addAll(converted);
+		}
 
-		// FIXME: This is a lot of server calls
+		final List<ROIData> saved = saveROIs(imageID, roiData);
+		invalidateROIs(imageID);
+		final List<ROIData> savedOMERORois = new ArrayList<>(ijPositions.length +
+			omeroPositions.length);
 
 		// Handle ROIs which originated in ImageJ
-		for (final TreeNode<?> ijROI : splitROIs.getB()) {
-			final List<ROIData> roiData = convertOMEROROI(ijROI, interval);
-			final Collection<ROIData> saved = saveROIs(imageID, roifac, roiData);
-			omeroService.roiCache().addROIMapping(ijROI.data(), saved.iterator()
-				.next());
-			savedOMERORois.add(saved.iterator().next());
+		for (int i = 0; i < ijPositions.length; i++) {
+			final ROIData savedRoi = saved.get(ijPositions[i]);
+			omeroService.roiCache().addROIMapping(ijOriginated.get(i).data(),
+				savedRoi);
+			savedOMERORois.add(savedRoi);
 		}
 
 		// Handle ROIs which originated in OMERO
-		for (final OMEROROICollection orc : splitROIs.getA()) {
-			final List<ROIData> roiData = convertOMEROROI(orc, interval);
-			final long roiID = roiData.get(0).getId();
-			omeroService.roiCache().removeDownloaded(roiID);
-			final Collection<ROIData> saved = saveROIs(imageID, roifac, roiData);
-			final ROIData savedRoi = saved.iterator().next();
+		for (int i = 0; i < omeroPositions.length; i++) {
+			final ROIData savedRoi = saved.get(omeroPositions[i]);
 
 			// NB: If updated later, the id will match correctly
-			ROIUtils.updateROIData(orc, savedRoi);
-			omeroService.roiCache().updateServerROIData(savedRoi.getId(), savedRoi);
+			ROIUtils.updateROIData(omeroOriginated.get(i), savedRoi);
+			ROIUtils.setServerData(omeroOriginated.get(i), savedRoi, omeroService
+				.roiCache());
 
 			savedOMERORois.add(savedRoi);
 		}
@@ -754,8 +1247,9 @@ public class OMEROSession /*extends AbstractContextual*/ implements Closeable {
 	/**
 	 * Converts the given {@link TreeNode} to OMERO ROI(s), creating new Objects
 	 * on the server only for ROIs which didn't previously exist. ROIs which
-	 * originated from OMERO are updated on the server. A collection of the new
-	 * ROI objects is returned.
+	 * originated from OMERO are updated on the server, unless they are attached
+	 * to the given image and unmodified since they were downloaded or last saved.
+	 * A collection of the new ROI objects is returned.
 	 *
 	 * @param ijROIs ImageJ ROIs to upload to OMERO
 	 * @param imageID OMERO image ID that ROIs will be attached to
@@ -768,64 +1262,363 @@ public class OMEROSession /*extends AbstractContextual*/ implements Closeable {
 		final Interval interval = getImageInterval(imageID);
 		final Pair<List<OMEROROICollection>, List<TreeNode<?>>> splitROIs = //
 			ROIUtils.split(ijROIs);
-		final List<Long> ids = new ArrayList<>();
-		final ROIFacility roifac = facility(ROIFacility.class);
-		final DataManagerFacility dm = facility(DataManagerFacility.class);
+		final List<IObject> toSave = new ArrayList<>();
 
-		// Handle ROIs which originated in OMERO
+		// Skip ROIs which originated in OMERO and have not changed since they
+		// were downloaded or last saved to this image
+		final List<OMEROROICollection> modified = new ArrayList<>();
+		final Set<Long> ids = new HashSet<>();
 		for (final OMEROROICollection orc : splitROIs.getA()) {
-			final ROIData converted = convertOMEROROI(orc, interval).get(0);
-			final ROIData downloaded = //
-				omeroService.roiCache().getUpdatedServerROIData(converted.getId());
+			if (orc.isModified() || !isOnImage(orc.data(), imageID)) {
+				modified.add(orc);
+			}
+			else ids.add(orc.data().getId());
+		}
+
+		// Convert ROIs which originated in OMERO, and save them as their latest
+		// version on the server if known
+		final List<List<ROIData>> omeroConverted = convertOMEROROIs(modified,
+			interval);
+		for (int i = 0; i < modified.size(); i++) {
+			final ROIData converted = omeroConverted.get(i).get(0);
+			final ROIData downloaded = ROIUtils.serverData(modified.get(i),
+				omeroService.roiCache());
 			final ROIData roiToSave = downloaded == null ? converted : downloaded;
-			final DataObject savedOMERO = //
-				OMERO.ask(() -> dm.saveAndReturnObject(ctx, roiToSave));
-			if (!(savedOMERO instanceof ROIData)) {
-				throw new IllegalArgumentException("ROI was not returned by OMERO");
+			toSave.add(roiToSave.asIObject());
+		}
+
+		// Convert ROIs which originated in ImageJ, only the first ROI of each
+		// node is mapped back to it
+		final List<List<ROIData>> ijConverted = convertOMEROROIs(splitROIs.getB(),
+			interval);
+		final int[] ijPositions = new int[splitROIs.getB().size()];
+		for (int i = 0; i < ijPositions.length; i++) {
+			final List<ROIData> converted = ijConverted.get(i);
+			if (converted.isEmpty()) {
+				throw new IllegalArgumentException("ROI could not be converted");
 			}
-			final ROIData savedROI = (ROIData) savedOMERO;
-			omeroService.roiCache().updateServerROIData(savedROI.getId(), savedROI);
-			ROIUtils.updateROIData(orc, savedROI);
-			ids.add(savedROI.getId());
+			ijPositions[i] = toSave.size();
+			for (final ROIData roi : converted)
+				toSave.add(roi.asIObject());
 		}
 
-		return OMERO.ask(() -> {
-			final List<ROIData> newROIs = new ArrayList<>();
-
-			// Handle ROIs which originated in ImageJ
-			for (final TreeNode<?> dn : splitROIs.getB()) {
-				final List<ROIData> converted = convertOMEROROI(dn, interval);
-				final Collection<ROIData> saved = roifac.saveROIs(ctx, imageID,
-					converted);
-				if (omeroService.roiCache().getROIMapping(dn.data()) == null) {
-					newROIs.add(saved.iterator().next());
-				}
-				omeroService.roiCache().addROIMapping(dn.data(), saved.iterator()
-					.next());
-				ids.add(saved.iterator().next().getId());
+		// Save all ROIs in batches; existing ROIs are updated, new ROIs created.
+		// NB: Only new ROIs are attached to the image, ROIs which already exist
+		// on the server keep their image
+		final Image image = new ImageI(imageID, false);
+		for (int i = 0; i < toSave.size(); i++) {
+			final IObject roi = toSave.get(i);
+			if (i >= modified.size() || roi.getId() == null || roi.getId()
+				.getValue() < 0) ((Roi) roi).setImage(image);
+		}
+		final List<IObject> saved = saveObjects(toSave);
+		invalidateROIs(imageID);
+
+		for (int i = 0; i < modified.size(); i++) {
+			final ROIData savedROI = new ROIData((Roi) saved.get(i));
+			ROIUtils.setServerData(modified.get(i), savedROI, omeroService
+				.roiCache());
+			ROIUtils.updateROIData(modified.get(i), savedROI);
+			modified.get(i).markSaved();
+			ids.add(savedROI.getId());
+		}
+		final List<ROIData> newROIs = new ArrayList<>();
+		for (int i = 0; i < ijPositions.length; i++) {
+			final Object data = splitROIs.getB().get(i).data();
+			final ROIData savedROI = new ROIData((Roi) saved.get(ijPositions[i]));
+			if (omeroService.roiCache().getROIMapping(data) == null) {
+				newROIs.add(savedROI);
 			}
+			omeroService.roiCache().addROIMapping(data, savedROI);
+		}
+		for (final IObject roi : saved)
+			ids.add(roi.getId().getValue());
 
-			// Check if any ROIs must be deleted
-			final Collection<ROIResult> roisOnServer = roifac.loadROIs(ctx, imageID);
-			for (final ROIResult result : roisOnServer) {
-				for (final ROIData roi : result.getROIs()) {
-					final long roiID = roi.getId();
-					if (!ids.contains(roiID)) {
-						dm.delete(ctx, roi.asIObject());
-
-						// check if deleted ROI was mapped, if so remove mapping
-						omeroService.roiCache().removeDownloaded(roiID);
-						omeroService.roiCache().removeSaved(roiID);
-					}
-				}
+		// Delete ROIs which are on the server but no longer present locally,
+		// comparing IDs only rather than loading every ROI on the image
+		final List<IObject> toDelete = new ArrayList<>();
+		for (final long roiID : getROIIDs(imageID)) {
+			if (ids.contains(roiID)) continue;
+			toDelete.add(new RoiI(roiID, false));
+
+			// check if deleted ROI was mapped, if so remove mapping
+			omeroService.roiCache().removeDownloaded(roiID);
+			omeroService.roiCache().removeSaved(roiID);
+		}
+		if (!toDelete.isEmpty()) {
+			final DataManagerFacility dm = facility(DataManagerFacility.class);
+			OMERO.ask(() -> dm.delete(ctx, toDelete));
+			invalidateROIs(imageID);
+		}
+
+		return newROIs;
+	}
+
+	/**
+	 * Gets the IDs of all ROIs attached to the given image, without loading the
+	 * ROIs themselves.
+	 *
+	 * @param imageID OMERO image ID
+	 * @return IDs of the ROIs attached to the image
+	 * @throws OMEROException if something goes wrong with OMERO.
+	 */
+	public long[] getROIIDs(final long imageID) throws OMEROException {
+		final ParametersI params = new ParametersI();
+		params.addId(imageID);
+		final List<List<omero.RType>> rows = OMERO.ask(() -> gateway
+			.getQueryService(ctx).projection(
+				"select r.id from Roi as r where r.image.id = :id", params));
+		final long[] roiIDs = new long[rows.size()];
+		for (int i = 0; i < roiIDs.length; i++)
+			roiIDs[i] = ((RLong) rows.get(i).get(0)).getValue();
+		return roiIDs;
+	}
+
+	/**
+	 * Measures intensity statistics of the given ROIs on one plane of the image
+	 * with the given ID, without a histogram.
+	 *
+	 * @see #measureROIs(long, TreeNode, int, int, int, int, double, double)
+	 */
+	public Table<?, ?> measureROIs(final long imageID, final TreeNode<?> rois,
+		final int z, final int t, final int c) throws OMEROException
+	{
+		return measureROIs(imageID, rois, z, t, c, 0, 0, 0);
+	}
+
+	/**
+	 * Measures intensity statistics of the given ROIs on one plane of the image
+	 * with the given ID. Only the tiles of the plane covered by the ROIs are
+	 * downloaded, and tiles are shared by overlapping ROIs, so the transfer is
+	 * proportional to the area of the ROIs rather than that of the image.
+	 * <p>
+	 * The resulting table has a row for each ROI found by
+	 * {@link ROIUtils#collectROITreeNodes}, with its one-based position in that
+	 * list as label, its OMERO ID (or -1 if it has none), and the number, sum,
+	 * mean, minimum, maximum and standard deviation of the pixel values
+	 * contained in its shapes on the plane. Pixels contained in several shapes
+	 * of a ROI are counted once. With {@code bins > 0}, the table also has a
+	 * column for each histogram bin, counting the values within
+	 * {@code [histogramMin, histogramMax]}.
+	 * </p>
+	 *
+	 * @param imageID OMERO image ID whose pixels are measured
+	 * @param rois ImageJ ROIs to measure, e.g. a downloaded ROITree
+	 * @param z Z position of the plane
+	 * @param t T position of the plane
+	 * @param c C position of the plane
+	 * @param bins number of histogram bins, or 0 for no histogram
+	 * @param histogramMin lower end of the histogram range
+	 * @param histogramMax upper end of the histogram range
+	 * @return table of the statistics of each ROI
+	 * @throws OMEROException if something goes wrong with OMERO.
+	 */
+	public Table<?, ?> measureROIs(final long imageID, final TreeNode<?> rois,
+		final int z, final int t, final int c, final int bins,
+		final double histogramMin, final double histogramMax)
+		throws OMEROException
+	{
+		final BrowseFacility browse = facility(BrowseFacility.class);
+		final PixelsData pixels = OMERO.ask(() -> browse.getImage(ctx, imageID)
+			.getDefaultPixels());
+		if (z < 0 || z >= pixels.getSizeZ() || t < 0 || t >= pixels.getSizeT() ||
+			c < 0 || c >= pixels.getSizeC()) throw new IllegalArgumentException(
+				"Invalid position (z, time, channel): (" + z + ", " + t + ", " + c +
+					")");
+		// NB: Validates the histogram before anything is downloaded
+		ROIStatistics.checkHistogram(bins, histogramMin, histogramMax);
+
+		final List<TreeNode<?>> nodes = ROIUtils.collectROITreeNodes(rois);
+		final List<ROIStatistics> stats;
+		final RawPixelsStorePrx store = OMERO.ask(() -> sfp
+			.createRawPixelsStore());
+		try {
+			OMERO.tell(() -> store.setPixelsId(pixels.getId(), false));
+			final int[] tileSize = OMERO.ask(() -> store.getTileSize());
+			final String pixelType = pixels.getPixelType();
+			final TiledROIMeasurer measurer = new TiledROIMeasurer((x, y, w,
+				h) -> TiledROIMeasurer.decode(OMERO.ask(() -> store.getTile(z, c, t, x,
+					y, w, h)), pixelType, w * h), pixels.getSizeX(), pixels.getSizeY(),
+				tileSize[0], tileSize[1], TiledROIMeasurer.DEFAULT_CACHE_PIXELS);
+			stats = measurer.measure(nodes, z, t, c, () -> new ROIStatistics(bins,
+				histogramMin, histogramMax));
+		}
+		finally {
+			try {
+				store.close();
+			}
+			catch (final ServerError exc) {
+				log().warn("Cannot close pixels store of image " + imageID, exc);
 			}
+		}
 
-			return newROIs;
-		});
+		final LongColumn labels = new LongColumn("Label");
+		final LongColumn ids = new LongColumn("ROI ID");
+		final LongColumn counts = new LongColumn("Count");
+		final DoubleColumn sums = new DoubleColumn("Sum");
+		final DoubleColumn means = new DoubleColumn("Mean");
+		final DoubleColumn mins = new DoubleColumn("Min");
+		final DoubleColumn maxs = new DoubleColumn("Max");
+		final DoubleColumn stdDevs = new DoubleColumn("StdDev");
+		final List<LongColumn> histogram = new ArrayList<>(bins);
+		for (int b = 0; b < bins; b++)
+			histogram.add(new LongColumn("Bin " + b));
+		for (int i = 0; i < nodes.size(); i++) {
+			final ROIStatistics s = stats.get(i);
+			final Object data = nodes.get(i).data();
+			labels.add((long) i + 1);
+			ids.add(data instanceof ROIData ? ((ROIData) data).getId() : -1L);
+			counts.add(s.count());
+			sums.add(s.sum());
+			means.add(s.mean());
+			mins.add(s.min());
+			maxs.add(s.max());
+			stdDevs.add(s.standardDeviation());
+			final long[] h = s.histogram();
+			for (int b = 0; b < bins; b++)
+				histogram.get(b).add(h[b]);
+		}
+
+		final GenericTable table = new DefaultGenericTable();
+		table.setRowCount(nodes.size());
+		table.add(labels);
+		table.add(ids);
+		table.add(counts);
+		table.add(sums);
+		table.add(means);
+		table.add(mins);
+		table.add(maxs);
+		table.add(stdDevs);
+		table.addAll(histogram);
+		return table;
 	}
 
 	// -- Accessors --
 
+	/**
+	 * Gets the local cache of downloaded tables, or {@code null} if downloaded
+	 * tables are not cached.
+	 */
+	public TableCache getTableCache() {
+		return tableCache;
+	}
+
+	/**
+	 * Sets the local cache of downloaded tables. Once set,
+	 * {@link #downloadTable(long)} reads tables from the cache when their
+	 * content on the server is unchanged, and caches newly downloaded tables.
+	 *
+	 * @param tableCache The cache to use, or {@code null} to disable caching.
+	 */
+	public void setTableCache(final TableCache tableCache) {
+		this.tableCache = tableCache;
+	}
+
+	/**
+	 * Gets the in-memory cache of the ROIs downloaded by this session, or
+	 * {@code null} if they are not cached in memory.
+	 */
+	public ROIDownloadCache getROIDownloadCache() {
+		return roiDownloadCache;
+	}
+
+	/**
+	 * Sets the in-memory cache of the ROIs downloaded by this session. Once
+	 * set, {@link #downloadROIs(long)} reuses the ROIs of an image downloaded
+	 * earlier when they are unchanged on the server, and uploading or updating
+	 * the ROIs of an image drops its entry. As with the
+	 * {@link #setROISnapshotCache snapshot cache}, ROIs reused from the cache
+	 * lack the details of the OMERO objects, such as their owners and
+	 * permissions.
+	 *
+	 * @param roiDownloadCache The cache to use, or {@code null} to disable
+	 *          caching in memory.
+	 */
+	public void setROIDownloadCache(final ROIDownloadCache roiDownloadCache) {
+		this.roiDownloadCache = roiDownloadCache;
+	}
+
+	/**
+	 * Gets the local cache of downloaded ROIs, or {@code null} if downloaded
+	 * ROIs are not cached.
+	 */
+	public ROISnapshotCache getROISnapshotCache() {
+		return roiSnapshotCache;
+	}
+
+	/**
+	 * Sets the local cache of downloaded ROIs. Once set,
+	 * {@link #downloadROIs(long)} reads the ROIs of an image from its cached
+	 * snapshot when they are unchanged on the server, and caches the ROIs of
+	 * images which are downloaded anew.
+	 *
+	 * @param roiSnapshotCache The cache to use, or {@code null} to disable
+	 *          caching.
+	 */
+	public void setROISnapshotCache(final ROISnapshotCache roiSnapshotCache) {
+		this.roiSnapshotCache = roiSnapshotCache;
+	}
+
+	/**
+	 * Gets the maximum number of requests which this session issues
+	 * concurrently, e.g. when downloading tables in parallel.
+	 */
+	public int getMaxConcurrentRequests() {
+		return maxConcurrentRequests;
+	}
+
+	/**
+	 * Sets the maximum number of requests which this session issues
+	 * concurrently.
+	 *
+	 * @param maxConcurrentRequests Maximum number of concurrent requests; must
+	 *          be positive.
+	 */
+	public synchronized void setMaxConcurrentRequests(
+		final int maxConcurrentRequests)
+	{
+		if (maxConcurrentRequests < 1) {
+			throw new IllegalArgumentException(
+				"Maximum concurrent requests must be positive: " +
+					maxConcurrentRequests);
+		}
+		this.maxConcurrentRequests = maxConcurrentRequests;
+		if (executor != null) {
+			// NB: Order matters; the core size may never exceed the maximum size.
+			if (maxConcurrentRequests > executor.getMaximumPoolSize()) {
+				executor.setMaximumPoolSize(maxConcurrentRequests);
+				executor.setCorePoolSize(maxConcurrentRequests);
+			}
+			else {
+				executor.setCorePoolSize(maxConcurrentRequests);
+				executor.setMaximumPoolSize(maxConcurrentRequests);
+			}
+		}
+	}
+
+	/**
+	 * Gets the executor used to issue concurrent requests on this session. It
+	 * runs at most {@link #getMaxConcurrentRequests()} tasks at the same time,
+	 * and is shut down when the session is closed.
+	 *
+	 * @return Current session's {@code ExecutorService}
+	 */
+	public synchronized ExecutorService executor() {
+		if (executor == null) {
+			final AtomicInteger count = new AtomicInteger();
+			executor = new ThreadPoolExecutor(maxConcurrentRequests,
+				maxConcurrentRequests, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), r -> {
+					final Thread t = new Thread(r, "OMEROSession-" + sessionID + "-" +
+						count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				});
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+
 	/**
 	 * Gets the {@link ExperimenterData} associated with this session.
 	 *
@@ -1021,6 +1814,10 @@ public class OMEROSession /*extends AbstractContextual*/ implements Closeable {
 
 	@Override
 	public void close() {
+		synchronized (this) {
+			if (executor != null) executor.shutdownNow();
+			executor = null;
+		}
 		client.__del__();
 		gateway.disconnect();
 		sfp = null;
@@ -1216,6 +2013,177 @@ public class OMEROSession /*extends AbstractContextual*/ implements Closeable {
 		return (int) axisLength;
 	}
 
+	/**
+	 * Creates the {@link TableCache} key of the given table, from the size, hash
+	 * and last update of its {@link OriginalFile}, using a single projection
+	 * which does not open the table.
+	 *
+	 * @throws OMEROException if the table does not exist, or something goes
+	 *           wrong with OMERO.
+	 */
+	private String tableCacheKey(final long tableID) throws OMEROException {
+		final ParametersI params = new ParametersI();
+		params.addId(tableID);
+		final List<List<omero.RType>> rows = OMERO.ask(() -> gateway
+			.getQueryService(ctx).projection("select f.size, f.hash, " +
+				"f.details.updateEvent.id from OriginalFile as f where f.id = :id",
+				params));
+		if (rows.isEmpty()) throw new OMEROException("No such table: " + tableID);
+		final List<omero.RType> row = rows.get(0);
+		final omero.RString hash = (omero.RString) row.get(1);
+		return TableCache.key(tableID, longValue(row.get(0)), hash == null ? null
+			: hash.getValue(), longValue(row.get(2)));
+	}
+
+	/**
+	 * Gets the ROIs of the given image from the in-memory download cache or,
+	 * failing that, from the ROI snapshot cache, if either holds them under the
+	 * given key. ROIs read from a snapshot are also cached in memory.
+	 *
+	 * @return The cached ROIs, or {@code null} if they are not cached.
+	 */
+	private List<ROIData> cachedROIs(final long imageID, final String cacheKey) {
+		if (cacheKey == null) return null;
+		final ROIDownloadCache downloads = roiDownloadCache;
+		if (downloads != null) {
+			try {
+				final List<ROIData> cached = downloads.get(imageID, cacheKey);
+				if (cached != null) return cached;
+			}
+			catch (final IOException exc) {
+				log().warn("Cannot read cached ROIs of image " + imageID, exc);
+				downloads.invalidate(imageID);
+			}
+		}
+		final ROISnapshotCache cache = roiSnapshotCache;
+		if (cache == null) return null;
+		try {
+			final List<ROIData> cached = cache.load(cacheKey);
+			if (cached != null && downloads != null) downloads.put(imageID,
+				cacheKey, cached);
+			return cached;
+		}
+		catch (final IOException exc) {
+			log().warn("Cannot read cached ROIs of image " + imageID, exc);
+			return null;
+		}
+	}
+
+	/**
+	 * Caches the given ROIs of the given image under the given key, in memory
+	 * and as a snapshot, if the respective caches are enabled.
+	 */
+	private void cacheROIs(final long imageID, final String cacheKey,
+		final List<ROIData> rois)
+	{
+		if (cacheKey == null) return;
+		final ROIDownloadCache downloads = roiDownloadCache;
+		if (downloads != null) downloads.put(imageID, cacheKey, rois);
+		final ROISnapshotCache cache = roiSnapshotCache;
+		if (cache == null) return;
+		try {
+			cache.store(cacheKey, rois);
+		}
+		catch (final IOException exc) {
+			log().warn("Cannot cache ROIs of image " + imageID, exc);
+		}
+	}
+
+	/** Drops the ROIs of the given image from the in-memory download cache. */
+	private void invalidateROIs(final long imageID) {
+		final ROIDownloadCache downloads = roiDownloadCache;
+		if (downloads != null) downloads.invalidate(imageID);
+	}
+
+	/**
+	 * Creates the key of the ROIs of the given image in the ROI caches,
+	 * from the number of its ROIs, shapes and shape annotation links, and the
+	 * latest update events of each, using two projection queries. Update event
+	 * IDs grow with their timestamps, so the key changes whenever a ROI, shape
+	 * or {@code boundaryType} tag is added, modified or removed.
+	 */
+	private String roiCacheKey(final long imageID) throws OMEROException {
+		final IQueryPrx iquery = OMERO.ask(() -> gateway.getQueryService(ctx));
+		final ParametersI params = new ParametersI();
+		params.addId(imageID);
+		final List<omero.RType> shapes = OMERO.ask(() -> iquery.projection(
+			"select count(distinct r.id), count(s.id), " +
+				"max(r.details.updateEvent.id), max(s.details.updateEvent.id) " +
+				"from Roi as r left outer join r.shapes as s where r.image.id = :id",
+			params)).get(0);
+		final List<omero.RType> links = OMERO.ask(() -> iquery.projection(
+			"select count(l.id), max(l.details.updateEvent.id), " +
+				"max(l.child.details.updateEvent.id) from ShapeAnnotationLink as l " +
+				"where l.parent.roi.image.id = :id", params)).get(0);
+		return ROISnapshotCache.key(imageID, longValue(shapes.get(0)), longValue(
+			shapes.get(1)), longValue(shapes.get(2)), longValue(shapes.get(3)),
+			longValue(links.get(0)), longValue(links.get(1)), longValue(links.get(
+				2)));
+	}
+
+	/** Gets the value of a numeric projection result, or -1 if it is null. */
+	private static long longValue(final omero.RType value) {
+		return value == null ? -1 : ((RLong) value).getValue();
+	}
+
+	/** Gets the HQL query which loads the given type of referenced objects. */
+	private static String referenceQuery(final OMERORef ref) {
+		switch (ref) {
+			case IMAGE:
+				return "select distinct i from Image as i " +
+					"left outer join fetch i.pixels as p " +
+					"left outer join fetch p.pixelsType where i.id in (:ids)";
+			case ROI:
+				return "select distinct r from Roi as r " +
+					"left outer join fetch r.shapes as s " +
+					"left outer join fetch s.transform where r.id in (:ids)";
+			case FILE:
+				return "select f from OriginalFile as f where f.id in (:ids)";
+			case WELL:
+				return "select w from Well as w where w.id in (:ids)";
+			case PLATE:
+				return "select p from Plate as p where p.id in (:ids)";
+			case PROJECT:
+				return "select p from Project as p where p.id in (:ids)";
+			case DATASET:
+				return "select d from Dataset as d where d.id in (:ids)";
+			default:
+				throw new IllegalArgumentException("Unsupported reference: " + ref);
+		}
+	}
+
+	/**
+	 * Wraps the given referenced object as a {@link DataObject} of the type used
+	 * by the reference columns of tables (see {@link TableUtils}).
+	 */
+	private static DataObject asReference(final IObject object) {
+		if (!(object instanceof OriginalFile)) return PojoMapper.asDataObject(
+			object);
+		final FileAnnotation annotation = new FileAnnotationI();
+		annotation.setFile((OriginalFile) object);
+		return new FileAnnotationData(annotation);
+	}
+
+	/**
+	 * Runs the given HQL query, which must select objects by an {@code :ids}
+	 * parameter, for all of the given IDs. IDs are queried in batches of
+	 * {@link #QUERY_BATCH_SIZE}.
+	 */
+	private List<IObject> loadObjects(final String query,
+		final Collection<Long> ids) throws OMEROException
+	{
+		final IQueryPrx iquery = OMERO.ask(() -> gateway.getQueryService(ctx));
+		final List<Long> idList = new ArrayList<>(ids);
+		final List<IObject> objects = new ArrayList<>(idList.size());
+		for (int i = 0; i < idList.size(); i += QUERY_BATCH_SIZE) {
+			final ParametersI params = new ParametersI();
+			params.addIds(idList.subList(i, Math.min(i + QUERY_BATCH_SIZE, idList
+				.size())));
+			objects.addAll(OMERO.ask(() -> iquery.findAllByQuery(query, params)));
+		}
+		return objects;
+	}
+
 	/**
 	 * Retrieves the {@link ImageData} from the OMERO server, and compute its
 	 * {@link Interval}.
@@ -1248,28 +2216,55 @@ public class OMEROSession /*extends AbstractContextual*/ implements Closeable {
 	private List<ROIData> convertOMEROROI(final TreeNode<?> dataNodeRois,
 		final Interval interval) throws OMEROException
 	{
-		final List<ROIData> omeroROIs = new ArrayList<>();
-		final List<TreeNode<?>> roiTreeNodes = //
-			ROIUtils.collectROITreeNodes(dataNodeRois);
+		return convertOMEROROIs(Collections.singletonList(dataNodeRois), interval)
+			.get(0);
+	}
+
+	/**
+	 * Converts each of the given {@link TreeNode}s to {@link ROIData}, as
+	 * {@link #convertOMEROROI} does. The ROIs of all the trees are converted
+	 * together, so that they can be converted in parallel.
+	 *
+	 * @param dataNodeRois SciJava ROI representations
+	 * @param interval Optional bounding interval
+	 * @return Equivalent OMERO ROI representation of each tree, in order
+	 * @throws OMEROException If an error arises when connecting with OMERO server
+	 */
+	private List<List<ROIData>> convertOMEROROIs(
+		final List<? extends TreeNode<?>> dataNodeRois, final Interval interval)
+		throws OMEROException
+	{
+		final List<TreeNode<?>> roiTreeNodes = new ArrayList<>();
+		final int[] offsets = new int[dataNodeRois.size() + 1];
+		for (int i = 0; i < dataNodeRois.size(); i++) {
+			roiTreeNodes.addAll(ROIUtils.collectROITreeNodes(dataNodeRois.get(i)));
+			offsets[i + 1] = roiTreeNodes.size();
+		}
 
-		for (final TreeNode<?> dn : roiTreeNodes) {
-			ROIData oR;
+		final ConversionDispatcher conversions = omeroService.roiConversions();
+		final List<ROIData> omeroROIs = convertAll(roiTreeNodes, dn -> {
 			// If the data node has unbounded mask predicate data, apply the given
 			// interval if non-null
 			if (!(dn.data() instanceof Interval) && //
 				!(dn.data() instanceof RealInterval) && //
 				dn.data() instanceof MaskPredicate && interval != null)
 			{
-				oR = with(() -> omeroService.convert().convert(ROIUtils.interval(//
-					(MaskPredicate<?>) dn.data(), interval), ROIData.class));
+				return conversions.convert(ROIUtils.interval((MaskPredicate<?>) dn
+					.data(), interval), ROIData.class);
 			}
 			// else convert directly
-			else oR = with(() -> omeroService.convert().convert(dn, ROIData.class));
-			if (oR == null) throw new IllegalArgumentException("Unsupported type: " +
-				dn.data().getClass());
-			omeroROIs.add(oR);
+			return conversions.convert(dn, ROIData.class);
+		});
+		for (int i = 0; i < omeroROIs.size(); i++) {
+			if (omeroROIs.get(i) == null) throw new IllegalArgumentException(
+				"Unsupported type: " + roiTreeNodes.get(i).data().getClass());
 		}
-		return omeroROIs;
+
+		final List<List<ROIData>> grouped = new ArrayList<>(dataNodeRois.size());
+		for (int i = 0; i < dataNodeRois.size(); i++)
+			grouped.add(new ArrayList<>(omeroROIs.subList(offsets[i], offsets[i +
+				1])));
+		return grouped;
 	}
 
 	/**
@@ -1392,11 +2387,169 @@ public class OMEROSession /*extends AbstractContextual*/ implements Closeable {
 		return converted;
 	}
 
-	private Collection<ROIData> saveROIs(final long imageID,
-		final ROIFacility roifac, final List<ROIData> roiData) throws OMEROException
+	/**
+	 * Saves the given ROIs as new objects attached to the given image. Rather
+	 * than saving each ROI separately, they are saved in as few requests as the
+	 * {@link #SAVE_BATCH_SIZE} bounds allow.
+	 *
+	 * @return The saved ROIs, in the same order as the given ROIs
+	 */
+	private List<ROIData> saveROIs(final long imageID,
+		final List<ROIData> roiData) throws OMEROException
 	{
 		ROIUtils.clearROIs(roiData);
-		return OMERO.ask(() -> roifac.saveROIs(ctx, imageID, roiData));
+		final Image image = new ImageI(imageID, false);
+		final List<IObject> rois = new ArrayList<>(roiData.size());
+		for (final ROIData r : roiData) {
+			final Roi roi = (Roi) r.asIObject();
+			roi.setImage(image);
+			rois.add(roi);
+		}
+
+		final List<IObject> result = saveObjects(rois);
+		final List<ROIData> saved = new ArrayList<>(result.size());
+		for (final IObject o : result)
+			saved.add(new ROIData((Roi) o));
+		return saved;
+	}
+
+	/**
+	 * Saves the given ROIs, creating new ones and updating existing ones, in as
+	 * few requests as the {@link #SAVE_BATCH_SIZE} bounds allow.
+	 *
+	 * @return The saved ROIs, in the same order as the given ROIs
+	 */
+	private List<IObject> saveObjects(final List<IObject> rois)
+		throws OMEROException
+	{
+		final List<IObject> saved = new ArrayList<>(rois.size());
+		if (rois.isEmpty()) return saved;
+		final IUpdatePrx update = OMERO.ask(() -> gateway.getUpdateService(ctx));
+
+		// NB: Each request gets its own list, the proxy may hold on to it
+		List<IObject> batch = new ArrayList<>();
+		int shapeCount = 0;
+		for (int i = 0; i < rois.size(); i++) {
+			final IObject roi = rois.get(i);
+			batch.add(roi);
+			shapeCount += ((Roi) roi).sizeOfShapes();
+			if (batch.size() >= SAVE_BATCH_SIZE || shapeCount >= SAVE_BATCH_SIZE *
+				10 || i == rois.size() - 1)
+			{
+				final List<IObject> request = batch;
+				saved.addAll(OMERO.ask(() -> update.saveAndReturnArray(request)));
+				batch = new ArrayList<>();
+				shapeCount = 0;
+			}
+		}
+		return saved;
+	}
+
+	/** Returns true if the given ROI is attached to the given image. */
+	private static boolean isOnImage(final ROIData roi, final long imageID) {
+		final Image image = ((Roi) roi.asIObject()).getImage();
+		return image != null && image.getId() != null && image.getId()
+			.getValue() == imageID;
+	}
+
+	/**
+	 * Converts the given OMERO ROIs to ImageJ. The given boundary types of their
+	 * tagged shapes are used when the shapes are converted.
+	 *
+	 * @throws IllegalArgumentException if a ROI cannot be converted
+	 */
+	private List<TreeNode<?>> toTreeNodes(final List<ROIData> rois,
+		final Map<Long, BoundaryType> boundaryTypes) throws OMEROException
+	{
+		final ConversionDispatcher conversions = omeroService.roiConversions();
+		final List<TreeNode<?>> ijRois = convertAll(rois, roi -> conversions
+			.convert(roi, TreeNode.class));
+		if (ijRois.contains(null)) {
+			throw new IllegalArgumentException(
+				"ROIData cannot be converted to ImageJ ROI");
+		}
+		if (!boundaryTypes.isEmpty()) {
+			for (final TreeNode<?> ijRoi : ijRois) {
+				if (ijRoi instanceof DefaultOMEROROICollection)
+					((DefaultOMEROROICollection) ijRoi).setBoundaryTypes(boundaryTypes);
+			}
+		}
+		return ijRois;
+	}
+
+	/**
+	 * Applies the given conversion to each of the given items, returning the
+	 * results in the order of the items. Large lists are split into chunks which
+	 * are converted in parallel on the common {@link ForkJoinPool}; each chunk
+	 * makes this the active session of its thread while it is converted, as
+	 * {@link #with} does.
+	 *
+	 * @throws OMEROException if any conversion fails
+	 */
+	private <S, D> List<D> convertAll(final List<S> items,
+		final Function<? super S, ? extends D> conversion) throws OMEROException
+	{
+		final List<S> source = items instanceof RandomAccess ? items
+			: new ArrayList<>(items);
+		final Object[] results = new Object[source.size()];
+		try {
+			new ConversionTask<>(source, conversion, results, 0, results.length)
+				.invoke();
+		}
+		catch (final RuntimeException exc) {
+			throw new OMEROException(exc);
+		}
+		@SuppressWarnings("unchecked")
+		final List<D> converted = (List<D>) new ArrayList<>(Arrays.asList(
+			results));
+		return converted;
+	}
+
+	/**
+	 * Gets the boundary behaviors recorded in {@code boundaryType} tags on the
+	 * shapes matched by the given condition on their annotation link {@code l}.
+	 */
+	private Map<Long, BoundaryType> getBoundaryTypes(final String condition,
+		final ParametersI params) throws OMEROException
+	{
+		params.add("desc", omero.rtypes.rstring(ROIConverters.BOUNDARY_TYPE_DESC));
+		final List<List<omero.RType>> rows = OMERO.ask(() -> gateway
+			.getQueryService(ctx).projection("select l.parent.id, t.textValue " +
+				"from ShapeAnnotationLink as l, TagAnnotation as t " +
+				"where l.child.id = t.id and t.description = :desc and " +
+				condition, params));
+
+		final Map<Long, BoundaryType> boundaryTypes = new HashMap<>();
+		for (final List<omero.RType> row : rows) {
+			final long shapeID = ((RLong) row.get(0)).getValue();
+			final omero.RString value = (omero.RString) row.get(1);
+			boundaryTypes.putIfAbsent(shapeID, ROIConverters.tagBoundaryType(
+				value == null ? null : value.getValue()));
+		}
+		return boundaryTypes;
+	}
+
+	/**
+	 * Gets the boundary behaviors recorded in {@code boundaryType} tags on the
+	 * given shapes, which are matched by the given condition on their annotation
+	 * link {@code l}. The tags are only queried if at least one shape lacks a
+	 * boundary type marker in its text, which takes precedence over its tag.
+	 */
+	private Map<Long, BoundaryType> boundaryTypes(
+		final Collection<ROIData> rois, final String condition,
+		final ParametersI params) throws OMEROException
+	{
+		for (final ROIData roi : rois) {
+			final Iterator<List<ShapeData>> itr = roi.getIterator();
+			while (itr.hasNext()) {
+				for (final ShapeData shape : itr.next()) {
+					if (shape instanceof TextData) continue;
+					if (ROIConverters.boundaryType(ROIConverters.getTextValue(
+						shape)) == null) return getBoundaryTypes(condition, params);
+				}
+			}
+		}
+		return Collections.emptyMap();
 	}
 
 	/**
@@ -1426,4 +2579,48 @@ public class OMEROSession /*extends AbstractContextual*/ implements Closeable {
 		final T[] array = (T[]) Array.newInstance(type, 0);
 		return collection.toArray(array);
 	}
+
+	// -- Helper classes --
+
+	/**
+	 * Converts a range of items into the matching range of an array, splitting
+	 * in half until the range is at most {@link #CONVERSION_CHUNK_SIZE} items.
+	 */
+	private final class ConversionTask<S, D> extends RecursiveAction {
+
+		private final List<S> items;
+		private final Function<? super S, ? extends D> conversion;
+		private final Object[] results;
+		private final int start;
+		private final int end;
+
+		private ConversionTask(final List<S> items,
+			final Function<? super S, ? extends D> conversion,
+			final Object[] results, final int start, final int end)
+		{
+			this.items = items;
+			this.conversion = conversion;
+			this.results = results;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start > CONVERSION_CHUNK_SIZE) {
+				final int mid = (start + end) >>> 1;
+				invokeAll(new ConversionTask<>(items, conversion, results, start, mid),
+					new ConversionTask<>(items, conversion, results, mid, end));
+				return;
+			}
+			omeroService.pushSession(OMEROSession.this);
+			try {
+				for (int i = start; i < end; i++)
+					results[i] = conversion.apply(items.get(i));
+			}
+			finally {
+				omeroService.popSession();
+			}
+		}
+	}
 }
@@ -58,21 +58,12 @@ public abstract class AbstractShapeDataToRealMaskRealInterval<S extends ShapeDat
 				.getSimpleName() + " Received: " + dest.getSimpleName());
 		}
 
-		return (T) convert((S) src, boundaryType(getTextValue((S) src)));
+		return (T) convert((S) src, ROIConverters.boundaryType((S) src,
+			ROIConverters.taggedBoundaryTypes()));
 	}
 
 	public abstract M convert(S shape, BoundaryType bt);
 
 	public abstract String getTextValue(S shape);
 
-	// -- Helper methods --
-
-	private BoundaryType boundaryType(final String omeroTextValue) {
-		if (omeroTextValue.contains(ROIConverters.OPEN_BOUNDARY_TEXT))
-			return BoundaryType.OPEN;
-		if (omeroTextValue.contains(ROIConverters.UNSPECIFIED_BOUNDARY_TEXT))
-			return BoundaryType.UNSPECIFIED;
-		return BoundaryType.CLOSED;
-	}
-
 }
@@ -93,8 +93,8 @@ public abstract class AbstractTreeNodeToROIData<D extends TreeNode<?>> extends
 
 		MaskPredicate<?> mp = null;
 		final ROIData r = new ROIData();
-		final ShapeData s = convert.convert(((TreeNode<?>) src).data(),
-			ShapeData.class);
+		final ShapeData s = omero.roiConversions().convert(((TreeNode<?>) src)
+			.data(), ShapeData.class);
 
 		if (src instanceof IntervalView) {
 			final RandomAccessible<?> ra = ((IntervalView<?>) src).getSource();
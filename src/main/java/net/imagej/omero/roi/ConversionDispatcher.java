@@ -0,0 +1,139 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.scijava.convert.ConvertService;
+import org.scijava.convert.Converter;
+
+/**
+ * Dispatches conversions to the {@link Converter}s of a {@link ConvertService},
+ * remembering which converters apply to each pair of source and destination
+ * classes.
+ * <p>
+ * Matching a single object against every converter is the dominant cost when
+ * converting many ROIs. Several ROI converters also inspect the object itself
+ * (e.g. whether a shape has a transform), so the matching converter cannot be
+ * cached per class. Instead, the converters which support the classes are
+ * cached in priority order, and each object is only matched against those. If
+ * none of them accept the object, the {@link ConvertService} is consulted as
+ * usual.
+ * </p>
+ * <p>
+ * Converters added to the {@link ConvertService} after a pair of classes was
+ * first seen are not considered for it until {@link #clear()} is called.
+ * </p>
+ *
+ * @author agent
+ */
+public class ConversionDispatcher {
+
+	private final ConvertService convert;
+	private final ConcurrentHashMap<ClassPair, Converter<?, ?>[]> candidates =
+		new ConcurrentHashMap<>();
+
+	public ConversionDispatcher(final ConvertService convert) {
+		this.convert = convert;
+	}
+
+	/** Gets the {@link ConvertService} conversions are dispatched to. */
+	public ConvertService convertService() {
+		return convert;
+	}
+
+	/**
+	 * Gets the highest priority {@link Converter} which can convert the given
+	 * object to the given class, or {@code null} if there is none.
+	 */
+	public Converter<?, ?> getConverter(final Object src, final Class<?> dest) {
+		if (src == null) return convert.getHandler(src, dest);
+		for (final Converter<?, ?> c : candidates(src.getClass(), dest)) {
+			if (c.canConvert(src, dest)) return c;
+		}
+		return convert.getHandler(src, dest);
+	}
+
+	/** Returns true if the given object can be converted to the given class. */
+	public boolean supports(final Object src, final Class<?> dest) {
+		return getConverter(src, dest) != null;
+	}
+
+	/**
+	 * Converts the given object to the given class, returning {@code null} if
+	 * it cannot be converted.
+	 */
+	public <T> T convert(final Object src, final Class<T> dest) {
+		final Converter<?, ?> c = getConverter(src, dest);
+		return c == null ? null : c.convert(src, dest);
+	}
+
+	/** Forgets the converters remembered for every pair of classes. */
+	public void clear() {
+		candidates.clear();
+	}
+
+	// -- Helper methods --
+
+	private Converter<?, ?>[] candidates(final Class<?> src,
+		final Class<?> dest)
+	{
+		return candidates.computeIfAbsent(new ClassPair(src, dest), pair -> {
+			final List<Converter<?, ?>> supported = new ArrayList<>();
+			for (final Converter<?, ?> c : convert.getInstances()) {
+				if (c.canConvert(src, dest)) supported.add(c);
+			}
+			return supported.toArray(new Converter<?, ?>[supported.size()]);
+		});
+	}
+
+	// -- Helper classes --
+
+	private static final class ClassPair {
+
+		private final Class<?> src;
+		private final Class<?> dest;
+
+		private ClassPair(final Class<?> src, final Class<?> dest) {
+			this.src = src;
+			this.dest = dest;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * src.hashCode() + dest.hashCode();
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof ClassPair)) return false;
+			final ClassPair other = (ClassPair) obj;
+			return src == other.src && dest == other.dest;
+		}
+	}
+}
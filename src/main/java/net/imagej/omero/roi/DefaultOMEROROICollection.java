@@ -25,21 +25,44 @@
 
 package net.imagej.omero.roi;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 
+import net.imglib2.RealLocalizable;
+import net.imglib2.roi.BoundaryType;
 import net.imglib2.roi.MaskPredicate;
+import net.imglib2.roi.geom.real.Box;
+import net.imglib2.roi.geom.real.Line;
+import net.imglib2.roi.geom.real.PointMask;
+import net.imglib2.roi.geom.real.Polyshape;
+import net.imglib2.roi.geom.real.RealPointCollection;
+import net.imglib2.roi.geom.real.SuperEllipsoid;
 
 import org.scijava.convert.ConvertService;
 import org.scijava.util.TreeNode;
 
+import omero.RDouble;
+import omero.RInt;
+import omero.RString;
+import omero.gateway.model.EllipseData;
+import omero.gateway.model.LineData;
+import omero.gateway.model.MaskData;
+import omero.gateway.model.PointData;
+import omero.gateway.model.PolygonData;
+import omero.gateway.model.PolylineData;
 import omero.gateway.model.ROIData;
+import omero.gateway.model.RectangleData;
 import omero.gateway.model.ShapeData;
+import omero.gateway.model.TextData;
+import omero.model.Length;
 import omero.model.Roi;
 import omero.model.Shape;
 
@@ -51,27 +74,52 @@ import omero.model.Shape;
  */
 public class DefaultOMEROROICollection implements OMEROROICollection {
 
-	private final ConvertService convert;
+	private final ConversionDispatcher convert;
 	private ROIData roi;
 	private TreeNode<?> parent;
 	private List<TreeNode<?>> children;
 	private final Map<MaskPredicate<?>, ShapeData> newChildren;
 
+	/** Geometry of the new children when they were last converted. */
+	private final Map<MaskPredicate<?>, List<Object>> newChildGeometry;
+
+	/** State of the shapes when last saved, or {@code null} if not taken. */
+	private Map<ShapeData, List<Object>> savedStates;
+
+	/** Whether shapes have been added or removed since the last save. */
+	private boolean shapesChanged;
+
+	/** Latest version of the ROI saved to OMERO, or {@code null}. */
+	private volatile ROIData serverData;
+
+	/** Prefetched boundary types of the tagged shapes, keyed by shape ID. */
+	private volatile Map<Long, BoundaryType> boundaryTypes = Collections
+		.emptyMap();
+
 	public DefaultOMEROROICollection(final TreeNode<?> parent,
 		final ROIData omeroRoi, final ConvertService convert)
 	{
-		roi = omeroRoi;
-		this.parent = parent;
-		this.convert = convert;
-		newChildren = new IdentityHashMap<>();
+		this(parent, omeroRoi, new ConversionDispatcher(convert));
 	}
 
 	public DefaultOMEROROICollection(final ROIData omeroRoi,
 		final ConvertService convert)
+	{
+		this(null, omeroRoi, convert);
+	}
+
+	/**
+	 * Creates a collection whose shapes are converted through the given, usually
+	 * shared, {@link ConversionDispatcher}.
+	 */
+	public DefaultOMEROROICollection(final TreeNode<?> parent,
+		final ROIData omeroRoi, final ConversionDispatcher convert)
 	{
 		roi = omeroRoi;
+		this.parent = parent;
 		this.convert = convert;
 		newChildren = new IdentityHashMap<>();
+		newChildGeometry = new IdentityHashMap<>();
 	}
 
 	@Override
@@ -93,9 +141,73 @@ public class DefaultOMEROROICollection implements OMEROROICollection {
 	@Override
 	public ROIData data() {
 		updateNewShapes();
+		if (savedStates == null) markSaved();
 		return roi;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Modifications are tracked from the first access of the children or data
+	 * of this collection, which is assumed to match the server. A
+	 * {@link ROIData} without an ID is always modified. Shapes are compared
+	 * using the saved values of their geometry, position, text, transform and
+	 * style, so unchanged shapes are never converted again.
+	 * </p>
+	 */
+	@Override
+	public synchronized boolean isModified() {
+		updateNewShapes();
+		if (roi.getId() < 0 || shapesChanged) return true;
+		if (savedStates == null) {
+			markSaved();
+			return false;
+		}
+		if (roi.getShapeCount() != savedStates.size()) return true;
+		final Iterator<List<ShapeData>> itr = roi.getIterator();
+		while (itr.hasNext()) {
+			for (final ShapeData shape : itr.next()) {
+				final List<Object> saved = savedStates.get(shape);
+				if (saved == null || !saved.equals(state(shape))) return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public synchronized void markSaved() {
+		final Map<ShapeData, List<Object>> states = new IdentityHashMap<>();
+		final Iterator<List<ShapeData>> itr = roi.getIterator();
+		while (itr.hasNext()) {
+			for (final ShapeData shape : itr.next())
+				states.put(shape, state(shape));
+		}
+		savedStates = states;
+		shapesChanged = false;
+	}
+
+	@Override
+	public ROIData serverData() {
+		return serverData;
+	}
+
+	@Override
+	public void setServerData(final ROIData saved) {
+		serverData = saved;
+	}
+
+	/**
+	 * Sets the boundary behaviors recorded in {@code boundaryType} tags on the
+	 * shapes of this ROI, which were fetched together with it. They are used
+	 * when the shapes are converted to ImageJ, unless the text of a shape
+	 * contains a boundary type marker.
+	 *
+	 * @param boundaryTypes boundary types of tagged shapes, keyed by shape ID
+	 */
+	public void setBoundaryTypes(final Map<Long, BoundaryType> boundaryTypes) {
+		this.boundaryTypes = boundaryTypes;
+	}
+
 	@Override
 	public void addChildren(final List<? extends TreeNode<?>> nodes) {
 		children().addAll(nodes);
@@ -105,26 +217,165 @@ public class DefaultOMEROROICollection implements OMEROROICollection {
 
 	private synchronized void createChildren() {
 		if (children != null) return;
+		if (savedStates == null) markSaved();
 		final ArrayList<TreeNode<?>> c = new ArrayList<>(roi.getShapeCount());
-		final Iterator<List<ShapeData>> itr = roi.getIterator();
-		while (itr.hasNext()) {
-			final List<ShapeData> shapes = itr.next();
-			for (final ShapeData shape : shapes) {
-				final OMERORealMask<?> orm = convert.convert(shape,
-					OMERORealMask.class);
-				c.add(new DefaultOMEROROIElement(orm, this, null));
+		ROIConverters.withBoundaryTypes(boundaryTypes, () -> {
+			final Iterator<List<ShapeData>> itr = roi.getIterator();
+			while (itr.hasNext()) {
+				final List<ShapeData> shapes = itr.next();
+				for (final ShapeData shape : shapes) {
+					final OMERORealMask<?> orm = convert.convert(shape,
+						OMERORealMask.class);
+					c.add(new DefaultOMEROROIElement(orm, this, null));
+				}
 			}
-		}
+			return c;
+		});
 
 		children = c;
 	}
 
-	private void updateNewShapes() {
+	/**
+	 * Converts the new children whose geometry may have changed since they were
+	 * last converted, and copies the result to their shapes.
+	 */
+	private synchronized void updateNewShapes() {
 		for (final MaskPredicate<?> mp : newChildren.keySet()) {
+			final List<Object> geometry = geometry(mp);
+			if (geometry != null && geometry.equals(newChildGeometry.get(mp)))
+				continue;
 			final ShapeData old = newChildren.get(mp);
 			final ShapeData updated = convert.convert(mp, ShapeData.class);
 			ROIConverters.synchronizeShapeData(updated, old);
+			newChildGeometry.put(mp, geometry);
+		}
+	}
+
+	/**
+	 * Gets the state of the given shape which is saved to OMERO: its type,
+	 * position, text and geometry, along with its transform and style. Equal
+	 * shapes have equal states.
+	 */
+	private static List<Object> state(final ShapeData shape) {
+		final List<Object> values = new ArrayList<>();
+		values.add(shape.getClass());
+		values.add(shape.getZ());
+		values.add(shape.getT());
+		values.add(shape.getC());
+		values.add(ROIConverters.getTextValue(shape));
+		if (shape instanceof EllipseData) {
+			final EllipseData e = (EllipseData) shape;
+			values.addAll(Arrays.asList(e.getX(), e.getY(), e.getRadiusX(), e
+				.getRadiusY()));
+		}
+		else if (shape instanceof LineData) {
+			final LineData l = (LineData) shape;
+			values.addAll(Arrays.asList(l.getX1(), l.getY1(), l.getX2(), l
+				.getY2()));
 		}
+		else if (shape instanceof MaskData) {
+			final MaskData m = (MaskData) shape;
+			values.addAll(Arrays.asList(m.getX(), m.getY(), m.getWidth(), m
+				.getHeight()));
+			final byte[] mask = m.getMask();
+			// NB: Copy the mask, which may be modified in place
+			values.add(mask == null ? null : ByteBuffer.wrap(mask.clone()));
+		}
+		else if (shape instanceof PointData) {
+			final PointData p = (PointData) shape;
+			values.addAll(Arrays.asList(p.getX(), p.getY()));
+		}
+		else if (shape instanceof PolygonData) {
+			values.add(((PolygonData) shape).getPoints());
+		}
+		else if (shape instanceof PolylineData) {
+			values.add(((PolylineData) shape).getPoints());
+		}
+		else if (shape instanceof RectangleData) {
+			final RectangleData r = (RectangleData) shape;
+			values.addAll(Arrays.asList(r.getX(), r.getY(), r.getWidth(), r
+				.getHeight()));
+		}
+		else if (shape instanceof TextData) {
+			final TextData t = (TextData) shape;
+			values.addAll(Arrays.asList(t.getX(), t.getY()));
+		}
+
+		final omero.model.AffineTransform t = shape.getTransform();
+		if (t == null) values.add(null);
+		else {
+			values.addAll(Arrays.asList(value(t.getA00()), value(t.getA01()), value(t
+				.getA02()), value(t.getA10()), value(t.getA11()), value(t.getA12())));
+		}
+		final Shape s = (Shape) shape.asIObject();
+		values.addAll(Arrays.asList(value(s.getFillColor()), value(s
+			.getStrokeColor()), value(s.getStrokeWidth()), value(s.getFontSize()),
+			value(s.getFontFamily()), value(s.getFontStyle()), value(s
+				.getStrokeDashArray()), value(s.getMarkerStart()), value(s
+					.getMarkerEnd()), value(s.getFillRule())));
+		return values;
+	}
+
+	/**
+	 * Gets the values describing the geometry of the given ImageJ mask, or
+	 * {@code null} if its type is not known, in which case it must always be
+	 * converted again.
+	 */
+	private static List<Object> geometry(final MaskPredicate<?> mp) {
+		final List<Object> values = new ArrayList<>();
+		values.add(mp.getClass());
+		values.add(mp.boundaryType());
+		if (mp instanceof Box) {
+			final Box b = (Box) mp;
+			addPosition(values, b.center());
+			for (int d = 0; d < b.numDimensions(); d++)
+				values.add(b.sideLength(d));
+		}
+		else if (mp instanceof SuperEllipsoid) {
+			final SuperEllipsoid e = (SuperEllipsoid) mp;
+			addPosition(values, e.center());
+			values.add(e.exponent());
+			for (int d = 0; d < e.numDimensions(); d++)
+				values.add(e.semiAxisLength(d));
+		}
+		else if (mp instanceof Line) {
+			addPosition(values, ((Line) mp).endpointOne());
+			addPosition(values, ((Line) mp).endpointTwo());
+		}
+		else if (mp instanceof Polyshape) {
+			final Polyshape p = (Polyshape) mp;
+			for (int i = 0; i < p.numVertices(); i++)
+				addPosition(values, p.vertex(i));
+		}
+		else if (mp instanceof PointMask) addPosition(values, (PointMask) mp);
+		else if (mp instanceof RealPointCollection) {
+			for (final Object p : ((RealPointCollection<?>) mp).points())
+				addPosition(values, (RealLocalizable) p);
+		}
+		else return null;
+		return values;
+	}
+
+	private static void addPosition(final List<Object> values,
+		final RealLocalizable l)
+	{
+		for (int d = 0; d < l.numDimensions(); d++)
+			values.add(l.getDoublePosition(d));
+	}
+
+	private static Object value(final omero.RType r) {
+		if (r instanceof RDouble) return ((RDouble) r).getValue();
+		if (r instanceof RInt) return ((RInt) r).getValue();
+		if (r instanceof RString) return ((RString) r).getValue();
+		return null;
+	}
+
+	private static double value(final RDouble r) {
+		return r == null ? 0 : r.getValue();
+	}
+
+	private static Object value(final Length l) {
+		return l == null ? null : l.getValue() + " " + l.getUnit();
 	}
 
 	private final class OMERORoiChildren implements List<TreeNode<?>> {
@@ -334,18 +585,28 @@ public class DefaultOMEROROICollection implements OMEROROICollection {
 				final Roi iceROI = (Roi) roi.asIObject();
 				iceROI.removeShape(iceShape);
 				DefaultOMEROROICollection.this.roi = new ROIData(iceROI);
+				shapesChanged = true;
 			}
 			if (o instanceof TreeNode && newChildren.get(((TreeNode<?>) o)
-				.data()) != null) newChildren.remove(((TreeNode<?>) o).data());
+				.data()) != null)
+			{
+				newChildren.remove(((TreeNode<?>) o).data());
+				newChildGeometry.remove(((TreeNode<?>) o).data());
+				shapesChanged = true;
+			}
 		}
 
 		private void addToOMEROROICollection(final MaskPredicate<?> mp) {
 			final ShapeData s = convert.convert(mp, ShapeData.class);
 			roi.addShapeData(s);
+			shapesChanged = true;
 
 			// NB: If the object is already backed by a ShapeData, there's no point
 			// in storing a mapping
-			if (!(mp instanceof OMERORealMask)) newChildren.put(mp, s);
+			if (!(mp instanceof OMERORealMask)) {
+				newChildren.put(mp, s);
+				newChildGeometry.put(mp, geometry(mp));
+			}
 		}
 	}
 }
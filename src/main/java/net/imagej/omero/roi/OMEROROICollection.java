@@ -36,5 +36,40 @@ import omero.gateway.model.ROIData;
  * @author Alison Walter
  */
 public interface OMEROROICollection extends TreeNode<ROIData> {
-	// NB: Marker interface
+
+	/**
+	 * Returns true if this collection may differ from the ROI last saved to, or
+	 * loaded from, OMERO. Implementations which do not track modifications
+	 * always return true.
+	 */
+	default boolean isModified() {
+		return true;
+	}
+
+	/**
+	 * Records the current state of this collection as the one saved on the
+	 * OMERO server, so that {@link #isModified()} is false until it changes.
+	 */
+	default void markSaved() {
+		// NB: No tracking by default
+	}
+
+	/**
+	 * Returns the latest version of this ROI saved to OMERO, or {@code null} if
+	 * it is not kept. OMERO locks previous versions of a saved ROI, so further
+	 * updates must be applied to this version. Implementations which do not
+	 * keep it always return {@code null}.
+	 */
+	default ROIData serverData() {
+		return null;
+	}
+
+	/**
+	 * Keeps the given ROI as the latest version of this ROI saved to OMERO.
+	 *
+	 * @see #serverData()
+	 */
+	default void setServerData(final ROIData saved) {
+		// NB: Not kept by default
+	}
 }
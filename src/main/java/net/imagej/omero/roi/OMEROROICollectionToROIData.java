@@ -26,8 +26,10 @@
 package net.imagej.omero.roi;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import net.imagej.omero.OMEROService;
 
@@ -37,16 +39,8 @@ import org.scijava.convert.Converter;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
 
-import omero.gateway.model.EllipseData;
-import omero.gateway.model.LineData;
-import omero.gateway.model.MaskData;
-import omero.gateway.model.PointData;
-import omero.gateway.model.PolygonData;
-import omero.gateway.model.PolylineData;
 import omero.gateway.model.ROIData;
-import omero.gateway.model.RectangleData;
 import omero.gateway.model.ShapeData;
-import omero.gateway.model.TextData;
 
 /**
  * Converts an {@link OMEROROICollection} to {@link ROIData}.
@@ -75,14 +69,19 @@ public class OMEROROICollectionToROIData extends
 		}
 
 		final ROIData r = ((OMEROROICollection) src).data();
-		final ROIData roiToUpdate = omero.roiCache().getUpdatedServerROIData(r.getId());
+
+		// Nothing to synchronize if no shape changed since the last save
+		if (!((OMEROROICollection) src).isModified()) return (T) r;
+
+		final ROIData roiToUpdate = ROIUtils.serverData((OMEROROICollection) src,
+			omero.roiCache());
 
 		final Iterator<List<ShapeData>> itr = r.getIterator();
 		while (itr.hasNext()) {
 			final List<ShapeData> shapes = itr.next();
 			for (final ShapeData shape : shapes) {
 				// Set boundary type, if not already specified
-				setTextValue(shape, generateBoundaryTypeString(shape));
+				ROIConverters.setTextValue(shape, generateBoundaryTypeString(shape));
 			}
 		}
 
@@ -117,56 +116,13 @@ public class OMEROROICollectionToROIData extends
 	 * @return the new text value of the {@link ShapeData}
 	 */
 	private String generateBoundaryTypeString(final ShapeData shape) {
-		final String currentText = getTextValue(shape);
+		final String currentText = ROIConverters.getTextValue(shape);
 		if (currentText.contains(ROIConverters.CLOSED_BOUNDARY_TEXT) || currentText
 			.contains(ROIConverters.OPEN_BOUNDARY_TEXT) || currentText.contains(
 				ROIConverters.UNSPECIFIED_BOUNDARY_TEXT)) return currentText;
 		return currentText + ROIConverters.CLOSED_BOUNDARY_TEXT;
 	}
 
-	/**
-	 * Returns the {@code getText()} for the given {@link ShapeData}. The
-	 * {@code getText()} method is only implemented on the concrete shape classes.
-	 *
-	 * @param shape {@link ShapeData} whose text will be returned
-	 * @return {@code shape}'s text field value, if valid shape class
-	 */
-	private String getTextValue(final ShapeData shape) {
-		if (shape instanceof EllipseData) return ((EllipseData) shape).getText();
-		if (shape instanceof LineData) return ((LineData) shape).getText();
-		if (shape instanceof MaskData) return ((MaskData) shape).getText();
-		if (shape instanceof PointData) return ((PointData) shape).getText();
-		if (shape instanceof PolylineData) return ((PolylineData) shape).getText();
-		if (shape instanceof PolygonData) return ((PolygonData) shape).getText();
-		if (shape instanceof RectangleData) return ((RectangleData) shape)
-			.getText();
-		if (shape instanceof TextData) return ((TextData) shape).getText();
-		throw new IllegalArgumentException("Unsupport type: " + shape.getClass());
-	}
-
-	/**
-	 * Sets the text field of the given {@link ShapeData} to the given
-	 * {@code String}. The {@code setText()} method is only implemented on the
-	 * concrete shape classes.
-	 *
-	 * @param shape {@link ShapeData} whose text field will be set
-	 * @param value {@code String} the text field will be set to
-	 */
-	private void setTextValue(final ShapeData shape, final String value) {
-		if (shape instanceof EllipseData) ((EllipseData) shape).setText(value);
-		else if (shape instanceof LineData) ((LineData) shape).setText(value);
-		else if (shape instanceof MaskData) ((MaskData) shape).setText(value);
-		else if (shape instanceof PointData) ((PointData) shape).setText(value);
-		else if (shape instanceof PolylineData) ((PolylineData) shape).setText(
-			value);
-		else if (shape instanceof PolygonData) ((PolygonData) shape).setText(value);
-		else if (shape instanceof RectangleData) ((RectangleData) shape).setText(
-			value);
-		else if (shape instanceof TextData) return;
-		else throw new IllegalArgumentException("Unsupport type: " + shape
-			.getClass());
-	}
-
 	/**
 	 * Synchronize the {@link ROIData} objects, such that the stored
 	 * {@link ROIData} has the same shapes as the {@link ROIData} backing the
@@ -178,37 +134,28 @@ public class OMEROROICollectionToROIData extends
 	private void synchronizeShapes(final ROIData updatedRoi,
 		final ROIData roiToUpdate)
 	{
-		final List<ShapeData> updateShapes = new ArrayList<>();
-		final List<ShapeData> shapesToUpdate = new ArrayList<>();
-
-		final Iterator<List<ShapeData>> updatedItr = updatedRoi.getIterator();
-		final Iterator<List<ShapeData>> toUpdateItr = roiToUpdate.getIterator();
-		while (updatedItr.hasNext())
-			updateShapes.addAll(updatedItr.next());
-		while (toUpdateItr.hasNext())
-			shapesToUpdate.addAll(toUpdateItr.next());
-
-		final List<ShapeData> updateCopy = new ArrayList<>(updateShapes);
-		final List<ShapeData> toUpdateCopy = new ArrayList<>(shapesToUpdate);
-
-		// Synchronize shapes
-		for (final ShapeData updated : updateShapes) {
-			for (final ShapeData toUpdate : shapesToUpdate) {
-				if (updated.getId() == toUpdate.getId()) {
-					ROIConverters.synchronizeShapeData(updated, toUpdate);
-					updateCopy.remove(updated);
-					toUpdateCopy.remove(toUpdate);
-					break;
-				}
-			}
+		final Map<Long, ShapeData> shapesToUpdate = new HashMap<>();
+		final List<ShapeData> unmatched = new ArrayList<>();
+		for (final ShapeData toUpdate : ROIUtils.shapes(roiToUpdate)) {
+			if (shapesToUpdate.putIfAbsent(toUpdate.getId(), toUpdate) != null)
+				unmatched.add(toUpdate);
+		}
+
+		// Synchronize shapes, matching them by ID
+		final List<ShapeData> added = new ArrayList<>();
+		for (final ShapeData updated : ROIUtils.shapes(updatedRoi)) {
+			final ShapeData toUpdate = shapesToUpdate.remove(updated.getId());
+			if (toUpdate == null) added.add(updated);
+			else ROIConverters.synchronizeShapeData(updated, toUpdate);
 		}
 
 		// Remove shapes without equivalent
-		for (final ShapeData remove : toUpdateCopy)
+		unmatched.addAll(shapesToUpdate.values());
+		for (final ShapeData remove : unmatched)
 			roiToUpdate.removeShapeData(remove);
 
 		// Add new shapes
-		for (final ShapeData add : updateCopy)
+		for (final ShapeData add : added)
 			roiToUpdate.addShapeData(add);
 	}
 
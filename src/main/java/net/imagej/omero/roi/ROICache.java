@@ -25,20 +25,47 @@
 
 package net.imagej.omero.roi;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import omero.gateway.model.ROIData;
 
+/**
+ * Thread-safe cache of the {@link ROIData} objects exchanged with OMERO.
+ * <p>
+ * Mappings from ROIs originating in ImageJ are keyed by the identity of the
+ * ImageJ object, and only weakly reference it: once the ImageJ ROI is no
+ * longer reachable its mapping is dropped. An index from ROI ID to the ImageJ
+ * keys mapped to it makes removals by ID independent of the cache size.
+ * </p>
+ * <p>
+ * Server {@link ROIData} objects stored here are never evicted, since they are
+ * the only current versions of their ROIs. {@link OMEROROICollection}s which
+ * keep their own {@link OMEROROICollection#serverData() server data} do not
+ * need to store it here, so it is dropped along with them.
+ * </p>
+ *
+ * @author agent
+ */
 public class ROICache {
 
-	private final Map<Object, ROIData> savedRois = new IdentityHashMap<>();
-
+	private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+	private final Map<IdentityKey, ROIData> savedRois = new HashMap<>();
+	private final Map<Long, List<IdentityKey>> savedKeys = new HashMap<>();
 	private final Map<Long, ROIData> downloadedROIs = new HashMap<>();
 
+	private long hits;
+	private long misses;
+	private long evictions;
+
 	/**
 	 * Returns the most recently retrieved {@link ROIData} object with the given
 	 * ID. If no such mapping exists {@code null} is returned.
@@ -50,57 +77,207 @@ public class ROICache {
 	 * id and the update OMERO server ROIData object must be stored.
 	 * </p>
 	 */
-	public ROIData getUpdatedServerROIData(final long roiDataId) {
-		return downloadedROIs.get(roiDataId);
+	public synchronized ROIData getUpdatedServerROIData(final long roiDataId) {
+		final ROIData roi = downloadedROIs.get(roiDataId);
+		if (roi == null) misses++;
+		else hits++;
+		return roi;
 	}
 
-	public void updateServerROIData(final long roiDataId, final ROIData shape) {
+	public synchronized void updateServerROIData(final long roiDataId,
+		final ROIData shape)
+	{
 		downloadedROIs.put(roiDataId, shape);
 	}
 
-	public void removeDownloaded(final long roiDataId) {
+	public synchronized void removeDownloaded(final long roiDataId) {
 		downloadedROIs.remove(roiDataId);
 	}
 
-	public void removeSaved(final long roiDataId) {
-		for (final Object key : savedRois.keySet()) {
-			if (savedRois.get(key).getId() == roiDataId) {
-				savedRois.remove(key);
-			}
-		}
+	/**
+	 * Removes the mappings from ImageJ ROIs to the {@link ROIData} with the given
+	 * ID.
+	 */
+	public synchronized void removeSaved(final long roiDataId) {
+		expungeCollected();
+		final List<IdentityKey> keys = savedKeys.remove(roiDataId);
+		if (keys == null) return;
+		for (final IdentityKey key : keys)
+			savedRois.remove(key);
 	}
 
 	/**
 	 * Add a mapping between a ROIs originating from ImageJ and an OMERO
 	 * {@link ROIData}.
 	 */
-	public void addROIMapping(final Object roi, final ROIData shape) {
-		savedRois.put(roi, shape);
+	public synchronized void addROIMapping(final Object roi,
+		final ROIData shape)
+	{
+		expungeCollected();
+		final IdentityKey key = new IdentityKey(roi, collected);
+		final ROIData previous = savedRois.remove(key);
+		if (previous != null) unindex(key, previous.getId());
+		savedRois.put(key, shape);
+		savedKeys.computeIfAbsent(shape.getId(), id -> new ArrayList<>(1)).add(
+			key);
 	}
 
 	/**
 	 * Retrieve the {@link ROIData} associated with this key. Returns {@code null}
 	 * if there's no mapping.
 	 */
-	public ROIData getROIMapping(final Object key) {
-		return savedRois.get(key);
+	public synchronized ROIData getROIMapping(final Object key) {
+		expungeCollected();
+		final ROIData roi = savedRois.get(new IdentityKey(key, null));
+		if (roi == null) misses++;
+		else hits++;
+		return roi;
 	}
 
-	/** Returns all the keys for mapped ROIs. */
-	public Set<Object> getROIMappingKeys() {
-		return Collections.unmodifiableSet(savedRois.keySet());
+	/** Returns a snapshot of all the keys for mapped ROIs. */
+	public synchronized Set<Object> getROIMappingKeys() {
+		expungeCollected();
+		final Set<Object> keys = Collections.newSetFromMap(
+			new IdentityHashMap<>());
+		for (final IdentityKey key : savedRois.keySet()) {
+			final Object roi = key.get();
+			if (roi != null) keys.add(roi);
+		}
+		return Collections.unmodifiableSet(keys);
 	}
 
 	/**
 	 * Removes the {@code Object} {@link ROIData} mapping associated with the
 	 * given key from the stored ROIs.
 	 */
-	public void removeROIMapping(final Object key) {
-		savedRois.remove(key);
+	public synchronized void removeROIMapping(final Object key) {
+		expungeCollected();
+		final IdentityKey lookup = new IdentityKey(key, null);
+		final ROIData roi = savedRois.remove(lookup);
+		if (roi != null) unindex(lookup, roi.getId());
 	}
 
 	/** Removes all {@code Object} {@link ROIData} mappings. */
-	public void clearROIMappings() {
+	public synchronized void clearROIMappings() {
 		savedRois.clear();
+		savedKeys.clear();
+		while (collected.poll() != null) {
+			// discard, the mappings are gone already
+		}
+	}
+
+	/** Removes all mappings and downloaded {@link ROIData} objects. */
+	public synchronized void clear() {
+		clearROIMappings();
+		downloadedROIs.clear();
+	}
+
+	/** Returns the current size and hit statistics of this cache. */
+	public synchronized Statistics getStatistics() {
+		expungeCollected();
+		return new Statistics(savedRois.size(), downloadedROIs.size(), hits,
+			misses, evictions);
+	}
+
+	// -- Helper methods --
+
+	/** Drops the mappings whose ImageJ ROI has been garbage collected. */
+	private void expungeCollected() {
+		Reference<?> ref;
+		while ((ref = collected.poll()) != null) {
+			final IdentityKey key = (IdentityKey) ref;
+			final ROIData roi = savedRois.remove(key);
+			if (roi == null) continue;
+			unindex(key, roi.getId());
+			evictions++;
+		}
+	}
+
+	private void unindex(final IdentityKey key, final long roiDataId) {
+		final List<IdentityKey> keys = savedKeys.get(roiDataId);
+		if (keys == null) return;
+		// NB: cleared keys are only equal to themselves
+		keys.removeIf(k -> k.equals(key));
+		if (keys.isEmpty()) savedKeys.remove(roiDataId);
+	}
+
+	// -- Helper classes --
+
+	/** Weak reference compared by the identity of its referent. */
+	private static final class IdentityKey extends WeakReference<Object> {
+
+		private final int hash;
+
+		private IdentityKey(final Object referent,
+			final ReferenceQueue<Object> queue)
+		{
+			super(referent, queue);
+			hash = System.identityHashCode(referent);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof IdentityKey)) return false;
+			final Object referent = get();
+			return referent != null && referent == ((IdentityKey) obj).get();
+		}
+	}
+
+	/** Snapshot of the size and hit counts of a {@link ROICache}. */
+	public static final class Statistics {
+
+		private final int mappedROIs;
+		private final int downloadedROIs;
+		private final long hits;
+		private final long misses;
+		private final long evictions;
+
+		private Statistics(final int mappedROIs, final int downloadedROIs,
+			final long hits, final long misses, final long evictions)
+		{
+			this.mappedROIs = mappedROIs;
+			this.downloadedROIs = downloadedROIs;
+			this.hits = hits;
+			this.misses = misses;
+			this.evictions = evictions;
+		}
+
+		/** Number of ImageJ ROIs mapped to a {@link ROIData}. */
+		public int getMappedROIs() {
+			return mappedROIs;
+		}
+
+		/** Number of downloaded {@link ROIData} objects. */
+		public int getDownloadedROIs() {
+			return downloadedROIs;
+		}
+
+		/** Number of lookups which found an entry. */
+		public long getHits() {
+			return hits;
+		}
+
+		/** Number of lookups which found no entry. */
+		public long getMisses() {
+			return misses;
+		}
+
+		/** Number of mappings dropped since their ImageJ ROI was collected. */
+		public long getEvictions() {
+			return evictions;
+		}
+
+		@Override
+		public String toString() {
+			return "ROICache[mapped=" + mappedROIs + ", downloaded=" +
+				downloadedROIs + ", hits=" + hits + ", misses=" + misses +
+				", evictions=" + evictions + "]";
+		}
 	}
 }
@@ -26,8 +26,12 @@
 package net.imagej.omero.roi;
 
 import java.awt.Point;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
 
 import net.imagej.omero.OMEROSession;
 import net.imglib2.realtransform.AffineGet;
@@ -68,13 +72,21 @@ public class ROIConverters {
 	public final static String OPEN_BOUNDARY_TEXT = "ij-bt:[O]";
 	public final static String UNSPECIFIED_BOUNDARY_TEXT = "ij-bt:[U]";
 
+	/** Description value of boundary type tags */
+	public final static String BOUNDARY_TYPE_DESC = "boundaryType";
+
 	/** Description value of imagej-omero version tags */
 	public final static String IJO_VERSION_DESC = "ij-omero-version";
 
+	/** Prefetched boundary types of the shapes converted on this thread. */
+	private static final ThreadLocal<Map<Long, BoundaryType>> TAGGED_BOUNDARIES =
+		new ThreadLocal<>();
+
 	/**
-	 * Gets the boundary behavior of this shape. If this shape was previously an
-	 * ImageJ mask it will retrieve the boundary behavior from an annotation; if
-	 * not, it will default to {@code CLOSED} boundary behavior.
+	 * Gets the boundary behavior of this shape. If the shape's text contains a
+	 * boundary type marker it is used directly; otherwise, if this shape was
+	 * previously an ImageJ mask it will retrieve the boundary behavior from an
+	 * annotation; if not, it will default to {@code CLOSED} boundary behavior.
 	 *
 	 * @param shape OMERO shape which will be checked for a boundaryType
 	 *          annotation
@@ -85,6 +97,9 @@ public class ROIConverters {
 	public static <S extends ShapeData> BoundaryType boundaryType(final S shape,
 		final OMEROSession session, final LogService log)
 	{
+		final BoundaryType marked = boundaryType(getTextValue(shape));
+		if (marked != null) return marked;
+
 		List<AnnotationData> annotations;
 		try {
 			final MetadataFacility proxy = session.getGateway().getFacility(
@@ -103,20 +118,143 @@ public class ROIConverters {
 			return BoundaryType.CLOSED;
 		for (final AnnotationData ad : annotations) {
 			if (ad instanceof TagAnnotationData && ((TagAnnotationData) ad)
-				.getDescription().equals("boundaryType"))
+				.getDescription().equals(BOUNDARY_TYPE_DESC))
 			{
-				final TagAnnotationData t = (TagAnnotationData) ad;
-				final String type = t.getTagValue();
-				if (type.toLowerCase().equals("open")) return BoundaryType.OPEN;
-				else if (type.toLowerCase().equals("unspecified"))
-					return BoundaryType.UNSPECIFIED;
-				else return BoundaryType.CLOSED;
+				return tagBoundaryType(((TagAnnotationData) ad).getTagValue());
 			}
 		}
 		// If no such tag found, use Closed
 		return BoundaryType.CLOSED;
 	}
 
+	/**
+	 * Gets the boundary behavior of this shape, without contacting the server.
+	 * The shape's text marker takes precedence, then the given boundary types
+	 * which were prefetched for all shapes of an image (see
+	 * {@link OMEROSession#getBoundaryTypes(long)}).
+	 *
+	 * @param shape OMERO shape whose boundary behavior is requested
+	 * @param boundaryTypes boundary types of tagged shapes, keyed by shape ID
+	 * @return the boundary behavior of {@code shape}, {@code CLOSED} if it has
+	 *         none
+	 */
+	public static BoundaryType boundaryType(final ShapeData shape,
+		final Map<Long, BoundaryType> boundaryTypes)
+	{
+		final BoundaryType marked = boundaryType(getTextValue(shape));
+		if (marked != null) return marked;
+		final BoundaryType tagged = boundaryTypes.get(shape.getId());
+		return tagged == null ? BoundaryType.CLOSED : tagged;
+	}
+
+	/**
+	 * Performs the given action, typically the conversion of OMERO shapes, with
+	 * the given prefetched boundary types available to the shape converters on
+	 * the current thread (see {@link #taggedBoundaryTypes()}).
+	 *
+	 * @param boundaryTypes boundary types of tagged shapes, keyed by shape ID
+	 * @param action the action to perform
+	 * @return the result of {@code action}
+	 */
+	public static <T> T withBoundaryTypes(
+		final Map<Long, BoundaryType> boundaryTypes, final Supplier<T> action)
+	{
+		final Map<Long, BoundaryType> previous = TAGGED_BOUNDARIES.get();
+		TAGGED_BOUNDARIES.set(boundaryTypes);
+		try {
+			return action.get();
+		}
+		finally {
+			if (previous == null) TAGGED_BOUNDARIES.remove();
+			else TAGGED_BOUNDARIES.set(previous);
+		}
+	}
+
+	/**
+	 * Gets the prefetched boundary types made available by
+	 * {@link #withBoundaryTypes} on the current thread.
+	 *
+	 * @return boundary types of tagged shapes, keyed by shape ID, which is empty
+	 *         if none were prefetched
+	 */
+	public static Map<Long, BoundaryType> taggedBoundaryTypes() {
+		final Map<Long, BoundaryType> boundaryTypes = TAGGED_BOUNDARIES.get();
+		return boundaryTypes == null ? Collections.emptyMap() : boundaryTypes;
+	}
+
+	/**
+	 * Parses the boundary type marker contained in the given shape text.
+	 *
+	 * @param textValue the text of an OMERO shape
+	 * @return the marked boundary behavior, or {@code null} if the text contains
+	 *         no boundary type marker
+	 */
+	public static BoundaryType boundaryType(final String textValue) {
+		if (textValue == null) return null;
+		if (textValue.contains(OPEN_BOUNDARY_TEXT)) return BoundaryType.OPEN;
+		if (textValue.contains(UNSPECIFIED_BOUNDARY_TEXT))
+			return BoundaryType.UNSPECIFIED;
+		if (textValue.contains(CLOSED_BOUNDARY_TEXT)) return BoundaryType.CLOSED;
+		return null;
+	}
+
+	/**
+	 * Converts the value of a {@code boundaryType} tag to a boundary behavior.
+	 *
+	 * @param tagValue value of the tag annotation
+	 * @return the tagged boundary behavior, defaulting to {@code CLOSED}
+	 */
+	public static BoundaryType tagBoundaryType(final String tagValue) {
+		if (tagValue == null) return BoundaryType.CLOSED;
+		final String type = tagValue.toLowerCase();
+		if (type.equals("open")) return BoundaryType.OPEN;
+		else if (type.equals("unspecified")) return BoundaryType.UNSPECIFIED;
+		else return BoundaryType.CLOSED;
+	}
+
+	/**
+	 * Returns the {@code getText()} for the given {@link ShapeData}. The
+	 * {@code getText()} method is only implemented on the concrete shape classes.
+	 *
+	 * @param shape {@link ShapeData} whose text will be returned
+	 * @return {@code shape}'s text field value, if valid shape class
+	 */
+	public static String getTextValue(final ShapeData shape) {
+		if (shape instanceof EllipseData) return ((EllipseData) shape).getText();
+		if (shape instanceof LineData) return ((LineData) shape).getText();
+		if (shape instanceof MaskData) return ((MaskData) shape).getText();
+		if (shape instanceof PointData) return ((PointData) shape).getText();
+		if (shape instanceof PolylineData) return ((PolylineData) shape).getText();
+		if (shape instanceof PolygonData) return ((PolygonData) shape).getText();
+		if (shape instanceof RectangleData) return ((RectangleData) shape)
+			.getText();
+		if (shape instanceof TextData) return ((TextData) shape).getText();
+		throw new IllegalArgumentException("Unsupport type: " + shape.getClass());
+	}
+
+	/**
+	 * Sets the text field of the given {@link ShapeData} to the given
+	 * {@code String}. The {@code setText()} method is only implemented on the
+	 * concrete shape classes.
+	 *
+	 * @param shape {@link ShapeData} whose text field will be set
+	 * @param value {@code String} the text field will be set to
+	 */
+	public static void setTextValue(final ShapeData shape, final String value) {
+		if (shape instanceof EllipseData) ((EllipseData) shape).setText(value);
+		else if (shape instanceof LineData) ((LineData) shape).setText(value);
+		else if (shape instanceof MaskData) ((MaskData) shape).setText(value);
+		else if (shape instanceof PointData) ((PointData) shape).setText(value);
+		else if (shape instanceof PolylineData) ((PolylineData) shape).setText(
+			value);
+		else if (shape instanceof PolygonData) ((PolygonData) shape).setText(value);
+		else if (shape instanceof RectangleData) ((RectangleData) shape).setText(
+			value);
+		else if (shape instanceof TextData) return;
+		else throw new IllegalArgumentException("Unsupport type: " + shape
+			.getClass());
+	}
+
 	/**
 	 * Converts an OMERO {@link omero.model.AffineTransform AffineTransform} to an
 	 * ImgLib2 {@link AffineTransform2D}.
@@ -198,6 +336,64 @@ public class ROIConverters {
 		return false;
 	}
 
+	/**
+	 * Computes a hash of the given {@link ShapeData} which is consistent with
+	 * {@link #shapeDataEquals(ShapeData, ShapeData)}: shapes which are equal
+	 * have the same hash. Like that method, the hash covers the type, position
+	 * and text of the shape along with its geometry, but not its ID, transform
+	 * or settings.
+	 */
+	public static long shapeDataHash(final ShapeData shape) {
+		long h = shape.getClass().hashCode();
+		h = mix(h, shape.getZ());
+		h = mix(h, shape.getT());
+		h = mix(h, shape.getC());
+		if (shape instanceof EllipseData) {
+			final EllipseData e = (EllipseData) shape;
+			h = mix(h, e.getText());
+			h = mix(mix(h, e.getX()), e.getY());
+			return mix(mix(h, e.getRadiusX()), e.getRadiusY());
+		}
+		if (shape instanceof LineData) {
+			final LineData l = (LineData) shape;
+			h = mix(h, l.getText());
+			h = mix(mix(h, l.getX1()), l.getY1());
+			return mix(mix(h, l.getX2()), l.getY2());
+		}
+		if (shape instanceof MaskData) {
+			final MaskData m = (MaskData) shape;
+			h = mix(h, m.getText());
+			h = mix(mix(h, m.getX()), m.getY());
+			h = mix(mix(h, m.getWidth()), m.getHeight());
+			return mix(h, (long) Arrays.hashCode(m.getMask()));
+		}
+		if (shape instanceof PointData) {
+			final PointData pt = (PointData) shape;
+			h = mix(h, pt.getText());
+			return mix(mix(h, pt.getX()), pt.getY());
+		}
+		if (shape instanceof PolygonData) {
+			final PolygonData p = (PolygonData) shape;
+			return mix(mix(h, p.getText()), p.getPoints());
+		}
+		if (shape instanceof PolylineData) {
+			final PolylineData p = (PolylineData) shape;
+			return mix(mix(h, p.getText()), p.getPoints());
+		}
+		if (shape instanceof RectangleData) {
+			final RectangleData r = (RectangleData) shape;
+			h = mix(h, r.getText());
+			h = mix(mix(h, r.getX()), r.getY());
+			return mix(mix(h, r.getWidth()), r.getHeight());
+		}
+		if (shape instanceof TextData) {
+			final TextData t = (TextData) shape;
+			h = mix(h, t.getText());
+			return mix(mix(h, t.getX()), t.getY());
+		}
+		return h;
+	}
+
 	/**
 	 * Updates the {@code oldSettings} to be equivalent to
 	 * {@code updatedSettings}.
@@ -284,6 +480,28 @@ public class ROIConverters {
 
 	// -- Helper methods --
 
+	private static long mix(final long h, final long value) {
+		long x = (h ^ value) * 0x9E3779B97F4A7C15L;
+		x ^= x >>> 31;
+		return x * 0xBF58476D1CE4E5B9L;
+	}
+
+	private static long mix(final long h, final double value) {
+		// NB: 0.0 == -0.0, so they must hash alike
+		return mix(h, value == 0 ? 0L : Double.doubleToLongBits(value));
+	}
+
+	private static long mix(final long h, final String value) {
+		return mix(h, value == null ? 0L : (long) value.hashCode());
+	}
+
+	private static long mix(long h, final List<Point.Double> points) {
+		h = mix(h, (long) points.size());
+		for (final Point.Double p : points)
+			h = mix(mix(h, p.getX()), p.getY());
+		return h;
+	}
+
 	private static boolean ellipseDataEquals(final EllipseData one,
 		final EllipseData two)
 	{
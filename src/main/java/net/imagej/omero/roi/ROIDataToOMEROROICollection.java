@@ -29,11 +29,11 @@ import java.lang.reflect.Type;
 import java.util.Iterator;
 import java.util.List;
 
+import net.imagej.omero.OMEROService;
 import net.imglib2.roi.MaskPredicate;
 
 import org.scijava.convert.AbstractConverter;
 import org.scijava.convert.ConversionRequest;
-import org.scijava.convert.ConvertService;
 import org.scijava.convert.Converter;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
@@ -52,7 +52,7 @@ public class ROIDataToOMEROROICollection extends
 {
 
 	@Parameter
-	private ConvertService convert;
+	private OMEROService omero;
 
 	@Override
 	public boolean canConvert(final ConversionRequest request) {
@@ -84,8 +84,8 @@ public class ROIDataToOMEROROICollection extends
 		if (!dest.isAssignableFrom(getOutputType()))
 			throw new IllegalArgumentException("Invalid destination class: " + dest);
 
-		return (T) new DefaultOMEROROICollection((ROIData) src, getContext()
-			.getService(ConvertService.class));
+		return (T) new DefaultOMEROROICollection(null, (ROIData) src, omero
+			.roiConversions());
 	}
 
 	@Override
@@ -110,7 +110,8 @@ public class ROIDataToOMEROROICollection extends
 		final Iterator<List<ShapeData>> itr = rd.getIterator();
 		while (itr.hasNext()) {
 			for (final ShapeData shape : itr.next())
-				if (!convert.supports(shape, MaskPredicate.class)) return false;
+				if (!omero.roiConversions().supports(shape, MaskPredicate.class))
+					return false;
 		}
 		return true;
 	}
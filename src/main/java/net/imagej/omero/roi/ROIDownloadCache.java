@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import omero.gateway.model.ROIData;
+
+/**
+ * Thread-safe in-memory cache of the ROIs downloaded by an OMERO session,
+ * keyed by image ID.
+ * <p>
+ * Each entry holds the ROIs of one image, encoded in the snapshot format of
+ * {@link ROISnapshotCache}, along with the key describing the state of those
+ * ROIs on the server when they were downloaded. An entry is only reused if the
+ * key of the current server state matches, and every lookup decodes fresh
+ * {@link ROIData}, so ROIs obtained from the cache can be modified without
+ * affecting the cache. Entries are evicted least recently used first once
+ * their total encoded size exceeds the maximum.
+ * </p>
+ *
+ * @author agent
+ */
+public class ROIDownloadCache {
+
+	/** Default maximum total size of the cached snapshots, in bytes. */
+	public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+	private final long maxBytes;
+	private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16,
+		0.75f, true);
+	private long bytes;
+
+	public ROIDownloadCache() {
+		this(DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * Creates a cache which keeps snapshots of at most {@code maxBytes} bytes in
+	 * total.
+	 */
+	public ROIDownloadCache(final long maxBytes) {
+		if (maxBytes < 0) throw new IllegalArgumentException(
+			"Negative maximum size: " + maxBytes);
+		this.maxBytes = maxBytes;
+	}
+
+	// -- ROIDownloadCache methods --
+
+	/**
+	 * Gets the ROIs of the given image, if they were cached under the given
+	 * key. An entry cached under another key is stale, and is removed.
+	 *
+	 * @param imageID ID of the OMERO image
+	 * @param key Key of the current state of the image's ROIs on the server, as
+	 *          created by {@link ROISnapshotCache#key}
+	 * @return Newly decoded copies of the cached ROIs, or {@code null} if no
+	 *         current entry exists.
+	 * @throws IOException if the cached snapshot cannot be decoded
+	 */
+	public List<ROIData> get(final long imageID, final String key)
+		throws IOException
+	{
+		final byte[] snapshot;
+		synchronized (this) {
+			final Entry entry = entries.get(imageID);
+			if (entry == null) return null;
+			if (!entry.key.equals(key)) {
+				remove(imageID);
+				return null;
+			}
+			snapshot = entry.snapshot;
+		}
+		return ROISnapshotCache.decode(ByteBuffer.wrap(snapshot));
+	}
+
+	/**
+	 * Caches the given ROIs of the given image under the given key, replacing
+	 * any previous entry of that image.
+	 *
+	 * @return {@code false} if the ROIs contain shapes which cannot be cached,
+	 *         or are larger than the maximum size of this cache, in which case
+	 *         nothing is stored.
+	 */
+	public boolean put(final long imageID, final String key,
+		final Collection<ROIData> rois)
+	{
+		// NB: Encode outside of the lock, as large ROI sets take a while.
+		final byte[] snapshot = ROISnapshotCache.encode(rois);
+		synchronized (this) {
+			remove(imageID);
+			if (snapshot == null || snapshot.length > maxBytes) return false;
+			entries.put(imageID, new Entry(key, snapshot));
+			bytes += snapshot.length;
+			evict();
+		}
+		return true;
+	}
+
+	/** Removes the cached ROIs of the given image, if any. */
+	public synchronized void invalidate(final long imageID) {
+		remove(imageID);
+	}
+
+	/** Removes all cached ROIs. */
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	/** Gets the number of images whose ROIs are cached. */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/** Gets the total size of the cached snapshots, in bytes. */
+	public synchronized long getByteCount() {
+		return bytes;
+	}
+
+	// -- Helper methods --
+
+	private void remove(final long imageID) {
+		final Entry entry = entries.remove(imageID);
+		if (entry != null) bytes -= entry.snapshot.length;
+	}
+
+	private void evict() {
+		final Iterator<Entry> it = entries.values().iterator();
+		while (bytes > maxBytes && it.hasNext()) {
+			bytes -= it.next().snapshot.length;
+			it.remove();
+		}
+	}
+
+	// -- Helper classes --
+
+	private static final class Entry {
+
+		private final String key;
+		private final byte[] snapshot;
+
+		private Entry(final String key, final byte[] snapshot) {
+			this.key = key;
+			this.snapshot = snapshot;
+		}
+	}
+}
@@ -0,0 +1,400 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.imglib2.FinalRealInterval;
+import net.imglib2.RealInterval;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPoint;
+
+import org.scijava.util.TreeNode;
+
+import omero.gateway.model.ShapeData;
+
+/**
+ * Spatial index over {@link OMEROROIElement}s, for finding the elements which
+ * intersect a region or cover a point without testing every element.
+ * <p>
+ * Elements are grouped by the Z, T and C position of their shape, and each
+ * group is indexed by a packed R-tree over the XY bounds of its elements.
+ * Elements whose masks are not bounded are kept aside: region queries always
+ * include them, and point queries test them directly. The index is a
+ * snapshot, it must be rebuilt if elements are added, removed or moved.
+ * </p>
+ *
+ * @author agent
+ */
+public class ROIIndex {
+
+	/** Maximum number of children of an R-tree node. */
+	private static final int NODE_CAPACITY = 16;
+
+	private final OMEROROIElement[] elements;
+	private final Map<Plane, PackedRTree> planes = new HashMap<>();
+	private final Map<Plane, int[]> unbounded = new HashMap<>();
+
+	/**
+	 * Creates an index of all {@link OMEROROIElement}s in the given tree, e.g. a
+	 * downloaded {@link net.imagej.roi.ROITree ROITree}.
+	 */
+	public ROIIndex(final TreeNode<?> rois) {
+		this(collect(rois, new ArrayList<>()));
+	}
+
+	/** Creates an index of the given elements. */
+	public ROIIndex(final Collection<? extends OMEROROIElement> elements) {
+		this.elements = elements.toArray(new OMEROROIElement[elements.size()]);
+
+		final Map<Plane, List<Integer>> bounded = new HashMap<>();
+		final Map<Plane, List<Integer>> other = new HashMap<>();
+		for (int i = 0; i < this.elements.length; i++) {
+			final OMERORealMask<?> mask = this.elements[i].data();
+			final Plane plane = plane(mask.getShape());
+			final Map<Plane, List<Integer>> group = //
+				mask instanceof RealInterval ? bounded : other;
+			group.computeIfAbsent(plane, p -> new ArrayList<>()).add(i);
+		}
+		for (final Map.Entry<Plane, List<Integer>> entry : bounded.entrySet())
+			planes.put(entry.getKey(), new PackedRTree(toArray(entry.getValue())));
+		for (final Map.Entry<Plane, List<Integer>> entry : other.entrySet())
+			unbounded.put(entry.getKey(), toArray(entry.getValue()));
+	}
+
+	/** Gets the number of indexed elements. */
+	public int size() {
+		return elements.length;
+	}
+
+	/**
+	 * Finds the elements whose XY bounds intersect the given interval, on any
+	 * plane. Only the first two dimensions of {@code interval} are used.
+	 *
+	 * @return The matching elements, in the order they were indexed
+	 */
+	public List<OMEROROIElement> query(final RealInterval interval) {
+		return query(interval, -1, -1, -1);
+	}
+
+	/**
+	 * Finds the elements whose XY bounds intersect the given interval, and
+	 * which lie on the given plane. Only the first two dimensions of
+	 * {@code interval} are used. As in OMERO, -1 denotes the entire axis, both
+	 * for the given plane and for the elements' shapes.
+	 *
+	 * @return The matching elements, in the order they were indexed
+	 */
+	public List<OMEROROIElement> query(final RealInterval interval, final int z,
+		final int t, final int c)
+	{
+		final double minX = interval.realMin(0);
+		final double minY = interval.realMin(1);
+		final double maxX = interval.realMax(0);
+		final double maxY = interval.realMax(1);
+		final IntList hits = new IntList();
+		for (final Plane plane : planes(z, t, c)) {
+			final PackedRTree tree = planes.get(plane);
+			if (tree != null) tree.search(minX, minY, maxX, maxY, hits);
+			final int[] others = unbounded.get(plane);
+			if (others != null) hits.addAll(others);
+		}
+		return toElements(hits);
+	}
+
+	/**
+	 * Finds the elements which contain the given point, on any plane. Only the
+	 * first two dimensions of {@code point} are used.
+	 *
+	 * @return The matching elements, in the order they were indexed
+	 */
+	public List<OMEROROIElement> query(final RealLocalizable point) {
+		return query(point, -1, -1, -1);
+	}
+
+	/**
+	 * Finds the elements which contain the given point, and which lie on the
+	 * given plane. Only the first two dimensions of {@code point} are used. As
+	 * in OMERO, -1 denotes the entire axis, both for the given plane and for the
+	 * elements' shapes.
+	 *
+	 * @return The matching elements, in the order they were indexed
+	 */
+	public List<OMEROROIElement> query(final RealLocalizable point, final int z,
+		final int t, final int c)
+	{
+		final double[] position = { point.getDoublePosition(0), point
+			.getDoublePosition(1) };
+		final RealPoint xy = new RealPoint(position);
+		final List<OMEROROIElement> candidates = query(new FinalRealInterval(
+			position, position), z, t, c);
+		final List<OMEROROIElement> hits = new ArrayList<>(candidates.size());
+		for (final OMEROROIElement element : candidates) {
+			if (element.data().test(xy)) hits.add(element);
+		}
+		return hits;
+	}
+
+	// -- Helper methods --
+
+	/** Gets the indexed planes which lie on the given plane. */
+	private Collection<Plane> planes(final int z, final int t, final int c) {
+		if (z == -1 || t == -1 || c == -1) {
+			final List<Plane> matches = new ArrayList<>();
+			for (final Plane plane : allPlanes()) {
+				if (plane.matches(z, t, c)) matches.add(plane);
+			}
+			return matches;
+		}
+		// NB: Look up the 8 planes which can match, instead of scanning them all.
+		final List<Plane> matches = new ArrayList<>(8);
+		for (final int pz : new int[] { z, -1 }) {
+			for (final int pt : new int[] { t, -1 }) {
+				for (final int pc : new int[] { c, -1 }) {
+					final Plane plane = new Plane(pz, pt, pc);
+					if (planes.containsKey(plane) || unbounded.containsKey(plane)) {
+						matches.add(plane);
+					}
+				}
+			}
+		}
+		return matches;
+	}
+
+	private Collection<Plane> allPlanes() {
+		final List<Plane> all = new ArrayList<>(planes.keySet());
+		for (final Plane plane : unbounded.keySet()) {
+			if (!planes.containsKey(plane)) all.add(plane);
+		}
+		return all;
+	}
+
+	private List<OMEROROIElement> toElements(final IntList hits) {
+		final int[] indices = hits.toArray();
+		Arrays.sort(indices);
+		final List<OMEROROIElement> result = new ArrayList<>(indices.length);
+		for (final int index : indices)
+			result.add(elements[index]);
+		return result;
+	}
+
+	private static Plane plane(final ShapeData shape) {
+		return new Plane(shape.getZ() < 0 ? -1 : shape.getZ(), shape.getT() < 0
+			? -1 : shape.getT(), shape.getC() < 0 ? -1 : shape.getC());
+	}
+
+	private static List<OMEROROIElement> collect(final TreeNode<?> node,
+		final List<OMEROROIElement> elements)
+	{
+		if (node instanceof OMEROROIElement) elements.add(
+			(OMEROROIElement) node);
+		if (node.children() != null) {
+			for (final TreeNode<?> child : node.children())
+				collect(child, elements);
+		}
+		return elements;
+	}
+
+	private static int[] toArray(final List<Integer> list) {
+		final int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = list.get(i);
+		return array;
+	}
+
+	// -- Helper classes --
+
+	/** Z, T and C position of a shape, where -1 denotes the entire axis. */
+	private static final class Plane {
+
+		private final int z, t, c;
+
+		private Plane(final int z, final int t, final int c) {
+			this.z = z;
+			this.t = t;
+			this.c = c;
+		}
+
+		private boolean matches(final int qz, final int qt, final int qc) {
+			return (z == -1 || qz == -1 || z == qz) && (t == -1 || qt == -1 ||
+				t == qt) && (c == -1 || qc == -1 || c == qc);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Plane)) return false;
+			final Plane other = (Plane) obj;
+			return z == other.z && t == other.t && c == other.c;
+		}
+
+		@Override
+		public int hashCode() {
+			return (z * 31 + t) * 31 + c;
+		}
+	}
+
+	/**
+	 * Packed R-tree over the XY bounds of a fixed set of elements, bulk loaded
+	 * with the Sort-Tile-Recursive algorithm. Level 0 holds the elements; each
+	 * node of level {@code k + 1} covers {@link #NODE_CAPACITY} consecutive
+	 * nodes of level {@code k}.
+	 */
+	private final class PackedRTree {
+
+		/** Element indices, in leaf order. */
+		private final int[] items;
+
+		/** Bounds of each node, per level, as [minX, minY, maxX, maxY] runs. */
+		private final double[][] bounds;
+
+		private PackedRTree(final int[] indices) {
+			final int n = indices.length;
+			final double[] b = new double[4 * n];
+			for (int i = 0; i < n; i++) {
+				final RealInterval r = (RealInterval) elements[indices[i]].data();
+				b[4 * i] = r.realMin(0);
+				b[4 * i + 1] = r.realMin(1);
+				b[4 * i + 2] = r.realMax(0);
+				b[4 * i + 3] = r.realMax(1);
+			}
+
+			// Sort into vertical slices by center X, then each slice by center Y
+			final Integer[] order = new Integer[n];
+			for (int i = 0; i < n; i++)
+				order[i] = i;
+			Arrays.sort(order, Comparator.comparingDouble(i -> b[4 * i] + b[4 * i +
+				2]));
+			final int leaves = (n + NODE_CAPACITY - 1) / NODE_CAPACITY;
+			final int sliceSize = NODE_CAPACITY * (int) Math.ceil(Math.sqrt(leaves));
+			for (int s = 0; s < n; s += sliceSize) {
+				Arrays.sort(order, s, Math.min(s + sliceSize, n), Comparator
+					.comparingDouble(i -> b[4 * i + 1] + b[4 * i + 3]));
+			}
+
+			items = new int[n];
+			final List<double[]> levels = new ArrayList<>();
+			double[] level = new double[4 * n];
+			for (int i = 0; i < n; i++) {
+				items[i] = indices[order[i]];
+				System.arraycopy(b, 4 * order[i], level, 4 * i, 4);
+			}
+			levels.add(level);
+			while (level.length > 4) {
+				level = parentLevel(level);
+				levels.add(level);
+			}
+			bounds = levels.toArray(new double[levels.size()][]);
+		}
+
+		private double[] parentLevel(final double[] level) {
+			final int count = level.length / 4;
+			final int parents = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+			final double[] parent = new double[4 * parents];
+			for (int p = 0; p < parents; p++) {
+				double minX = Double.POSITIVE_INFINITY;
+				double minY = Double.POSITIVE_INFINITY;
+				double maxX = Double.NEGATIVE_INFINITY;
+				double maxY = Double.NEGATIVE_INFINITY;
+				final int end = Math.min((p + 1) * NODE_CAPACITY, count);
+				for (int i = p * NODE_CAPACITY; i < end; i++) {
+					minX = Math.min(minX, level[4 * i]);
+					minY = Math.min(minY, level[4 * i + 1]);
+					maxX = Math.max(maxX, level[4 * i + 2]);
+					maxY = Math.max(maxY, level[4 * i + 3]);
+				}
+				parent[4 * p] = minX;
+				parent[4 * p + 1] = minY;
+				parent[4 * p + 2] = maxX;
+				parent[4 * p + 3] = maxY;
+			}
+			return parent;
+		}
+
+		private void search(final double minX, final double minY,
+			final double maxX, final double maxY, final IntList hits)
+		{
+			// Stack of (level, node) pairs still to visit
+			final IntList stack = new IntList();
+			final int top = bounds.length - 1;
+			for (int i = 0; i < bounds[top].length / 4; i++) {
+				stack.add(top);
+				stack.add(i);
+			}
+			while (!stack.isEmpty()) {
+				final int node = stack.pop();
+				final int lvl = stack.pop();
+				final double[] b = bounds[lvl];
+				if (b[4 * node] > maxX || b[4 * node + 1] > maxY || b[4 * node +
+					2] < minX || b[4 * node + 3] < minY) continue;
+				if (lvl == 0) {
+					hits.add(items[node]);
+					continue;
+				}
+				final int end = Math.min((node + 1) * NODE_CAPACITY, bounds[lvl -
+					1].length / 4);
+				for (int child = node * NODE_CAPACITY; child < end; child++) {
+					stack.add(lvl - 1);
+					stack.add(child);
+				}
+			}
+		}
+	}
+
+	/** Growable {@code int} array. */
+	private static final class IntList {
+
+		private int[] values = new int[16];
+		private int size;
+
+		private void add(final int value) {
+			if (size == values.length) values = Arrays.copyOf(values, size * 2);
+			values[size++] = value;
+		}
+
+		private void addAll(final int[] array) {
+			for (final int value : array)
+				add(value);
+		}
+
+		private int pop() {
+			return values[--size];
+		}
+
+		private boolean isEmpty() {
+			return size == 0;
+		}
+
+		private int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
@@ -0,0 +1,489 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import net.imagej.omero.roi.ellipse.OMEROEllipse;
+import net.imagej.omero.roi.line.OMEROLine;
+import net.imagej.omero.roi.mask.OMEROMask;
+import net.imagej.omero.roi.mask.PackedMasks;
+import net.imagej.omero.roi.polyshape.OMEROPolygon;
+import net.imagej.omero.roi.polyshape.PolyshapeGeometry;
+import net.imagej.omero.roi.rectangle.OMERORectangle;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealInterval;
+import net.imglib2.RealPoint;
+import net.imglib2.roi.Mask;
+import net.imglib2.roi.MaskPredicate;
+import net.imglib2.roi.RealMask;
+import net.imglib2.type.numeric.IntegerType;
+
+import org.scijava.util.TreeNode;
+
+import omero.gateway.model.EllipseData;
+import omero.gateway.model.MaskData;
+import omero.gateway.model.ShapeData;
+
+/**
+ * Utility class for rasterizing ROIs into pixel spans, i.e. runs of
+ * consecutive pixels within a row which are contained in a ROI.
+ * <p>
+ * Rasterizing a ROI yields the same pixels as testing every pixel position,
+ * e.g. via {@link ROIUtils#interval}, but rectangles, ellipses, polygons and
+ * lines are rasterized analytically, row by row, and only the ends of each
+ * span are tested. Masks at integer positions are rasterized from their packed
+ * bits, a word at a time. Rows which cannot be handled analytically, such as
+ * polygon rows passing exactly through a vertex, and all other ROIs are tested
+ * pixel by pixel within their bounds.
+ * </p>
+ *
+ * @author agent
+ */
+public final class ROIRasterizer {
+
+	private ROIRasterizer() {
+		// NB: Prevent instantiation of utility class.
+	}
+
+	/** Receives the spans of a rasterized ROI. */
+	@FunctionalInterface
+	public interface SpanConsumer {
+
+		/**
+		 * Accepts the pixels from {@code minX} to {@code maxX} (inclusive) in row
+		 * {@code y}. Spans are reported in increasing row order, but spans of one
+		 * row may overlap.
+		 */
+		void span(long y, long minX, long maxX);
+	}
+
+	/**
+	 * Rasterizes the given ROI within the given two dimensional interval.
+	 *
+	 * @param m ROI to rasterize
+	 * @param interval pixel region to rasterize; only its first two dimensions
+	 *          are used
+	 * @param spans receives the spans of pixels contained in {@code m}
+	 */
+	public static void rasterize(final MaskPredicate<?> m,
+		final Interval interval, final SpanConsumer spans)
+	{
+		final Interval bounds = bounds(m, interval);
+		if (bounds == null) return;
+
+		if (m instanceof OMERORectangle) rectangle((RealMask) m, bounds, spans);
+		else if (m instanceof OMEROEllipse) ellipse((OMEROEllipse) m, bounds,
+			spans);
+		else if (m instanceof OMEROPolygon) polygon((OMEROPolygon) m, bounds,
+			spans);
+		else if (m instanceof OMEROLine) line((OMEROLine) m, bounds, spans);
+		else if (m instanceof OMEROMask) mask((OMEROMask) m, bounds, spans);
+		else pixels(m, bounds, spans);
+	}
+
+	/**
+	 * Renders the ROIs of the given tree into the given two dimensional label
+	 * image. Each ROI found by {@link ROIUtils#collectROITreeNodes} is painted
+	 * with its one-based position in that list, so later ROIs overwrite earlier
+	 * ones where they overlap. Only ROIs on the given plane are rendered; as in
+	 * OMERO, -1 denotes the entire axis.
+	 * <p>
+	 * The image is split into bands of rows which are rendered concurrently by
+	 * the given executor, or sequentially if it is {@code null}.
+	 * </p>
+	 *
+	 * @param rois tree of ROIs to render, e.g. a downloaded ROITree
+	 * @param labels two dimensional image which the labels are written to
+	 * @param z Z position of the plane to render, or -1 for all Z positions
+	 * @param t T position of the plane to render, or -1 for all T positions
+	 * @param c C position of the plane to render, or -1 for all C positions
+	 * @param executor executor which renders the bands, may be {@code null}
+	 */
+	public static <T extends IntegerType<T>> void renderLabels(
+		final TreeNode<?> rois, final RandomAccessibleInterval<T> labels,
+		final int z, final int t, final int c, final ExecutorService executor)
+	{
+		if (labels.numDimensions() != 2) {
+			throw new IllegalArgumentException("Labels must be two dimensional: " +
+				labels.numDimensions());
+		}
+
+		// Collect the masks to paint, and their labels
+		final List<MaskPredicate<?>> masks = new ArrayList<>();
+		final List<Integer> maskLabels = new ArrayList<>();
+		final List<TreeNode<?>> nodes = ROIUtils.collectROITreeNodes(rois);
+		for (int i = 0; i < nodes.size(); i++) {
+			final int before = masks.size();
+			collectMasks(nodes.get(i), z, t, c, masks);
+			for (int j = before; j < masks.size(); j++)
+				maskLabels.add(i + 1);
+		}
+		final long[][] rows = new long[masks.size()][];
+		for (int i = 0; i < rows.length; i++) {
+			final Interval b = bounds(masks.get(i), labels);
+			rows[i] = b == null ? null : new long[] { b.min(1), b.max(1) };
+		}
+
+		// Render bands of rows
+		final int bandCount = executor == null ? 1 : (int) Math.min(labels
+			.dimension(1), Runtime.getRuntime().availableProcessors() * 4);
+		final long bandHeight = (labels.dimension(1) + bandCount - 1) / bandCount;
+		final List<Runnable> bands = new ArrayList<>();
+		for (long y = labels.min(1); y <= labels.max(1); y += bandHeight) {
+			final Interval band = new FinalInterval(new long[] { labels.min(0), y },
+				new long[] { labels.max(0), Math.min(y + bandHeight - 1, labels.max(
+					1)) });
+			bands.add(() -> {
+				final RandomAccess<T> ra = labels.randomAccess();
+				for (int i = 0; i < masks.size(); i++) {
+					if (rows[i] == null || rows[i][1] < band.min(1) || rows[i][0] > band
+						.max(1)) continue;
+					final int label = maskLabels.get(i);
+					rasterize(masks.get(i), band, (sy, minX, maxX) -> {
+						ra.setPosition(minX, 0);
+						ra.setPosition(sy, 1);
+						for (long x = minX; x <= maxX; x++) {
+							ra.get().setInteger(label);
+							ra.fwd(0);
+						}
+					});
+				}
+			});
+		}
+		if (executor == null) {
+			for (final Runnable band : bands)
+				band.run();
+			return;
+		}
+
+		final List<Future<?>> futures = new ArrayList<>(bands.size());
+		for (final Runnable band : bands)
+			futures.add(executor.submit(band));
+		try {
+			for (final Future<?> future : futures)
+				future.get();
+		}
+		catch (final InterruptedException exc) {
+			for (final Future<?> future : futures)
+				future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while rendering labels",
+				exc);
+		}
+		catch (final ExecutionException exc) {
+			if (exc.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) exc.getCause();
+			}
+			throw new IllegalStateException(exc.getCause());
+		}
+	}
+
+	// -- Helper methods --
+
+	private static void rectangle(final RealMask m, final Interval bounds,
+		final SpanConsumer spans)
+	{
+		final RealPoint p = new RealPoint(2);
+		for (long y = bounds.min(1); y <= bounds.max(1); y++)
+			refine(m, p, y, bounds.min(0), bounds.max(0), bounds, spans);
+	}
+
+	private static void ellipse(final OMEROEllipse m, final Interval bounds,
+		final SpanConsumer spans)
+	{
+		final EllipseData shape = m.getShape();
+		final double cx = shape.getX();
+		final double cy = shape.getY();
+		final double rx = shape.getRadiusX();
+		final double ry = shape.getRadiusY();
+		if (!(rx > 0 && ry > 0)) {
+			pixels(m, bounds, spans);
+			return;
+		}
+
+		final RealPoint p = new RealPoint(2);
+		for (long y = bounds.min(1); y <= bounds.max(1); y++) {
+			final double dy = (y - cy) / ry;
+			final double half = rx * Math.sqrt(Math.max(0, 1 - dy * dy));
+			refine(m, p, y, (long) Math.ceil(cx - half), (long) Math.floor(cx +
+				half), bounds, spans);
+		}
+	}
+
+	private static void polygon(final OMEROPolygon m, final Interval bounds,
+		final SpanConsumer spans)
+	{
+		final PolyshapeGeometry g = m.geometry();
+		final int n = g.numVertices();
+		if (n < 3) {
+			pixels(m, bounds, spans);
+			return;
+		}
+		final double[] xs = new double[n];
+		final double[] ys = new double[n];
+		for (int i = 0; i < n; i++) {
+			xs[i] = g.x(i);
+			ys[i] = g.y(i);
+		}
+		final double[] vertexRows = ys.clone();
+		Arrays.sort(vertexRows);
+
+		final RealPoint p = new RealPoint(2);
+		final double[] crossings = new double[n];
+		for (long y = bounds.min(1); y <= bounds.max(1); y++) {
+			// Rows through a vertex may contain horizontal edges, which have
+			// boundary behavior rather than crossings
+			if (Arrays.binarySearch(vertexRows, y) >= 0) {
+				pixelRow(m, p, y, bounds.min(0), bounds.max(0), spans);
+				continue;
+			}
+
+			// Same crossing rule as Polyshapes.pnpoly
+			int count = 0;
+			for (int i = 0, j = n - 1; i < n; j = i++) {
+				if ((ys[i] > y) != (ys[j] > y)) {
+					crossings[count++] = (xs[j] - xs[i]) * (y - ys[i]) / (ys[j] - ys[i]) +
+						xs[i];
+				}
+			}
+			Arrays.sort(crossings, 0, count);
+
+			// A pixel is inside if an odd number of crossings lie to its right
+			for (int k = 0; k + 1 < count; k += 2) {
+				final long lo = (long) Math.ceil(crossings[k]);
+				final long hi = (long) Math.ceil(crossings[k + 1]) - 1;
+				refine(m, p, y, Math.max(lo, bounds.min(0)), Math.min(hi, bounds.max(
+					0)), bounds, spans);
+			}
+		}
+	}
+
+	private static void line(final OMEROLine m, final Interval bounds,
+		final SpanConsumer spans)
+	{
+		final double x1 = m.endpointOne().getDoublePosition(0);
+		final double y1 = m.endpointOne().getDoublePosition(1);
+		final double x2 = m.endpointTwo().getDoublePosition(0);
+		final double y2 = m.endpointTwo().getDoublePosition(1);
+
+		final RealPoint p = new RealPoint(2);
+		for (long y = bounds.min(1); y <= bounds.max(1); y++) {
+			if (y1 == y2) {
+				pixelRow(m, p, y, bounds.min(0), bounds.max(0), spans);
+				continue;
+			}
+			// Only the pixels next to where the line crosses this row can be on it
+			final double x = x1 + (y - y1) * (x2 - x1) / (y2 - y1);
+			pixelRow(m, p, y, Math.max((long) Math.floor(x) - 1, bounds.min(0)), Math
+				.min((long) Math.ceil(x) + 1, bounds.max(0)), spans);
+		}
+	}
+
+	private static void mask(final OMEROMask m, final Interval bounds,
+		final SpanConsumer spans)
+	{
+		final MaskData shape = m.getShape();
+		final double x = shape.getX(), y = shape.getY();
+		final double width = shape.getWidth(), height = shape.getHeight();
+		// NB: Masks are tested at rounded positions, so bits only map to pixels
+		// directly if the mask is at integer coordinates
+		if (x != Math.rint(x) || y != Math.rint(y) || width != Math.rint(width) ||
+			height != Math.rint(height))
+		{
+			pixels(m, bounds, spans);
+			return;
+		}
+
+		final long[] words = m.words();
+		final long ox = (long) x, oy = (long) y, w = (long) width;
+		final long minX = Math.max(bounds.min(0), ox);
+		final long maxX = Math.min(bounds.max(0), ox + w - 1);
+		final long maxY = Math.min(bounds.max(1), oy + (long) height - 1);
+		for (long row = Math.max(bounds.min(1), oy); row <= maxY; row++) {
+			// Bits of the row within the bounds, and their offset from x
+			final long offset = (row - oy) * w - ox;
+			final long end = maxX + 1 + offset;
+			long bit = PackedMasks.nextSetBit(words, minX + offset, end);
+			while (bit < end) {
+				final long clear = PackedMasks.nextClearBit(words, bit, end);
+				spans.span(row, bit - offset, clear - 1 - offset);
+				bit = PackedMasks.nextSetBit(words, clear, end);
+			}
+		}
+	}
+
+	private static void pixels(final MaskPredicate<?> m, final Interval bounds,
+		final SpanConsumer spans)
+	{
+		if (m instanceof Mask) {
+			final Mask mask = (Mask) m;
+			final Point p = new Point(2);
+			for (long y = bounds.min(1); y <= bounds.max(1); y++) {
+				p.setPosition(y, 1);
+				long start = Long.MIN_VALUE;
+				for (long x = bounds.min(0); x <= bounds.max(0); x++) {
+					p.setPosition(x, 0);
+					if (mask.test(p)) {
+						if (start == Long.MIN_VALUE) start = x;
+					}
+					else if (start != Long.MIN_VALUE) {
+						spans.span(y, start, x - 1);
+						start = Long.MIN_VALUE;
+					}
+				}
+				if (start != Long.MIN_VALUE) spans.span(y, start, bounds.max(0));
+			}
+			return;
+		}
+		final RealPoint p = new RealPoint(2);
+		for (long y = bounds.min(1); y <= bounds.max(1); y++)
+			pixelRow((RealMask) m, p, y, bounds.min(0), bounds.max(0), spans);
+	}
+
+	/** Tests each pixel of a row segment, reporting the runs of hits. */
+	private static void pixelRow(final RealMask m, final RealPoint p,
+		final long y, final long minX, final long maxX, final SpanConsumer spans)
+	{
+		p.setPosition(y, 1);
+		long start = Long.MIN_VALUE;
+		for (long x = minX; x <= maxX; x++) {
+			p.setPosition(x, 0);
+			if (m.test(p)) {
+				if (start == Long.MIN_VALUE) start = x;
+			}
+			else if (start != Long.MIN_VALUE) {
+				spans.span(y, start, x - 1);
+				start = Long.MIN_VALUE;
+			}
+		}
+		if (start != Long.MIN_VALUE) spans.span(y, start, maxX);
+	}
+
+	/**
+	 * Reports an analytically computed span, after correcting its ends by
+	 * testing the pixels there. The interior of the span is assumed to be
+	 * contained in the ROI.
+	 */
+	private static void refine(final RealMask m, final RealPoint p, final long y,
+		long lo, long hi, final Interval bounds, final SpanConsumer spans)
+	{
+		lo = Math.max(lo, bounds.min(0));
+		hi = Math.min(hi, bounds.max(0));
+		p.setPosition(y, 1);
+		if (lo > hi) {
+			// The span may be empty due to rounding, so check the pixels around it
+			pixelRow(m, p, y, Math.max(hi - 1, bounds.min(0)), Math.min(lo + 1,
+				bounds.max(0)), spans);
+			return;
+		}
+		while (lo > bounds.min(0) && test(m, p, lo - 1))
+			lo--;
+		while (lo <= hi && !test(m, p, lo))
+			lo++;
+		if (lo > hi) return;
+		while (hi < bounds.max(0) && test(m, p, hi + 1))
+			hi++;
+		while (!test(m, p, hi))
+			hi--;
+		spans.span(y, lo, hi);
+	}
+
+	private static boolean test(final RealMask m, final RealPoint p,
+		final long x)
+	{
+		p.setPosition(x, 0);
+		return m.test(p);
+	}
+
+	/**
+	 * Gets the pixels of the given interval which may be contained in the given
+	 * ROI, or {@code null} if there are none.
+	 */
+	static Interval bounds(final MaskPredicate<?> m,
+		final Interval interval)
+	{
+		long minX = interval.min(0), minY = interval.min(1);
+		long maxX = interval.max(0), maxY = interval.max(1);
+		if (m instanceof RealInterval) {
+			final RealInterval r = (RealInterval) m;
+			// NB: Widened by rounding outwards, since e.g. masks round positions
+			minX = Math.max(minX, (long) Math.floor(r.realMin(0)));
+			minY = Math.max(minY, (long) Math.floor(r.realMin(1)));
+			maxX = Math.min(maxX, (long) Math.ceil(r.realMax(0)));
+			maxY = Math.min(maxY, (long) Math.ceil(r.realMax(1)));
+		}
+		else if (m instanceof Interval) {
+			final Interval r = (Interval) m;
+			minX = Math.max(minX, r.min(0));
+			minY = Math.max(minY, r.min(1));
+			maxX = Math.min(maxX, r.max(0));
+			maxY = Math.min(maxY, r.max(1));
+		}
+		if (minX > maxX || minY > maxY) return null;
+		return new FinalInterval(new long[] { minX, minY }, new long[] { maxX,
+			maxY });
+	}
+
+	/**
+	 * Collects the masks of the given node and its descendants which lie on the
+	 * given plane.
+	 */
+	static void collectMasks(final TreeNode<?> node, final int z,
+		final int t, final int c, final List<MaskPredicate<?>> masks)
+	{
+		if (node.data() instanceof MaskPredicate && onPlane(
+			(MaskPredicate<?>) node.data(), z, t, c))
+		{
+			masks.add((MaskPredicate<?>) node.data());
+		}
+		if (node.children() == null) return;
+		for (final TreeNode<?> child : node.children())
+			collectMasks(child, z, t, c, masks);
+	}
+
+	private static boolean onPlane(final MaskPredicate<?> m, final int z,
+		final int t, final int c)
+	{
+		if (!(m instanceof OMERORealMask)) return true;
+		final ShapeData shape = ((OMERORealMask<?>) m).getShape();
+		return matches(shape.getZ(), z) && matches(shape.getT(), t) && matches(
+			shape.getC(), c);
+	}
+
+	private static boolean matches(final int position, final int plane) {
+		return position < 0 || plane == -1 || position == plane;
+	}
+}
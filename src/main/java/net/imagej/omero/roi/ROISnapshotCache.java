@@ -0,0 +1,882 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi;
+
+import java.awt.geom.Point2D;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.scijava.util.ByteArray;
+import org.scijava.util.DoubleArray;
+import org.scijava.util.IntArray;
+import org.scijava.util.LongArray;
+
+import omero.RBool;
+import omero.RInt;
+import omero.RLong;
+import omero.RString;
+import omero.gateway.model.EllipseData;
+import omero.gateway.model.LineData;
+import omero.gateway.model.MaskData;
+import omero.gateway.model.PointData;
+import omero.gateway.model.PolygonData;
+import omero.gateway.model.PolylineData;
+import omero.gateway.model.ROIData;
+import omero.gateway.model.RectangleData;
+import omero.gateway.model.ShapeData;
+import omero.gateway.model.TextData;
+import omero.model.AffineTransform;
+import omero.model.AffineTransformI;
+import omero.model.ImageI;
+import omero.model.Length;
+import omero.model.LengthI;
+import omero.model.Line;
+import omero.model.Polyline;
+import omero.model.Roi;
+import omero.model.RoiI;
+import omero.model.Shape;
+import omero.model.enums.UnitsLength;
+
+/**
+ * A local on-disk cache of the ROIs of OMERO images.
+ * <p>
+ * The ROIs of each image are stored as a single snapshot file, named after
+ * its cache key (see {@link #key}), using a versioned columnar binary layout:
+ * a header with the number of ROIs, shapes, polyshape vertices, mask bytes and
+ * strings; a table of the distinct strings; then one column per property of
+ * the ROIs and of their shapes, holding that property's values back to back.
+ * Polygon and polyline vertices are stored in two coordinate columns, and the
+ * pixels of masks in one byte column, packed one bit per pixel as in OMERO
+ * (see {@link net.imagej.omero.roi.mask.PackedMasks}). Snapshot files are
+ * memory-mapped when read, and their columns bulk-copied into arrays.
+ * </p>
+ * <p>
+ * Loading a snapshot recreates the {@link ROIData} locally, with the original
+ * OMERO IDs and versions of the ROIs, shapes and transforms, their Z, T and C
+ * positions, and the text and settings of each shape; no request is made to
+ * the server. Note that the details of the OMERO objects, such as their
+ * owners and permissions, are not preserved. ROIs with shapes of other types
+ * than rectangles, ellipses, lines, points, polygons, polylines, masks and
+ * text are not cached.
+ * </p>
+ *
+ * @author agent
+ */
+public class ROISnapshotCache {
+
+	private static final int MAGIC = 0x494a4f52; // "IJOR"
+	private static final int VERSION = 1;
+
+	private static final String SUFFIX = ".roi";
+
+	private static final byte RECTANGLE = 0;
+	private static final byte ELLIPSE = 1;
+	private static final byte LINE = 2;
+	private static final byte POINT = 3;
+	private static final byte POLYGON = 4;
+	private static final byte POLYLINE = 5;
+	private static final byte MASK = 6;
+	private static final byte TEXT = 7;
+
+	/** Number of geometry parameters stored per shape. */
+	private static final int PARAMS = 4;
+
+	/** Number of affine coefficients stored per shape. */
+	private static final int COEFFICIENTS = 6;
+
+	private static final int HAS_TRANSFORM = 1;
+	private static final int HAS_FILL_COLOR = 1 << 1;
+	private static final int HAS_STROKE_COLOR = 1 << 2;
+	private static final int HAS_STROKE_WIDTH = 1 << 3;
+	private static final int HAS_FONT_SIZE = 1 << 4;
+	private static final int HAS_LOCKED = 1 << 5;
+	private static final int LOCKED = 1 << 6;
+
+	private final Path directory;
+
+	/**
+	 * Creates a ROI snapshot cache in the given directory, creating the
+	 * directory if necessary.
+	 *
+	 * @param directory Base directory of the cache
+	 * @throws IOException if the directory cannot be created
+	 */
+	public ROISnapshotCache(final File directory) throws IOException {
+		this.directory = directory.toPath();
+		Files.createDirectories(this.directory);
+	}
+
+	// -- ROISnapshotCache methods --
+
+	/**
+	 * Creates the cache key of the ROIs of an OMERO image. The key changes
+	 * whenever the ROIs of the image on the server do, so stale snapshots are
+	 * never read.
+	 *
+	 * @param imageID ID of the OMERO image
+	 * @param stamps Values which change whenever the ROIs of the image do, such
+	 *          as their number and the IDs of their latest update events
+	 * @return A key suitable for {@link #load} and {@link #store}
+	 */
+	public static String key(final long imageID, final long... stamps) {
+		final StringBuilder key = new StringBuilder().append(imageID);
+		for (final long stamp : stamps)
+			key.append('-').append(stamp < 0 ? "n" : "").append(Math.abs(stamp));
+		return key.toString();
+	}
+
+	/** Gets the base directory of this cache. */
+	public File getDirectory() {
+		return directory.toFile();
+	}
+
+	/** Gets whether a snapshot is cached under the given key. */
+	public boolean contains(final String key) {
+		return Files.isRegularFile(file(key));
+	}
+
+	/**
+	 * Reads the ROIs cached under the given key. A snapshot which cannot be
+	 * read is removed, so that the ROIs can be cached anew.
+	 *
+	 * @param key The cache key, as created by {@link #key}
+	 * @return The cached ROIs, or {@code null} if no snapshot is cached under
+	 *         the given key.
+	 * @throws IOException if the snapshot cannot be read
+	 */
+	public List<ROIData> load(final String key) throws IOException {
+		final Path file = file(key);
+		if (!Files.isRegularFile(file)) return null;
+
+		try (final FileChannel channel = FileChannel.open(file,
+			StandardOpenOption.READ))
+		{
+			return decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel
+				.size()));
+		}
+		catch (final IOException exc) {
+			final IOException readExc = new IOException(
+				"Cannot read ROI snapshot: " + file, exc);
+			try {
+				Files.deleteIfExists(file);
+			}
+			catch (final IOException deleteExc) {
+				readExc.addSuppressed(deleteExc);
+			}
+			throw readExc;
+		}
+	}
+
+	/**
+	 * Caches the given ROIs under the given key. Does nothing if a snapshot is
+	 * already cached under that key. Snapshots cached under other keys for the
+	 * same image are removed, since they are stale.
+	 *
+	 * @param key The cache key, as created by {@link #key}
+	 * @param rois The ROIs to cache
+	 * @return {@code false} if the ROIs contain shapes which cannot be cached,
+	 *         in which case nothing is stored.
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	public boolean store(final String key, final Collection<ROIData> rois)
+		throws IOException
+	{
+		final byte[] snapshot = encode(rois);
+		if (snapshot == null) return false;
+		final Path file = file(key);
+		if (Files.isRegularFile(file)) return true;
+		removeStale(key);
+
+		// NB: Write to a temporary file first, then move it into place, so that
+		// concurrent readers never see a partially written snapshot.
+		final Path tmp = directory.resolve(key + ".tmp-" + UUID.randomUUID());
+		try {
+			Files.write(tmp, snapshot, StandardOpenOption.CREATE_NEW);
+			try {
+				Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (final AtomicMoveNotSupportedException exc) {
+				Files.move(tmp, file);
+			}
+		}
+		catch (final FileAlreadyExistsException exc) {
+			// NB: Another process cached the same snapshot in the meantime.
+		}
+		finally {
+			Files.deleteIfExists(tmp);
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the snapshot cached under the given key, if any.
+	 *
+	 * @throws IOException if the snapshot cannot be deleted
+	 */
+	public void remove(final String key) throws IOException {
+		Files.deleteIfExists(file(key));
+	}
+
+	/**
+	 * Removes all cached snapshots.
+	 *
+	 * @throws IOException if a snapshot cannot be deleted
+	 */
+	public void clear() throws IOException {
+		try (final Stream<Path> entries = Files.list(directory)) {
+			for (final Path entry : (Iterable<Path>) entries::iterator)
+				Files.deleteIfExists(entry);
+		}
+	}
+
+	/**
+	 * Encodes the given ROIs in the snapshot format of this cache.
+	 *
+	 * @param rois The ROIs to encode
+	 * @return The encoded snapshot, or {@code null} if the ROIs contain shapes
+	 *         which cannot be cached.
+	 */
+	public static byte[] encode(final Collection<ROIData> rois) {
+		final Writer writer = new Writer();
+		for (final ROIData roi : rois) {
+			if (!writer.add(roi)) return null;
+		}
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (final DataOutputStream data = new DataOutputStream(out)) {
+			data.writeInt(MAGIC);
+			data.writeInt(VERSION);
+			writer.write(data);
+		}
+		catch (final IOException exc) {
+			// NB: Writing to a ByteArrayOutputStream never fails.
+			throw new IllegalStateException(exc);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decodes the ROIs of a snapshot, as created by {@link #encode}. Each call
+	 * recreates the {@link ROIData}, so the decoded ROIs can be modified
+	 * without affecting the snapshot.
+	 *
+	 * @param buffer The encoded snapshot, from its current position
+	 * @return The decoded ROIs
+	 * @throws IOException if the buffer does not hold a valid snapshot
+	 */
+	public static List<ROIData> decode(final ByteBuffer buffer)
+		throws IOException
+	{
+		try {
+			if (buffer.getInt() != MAGIC) throw new IOException(
+				"Not a ROI snapshot");
+			final int version = buffer.getInt();
+			if (version != VERSION) throw new IOException(
+				"Unsupported ROI snapshot version: " + version);
+			return new Reader(buffer).read();
+		}
+		catch (final RuntimeException exc) {
+			// NB: A truncated or corrupt snapshot underflows the buffer.
+			throw new IOException("Corrupt ROI snapshot", exc);
+		}
+	}
+
+	// -- Helper methods --
+
+	private Path file(final String key) {
+		return directory.resolve(key + SUFFIX);
+	}
+
+	/**
+	 * Removes the snapshots of the image of the given key which are cached
+	 * under other keys.
+	 */
+	private void removeStale(final String key) throws IOException {
+		final int dash = key.indexOf('-');
+		if (dash < 0) return;
+		final String prefix = key.substring(0, dash + 1);
+		final String current = key + SUFFIX;
+		try (final Stream<Path> entries = Files.list(directory)) {
+			for (final Path entry : (Iterable<Path>) entries::iterator) {
+				final String name = entry.getFileName().toString();
+				if (name.startsWith(prefix) && name.endsWith(SUFFIX) && !name.equals(
+					current)) Files.deleteIfExists(entry);
+			}
+		}
+	}
+
+	private static byte shapeType(final ShapeData shape) {
+		if (shape instanceof RectangleData) return RECTANGLE;
+		if (shape instanceof EllipseData) return ELLIPSE;
+		if (shape instanceof LineData) return LINE;
+		if (shape instanceof PointData) return POINT;
+		if (shape instanceof PolylineData) return POLYLINE;
+		if (shape instanceof PolygonData) return POLYGON;
+		if (shape instanceof MaskData) return MASK;
+		if (shape instanceof TextData) return TEXT;
+		return -1;
+	}
+
+	private static long id(final RLong id) {
+		return id == null ? -1 : id.getValue();
+	}
+
+	private static int value(final RInt value) {
+		return value == null ? -1 : value.getValue();
+	}
+
+	private static RInt rint(final int value) {
+		return value < 0 ? null : omero.rtypes.rint(value);
+	}
+
+	private static RString rstring(final String value) {
+		return value == null ? null : omero.rtypes.rstring(value);
+	}
+
+	private static String string(final RString value) {
+		return value == null ? null : value.getValue();
+	}
+
+	private static RString markerStart(final Shape shape) {
+		if (shape instanceof Line) return ((Line) shape).getMarkerStart();
+		if (shape instanceof Polyline) return ((Polyline) shape).getMarkerStart();
+		return null;
+	}
+
+	private static RString markerEnd(final Shape shape) {
+		if (shape instanceof Line) return ((Line) shape).getMarkerEnd();
+		if (shape instanceof Polyline) return ((Polyline) shape).getMarkerEnd();
+		return null;
+	}
+
+	private static long[] longs(final ByteBuffer buffer, final int count) {
+		final long[] values = new long[count];
+		buffer.asLongBuffer().get(values);
+		buffer.position(buffer.position() + count * Long.BYTES);
+		return values;
+	}
+
+	private static int[] ints(final ByteBuffer buffer, final int count) {
+		final int[] values = new int[count];
+		buffer.asIntBuffer().get(values);
+		buffer.position(buffer.position() + count * Integer.BYTES);
+		return values;
+	}
+
+	private static double[] doubles(final ByteBuffer buffer, final int count) {
+		final double[] values = new double[count];
+		buffer.asDoubleBuffer().get(values);
+		buffer.position(buffer.position() + count * Double.BYTES);
+		return values;
+	}
+
+	private static byte[] bytes(final ByteBuffer buffer, final int count) {
+		final byte[] values = new byte[count];
+		buffer.get(values);
+		return values;
+	}
+
+	private static void write(final DataOutputStream out, final LongArray values)
+		throws IOException
+	{
+		final long[] array = values.getArray();
+		for (int i = 0; i < values.size(); i++)
+			out.writeLong(array[i]);
+	}
+
+	private static void write(final DataOutputStream out, final IntArray values)
+		throws IOException
+	{
+		final int[] array = values.getArray();
+		for (int i = 0; i < values.size(); i++)
+			out.writeInt(array[i]);
+	}
+
+	private static void write(final DataOutputStream out,
+		final DoubleArray values) throws IOException
+	{
+		final double[] array = values.getArray();
+		for (int i = 0; i < values.size(); i++)
+			out.writeDouble(array[i]);
+	}
+
+	// -- Helper classes --
+
+	/** Collects the columns of a snapshot, one ROI at a time. */
+	private static final class Writer {
+
+		private final Map<String, Integer> stringIndex = new HashMap<>();
+		private final List<byte[]> strings = new ArrayList<>();
+
+		// ROI columns
+		private final LongArray roiIDs = new LongArray();
+		private final LongArray roiImages = new LongArray();
+		private final IntArray roiVersions = new IntArray();
+		private final IntArray roiNames = new IntArray();
+		private final IntArray roiDescriptions = new IntArray();
+		private final IntArray roiShapes = new IntArray();
+
+		// Shape columns
+		private final LongArray shapeIDs = new LongArray();
+		private final LongArray transformIDs = new LongArray();
+		private final DoubleArray params = new DoubleArray();
+		private final DoubleArray coefficients = new DoubleArray();
+		private final DoubleArray strokeWidths = new DoubleArray();
+		private final DoubleArray fontSizes = new DoubleArray();
+		private final IntArray shapeVersions = new IntArray();
+		private final IntArray flags = new IntArray();
+		private final IntArray zs = new IntArray();
+		private final IntArray ts = new IntArray();
+		private final IntArray cs = new IntArray();
+		private final IntArray fillColors = new IntArray();
+		private final IntArray strokeColors = new IntArray();
+		private final IntArray strokeWidthUnits = new IntArray();
+		private final IntArray fontSizeUnits = new IntArray();
+		private final IntArray texts = new IntArray();
+		private final IntArray fontFamilies = new IntArray();
+		private final IntArray fontStyles = new IntArray();
+		private final IntArray fillRules = new IntArray();
+		private final IntArray dashArrays = new IntArray();
+		private final IntArray markerStarts = new IntArray();
+		private final IntArray markerEnds = new IntArray();
+		private final IntArray vertexOffsets = new IntArray();
+		private final IntArray maskOffsets = new IntArray();
+		private final ByteArray types = new ByteArray();
+
+		// Geometry columns
+		private final DoubleArray xs = new DoubleArray();
+		private final DoubleArray ys = new DoubleArray();
+		private final ByteArray maskBytes = new ByteArray();
+
+		private Writer() {
+			roiShapes.addValue(0);
+			vertexOffsets.addValue(0);
+			maskOffsets.addValue(0);
+		}
+
+		/**
+		 * Adds the given ROI to the snapshot.
+		 *
+		 * @return {@code false} if the ROI cannot be cached, in which case the
+		 *         snapshot is left in an undefined state.
+		 */
+		private boolean add(final ROIData roi) {
+			final Roi iceRoi = (Roi) roi.asIObject();
+			final Iterator<List<ShapeData>> itr = roi.getIterator();
+			while (itr.hasNext()) {
+				for (final ShapeData shape : itr.next()) {
+					if (!add(shape)) return false;
+				}
+			}
+			roiIDs.addValue(id(iceRoi.getId()));
+			roiImages.addValue(iceRoi.getImage() == null ? -1 : id(iceRoi
+				.getImage().getId()));
+			roiVersions.addValue(value(iceRoi.getVersion()));
+			roiNames.addValue(index(string(iceRoi.getName())));
+			roiDescriptions.addValue(index(string(iceRoi.getDescription())));
+			roiShapes.addValue(types.size());
+			return true;
+		}
+
+		private boolean add(final ShapeData shape) {
+			final byte type = shapeType(shape);
+			if (type < 0) return false;
+			final Shape iceShape = (Shape) shape.asIObject();
+			final AffineTransform transform = iceShape.getTransform();
+			if (transform != null && !transform.isLoaded()) return false;
+
+			switch (type) {
+				case RECTANGLE: {
+					final RectangleData r = (RectangleData) shape;
+					addParams(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+					break;
+				}
+				case ELLIPSE: {
+					final EllipseData e = (EllipseData) shape;
+					addParams(e.getX(), e.getY(), e.getRadiusX(), e.getRadiusY());
+					break;
+				}
+				case LINE: {
+					final LineData l = (LineData) shape;
+					addParams(l.getX1(), l.getY1(), l.getX2(), l.getY2());
+					break;
+				}
+				case POINT: {
+					final PointData p = (PointData) shape;
+					addParams(p.getX(), p.getY(), 0, 0);
+					break;
+				}
+				case POLYGON:
+					addParams(0, 0, 0, 0);
+					addVertices(((PolygonData) shape).getPoints());
+					break;
+				case POLYLINE:
+					addParams(0, 0, 0, 0);
+					addVertices(((PolylineData) shape).getPoints());
+					break;
+				case MASK: {
+					final MaskData m = (MaskData) shape;
+					addParams(m.getX(), m.getY(), m.getWidth(), m.getHeight());
+					final byte[] mask = m.getMask();
+					if (mask != null) {
+						for (final byte b : mask)
+							maskBytes.addValue(b);
+					}
+					break;
+				}
+				case TEXT: {
+					final TextData t = (TextData) shape;
+					addParams(t.getX(), t.getY(), 0, 0);
+					break;
+				}
+			}
+			types.addValue(type);
+			vertexOffsets.addValue(xs.size());
+			maskOffsets.addValue(maskBytes.size());
+
+			shapeIDs.addValue(id(iceShape.getId()));
+			shapeVersions.addValue(value(iceShape.getVersion()));
+			zs.addValue(value(iceShape.getTheZ()));
+			ts.addValue(value(iceShape.getTheT()));
+			cs.addValue(value(iceShape.getTheC()));
+			texts.addValue(index(ROIConverters.getTextValue(shape)));
+
+			int f = 0;
+			transformIDs.addValue(transform == null ? -1 : id(transform.getId()));
+			if (transform != null) {
+				f |= HAS_TRANSFORM;
+				coefficients.addValue(transform.getA00().getValue());
+				coefficients.addValue(transform.getA01().getValue());
+				coefficients.addValue(transform.getA02().getValue());
+				coefficients.addValue(transform.getA10().getValue());
+				coefficients.addValue(transform.getA11().getValue());
+				coefficients.addValue(transform.getA12().getValue());
+			}
+			else {
+				for (int i = 0; i < COEFFICIENTS; i++)
+					coefficients.addValue(0);
+			}
+
+			final RInt fill = iceShape.getFillColor();
+			if (fill != null) f |= HAS_FILL_COLOR;
+			fillColors.addValue(fill == null ? 0 : fill.getValue());
+			final RInt stroke = iceShape.getStrokeColor();
+			if (stroke != null) f |= HAS_STROKE_COLOR;
+			strokeColors.addValue(stroke == null ? 0 : stroke.getValue());
+
+			final Length strokeWidth = iceShape.getStrokeWidth();
+			if (strokeWidth != null) f |= HAS_STROKE_WIDTH;
+			strokeWidths.addValue(strokeWidth == null ? 0 : strokeWidth
+				.getValue());
+			strokeWidthUnits.addValue(strokeWidth == null ? -1 : index(
+				strokeWidth.getUnit().name()));
+			final Length fontSize = iceShape.getFontSize();
+			if (fontSize != null) f |= HAS_FONT_SIZE;
+			fontSizes.addValue(fontSize == null ? 0 : fontSize.getValue());
+			fontSizeUnits.addValue(fontSize == null ? -1 : index(fontSize
+				.getUnit().name()));
+
+			final RBool locked = iceShape.getLocked();
+			if (locked != null) f |= HAS_LOCKED;
+			if (locked != null && locked.getValue()) f |= LOCKED;
+			flags.addValue(f);
+
+			fontFamilies.addValue(index(string(iceShape.getFontFamily())));
+			fontStyles.addValue(index(string(iceShape.getFontStyle())));
+			fillRules.addValue(index(string(iceShape.getFillRule())));
+			dashArrays.addValue(index(string(iceShape.getStrokeDashArray())));
+			markerStarts.addValue(index(string(markerStart(iceShape))));
+			markerEnds.addValue(index(string(markerEnd(iceShape))));
+			return true;
+		}
+
+		private void addParams(final double p0, final double p1, final double p2,
+			final double p3)
+		{
+			params.addValue(p0);
+			params.addValue(p1);
+			params.addValue(p2);
+			params.addValue(p3);
+		}
+
+		private void addVertices(final List<Point2D.Double> points) {
+			for (final Point2D.Double p : points) {
+				xs.addValue(p.getX());
+				ys.addValue(p.getY());
+			}
+		}
+
+		/** Gets the index of the given string, or -1 if it is {@code null}. */
+		private int index(final String value) {
+			if (value == null) return -1;
+			return stringIndex.computeIfAbsent(value, v -> {
+				strings.add(v.getBytes(StandardCharsets.UTF_8));
+				return strings.size() - 1;
+			});
+		}
+
+		private void write(final DataOutputStream out) throws IOException {
+			out.writeInt(roiIDs.size());
+			out.writeInt(types.size());
+			out.writeInt(xs.size());
+			out.writeInt(maskBytes.size());
+			out.writeInt(strings.size());
+
+			for (final byte[] s : strings) {
+				out.writeInt(s.length);
+				out.write(s);
+			}
+
+			ROISnapshotCache.write(out, roiIDs);
+			ROISnapshotCache.write(out, roiImages);
+			ROISnapshotCache.write(out, roiVersions);
+			ROISnapshotCache.write(out, roiNames);
+			ROISnapshotCache.write(out, roiDescriptions);
+			ROISnapshotCache.write(out, roiShapes);
+
+			ROISnapshotCache.write(out, shapeIDs);
+			ROISnapshotCache.write(out, transformIDs);
+			ROISnapshotCache.write(out, params);
+			ROISnapshotCache.write(out, coefficients);
+			ROISnapshotCache.write(out, strokeWidths);
+			ROISnapshotCache.write(out, fontSizes);
+			for (final IntArray column : Arrays.asList(shapeVersions, flags, zs, ts,
+				cs, fillColors, strokeColors, strokeWidthUnits, fontSizeUnits, texts,
+				fontFamilies, fontStyles, fillRules, dashArrays, markerStarts,
+				markerEnds, vertexOffsets, maskOffsets))
+			{
+				ROISnapshotCache.write(out, column);
+			}
+			out.write(types.getArray(), 0, types.size());
+
+			ROISnapshotCache.write(out, xs);
+			ROISnapshotCache.write(out, ys);
+			out.write(maskBytes.getArray(), 0, maskBytes.size());
+		}
+	}
+
+	/**
+	 * Reads the columns of a snapshot, in the order written by {@link Writer},
+	 * and recreates its ROIs.
+	 */
+	private static final class Reader {
+
+		private final ByteBuffer buffer;
+		private final int roiCount;
+		private final int shapeCount;
+		private final int vertexCount;
+		private final int maskByteCount;
+		private final String[] strings;
+
+		private Reader(final ByteBuffer buffer) {
+			this.buffer = buffer;
+			roiCount = buffer.getInt();
+			shapeCount = buffer.getInt();
+			vertexCount = buffer.getInt();
+			maskByteCount = buffer.getInt();
+			strings = new String[buffer.getInt()];
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = new String(bytes(buffer, buffer.getInt()),
+					StandardCharsets.UTF_8);
+			}
+		}
+
+		private List<ROIData> read() throws IOException {
+			final long[] roiIDs = longs(buffer, roiCount);
+			final long[] roiImages = longs(buffer, roiCount);
+			final int[] roiVersions = ints(buffer, roiCount);
+			final int[] roiNames = ints(buffer, roiCount);
+			final int[] roiDescriptions = ints(buffer, roiCount);
+			final int[] roiShapes = ints(buffer, roiCount + 1);
+
+			final long[] shapeIDs = longs(buffer, shapeCount);
+			final long[] transformIDs = longs(buffer, shapeCount);
+			final double[] params = doubles(buffer, shapeCount * PARAMS);
+			final double[] coefficients = doubles(buffer, shapeCount *
+				COEFFICIENTS);
+			final double[] strokeWidths = doubles(buffer, shapeCount);
+			final double[] fontSizes = doubles(buffer, shapeCount);
+			final int[] shapeVersions = ints(buffer, shapeCount);
+			final int[] flags = ints(buffer, shapeCount);
+			final int[] zs = ints(buffer, shapeCount);
+			final int[] ts = ints(buffer, shapeCount);
+			final int[] cs = ints(buffer, shapeCount);
+			final int[] fillColors = ints(buffer, shapeCount);
+			final int[] strokeColors = ints(buffer, shapeCount);
+			final int[] strokeWidthUnits = ints(buffer, shapeCount);
+			final int[] fontSizeUnits = ints(buffer, shapeCount);
+			final int[] texts = ints(buffer, shapeCount);
+			final int[] fontFamilies = ints(buffer, shapeCount);
+			final int[] fontStyles = ints(buffer, shapeCount);
+			final int[] fillRules = ints(buffer, shapeCount);
+			final int[] dashArrays = ints(buffer, shapeCount);
+			final int[] markerStarts = ints(buffer, shapeCount);
+			final int[] markerEnds = ints(buffer, shapeCount);
+			final int[] vertexOffsets = ints(buffer, shapeCount + 1);
+			final int[] maskOffsets = ints(buffer, shapeCount + 1);
+			final byte[] types = bytes(buffer, shapeCount);
+
+			final double[] xs = doubles(buffer, vertexCount);
+			final double[] ys = doubles(buffer, vertexCount);
+			final byte[] maskBytes = bytes(buffer, maskByteCount);
+
+			final List<ROIData> rois = new ArrayList<>(roiCount);
+			for (int r = 0; r < roiCount; r++) {
+				final Roi roi = roiIDs[r] < 0 ? new RoiI() : new RoiI(roiIDs[r], true);
+				if (roiVersions[r] >= 0) roi.setVersion(rint(roiVersions[r]));
+				if (roiImages[r] >= 0) roi.setImage(new ImageI(roiImages[r], false));
+				roi.setName(rstring(string(roiNames[r])));
+				roi.setDescription(rstring(string(roiDescriptions[r])));
+
+				for (int s = roiShapes[r]; s < roiShapes[r + 1]; s++) {
+					final int p = s * PARAMS;
+					final String text = string(texts[s]);
+					final ShapeData shape;
+					switch (types[s]) {
+						case RECTANGLE:
+							shape = new RectangleData(params[p], params[p + 1], params[p + 2],
+								params[p + 3]);
+							break;
+						case ELLIPSE:
+							shape = new EllipseData(params[p], params[p + 1], params[p + 2],
+								params[p + 3]);
+							break;
+						case LINE:
+							shape = new LineData(params[p], params[p + 1], params[p + 2],
+								params[p + 3]);
+							break;
+						case POINT:
+							shape = new PointData(params[p], params[p + 1]);
+							break;
+						case POLYGON:
+							shape = new PolygonData(vertices(xs, ys, vertexOffsets[s],
+								vertexOffsets[s + 1]));
+							break;
+						case POLYLINE:
+							shape = new PolylineData(vertices(xs, ys, vertexOffsets[s],
+								vertexOffsets[s + 1]));
+							break;
+						case MASK:
+							shape = new MaskData(params[p], params[p + 1], params[p + 2],
+								params[p + 3], Arrays.copyOfRange(maskBytes, maskOffsets[s],
+									maskOffsets[s + 1]));
+							break;
+						case TEXT:
+							shape = new TextData(text, params[p], params[p + 1]);
+							break;
+						default:
+							throw new IOException("Unknown shape type: " + types[s]);
+					}
+					if (text != null) ROIConverters.setTextValue(shape, text);
+
+					final Shape iceShape = (Shape) shape.asIObject();
+					if (shapeIDs[s] >= 0) iceShape.setId(omero.rtypes.rlong(
+						shapeIDs[s]));
+					if (shapeVersions[s] >= 0) iceShape.setVersion(rint(
+						shapeVersions[s]));
+					iceShape.setTheZ(rint(zs[s]));
+					iceShape.setTheT(rint(ts[s]));
+					iceShape.setTheC(rint(cs[s]));
+
+					final int f = flags[s];
+					if ((f & HAS_TRANSFORM) != 0) {
+						final int c = s * COEFFICIENTS;
+						final AffineTransform transform = transformIDs[s] < 0
+							? new AffineTransformI() : new AffineTransformI(transformIDs[s],
+								true);
+						transform.setA00(omero.rtypes.rdouble(coefficients[c]));
+						transform.setA01(omero.rtypes.rdouble(coefficients[c + 1]));
+						transform.setA02(omero.rtypes.rdouble(coefficients[c + 2]));
+						transform.setA10(omero.rtypes.rdouble(coefficients[c + 3]));
+						transform.setA11(omero.rtypes.rdouble(coefficients[c + 4]));
+						transform.setA12(omero.rtypes.rdouble(coefficients[c + 5]));
+						iceShape.setTransform(transform);
+					}
+					iceShape.setFillColor((f & HAS_FILL_COLOR) == 0 ? null
+						: omero.rtypes.rint(fillColors[s]));
+					iceShape.setStrokeColor((f & HAS_STROKE_COLOR) == 0 ? null
+						: omero.rtypes.rint(strokeColors[s]));
+					iceShape.setStrokeWidth((f & HAS_STROKE_WIDTH) == 0 ? null
+						: new LengthI(strokeWidths[s], UnitsLength.valueOf(string(
+							strokeWidthUnits[s]))));
+					iceShape.setFontSize((f & HAS_FONT_SIZE) == 0 ? null : new LengthI(
+						fontSizes[s], UnitsLength.valueOf(string(fontSizeUnits[s]))));
+					iceShape.setLocked((f & HAS_LOCKED) == 0 ? null : omero.rtypes
+						.rbool((f & LOCKED) != 0));
+					iceShape.setFontFamily(rstring(string(fontFamilies[s])));
+					iceShape.setFontStyle(rstring(string(fontStyles[s])));
+					iceShape.setFillRule(rstring(string(fillRules[s])));
+					iceShape.setStrokeDashArray(rstring(string(dashArrays[s])));
+					if (iceShape instanceof Line) {
+						((Line) iceShape).setMarkerStart(rstring(string(markerStarts[s])));
+						((Line) iceShape).setMarkerEnd(rstring(string(markerEnds[s])));
+					}
+					else if (iceShape instanceof Polyline) {
+						((Polyline) iceShape).setMarkerStart(rstring(string(
+							markerStarts[s])));
+						((Polyline) iceShape).setMarkerEnd(rstring(string(
+							markerEnds[s])));
+					}
+					roi.addShape(iceShape);
+				}
+				rois.add(new ROIData(roi));
+			}
+			return rois;
+		}
+
+		private String string(final int index) {
+			return index < 0 ? null : strings[index];
+		}
+
+		private static List<Point2D.Double> vertices(final double[] xs,
+			final double[] ys, final int start, final int end)
+		{
+			final List<Point2D.Double> points = new ArrayList<>(end - start);
+			for (int i = start; i < end; i++)
+				points.add(new Point2D.Double(xs[i], ys[i]));
+			return points;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi;
+
+/**
+ * Intensity statistics of the pixels contained in a ROI, accumulated one pixel
+ * value at a time.
+ * <p>
+ * Optionally, values within a given range are also counted into a histogram
+ * of equally wide bins, the last of which includes the upper end of the range.
+ * </p>
+ *
+ * @author agent
+ * @see TiledROIMeasurer
+ */
+public final class ROIStatistics {
+
+	private final int bins;
+	private final double histogramMin, histogramMax;
+	private final long[] histogram;
+
+	private long count;
+	private double sum;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	/** Running mean and sum of squared differences, as in Welford's method. */
+	private double mean, m2;
+
+	/** Creates statistics without a histogram. */
+	public ROIStatistics() {
+		this(0, 0, 0);
+	}
+
+	/**
+	 * Creates statistics with a histogram of the given range.
+	 *
+	 * @param bins number of histogram bins, or 0 for no histogram
+	 * @param histogramMin lower end of the histogram range
+	 * @param histogramMax upper end of the histogram range
+	 */
+	public ROIStatistics(final int bins, final double histogramMin,
+		final double histogramMax)
+	{
+		checkHistogram(bins, histogramMin, histogramMax);
+		this.bins = bins;
+		this.histogramMin = histogramMin;
+		this.histogramMax = histogramMax;
+		histogram = bins == 0 ? null : new long[bins];
+	}
+
+	/**
+	 * Checks that statistics can be created with the given histogram.
+	 *
+	 * @throws IllegalArgumentException if the number of bins is negative, or if
+	 *           there are bins but the range is empty
+	 * @see #ROIStatistics(int, double, double)
+	 */
+	public static void checkHistogram(final int bins, final double histogramMin,
+		final double histogramMax)
+	{
+		if (bins < 0) throw new IllegalArgumentException(
+			"Invalid number of bins: " + bins);
+		if (bins > 0 && !(histogramMax > histogramMin))
+			throw new IllegalArgumentException("Invalid histogram range: " +
+				histogramMin + " - " + histogramMax);
+	}
+
+	/** Adds the value of a pixel contained in the ROI. */
+	public void add(final double value) {
+		count++;
+		sum += value;
+		if (value < min) min = value;
+		if (value > max) max = value;
+		final double delta = value - mean;
+		mean += delta / count;
+		m2 += delta * (value - mean);
+		if (histogram != null && value >= histogramMin && value <= histogramMax) {
+			final int bin = (int) ((value - histogramMin) / (histogramMax -
+				histogramMin) * bins);
+			histogram[Math.min(bin, bins - 1)]++;
+		}
+	}
+
+	/** Gets the number of pixels. */
+	public long count() {
+		return count;
+	}
+
+	public double sum() {
+		return sum;
+	}
+
+	/** Gets the mean value, or {@code NaN} if there are no pixels. */
+	public double mean() {
+		return count == 0 ? Double.NaN : mean;
+	}
+
+	/** Gets the minimum value, or {@code NaN} if there are no pixels. */
+	public double min() {
+		return count == 0 ? Double.NaN : min;
+	}
+
+	/** Gets the maximum value, or {@code NaN} if there are no pixels. */
+	public double max() {
+		return count == 0 ? Double.NaN : max;
+	}
+
+	/**
+	 * Gets the sample standard deviation of the values, or {@code NaN} if there
+	 * are fewer than two pixels.
+	 */
+	public double standardDeviation() {
+		return count < 2 ? Double.NaN : Math.sqrt(m2 / (count - 1));
+	}
+
+	/**
+	 * Gets the number of values in each histogram bin, or {@code null} if there
+	 * is no histogram.
+	 */
+	public long[] histogram() {
+		return histogram == null ? null : histogram.clone();
+	}
+
+	/** Gets the number of histogram bins, which is 0 without a histogram. */
+	public int bins() {
+		return bins;
+	}
+
+	public double histogramMin() {
+		return histogramMin;
+	}
+
+	public double histogramMax() {
+		return histogramMax;
+	}
+}
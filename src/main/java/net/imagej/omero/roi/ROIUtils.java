@@ -28,8 +28,10 @@ package net.imagej.omero.roi;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import net.imglib2.Interval;
 import net.imglib2.RandomAccessibleInterval;
@@ -188,6 +190,42 @@ public class ROIUtils {
 		}
 	}
 
+	/**
+	 * Gets the latest version of the given ROI saved to OMERO, as kept by the
+	 * {@link OMEROROICollection} itself or else by the given cache.
+	 *
+	 * @param orc {@link OMEROROICollection} whose server version is requested
+	 * @param cache cache of server versions, for collections which do not keep
+	 *          their own
+	 * @return the latest saved version, or {@code null} if none is known
+	 */
+	public static ROIData serverData(final OMEROROICollection orc,
+		final ROICache cache)
+	{
+		final ROIData saved = orc.serverData();
+		return saved != null ? saved : cache.getUpdatedServerROIData(orc.data()
+			.getId());
+	}
+
+	/**
+	 * Keeps the given ROI as the latest version of the given ROI saved to OMERO.
+	 * It is kept by the {@link OMEROROICollection}, so it lives as long as the
+	 * collection does. Collections which do not keep it have it stored in the
+	 * given cache instead.
+	 *
+	 * @param orc {@link OMEROROICollection} which was saved
+	 * @param saved recently saved {@link ROIData}
+	 * @param cache cache of server versions, for collections which do not keep
+	 *          their own
+	 */
+	public static void setServerData(final OMEROROICollection orc,
+		final ROIData saved, final ROICache cache)
+	{
+		orc.setServerData(saved);
+		if (orc.serverData() != saved) cache.updateServerROIData(saved.getId(),
+			saved);
+	}
+
 	/**
 	 * Sets the backing {@link ROIData} and {@link ShapeData} objects to have the
 	 * same IDs as the newly saved version on the server.
@@ -202,27 +240,63 @@ public class ROIUtils {
 		rd.setId(saved.getId());
 
 		// Shapes may not be in the same order
-		final List<ShapeData> shapes = new ArrayList<>();
-		final List<ShapeData> savedShapes = new ArrayList<>();
-		final Iterator<List<ShapeData>> itr = rd.getIterator();
-		final Iterator<List<ShapeData>> savedItr = saved.getIterator();
-		while (itr.hasNext())
-			shapes.addAll(itr.next());
-		while (savedItr.hasNext())
-			savedShapes.addAll(savedItr.next());
-
-		for (final ShapeData shape : shapes) {
-			ShapeData match = null;
-			for (final ShapeData savedShape : savedShapes) {
-				if (ROIConverters.shapeDataEquals(shape, savedShape)) {
-					match = savedShape;
-					shape.setId(savedShape.getId());
+		final List<ShapeData> shapes = shapes(rd);
+		final List<ShapeData> savedShapes = shapes(saved);
+		final int[] matches = matchShapes(shapes, savedShapes);
+		for (int i = 0; i < matches.length; i++) {
+			if (matches[i] < 0) throw new IllegalArgumentException(
+				"Uploaded ROIData is missing a shape!");
+			shapes.get(i).setId(savedShapes.get(matches[i]).getId());
+		}
+	}
+
+	/**
+	 * Matches each of the given shapes to an equal candidate, according to
+	 * {@link ROIConverters#shapeDataEquals}. Each candidate is matched at most
+	 * once, and among equal candidates the first unmatched one is used. Shapes
+	 * are looked up by {@link ROIConverters#shapeDataHash}, so matching takes
+	 * linear rather than quadratic time.
+	 *
+	 * @param shapes the shapes to match
+	 * @param candidates the shapes to match them against
+	 * @return for each shape, the index of its matching candidate or -1 if
+	 *         there is none
+	 */
+	public static int[] matchShapes(final List<? extends ShapeData> shapes,
+		final List<? extends ShapeData> candidates)
+	{
+		final Map<Long, List<Integer>> buckets = new HashMap<>(candidates.size() *
+			2);
+		for (int i = 0; i < candidates.size(); i++) {
+			buckets.computeIfAbsent(ROIConverters.shapeDataHash(candidates.get(i)),
+				h -> new ArrayList<>(1)).add(i);
+		}
+
+		final int[] matches = new int[shapes.size()];
+		for (int i = 0; i < matches.length; i++) {
+			matches[i] = -1;
+			final ShapeData shape = shapes.get(i);
+			final List<Integer> bucket = buckets.get(ROIConverters.shapeDataHash(
+				shape));
+			if (bucket == null) continue;
+			for (int j = 0; j < bucket.size(); j++) {
+				final int candidate = bucket.get(j);
+				if (ROIConverters.shapeDataEquals(shape, candidates.get(candidate))) {
+					matches[i] = candidate;
+					bucket.remove(j);
 					break;
 				}
 			}
-			if (match == null) throw new IllegalArgumentException(
-				"Uploaded ROIData is missing a shape!");
-			savedShapes.remove(match);
 		}
+		return matches;
+	}
+
+	/** Gets all the shapes of the given {@link ROIData}. */
+	public static List<ShapeData> shapes(final ROIData roi) {
+		final List<ShapeData> shapes = new ArrayList<>(roi.getShapeCount());
+		final Iterator<List<ShapeData>> itr = roi.getIterator();
+		while (itr.hasNext())
+			shapes.addAll(itr.next());
+		return shapes;
 	}
 }
@@ -0,0 +1,70 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi;
+
+/**
+ * Hit-test of a two dimensional OMERO shape, using parameters snapshot from
+ * the shape into primitive fields instead of reading the boxed values of the
+ * wrapped shape on every test.
+ * <p>
+ * A kernel is immutable and created for specific values of the shape's
+ * parameters, so it must be recreated when the shape changes. Besides single
+ * points, kernels test batches of coordinates into bitsets.
+ * </p>
+ *
+ * @author agent
+ */
+public interface ShapeKernel {
+
+	/** Tests if the given point is contained in the shape. */
+	boolean test(double x, double y);
+
+	/**
+	 * Tests the points {@code (xs[i], ys[i])}, setting bit {@code i} of the
+	 * given bitset if point {@code i} is contained in the shape and clearing it
+	 * otherwise. Bit {@code i} is bit {@code i % 64} of {@code bits[i / 64]}.
+	 *
+	 * @param xs the X coordinates of the points
+	 * @param ys the Y coordinates of the points, at least as many as
+	 *          {@code xs}
+	 * @param bits the bitset receiving the results, with at least
+	 *          {@code (xs.length + 63) / 64} words
+	 */
+	void test(double[] xs, double[] ys, long[] bits);
+
+	// -- Helper methods --
+
+	/** Checks the sizes of the arrays given to a batch test. */
+	static void checkBatch(final double[] xs, final double[] ys,
+		final long[] bits)
+	{
+		if (ys.length < xs.length) throw new IllegalArgumentException(
+			"Fewer Y than X coordinates: " + ys.length + " < " + xs.length);
+		if (bits.length < (xs.length + 63) >>> 6)
+			throw new IllegalArgumentException("Bitset too small for " + xs.length +
+				" points: " + bits.length + " words");
+	}
+}
@@ -0,0 +1,309 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi;
+
+import io.scif.util.FormatTools;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Supplier;
+
+import net.imagej.omero.OMEROException;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.roi.MaskPredicate;
+
+import org.scijava.util.TreeNode;
+
+/**
+ * Measures intensity statistics of ROIs on one plane of an image, fetching
+ * only the tiles of the plane which ROIs cover.
+ * <p>
+ * Each ROI is rasterized with {@link ROIRasterizer} within its bounds, and the
+ * values of its pixels are read from the tiles containing them. Decoded tiles
+ * are kept in a least recently used cache of bounded size, and ROIs are
+ * measured in order of the tile containing their top left corner, so ROIs
+ * which overlap or lie close to one another share tile fetches. Pixels
+ * contained in several shapes of a ROI are counted once.
+ * </p>
+ *
+ * @author agent
+ */
+public final class TiledROIMeasurer {
+
+	/** Default maximum number of pixels of the tiles kept in the cache. */
+	public static final long DEFAULT_CACHE_PIXELS = 1L << 22;
+
+	/** Fetches tiles of the measured plane. */
+	@FunctionalInterface
+	public interface TileSource {
+
+		/**
+		 * Gets the values of the pixels of the given region of the plane, in row
+		 * major order.
+		 */
+		double[] tile(int x, int y, int width, int height) throws OMEROException;
+	}
+
+	private final TileSource source;
+	private final Interval plane;
+	private final int tileWidth, tileHeight;
+	private final long tilesPerRow;
+	private final long cachePixels;
+	private final LinkedHashMap<Long, double[]> cache;
+	private long cachedPixels;
+	private long tileFetches;
+
+	/**
+	 * Creates a measurer of the given plane.
+	 *
+	 * @param source fetches the tiles of the plane
+	 * @param sizeX width of the plane
+	 * @param sizeY height of the plane
+	 * @param tileWidth width of the fetched tiles
+	 * @param tileHeight height of the fetched tiles
+	 * @param cachePixels maximum number of pixels of the tiles kept in the
+	 *          cache; the most recently used tile is kept regardless
+	 */
+	public TiledROIMeasurer(final TileSource source, final int sizeX,
+		final int sizeY, final int tileWidth, final int tileHeight,
+		final long cachePixels)
+	{
+		if (sizeX <= 0 || sizeY <= 0) throw new IllegalArgumentException(
+			"Invalid plane size: " + sizeX + " x " + sizeY);
+		if (tileWidth <= 0 || tileHeight <= 0) throw new IllegalArgumentException(
+			"Invalid tile size: " + tileWidth + " x " + tileHeight);
+		if (cachePixels < 0) throw new IllegalArgumentException(
+			"Invalid cache size: " + cachePixels);
+		this.source = source;
+		plane = new FinalInterval(sizeX, sizeY);
+		this.tileWidth = tileWidth;
+		this.tileHeight = tileHeight;
+		tilesPerRow = (sizeX + tileWidth - 1) / tileWidth;
+		this.cachePixels = cachePixels;
+		cache = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	/**
+	 * Measures the given ROIs, such as those found by
+	 * {@link ROIUtils#collectROITreeNodes}. Only the shapes of each ROI on the
+	 * given plane are measured; as in OMERO, -1 denotes the entire axis.
+	 *
+	 * @param rois ROIs to measure
+	 * @param z Z position of the plane
+	 * @param t T position of the plane
+	 * @param c C position of the plane
+	 * @param statistics creates the statistics accumulating the pixels of each
+	 *          ROI
+	 * @return the statistics of each ROI, in the order of {@code rois}
+	 * @throws OMEROException if a tile cannot be fetched
+	 */
+	public List<ROIStatistics> measure(final List<? extends TreeNode<?>> rois,
+		final int z, final int t, final int c,
+		final Supplier<ROIStatistics> statistics) throws OMEROException
+	{
+		final List<List<MaskPredicate<?>>> masks = new ArrayList<>(rois.size());
+		final Interval[] bounds = new Interval[rois.size()];
+		final List<Integer> order = new ArrayList<>(rois.size());
+		for (int i = 0; i < rois.size(); i++) {
+			final List<MaskPredicate<?>> m = new ArrayList<>();
+			ROIRasterizer.collectMasks(rois.get(i), z, t, c, m);
+			masks.add(m);
+			bounds[i] = union(m);
+			order.add(i);
+		}
+		order.sort(Comparator.comparingLong((Integer i) -> bounds[i] == null
+			? Long.MAX_VALUE : tile(bounds[i].min(0), bounds[i].min(1))));
+
+		final ROIStatistics[] results = new ROIStatistics[rois.size()];
+		for (final int i : order) {
+			results[i] = statistics.get();
+			if (bounds[i] != null) measure(masks.get(i), bounds[i], results[i]);
+		}
+		final List<ROIStatistics> list = new ArrayList<>(results.length);
+		for (final ROIStatistics r : results)
+			list.add(r);
+		return list;
+	}
+
+	/** Gets the number of tiles fetched so far. */
+	public long tileFetches() {
+		return tileFetches;
+	}
+
+	/**
+	 * Decodes the pixel values of a plane or tile, as returned by OMERO in big
+	 * endian byte order.
+	 *
+	 * @param bytes the raw pixel data
+	 * @param pixelType the OMERO pixel type, e.g. {@code uint16}
+	 * @param count the number of pixels
+	 * @return the pixel values
+	 */
+	public static double[] decode(final byte[] bytes, final String pixelType,
+		final int count)
+	{
+		final double[] values = new double[count];
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		final int type = FormatTools.pixelTypeFromString(pixelType);
+		final int needed = type == FormatTools.BIT ? (count + 7) / 8 : count *
+			FormatTools.getBytesPerPixel(type);
+		if (bytes.length < needed) throw new IllegalArgumentException("Expected " +
+			needed + " bytes of " + pixelType + " pixels, but got " + bytes.length);
+		for (int i = 0; i < count; i++) {
+			switch (type) {
+				case FormatTools.BIT:
+					values[i] = (bytes[i >>> 3] >>> (7 - (i & 7))) & 1;
+					break;
+				case FormatTools.INT8:
+					values[i] = buffer.get();
+					break;
+				case FormatTools.UINT8:
+					values[i] = buffer.get() & 0xff;
+					break;
+				case FormatTools.INT16:
+					values[i] = buffer.getShort();
+					break;
+				case FormatTools.UINT16:
+					values[i] = buffer.getShort() & 0xffff;
+					break;
+				case FormatTools.INT32:
+					values[i] = buffer.getInt();
+					break;
+				case FormatTools.UINT32:
+					values[i] = buffer.getInt() & 0xffffffffL;
+					break;
+				case FormatTools.FLOAT:
+					values[i] = buffer.getFloat();
+					break;
+				case FormatTools.DOUBLE:
+					values[i] = buffer.getDouble();
+					break;
+				default:
+					throw new IllegalArgumentException("Unsupported pixel type: " +
+						pixelType);
+			}
+		}
+		return values;
+	}
+
+	// -- Helper methods --
+
+	/** Gets the union of the bounds of the given masks within the plane. */
+	private Interval union(final List<MaskPredicate<?>> masks) {
+		long minX = Long.MAX_VALUE, minY = Long.MAX_VALUE;
+		long maxX = Long.MIN_VALUE, maxY = Long.MIN_VALUE;
+		for (final MaskPredicate<?> m : masks) {
+			final Interval b = ROIRasterizer.bounds(m, plane);
+			if (b == null) continue;
+			minX = Math.min(minX, b.min(0));
+			minY = Math.min(minY, b.min(1));
+			maxX = Math.max(maxX, b.max(0));
+			maxY = Math.max(maxY, b.max(1));
+		}
+		if (minX > maxX) return null;
+		return new FinalInterval(new long[] { minX, minY }, new long[] { maxX,
+			maxY });
+	}
+
+	private void measure(final List<MaskPredicate<?>> masks,
+		final Interval bounds, final ROIStatistics stats) throws OMEROException
+	{
+		final List<long[]> spans = new ArrayList<>();
+		for (final MaskPredicate<?> m : masks) {
+			ROIRasterizer.rasterize(m, bounds, (y, minX, maxX) -> spans.add(
+				new long[] { y, minX, maxX }));
+		}
+		spans.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long
+			.compare(a[1], b[1]));
+
+		// Merge overlapping spans, so each pixel is visited once
+		int i = 0;
+		while (i < spans.size()) {
+			final long y = spans.get(i)[0];
+			final long minX = spans.get(i)[1];
+			long maxX = spans.get(i)[2];
+			for (i++; i < spans.size() && spans.get(i)[0] == y && spans.get(
+				i)[1] <= maxX + 1; i++)
+			{
+				maxX = Math.max(maxX, spans.get(i)[2]);
+			}
+			visit(y, minX, maxX, stats);
+		}
+	}
+
+	/** Adds the pixels from {@code minX} to {@code maxX} in row {@code y}. */
+	private void visit(final long y, final long minX, final long maxX,
+		final ROIStatistics stats) throws OMEROException
+	{
+		final long ty = y / tileHeight;
+		long x = minX;
+		while (x <= maxX) {
+			final long tx = x / tileWidth;
+			final long x0 = tx * tileWidth;
+			final int w = (int) Math.min(tileWidth, plane.dimension(0) - x0);
+			final double[] tile = tile(tx, ty);
+			final long end = Math.min(maxX, x0 + w - 1);
+			final int row = (int) (y - ty * tileHeight) * w;
+			for (; x <= end; x++)
+				stats.add(tile[row + (int) (x - x0)]);
+		}
+	}
+
+	/** Gets the index of the tile containing the given pixel. */
+	private long tile(final long x, final long y) {
+		return y / tileHeight * tilesPerRow + x / tileWidth;
+	}
+
+	/** Gets the given tile, fetching it if it is not cached. */
+	private double[] tile(final long tx, final long ty) throws OMEROException {
+		final long key = ty * tilesPerRow + tx;
+		double[] values = cache.get(key);
+		if (values != null) return values;
+
+		final int x = (int) (tx * tileWidth);
+		final int y = (int) (ty * tileHeight);
+		final int w = (int) Math.min(tileWidth, plane.dimension(0) - x);
+		final int h = (int) Math.min(tileHeight, plane.dimension(1) - y);
+		values = source.tile(x, y, w, h);
+		if (values.length < w * h) throw new IllegalStateException("Expected " +
+			w * h + " values for tile at " + x + ", " + y + ", but got " +
+			values.length);
+		tileFetches++;
+		cache.put(key, values);
+		cachedPixels += values.length;
+		final Iterator<double[]> eldest = cache.values().iterator();
+		while (cachedPixels > cachePixels && cache.size() > 1) {
+			cachedPixels -= eldest.next().length;
+			eldest.remove();
+		}
+		return values;
+	}
+}
@@ -26,6 +26,7 @@
 package net.imagej.omero.roi.ellipse;
 
 import net.imagej.omero.roi.AbstractOMERORealMaskRealInterval;
+import net.imglib2.RealLocalizable;
 import net.imglib2.roi.BoundaryType;
 import net.imglib2.roi.geom.real.SuperEllipsoid;
 import net.imglib2.roi.util.AbstractRealMaskPoint;
@@ -43,10 +44,27 @@ public abstract class AbstractOMEROEllipse extends
 	AbstractOMERORealMaskRealInterval<EllipseData> implements OMEROEllipse
 {
 
+	private EllipseKernel kernel;
+
 	public AbstractOMEROEllipse(final EllipseData shape, final BoundaryType bt) {
 		super(shape, bt);
 	}
 
+	@Override
+	public EllipseKernel kernel() {
+		EllipseKernel k = kernel;
+		if (k == null || !k.isFor(shape)) {
+			k = new EllipseKernel(shape, boundaryType() == BoundaryType.CLOSED);
+			kernel = k;
+		}
+		return k;
+	}
+
+	@Override
+	public boolean test(final RealLocalizable l) {
+		return kernel().test(l.getDoublePosition(0), l.getDoublePosition(1));
+	}
+
 	@Override
 	public RealLocalizableRealPositionable center() {
 		final double x = shape.getX(), y = shape.getY();
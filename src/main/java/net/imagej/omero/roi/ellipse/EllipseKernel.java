@@ -0,0 +1,116 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi.ellipse;
+
+import net.imagej.omero.roi.ShapeKernel;
+
+import omero.gateway.model.EllipseData;
+import omero.model.Ellipse;
+
+/**
+ * {@link ShapeKernel} of an {@link OMEROEllipse}, with the center and inverse
+ * radii of the ellipse.
+ * <p>
+ * Points are tested by multiplying with the inverse radii. Since that may
+ * differ from dividing by the radii in the last bits, points within a small
+ * margin of the boundary are tested again by dividing, so results are the same
+ * as those of the wrapped shape.
+ * </p>
+ *
+ * @author agent
+ */
+public final class EllipseKernel implements ShapeKernel {
+
+	/** Margin around the boundary in which points are tested exactly. */
+	private static final double EPSILON = 1e-12;
+
+	private final Object sx, sy, srx, sry;
+	private final boolean closed;
+	private final double cx, cy, rx, ry, irx, iry;
+
+	/**
+	 * Creates the kernel of the current values of the given shape.
+	 *
+	 * @param shape the ellipse to snapshot
+	 * @param closed whether points on the boundary are contained
+	 */
+	public EllipseKernel(final EllipseData shape, final boolean closed) {
+		final Ellipse e = (Ellipse) shape.asIObject();
+		sx = e.getX();
+		sy = e.getY();
+		srx = e.getRadiusX();
+		sry = e.getRadiusY();
+		this.closed = closed;
+		cx = shape.getX();
+		cy = shape.getY();
+		rx = shape.getRadiusX();
+		ry = shape.getRadiusY();
+		irx = 1 / rx;
+		iry = 1 / ry;
+	}
+
+	/**
+	 * Checks if this kernel was created for the current values of the given
+	 * shape, by comparing the identity of the shape's parameters.
+	 */
+	public boolean isFor(final EllipseData shape) {
+		final Ellipse e = (Ellipse) shape.asIObject();
+		return e.getX() == sx && e.getY() == sy && e.getRadiusX() == srx && e
+			.getRadiusY() == sry;
+	}
+
+	@Override
+	public boolean test(final double x, final double y) {
+		final double dx = (x - cx) * irx;
+		final double dy = (y - cy) * iry;
+		final double d = dx * dx + dy * dy;
+		if (d < 1 - EPSILON) return true;
+		if (d > 1 + EPSILON) return false;
+		return exact(x, y);
+	}
+
+	@Override
+	public void test(final double[] xs, final double[] ys, final long[] bits) {
+		ShapeKernel.checkBatch(xs, ys, bits);
+		for (int w = 0; w << 6 < xs.length; w++) {
+			final int end = Math.min(xs.length, (w + 1) << 6);
+			long word = 0;
+			for (int i = w << 6; i < end; i++)
+				if (test(xs[i], ys[i])) word |= 1L << i;
+			bits[w] = word;
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Same test as {@link ClosedOMEROEllipse} and {@link OpenOMEROEllipse}. */
+	private boolean exact(final double x, final double y) {
+		final double dx = (x - cx) / rx;
+		final double dy = (y - cy) / ry;
+		final double d = dx * dx + dy * dy;
+		return closed ? d <= 1.0 : d < 1.0;
+	}
+}
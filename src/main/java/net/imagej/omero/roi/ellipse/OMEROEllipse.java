@@ -40,6 +40,12 @@ public interface OMEROEllipse extends OMERORealMaskRealInterval<EllipseData>,
 	WritableEllipsoid
 {
 
+	/**
+	 * Gets the cached kernel of the current center and radii, which is
+	 * recreated whenever they change in the wrapped shape.
+	 */
+	EllipseKernel kernel();
+
 	@Override
 	default double exponent() {
 		return 2;
@@ -25,7 +25,6 @@
 
 package net.imagej.omero.roi.ellipse;
 
-import net.imglib2.RealLocalizable;
 import net.imglib2.roi.BoundaryType;
 
 import omero.gateway.model.EllipseData;
@@ -41,14 +40,4 @@ public class OpenOMEROEllipse extends AbstractOMEROEllipse {
 		super(shape, BoundaryType.OPEN);
 	}
 
-	@Override
-	public boolean test(final RealLocalizable l) {
-		final double distanceX = (l.getDoublePosition(0) - shape.getX()) / shape
-			.getRadiusX();
-		final double distanceY = (l.getDoublePosition(1) - shape.getY()) / shape
-			.getRadiusY();
-
-		return (distanceX * distanceX + distanceY * distanceY) < 1.0;
-	}
-
 }
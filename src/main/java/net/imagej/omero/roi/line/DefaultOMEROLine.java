@@ -42,10 +42,22 @@ public class DefaultOMEROLine extends
 	AbstractOMERORealMaskRealInterval<LineData> implements OMEROLine
 {
 
+	private LineKernel kernel;
+
 	public DefaultOMEROLine(final LineData shape) {
 		super(shape, BoundaryType.CLOSED);
 	}
 
+	@Override
+	public LineKernel kernel() {
+		LineKernel k = kernel;
+		if (k == null || !k.isFor(shape)) {
+			k = new LineKernel(shape);
+			kernel = k;
+		}
+		return k;
+	}
+
 	@Override
 	public double realMin(final int d) {
 		if (d < 0 || d > 1) throw new IllegalArgumentException(
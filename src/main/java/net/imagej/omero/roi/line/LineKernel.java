@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi.line;
+
+import net.imagej.omero.roi.ShapeKernel;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPoint;
+import net.imglib2.roi.geom.GeomMaths;
+
+import omero.gateway.model.LineData;
+import omero.model.Line;
+
+/**
+ * {@link ShapeKernel} of an {@link OMEROLine}, with the endpoints and bounds
+ * of the line.
+ * <p>
+ * Points outside the bounds are rejected using the primitive fields. The
+ * remaining points are tested with {@link GeomMaths#lineContains}, so results
+ * are the same as those of the wrapped shape.
+ * </p>
+ *
+ * @author agent
+ */
+public final class LineKernel implements ShapeKernel {
+
+	/**
+	 * Margin around the bounds which cannot contain points of the line, covering
+	 * the tolerance of {@link GeomMaths#lineContains}.
+	 */
+	private static final double EPSILON = 1e-9;
+
+	private final Object sx1, sy1, sx2, sy2;
+	private final double[] one, two;
+	private final double minX, minY, maxX, maxY;
+
+	/**
+	 * Creates the kernel of the current values of the given shape.
+	 *
+	 * @param shape the line to snapshot
+	 */
+	public LineKernel(final LineData shape) {
+		final Line l = (Line) shape.asIObject();
+		sx1 = l.getX1();
+		sy1 = l.getY1();
+		sx2 = l.getX2();
+		sy2 = l.getY2();
+		one = new double[] { shape.getX1(), shape.getY1() };
+		two = new double[] { shape.getX2(), shape.getY2() };
+		final double x0 = Math.min(one[0], two[0]), x1 = Math.max(one[0], two[0]);
+		final double y0 = Math.min(one[1], two[1]), y1 = Math.max(one[1], two[1]);
+		minX = x0 - margin(x0);
+		minY = y0 - margin(y0);
+		maxX = x1 + margin(x1);
+		maxY = y1 + margin(y1);
+	}
+
+	/**
+	 * Checks if this kernel was created for the current values of the given
+	 * shape, by comparing the identity of the shape's parameters.
+	 */
+	public boolean isFor(final LineData shape) {
+		final Line l = (Line) shape.asIObject();
+		return l.getX1() == sx1 && l.getY1() == sy1 && l.getX2() == sx2 && l
+			.getY2() == sy2;
+	}
+
+	/**
+	 * Tests if the given point lies on the line, with the same results as
+	 * {@link GeomMaths#lineContains}.
+	 */
+	public boolean test(final RealLocalizable l) {
+		return !rejects(l.getDoublePosition(0), l.getDoublePosition(1)) &&
+			GeomMaths.lineContains(one, two, l, 2);
+	}
+
+	@Override
+	public boolean test(final double x, final double y) {
+		return !rejects(x, y) && GeomMaths.lineContains(one, two, new RealPoint(x,
+			y), 2);
+	}
+
+	@Override
+	public void test(final double[] xs, final double[] ys, final long[] bits) {
+		ShapeKernel.checkBatch(xs, ys, bits);
+		final RealPoint p = new RealPoint(2);
+		for (int w = 0; w << 6 < xs.length; w++) {
+			final int end = Math.min(xs.length, (w + 1) << 6);
+			long word = 0;
+			for (int i = w << 6; i < end; i++) {
+				if (rejects(xs[i], ys[i])) continue;
+				p.setPosition(xs[i], 0);
+				p.setPosition(ys[i], 1);
+				if (GeomMaths.lineContains(one, two, p, 2)) word |= 1L << i;
+			}
+			bits[w] = word;
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Checks if the given point cannot lie on the line. */
+	private boolean rejects(final double x, final double y) {
+		return x < minX || x > maxX || y < minY || y > maxY;
+	}
+
+	private static double margin(final double value) {
+		return EPSILON * (1 + Math.abs(value));
+	}
+}
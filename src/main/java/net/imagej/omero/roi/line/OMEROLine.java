@@ -27,7 +27,6 @@ package net.imagej.omero.roi.line;
 
 import net.imagej.omero.roi.OMERORealMaskRealInterval;
 import net.imglib2.RealLocalizable;
-import net.imglib2.roi.geom.GeomMaths;
 import net.imglib2.roi.geom.real.Line;
 import net.imglib2.roi.geom.real.WritableLine;
 
@@ -42,10 +41,14 @@ public interface OMEROLine extends OMERORealMaskRealInterval<LineData>,
 	WritableLine
 {
 
+	/**
+	 * Gets the cached kernel of the current endpoints, which is recreated
+	 * whenever the endpoints of the wrapped shape change.
+	 */
+	LineKernel kernel();
+
 	@Override
 	default boolean test(final RealLocalizable l) {
-		return GeomMaths.lineContains(new double[] { getShape().getX1(), getShape()
-			.getY1() }, new double[] { getShape().getX2(), getShape().getY2() }, l,
-			2);
+		return kernel().test(l);
 	}
 }
@@ -42,6 +42,9 @@ public class DefaultOMEROMask extends
 	AbstractOMERORealMaskRealInterval<MaskData> implements OMEROMask
 {
 
+	/** Packed words of the mask bytes they were decoded from. */
+	private volatile Decoded decoded;
+
 	public DefaultOMEROMask(final MaskData shape) {
 		super(shape, BoundaryType.UNSPECIFIED);
 	}
@@ -63,9 +66,7 @@ public class DefaultOMEROMask extends
 		y = y - Math.round(shape.getY());
 
 		final int bitLocation = (int) (y * shape.getWidth() + x);
-		final byte bit = shape.getBit(shape.getMask(), bitLocation);
-
-		return bit == 1;
+		return PackedMasks.get(words(), bitLocation);
 	}
 
 	@Override
@@ -80,6 +81,24 @@ public class DefaultOMEROMask extends
 		return shape.getY() + shape.getHeight();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The words are decoded again only if the bytes of the wrapped shape have
+	 * been replaced. Note that modifying the bytes in place is not detected.
+	 * </p>
+	 */
+	@Override
+	public long[] words() {
+		final byte[] bytes = shape.getMask();
+		Decoded d = decoded;
+		if (d == null || d.bytes != bytes) {
+			d = new Decoded(bytes, PackedMasks.pack(bytes));
+			decoded = d;
+		}
+		return d.words;
+	}
+
 	@Override
 	public int hashCode() {
 		// FIXME - what to do here?
@@ -98,4 +117,17 @@ public class DefaultOMEROMask extends
 			1) + "\nMax: " + realMax(0) + ", " + realMax(1);
 	}
 
+	// -- Helper classes --
+
+	private static final class Decoded {
+
+		private final byte[] bytes;
+		private final long[] words;
+
+		private Decoded(final byte[] bytes, final long[] words) {
+			this.bytes = bytes;
+			this.words = words;
+		}
+	}
+
 }
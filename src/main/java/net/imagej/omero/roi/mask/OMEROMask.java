@@ -37,4 +37,11 @@ import omero.gateway.model.MaskData;
  */
 public interface OMEROMask extends OMERORealMaskRealInterval<MaskData> {
 
+	/**
+	 * Gets the bits of the wrapped mask packed into words, as laid out by
+	 * {@link PackedMasks}. The returned array must not be modified.
+	 */
+	default long[] words() {
+		return PackedMasks.pack(getShape().getMask());
+	}
 }
@@ -0,0 +1,230 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi.mask;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.roi.MaskInterval;
+import net.imglib2.roi.mask.integer.RandomAccessibleIntervalAsMaskInterval;
+import net.imglib2.transform.integer.MixedTransform;
+import net.imglib2.type.BooleanType;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.util.Util;
+import net.imglib2.view.IntervalView;
+import net.imglib2.view.MixedTransformView;
+import net.imglib2.view.Views;
+
+/**
+ * Utility class for working with masks packed into {@code long} words.
+ * <p>
+ * The packed layout matches the bytes of an OMERO {@code MaskData}: pixels are
+ * stored in row-major order, one bit each, most significant bit first. The
+ * bytes are packed big-endian into words, so bit {@code i} of a mask is the
+ * {@code (i % 64)}th most significant bit of word {@code i / 64}.
+ * </p>
+ *
+ * @author agent
+ */
+public final class PackedMasks {
+
+	private PackedMasks() {
+		// NB: Prevent instantiation of utility class.
+	}
+
+	/** Gets the number of words needed to store the given number of bits. */
+	public static int wordCount(final long bits) {
+		final long words = (bits + 63) >>> 6;
+		if (words > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Mask too large: " + bits + " bits");
+		}
+		return (int) words;
+	}
+
+	/** Gets bit {@code bit} of the given packed mask. */
+	public static boolean get(final long[] words, final long bit) {
+		return (words[(int) (bit >>> 6)] << (bit & 63)) < 0;
+	}
+
+	/**
+	 * Gets the index of the first set bit of the given packed mask from
+	 * {@code from} (inclusive) to {@code to} (exclusive), or {@code to} if there
+	 * is none. Bits beyond the end of the words are clear.
+	 */
+	public static long nextSetBit(final long[] words, long from,
+		final long to)
+	{
+		while (from < to) {
+			final int w = (int) (from >>> 6);
+			if (w >= words.length) return to;
+			final long word = words[w] << (from & 63);
+			if (word != 0) return Math.min(from + Long.numberOfLeadingZeros(word),
+				to);
+			from = (from | 63) + 1;
+		}
+		return to;
+	}
+
+	/**
+	 * Gets the index of the first clear bit of the given packed mask from
+	 * {@code from} (inclusive) to {@code to} (exclusive), or {@code to} if there
+	 * is none. Bits beyond the end of the words are clear.
+	 */
+	public static long nextClearBit(final long[] words, long from,
+		final long to)
+	{
+		while (from < to) {
+			final int w = (int) (from >>> 6);
+			if (w >= words.length) return from;
+			final long word = ~words[w] << (from & 63);
+			if (word != 0) return Math.min(from + Long.numberOfLeadingZeros(word),
+				to);
+			from = (from | 63) + 1;
+		}
+		return to;
+	}
+
+	/** Packs the bytes of an OMERO {@code MaskData} into words. */
+	public static long[] pack(final byte[] bytes) {
+		final long[] words = new long[(bytes.length + 7) >>> 3];
+		for (int i = 0; i < bytes.length; i++)
+			words[i >>> 3] |= (bytes[i] & 0xffL) << (56 - ((i & 7) << 3));
+		return words;
+	}
+
+	/**
+	 * Unpacks the first {@code byteCount} bytes of the given packed mask, in the
+	 * layout of an OMERO {@code MaskData}.
+	 */
+	public static byte[] unpack(final long[] words, final int byteCount) {
+		final byte[] bytes = new byte[byteCount];
+		for (int i = 0; i < byteCount; i++)
+			bytes[i] = (byte) (words[i >>> 3] >>> (56 - ((i & 7) << 3)));
+		return bytes;
+	}
+
+	/**
+	 * Packs the given two dimensional mask into words. Bit-typed
+	 * {@link ArrayImg}s, and translated views of them, are packed a word at a
+	 * time; other images are read in flat iteration order, without any
+	 * per-pixel positioning.
+	 */
+	public static <B extends BooleanType<B>> long[] pack(
+		final RandomAccessibleInterval<B> rai)
+	{
+		final long bits = rai.dimension(0) * rai.dimension(1);
+		final long[] words = new long[wordCount(bits)];
+
+		final long[] source = bitStorage(rai);
+		if (source != null) {
+			// NB: ArrayImg<BitType> stores its bits least significant bit first.
+			for (int i = 0; i < words.length; i++)
+				words[i] = Long.reverse(source[i]);
+			final int tail = (int) (bits & 63);
+			if (tail != 0) words[words.length - 1] &= -1L << (64 - tail);
+			return words;
+		}
+
+		// NB: Views.flatIterable returns the image itself if it already iterates
+		// in flat order, so e.g. ArrayImgs of other types use their own cursor.
+		final Cursor<B> c = Views.flatIterable(rai).cursor();
+		long word = 0;
+		for (long i = 0; i < bits; i++) {
+			word <<= 1;
+			if (c.next().get()) word |= 1;
+			if ((i & 63) == 63) {
+				words[(int) (i >>> 6)] = word;
+				word = 0;
+			}
+		}
+		final int tail = (int) (bits & 63);
+		if (tail != 0) words[words.length - 1] = word << (64 - tail);
+		return words;
+	}
+
+	/**
+	 * Wraps the given packed mask as a {@link MaskInterval}.
+	 *
+	 * @param words The packed mask
+	 * @param x Minimum x coordinate of the mask
+	 * @param y Minimum y coordinate of the mask
+	 * @param width Width of the mask, in pixels
+	 * @param height Height of the mask, in pixels
+	 */
+	public static MaskInterval toMaskInterval(final long[] words, final long x,
+		final long y, final long width, final long height)
+	{
+		final long[] lsbFirst = new long[wordCount(width * height)];
+		for (int i = 0; i < lsbFirst.length && i < words.length; i++)
+			lsbFirst[i] = Long.reverse(words[i]);
+		final ArrayImg<BitType, LongArray> img = ArrayImgs.bits(new LongArray(
+			lsbFirst), width, height);
+		return new RandomAccessibleIntervalAsMaskInterval<>(Views.translate(img, x,
+			y));
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Gets the storage array of a bit-typed {@link ArrayImg}, or {@code null} if
+	 * the given image is not one. Translated views of a whole {@link ArrayImg},
+	 * such as those created by {@link #toMaskInterval}, are unwrapped.
+	 */
+	private static long[] bitStorage(final RandomAccessibleInterval<?> rai) {
+		if (!(Util.getTypeFromInterval(rai) instanceof BitType)) return null;
+
+		RandomAccessible<?> source = rai;
+		final long[] offset = new long[rai.numDimensions()];
+		if (rai instanceof IntervalView) {
+			source = ((IntervalView<?>) rai).getSource();
+			rai.min(offset);
+			if (source instanceof MixedTransformView) {
+				final MixedTransform t = ((MixedTransformView<?>) source)
+					.getTransformToSource();
+				if (t.numSourceDimensions() != offset.length || t
+					.numTargetDimensions() != offset.length) return null;
+				for (int d = 0; d < offset.length; d++) {
+					if (t.getComponentZero(d) || t.getComponentMapping(d) != d || t
+						.getComponentInversion(d)) return null;
+					offset[d] += t.getTranslation(d);
+				}
+				source = ((MixedTransformView<?>) source).getSource();
+			}
+		}
+		if (!(source instanceof ArrayImg)) return null;
+
+		final ArrayImg<?, ?> img = (ArrayImg<?, ?>) source;
+		for (int d = 0; d < offset.length; d++) {
+			if (offset[d] != 0 || img.dimension(d) != rai.dimension(d)) return null;
+		}
+		final Object access = img.update(null);
+		if (!(access instanceof LongArray)) return null;
+		return ((LongArray) access).getCurrentStorageArray();
+	}
+}
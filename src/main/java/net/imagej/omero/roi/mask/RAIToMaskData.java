@@ -28,7 +28,6 @@ package net.imagej.omero.roi.mask;
 import java.lang.reflect.Type;
 
 import net.imagej.omero.roi.ROIConverters;
-import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.type.BooleanType;
 import net.imglib2.util.Util;
@@ -115,45 +114,20 @@ public class RAIToMaskData extends
 	private <B extends BooleanType<B>> MaskData toMaskData(
 		final RandomAccessibleInterval<?> src)
 	{
-
 		@SuppressWarnings("unchecked")
 		final RandomAccessibleInterval<B> rai = (RandomAccessibleInterval<B>) src;
 
-		final long xd = rai.dimension(0) - 1;
-		final long yd = rai.dimension(1) - 1;
-		long numElements = (xd * yd) / 8;
-		if ((xd * yd) % 8 != 0) numElements++;
-		if (numElements > Integer.MAX_VALUE) throw new IllegalArgumentException("");
-
-		// Don't use Cursor, since iteration order may vary
-		final byte[] data = new byte[(int) numElements];
-		final RandomAccess<B> ra = rai.randomAccess();
-		byte b = 0;
-		for (int y = 0; y < yd; y++) {
-			for (int x = 0; x < xd; x++) {
-				ra.setPosition(x + rai.min(0), 0);
-				ra.setPosition(y + rai.min(1), 1);
-
-				b = (byte) (b << 1);
-				b += ra.get().get() ? 1 : 0;
-				if ((y * xd + x + 1) % 8 == 0) {
-					data[(int) (((y * xd + x + 1) / 8) - 1)] = b;
-					b = 0;
-				}
-			}
-		}
-
-		// append zeros if number of elements is not a factor of 8
-		if ((xd * yd) % 8 != 0) {
-			long count = xd * yd;
-			while (count % 8 != 0) {
-				b = (byte) (b << 1);
-				count++;
-			}
-			data[data.length - 1] = b;
+		final long width = rai.dimension(0);
+		final long height = rai.dimension(1);
+		final long byteCount = (width * height + 7) / 8;
+		if (byteCount > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Mask too large: " + width + " x " +
+				height);
 		}
 
-		return new MaskData(rai.min(0), rai.min(1), xd, yd, data);
+		final byte[] data = PackedMasks.unpack(PackedMasks.pack(rai),
+			(int) byteCount);
+		return new MaskData(rai.min(0), rai.min(1), width, height, data);
 	}
 
 }
@@ -26,12 +26,12 @@
 package net.imagej.omero.roi.point;
 
 import java.lang.reflect.Type;
-import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
 import net.imagej.omero.OMEROService;
 import net.imagej.omero.roi.ROIConverters;
+import net.imagej.omero.roi.ROIUtils;
 import net.imglib2.RealLocalizable;
 import net.imglib2.roi.BoundaryType;
 import net.imglib2.roi.geom.real.RealPointCollection;
@@ -141,37 +141,27 @@ public class TreeNodeRPCToROIData extends
 	}
 
 	private void updatePoints(final ROIData current, final ROIData prev) {
-		final List<ShapeData> currentPoints = new ArrayList<>();
-		final List<ShapeData> prevPoints = new ArrayList<>();
-		final Iterator<List<ShapeData>> currentItr = current.getIterator();
-		while (currentItr.hasNext())
-			currentPoints.addAll(currentItr.next());
-		final Iterator<List<ShapeData>> prevItr = prev.getIterator();
-		while (prevItr.hasNext())
-			prevPoints.addAll(prevItr.next());
-		final List<ShapeData> currentCopy = new ArrayList<>(currentPoints);
-		final List<ShapeData> prevCopy = new ArrayList<>(prevPoints);
+		final List<ShapeData> currentPoints = ROIUtils.shapes(current);
+		final List<ShapeData> prevPoints = ROIUtils.shapes(prev);
 
 		// If there's an equivalent point, set the ID
-		for (final ShapeData point : currentPoints) {
-			for (final ShapeData prevPoint : prevPoints) {
-				if (ROIConverters.shapeDataEquals(point, prevPoint)) {
-					point.setId(prevPoint.getId());
-					currentCopy.remove(point);
-					prevCopy.remove(point);
-					break;
-				}
-			}
+		final int[] matches = ROIUtils.matchShapes(currentPoints, prevPoints);
+		final boolean[] used = new boolean[prevPoints.size()];
+		for (int i = 0; i < matches.length; i++) {
+			if (matches[i] < 0) continue;
+			currentPoints.get(i).setId(prevPoints.get(matches[i]).getId());
+			used[matches[i]] = true;
 		}
 
-		if (currentCopy.isEmpty()) return;
-
 		// If there's any remaining non-equivalent points, set the remaining IDs.
 		// If not leave them alone, and they'll be uploaded as new PointData
-		final Iterator<ShapeData> prevPointsItr = prevPoints.iterator();
-		for (final ShapeData point : currentCopy) {
-			if (!prevPointsItr.hasNext()) break;
-			point.setId(prevPointsItr.next().getId());
+		int next = 0;
+		for (int i = 0; i < matches.length; i++) {
+			if (matches[i] >= 0) continue;
+			while (next < used.length && used[next])
+				next++;
+			if (next == used.length) break;
+			currentPoints.get(i).setId(prevPoints.get(next++).getId());
 		}
 	}
 
@@ -30,7 +30,9 @@ import net.imglib2.roi.BoundaryType;
 import net.imglib2.roi.geom.real.Polygon2D;
 import net.imglib2.roi.geom.real.Polyshape;
 
+import omero.RString;
 import omero.gateway.model.PolygonData;
+import omero.model.Polygon;
 
 /**
  * Base class for {@link OMEROPolygon}.
@@ -42,10 +44,23 @@ public abstract class AbstractOMEROPolygon extends
 	AbstractOMERORealMaskRealInterval<PolygonData> implements OMEROPolygon
 {
 
+	private PolyshapeGeometry geometry;
+
 	public AbstractOMEROPolygon(final PolygonData shape, final BoundaryType bt) {
 		super(shape, bt);
 	}
 
+	@Override
+	public PolyshapeGeometry geometry() {
+		final RString points = ((Polygon) shape.asIObject()).getPoints();
+		PolyshapeGeometry g = geometry;
+		if (g == null || !g.isFor(points)) {
+			g = new PolyshapeGeometry(points, shape.getPoints());
+			geometry = g;
+		}
+		return g;
+	}
+
 	@Override
 	public int hashCode() {
 		return Polygon2D.hashCode(this);
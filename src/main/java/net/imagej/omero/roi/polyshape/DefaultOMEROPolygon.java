@@ -44,7 +44,8 @@ public class DefaultOMEROPolygon extends AbstractOMEROPolygon {
 
 	@Override
 	public boolean test(final RealLocalizable l) {
-		return Polyshapes.pnpoly(shape.getPoints(), l);
+		return geometry().contains(l.getDoublePosition(0), l.getDoublePosition(
+			1));
 	}
 
 }
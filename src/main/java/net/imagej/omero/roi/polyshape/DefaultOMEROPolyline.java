@@ -30,6 +30,7 @@ import net.imglib2.roi.BoundaryType;
 import net.imglib2.roi.geom.real.Polyline;
 import net.imglib2.roi.geom.real.Polyshape;
 
+import omero.RString;
 import omero.gateway.model.PolylineData;
 
 /**
@@ -41,10 +42,24 @@ public class DefaultOMEROPolyline extends
 	AbstractOMERORealMaskRealInterval<PolylineData> implements OMEROPolyline
 {
 
+	private PolyshapeGeometry geometry;
+
 	public DefaultOMEROPolyline(final PolylineData shape) {
 		super(shape, BoundaryType.CLOSED);
 	}
 
+	@Override
+	public PolyshapeGeometry geometry() {
+		final RString points = ((omero.model.Polyline) shape.asIObject())
+			.getPoints();
+		PolyshapeGeometry g = geometry;
+		if (g == null || !g.isFor(points)) {
+			g = new PolyshapeGeometry(points, shape.getPoints());
+			geometry = g;
+		}
+		return g;
+	}
+
 	@Override
 	public int hashCode() {
 		return Polyline.hashCode(this);
@@ -29,7 +29,6 @@ import java.awt.geom.Point2D;
 import java.util.List;
 
 import net.imglib2.RealLocalizable;
-import net.imglib2.roi.geom.GeomMaths;
 import net.imglib2.roi.geom.real.Polyline;
 import net.imglib2.roi.geom.real.WritablePolyline;
 
@@ -56,21 +55,7 @@ public interface OMEROPolyline extends OMEROPolyshape<PolylineData>,
 
 	@Override
 	default boolean test(final RealLocalizable l) {
-		final double[] ptOne = new double[2];
-		final double[] ptTwo = new double[2];
-
-		for (int i = 1; i < getShape().getPoints().size(); i++) {
-			ptOne[0] = getShape().getPoints().get(i - 1).getX();
-			ptOne[1] = getShape().getPoints().get(i - 1).getY();
-
-			ptTwo[0] = getShape().getPoints().get(i).getX();
-			ptTwo[1] = getShape().getPoints().get(i).getY();
-
-			final boolean testLineContains = GeomMaths.lineContains(ptOne, ptTwo, l,
-				2);
-			if (testLineContains) return true;
-		}
-		return false;
+		return geometry().onEdge(l, false);
 	}
 
 }
@@ -53,9 +53,15 @@ public interface OMEROPolyshape<SD extends ShapeData> extends
 
 	void setPoints(List<Point2D.Double> points);
 
+	/**
+	 * Gets the cached geometry of the current points, which is recreated
+	 * whenever the points of the wrapped shape change.
+	 */
+	PolyshapeGeometry geometry();
+
 	@Override
 	default int numVertices() {
-		return getPoints().size();
+		return geometry().numVertices();
 	}
 
 	@Override
@@ -101,36 +107,12 @@ public interface OMEROPolyshape<SD extends ShapeData> extends
 
 	@Override
 	default double realMin(final int d) {
-		if (d < 0 || d > 1) throw new IllegalArgumentException(
-			"Invalid dimension: " + d);
-		final List<Point2D.Double> pts = getPoints();
-		double min = d == 0 ? pts.get(0).getX() : pts.get(0).getY();
-		for (int i = 1; i < pts.size(); i++) {
-			if (d == 0) {
-				if (pts.get(i).getX() < min) min = pts.get(i).getX();
-			}
-			else {
-				if (pts.get(i).getY() < min) min = pts.get(i).getY();
-			}
-		}
-		return min;
+		return geometry().realMin(d);
 	}
 
 	@Override
 	default double realMax(final int d) {
-		if (d < 0 || d > 1) throw new IllegalArgumentException(
-			"Invalid dimension: " + d);
-		final List<Point2D.Double> pts = getPoints();
-		double max = d == 0 ? pts.get(0).getX() : pts.get(0).getY();
-		for (int i = 1; i < pts.size(); i++) {
-			if (d == 0) {
-				if (pts.get(i).getX() > max) max = pts.get(i).getX();
-			}
-			else {
-				if (pts.get(i).getY() > max) max = pts.get(i).getY();
-			}
-		}
-		return max;
+		return geometry().realMax(d);
 	}
 
 }
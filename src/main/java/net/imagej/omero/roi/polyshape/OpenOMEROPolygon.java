@@ -43,7 +43,9 @@ public class OpenOMEROPolygon extends AbstractOMEROPolygon {
 
 	@Override
 	public boolean test(final RealLocalizable l) {
-		return Polyshapes.pnpolyWithBoundary(shape.getPoints(), l, false);
+		final PolyshapeGeometry g = geometry();
+		return !g.onEdge(l, true) && g.contains(l.getDoublePosition(0), l
+			.getDoublePosition(1));
 	}
 
 }
@@ -0,0 +1,246 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi.polyshape;
+
+import java.awt.geom.Point2D;
+import java.util.List;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.roi.geom.GeomMaths;
+
+/**
+ * Immutable vertex arrays and bounds of an {@link OMEROPolyshape}, used for
+ * its hit-testing and bounds instead of the boxed points of the wrapped shape.
+ * <p>
+ * A geometry is created for a specific value of the shape's points, see
+ * {@link #isFor(Object)}, so it can be discarded when the points change. Tests
+ * first reject points outside the bounding box. Polyshapes with many vertices
+ * additionally bucket their edges into horizontal slabs, so a test only visits
+ * the edges spanning the slab of the tested point.
+ * </p>
+ *
+ * @author agent
+ */
+public final class PolyshapeGeometry {
+
+	/** Minimum number of vertices for which edges are bucketed into slabs. */
+	private static final int SLAB_THRESHOLD = 64;
+
+	/**
+	 * Margin around bounds which cannot contain boundary points, covering the
+	 * tolerance of {@link GeomMaths#lineContains}.
+	 */
+	private static final double EPSILON = 1e-9;
+
+	private final Object source;
+	private final int n;
+	private final double[] xs, ys;
+	private final double minX, minY, maxX, maxY;
+
+	/** Edge {@code k} joins vertex {@code k} to {@code (k + 1) % n}. */
+	private final int[] slabStart, slabEdges;
+	private final double slabHeight;
+
+	/**
+	 * Creates the geometry of the given points.
+	 *
+	 * @param source the value of the shape's points which {@code points} was
+	 *          obtained from, compared by identity in {@link #isFor(Object)}
+	 * @param points the vertices of the polyshape
+	 */
+	public PolyshapeGeometry(final Object source,
+		final List<Point2D.Double> points)
+	{
+		this.source = source;
+		n = points.size();
+		xs = new double[n];
+		ys = new double[n];
+		double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+		double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < n; i++) {
+			final Point2D.Double p = points.get(i);
+			xs[i] = p.getX();
+			ys[i] = p.getY();
+			x0 = Math.min(x0, xs[i]);
+			y0 = Math.min(y0, ys[i]);
+			x1 = Math.max(x1, xs[i]);
+			y1 = Math.max(y1, ys[i]);
+		}
+		minX = x0;
+		minY = y0;
+		maxX = x1;
+		maxY = y1;
+
+		if (n < SLAB_THRESHOLD || !(maxY > minY)) {
+			slabStart = null;
+			slabEdges = null;
+			slabHeight = 0;
+			return;
+		}
+
+		// Bucket each edge into every slab its Y range overlaps
+		final int slabs = (int) Math.ceil(Math.sqrt(n));
+		slabHeight = (maxY - minY) / slabs;
+		slabStart = new int[slabs + 1];
+		for (int k = 0; k < n; k++) {
+			final int last = slab(Math.max(ys[k], ys[(k + 1) % n]));
+			for (int s = slab(Math.min(ys[k], ys[(k + 1) % n])); s <= last; s++)
+				slabStart[s + 1]++;
+		}
+		for (int s = 0; s < slabs; s++)
+			slabStart[s + 1] += slabStart[s];
+		slabEdges = new int[slabStart[slabs]];
+		final int[] fill = slabStart.clone();
+		for (int k = 0; k < n; k++) {
+			final int last = slab(Math.max(ys[k], ys[(k + 1) % n]));
+			for (int s = slab(Math.min(ys[k], ys[(k + 1) % n])); s <= last; s++)
+				slabEdges[fill[s]++] = k;
+		}
+	}
+
+	/**
+	 * Checks if this geometry was created for the given value of the shape's
+	 * points.
+	 */
+	public boolean isFor(final Object points) {
+		return source == points;
+	}
+
+	public int numVertices() {
+		return n;
+	}
+
+	public double x(final int index) {
+		return xs[index];
+	}
+
+	public double y(final int index) {
+		return ys[index];
+	}
+
+	public double realMin(final int d) {
+		checkBounds(d);
+		return d == 0 ? minX : minY;
+	}
+
+	public double realMax(final int d) {
+		checkBounds(d);
+		return d == 0 ? maxX : maxY;
+	}
+
+	/**
+	 * Tests if the given point is inside the polygon formed by the vertices,
+	 * with the same results as {@link Polyshapes#pnpoly}.
+	 */
+	public boolean contains(final double x, final double y) {
+		if (n == 0 || x < minX || x > maxX || y < minY || y > maxY) return false;
+		boolean result = false;
+		if (slabStart == null) {
+			for (int k = 0; k < n; k++)
+				if (crosses(k, x, y)) result = !result;
+			return result;
+		}
+		final int s = slab(y);
+		for (int e = slabStart[s]; e < slabStart[s + 1]; e++)
+			if (crosses(slabEdges[e], x, y)) result = !result;
+		return result;
+	}
+
+	/**
+	 * Tests if the given point lies on an edge, with the same results as
+	 * {@link GeomMaths#lineContains} on each edge.
+	 *
+	 * @param l the point to test
+	 * @param closed whether the last vertex is joined to the first one, as for
+	 *          polygons; if not, as for polylines, it is not
+	 */
+	public boolean onEdge(final RealLocalizable l, final boolean closed) {
+		final double x = l.getDoublePosition(0);
+		final double y = l.getDoublePosition(1);
+		if (n == 0 || x < minX - margin(minX) || x > maxX + margin(maxX) ||
+			y < minY - margin(minY) || y > maxY + margin(maxY)) return false;
+		if (slabStart == null || y < minY || y > maxY) {
+			for (int k = 0; k < n; k++)
+				if (onEdge(k, l, closed)) return true;
+			return false;
+		}
+		final int s = slab(y);
+		for (int e = slabStart[s]; e < slabStart[s + 1]; e++)
+			if (onEdge(slabEdges[e], l, closed)) return true;
+		// NB: Points within the margin of a slab border may lie on edges of the
+		// neighboring slab.
+		if (s > 0 && y - margin(y) < minY + s * slabHeight) {
+			for (int e = slabStart[s - 1]; e < slabStart[s]; e++)
+				if (onEdge(slabEdges[e], l, closed)) return true;
+		}
+		if (s < slabStart.length - 2 && y + margin(y) >= minY + (s + 1) *
+			slabHeight)
+		{
+			for (int e = slabStart[s + 1]; e < slabStart[s + 2]; e++)
+				if (onEdge(slabEdges[e], l, closed)) return true;
+		}
+		return false;
+	}
+
+	// -- Helper methods --
+
+	/** Same crossing test as {@link Polyshapes#pnpoly}, for edge {@code k}. */
+	private boolean crosses(final int k, final double x, final double y) {
+		final int j = k;
+		final int i = k + 1 == n ? 0 : k + 1;
+		return (ys[i] > y) != (ys[j] > y) && (x < (xs[j] - xs[i]) * (y - ys[i]) /
+			(ys[j] - ys[i]) + xs[i]);
+	}
+
+	private boolean onEdge(final int k, final RealLocalizable l,
+		final boolean closed)
+	{
+		final int next = k + 1 == n ? 0 : k + 1;
+		if (next == 0 && !closed) return false;
+		final double x = l.getDoublePosition(0);
+		final double y = l.getDoublePosition(1);
+		// Reject by the edge's bounds before the exact test
+		if (x < Math.min(xs[k], xs[next]) - margin(x) || x > Math.max(xs[k],
+			xs[next]) + margin(x) || y < Math.min(ys[k], ys[next]) - margin(y) ||
+			y > Math.max(ys[k], ys[next]) + margin(y)) return false;
+		return GeomMaths.lineContains(new double[] { xs[k], ys[k] }, new double[] {
+			xs[next], ys[next] }, l, 2);
+	}
+
+	private int slab(final double y) {
+		final int s = (int) ((y - minY) / slabHeight);
+		return Math.max(0, Math.min(s, slabStart.length - 2));
+	}
+
+	private static double margin(final double value) {
+		return EPSILON * (1 + Math.abs(value));
+	}
+
+	private static void checkBounds(final int d) {
+		if (d < 0 || d > 1) throw new IllegalArgumentException(
+			"Invalid dimension: " + d);
+	}
+}
@@ -26,6 +26,7 @@
 package net.imagej.omero.roi.rectangle;
 
 import net.imagej.omero.roi.AbstractOMERORealMaskRealInterval;
+import net.imglib2.RealLocalizable;
 import net.imglib2.roi.BoundaryType;
 import net.imglib2.roi.geom.real.Box;
 import net.imglib2.roi.util.AbstractRealMaskPoint;
@@ -43,12 +44,29 @@ public abstract class AbstractOMERORectangle extends
 	AbstractOMERORealMaskRealInterval<RectangleData> implements OMERORectangle
 {
 
+	private RectangleKernel kernel;
+
 	public AbstractOMERORectangle(final RectangleData shape,
 		final BoundaryType bt)
 	{
 		super(shape, bt);
 	}
 
+	@Override
+	public RectangleKernel kernel() {
+		RectangleKernel k = kernel;
+		if (k == null || !k.isFor(shape)) {
+			k = new RectangleKernel(shape, boundaryType() == BoundaryType.CLOSED);
+			kernel = k;
+		}
+		return k;
+	}
+
+	@Override
+	public boolean test(final RealLocalizable l) {
+		return kernel().test(l.getDoublePosition(0), l.getDoublePosition(1));
+	}
+
 	@Override
 	public RealLocalizableRealPositionable center() {
 		final double px = getShape().getX() + getShape().getWidth() / 2;
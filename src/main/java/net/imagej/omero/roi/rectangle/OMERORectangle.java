@@ -40,6 +40,12 @@ public interface OMERORectangle extends
 	OMERORealMaskRealInterval<RectangleData>, WritableBox
 {
 
+	/**
+	 * Gets the cached kernel of the current bounds, which is recreated whenever
+	 * they change in the wrapped shape.
+	 */
+	RectangleKernel kernel();
+
 	@Override
 	default double sideLength(final int d) {
 		if (d > 1) throw new IllegalArgumentException(
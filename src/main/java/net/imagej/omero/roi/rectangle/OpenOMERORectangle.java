@@ -25,7 +25,6 @@
 
 package net.imagej.omero.roi.rectangle;
 
-import net.imglib2.RealLocalizable;
 import net.imglib2.roi.BoundaryType;
 
 import omero.gateway.model.RectangleData;
@@ -41,17 +40,4 @@ public class OpenOMERORectangle extends AbstractOMERORectangle {
 		super(shape, BoundaryType.OPEN);
 	}
 
-	@Override
-	public boolean test(final RealLocalizable l) {
-		final double lx = l.getDoublePosition(0);
-		final double ly = l.getDoublePosition(1);
-
-		final double minX = shape.getX();
-		final double minY = shape.getY();
-		final double maxX = minX + shape.getWidth();
-		final double maxY = minY + shape.getHeight();
-
-		return lx > minX && lx < maxX && ly > minY && ly < maxY;
-	}
-
 }
@@ -0,0 +1,91 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi.rectangle;
+
+import net.imagej.omero.roi.ShapeKernel;
+
+import omero.gateway.model.RectangleData;
+import omero.model.Rectangle;
+
+/**
+ * {@link ShapeKernel} of an {@link OMERORectangle}, with the bounds of the
+ * rectangle.
+ *
+ * @author agent
+ */
+public final class RectangleKernel implements ShapeKernel {
+
+	private final Object sx, sy, sw, sh;
+	private final boolean closed;
+	private final double minX, minY, maxX, maxY;
+
+	/**
+	 * Creates the kernel of the current values of the given shape.
+	 *
+	 * @param shape the rectangle to snapshot
+	 * @param closed whether points on the boundary are contained
+	 */
+	public RectangleKernel(final RectangleData shape, final boolean closed) {
+		final Rectangle r = (Rectangle) shape.asIObject();
+		sx = r.getX();
+		sy = r.getY();
+		sw = r.getWidth();
+		sh = r.getHeight();
+		this.closed = closed;
+		minX = shape.getX();
+		minY = shape.getY();
+		maxX = minX + shape.getWidth();
+		maxY = minY + shape.getHeight();
+	}
+
+	/**
+	 * Checks if this kernel was created for the current values of the given
+	 * shape, by comparing the identity of the shape's parameters.
+	 */
+	public boolean isFor(final RectangleData shape) {
+		final Rectangle r = (Rectangle) shape.asIObject();
+		return r.getX() == sx && r.getY() == sy && r.getWidth() == sw && r
+			.getHeight() == sh;
+	}
+
+	@Override
+	public boolean test(final double x, final double y) {
+		if (closed) return x >= minX && x <= maxX && y >= minY && y <= maxY;
+		return x > minX && x < maxX && y > minY && y < maxY;
+	}
+
+	@Override
+	public void test(final double[] xs, final double[] ys, final long[] bits) {
+		ShapeKernel.checkBatch(xs, ys, bits);
+		for (int w = 0; w << 6 < xs.length; w++) {
+			final int end = Math.min(xs.length, (w + 1) << 6);
+			long word = 0;
+			for (int i = w << 6; i < end; i++)
+				if (test(xs[i], ys[i])) word |= 1L << i;
+			bits[w] = word;
+		}
+	}
+}
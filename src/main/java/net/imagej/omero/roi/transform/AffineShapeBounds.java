@@ -0,0 +1,236 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi.transform;
+
+import net.imagej.omero.roi.OMERORealMaskRealInterval;
+import net.imagej.omero.roi.ellipse.OMEROEllipse;
+import net.imagej.omero.roi.line.OMEROLine;
+import net.imagej.omero.roi.polyshape.OMEROPolyshape;
+import net.imagej.omero.roi.polyshape.PolyshapeGeometry;
+import net.imagej.omero.roi.rectangle.OMERORectangle;
+import net.imglib2.RealInterval;
+import net.imglib2.RealPositionable;
+import net.imglib2.realtransform.AffineGet;
+
+import omero.gateway.model.EllipseData;
+import omero.gateway.model.LineData;
+import omero.gateway.model.RectangleData;
+
+/**
+ * Bounds of an {@link OMERORealMaskRealInterval} transformed by a 2D affine
+ * transform, computed from the parameters of the wrapped shape.
+ * <p>
+ * Unlike bounds of the transformed source bounds, these are tight: ellipses
+ * are bounded by the extents of the transformed ellipse, and rectangles, lines
+ * and polyshapes by their transformed vertices. Other shapes are bounded by
+ * their transformed source bounds. The bounds follow changes of the wrapped
+ * shape, and are cached until its kernel or geometry is recreated.
+ * </p>
+ *
+ * @author agent
+ */
+public final class AffineShapeBounds implements RealInterval {
+
+	private final OMERORealMaskRealInterval<?> source;
+
+	/** Coefficients of the transform from source. */
+	private final double m00, m01, m02, m10, m11, m12;
+
+	private Snapshot snapshot;
+
+	/**
+	 * Creates the bounds of the given mask, transformed by the inverse of the
+	 * given transform.
+	 *
+	 * @param source the mask to bound
+	 * @param transformToSource the 2D transform from the transformed space to
+	 *          the space of {@code source}
+	 */
+	public AffineShapeBounds(final OMERORealMaskRealInterval<?> source,
+		final AffineGet transformToSource)
+	{
+		if (transformToSource.numDimensions() != 2)
+			throw new IllegalArgumentException("Expected a 2D transform, not " +
+				transformToSource.numDimensions() + "D");
+		this.source = source;
+		final AffineGet fromSource = transformToSource.inverse();
+		m00 = fromSource.get(0, 0);
+		m01 = fromSource.get(0, 1);
+		m02 = fromSource.get(0, 2);
+		m10 = fromSource.get(1, 0);
+		m11 = fromSource.get(1, 1);
+		m12 = fromSource.get(1, 2);
+	}
+
+	@Override
+	public int numDimensions() {
+		return 2;
+	}
+
+	@Override
+	public double realMin(final int d) {
+		checkBounds(d);
+		return bounds()[d];
+	}
+
+	@Override
+	public void realMin(final double[] min) {
+		final double[] b = bounds();
+		min[0] = b[0];
+		min[1] = b[1];
+	}
+
+	@Override
+	public void realMin(final RealPositionable min) {
+		final double[] b = bounds();
+		min.setPosition(b[0], 0);
+		min.setPosition(b[1], 1);
+	}
+
+	@Override
+	public double realMax(final int d) {
+		checkBounds(d);
+		return bounds()[d + 2];
+	}
+
+	@Override
+	public void realMax(final double[] max) {
+		final double[] b = bounds();
+		max[0] = b[2];
+		max[1] = b[3];
+	}
+
+	@Override
+	public void realMax(final RealPositionable max) {
+		final double[] b = bounds();
+		max.setPosition(b[2], 0);
+		max.setPosition(b[3], 1);
+	}
+
+	// -- Helper methods --
+
+	/** Gets the bounds as {@code minX, minY, maxX, maxY}. */
+	private double[] bounds() {
+		final Object key = key();
+		Snapshot s = snapshot;
+		if (s == null || key == null || s.key != key) {
+			s = new Snapshot(key, compute());
+			snapshot = s;
+		}
+		return s.bounds;
+	}
+
+	/**
+	 * Gets an object which is replaced whenever the parameters of the wrapped
+	 * shape change, or null if there is none.
+	 */
+	private Object key() {
+		if (source instanceof OMEROEllipse) return ((OMEROEllipse) source)
+			.kernel();
+		if (source instanceof OMERORectangle) return ((OMERORectangle) source)
+			.kernel();
+		if (source instanceof OMEROLine) return ((OMEROLine) source).kernel();
+		if (source instanceof OMEROPolyshape) return ((OMEROPolyshape) source)
+			.geometry();
+		return null;
+	}
+
+	private double[] compute() {
+		if (source instanceof OMEROEllipse) {
+			final EllipseData e = ((OMEROEllipse) source).getShape();
+			final double cx = e.getX(), cy = e.getY();
+			final double rx = e.getRadiusX(), ry = e.getRadiusY();
+			final double x = m00 * cx + m01 * cy + m02;
+			final double y = m10 * cx + m11 * cy + m12;
+			// NB: The extents of the transformed ellipse along each axis are the
+			// norms of the rows of the transform, scaled by the radii.
+			final double hx = Math.sqrt(m00 * rx * m00 * rx + m01 * ry * m01 * ry);
+			final double hy = Math.sqrt(m10 * rx * m10 * rx + m11 * ry * m11 * ry);
+			return new double[] { x - hx, y - hy, x + hx, y + hy };
+		}
+		if (source instanceof OMERORectangle) {
+			final RectangleData r = ((OMERORectangle) source).getShape();
+			final double x0 = r.getX(), y0 = r.getY();
+			final double x1 = x0 + r.getWidth(), y1 = y0 + r.getHeight();
+			return vertices(new double[] { x0, x1, x1, x0 }, new double[] { y0, y0,
+				y1, y1 }, 4);
+		}
+		if (source instanceof OMEROLine) {
+			final LineData l = ((OMEROLine) source).getShape();
+			return vertices(new double[] { l.getX1(), l.getX2() }, new double[] { l
+				.getY1(), l.getY2() }, 2);
+		}
+		if (source instanceof OMEROPolyshape) {
+			final PolyshapeGeometry g = ((OMEROPolyshape) source).geometry();
+			final int n = g.numVertices();
+			final double[] xs = new double[n], ys = new double[n];
+			for (int i = 0; i < n; i++) {
+				xs[i] = g.x(i);
+				ys[i] = g.y(i);
+			}
+			return vertices(xs, ys, n);
+		}
+		final double x0 = source.realMin(0), y0 = source.realMin(1);
+		final double x1 = source.realMax(0), y1 = source.realMax(1);
+		return vertices(new double[] { x0, x1, x1, x0 }, new double[] { y0, y0, y1,
+			y1 }, 4);
+	}
+
+	/** Gets the bounds of the given vertices after transforming them. */
+	private double[] vertices(final double[] xs, final double[] ys,
+		final int n)
+	{
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < n; i++) {
+			final double x = m00 * xs[i] + m01 * ys[i] + m02;
+			final double y = m10 * xs[i] + m11 * ys[i] + m12;
+			minX = Math.min(minX, x);
+			minY = Math.min(minY, y);
+			maxX = Math.max(maxX, x);
+			maxY = Math.max(maxY, y);
+		}
+		return new double[] { minX, minY, maxX, maxY };
+	}
+
+	private static void checkBounds(final int d) {
+		if (d < 0 || d > 1) throw new IllegalArgumentException(
+			"Invalid dimension: " + d);
+	}
+
+	// -- Helper classes --
+
+	private static final class Snapshot {
+
+		private final Object key;
+		private final double[] bounds;
+
+		private Snapshot(final Object key, final double[] bounds) {
+			this.key = key;
+			this.bounds = bounds;
+		}
+	}
+}
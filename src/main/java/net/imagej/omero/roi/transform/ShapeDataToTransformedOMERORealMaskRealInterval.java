@@ -30,7 +30,6 @@ import java.lang.reflect.Type;
 import net.imagej.omero.roi.OMERORealMaskRealInterval;
 import net.imagej.omero.roi.ROIConverters;
 import net.imglib2.realtransform.AffineGet;
-import net.imglib2.roi.Bounds;
 import net.imglib2.roi.Operators.RealTransformMaskOperator;
 
 import org.scijava.Priority;
@@ -109,7 +108,7 @@ public class ShapeDataToTransformedOMERORealMaskRealInterval extends
 
 		final AffineGet transformToSource = ROIConverters.createAffine(copy);
 		return (T) new TransformedOMERORealMaskRealInterval<>(rmri,
-			new Bounds.RealTransformRealInterval(rmri, transformToSource),
+			new AffineShapeBounds(rmri, transformToSource),
 			new RealTransformMaskOperator(transformToSource));
 	}
 }
@@ -26,11 +26,18 @@
 package net.imagej.omero.roi.transform;
 
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import net.imagej.omero.roi.OMERORealMaskRealInterval;
+import net.imagej.omero.roi.ShapeKernel;
+import net.imagej.omero.roi.ellipse.OMEROEllipse;
+import net.imagej.omero.roi.line.OMEROLine;
+import net.imagej.omero.roi.rectangle.OMERORectangle;
 import net.imglib2.AbstractWrappedRealInterval;
 import net.imglib2.RealInterval;
 import net.imglib2.RealLocalizable;
+import net.imglib2.RealPoint;
+import net.imglib2.realtransform.AffineGet;
 import net.imglib2.roi.Operators.MaskOperator;
 import net.imglib2.roi.Operators.RealTransformMaskOperator;
 import net.imglib2.roi.composite.UnaryCompositeMaskPredicate;
@@ -40,6 +47,13 @@ import omero.gateway.model.ShapeData;
 /**
  * A transformed {@link OMERORealMaskRealInterval} represented as a
  * {@link UnaryCompositeMaskPredicate}.
+ * <p>
+ * If the transform is a 2D affine transform, as for OMERO shapes, points are
+ * transformed to the source with the coefficients the transform had on
+ * construction, and
+ * ellipses, rectangles and lines are tested by their {@link ShapeKernel}.
+ * Other transforms are tested through the predicate of the operator.
+ * </p>
  *
  * @author Alison Walter
  * @param <S> the original transformed {@link ShapeData} type
@@ -53,6 +67,13 @@ public class TransformedOMERORealMaskRealInterval<S extends ShapeData> extends
 	private final OMERORealMaskRealInterval<S> omeroRMRI;
 	private final Predicate<? super RealLocalizable> predicate;
 
+	/** Whether the transform to source is a 2D affine transform. */
+	private final boolean affine;
+	private final double a00, a01, a02, a10, a11, a12;
+
+	/** Supplies the kernel of the source, or null if it has none. */
+	private final Supplier<? extends ShapeKernel> kernel;
+
 	public TransformedOMERORealMaskRealInterval(
 		final OMERORealMaskRealInterval<S> source,
 		final RealInterval transformedBounds,
@@ -62,6 +83,23 @@ public class TransformedOMERORealMaskRealInterval<S extends ShapeData> extends
 		this.transformToSource = transformToSource;
 		omeroRMRI = source;
 		predicate = transformToSource.predicate(source);
+
+		final Object t = transformToSource.getTransformToSource();
+		final AffineGet a = t instanceof AffineGet ? (AffineGet) t : null;
+		affine = a != null && a.numDimensions() == 2;
+		a00 = affine ? a.get(0, 0) : 0;
+		a01 = affine ? a.get(0, 1) : 0;
+		a02 = affine ? a.get(0, 2) : 0;
+		a10 = affine ? a.get(1, 0) : 0;
+		a11 = affine ? a.get(1, 1) : 0;
+		a12 = affine ? a.get(1, 2) : 0;
+		if (source instanceof OMEROEllipse) kernel =
+			((OMEROEllipse) source)::kernel;
+		else if (source instanceof OMERORectangle) kernel =
+			((OMERORectangle) source)::kernel;
+		else if (source instanceof OMEROLine) kernel =
+			((OMEROLine) source)::kernel;
+		else kernel = null;
 	}
 
 	@Override
@@ -71,7 +109,13 @@ public class TransformedOMERORealMaskRealInterval<S extends ShapeData> extends
 
 	@Override
 	public boolean test(final RealLocalizable t) {
-		return predicate.test(t);
+		if (!affine) return predicate.test(t);
+		final double x = t.getDoublePosition(0);
+		final double y = t.getDoublePosition(1);
+		final double sx = x * a00 + y * a01 + a02;
+		final double sy = x * a10 + y * a11 + a12;
+		if (kernel != null) return kernel.get().test(sx, sy);
+		return omeroRMRI.test(new RealPoint(sx, sy));
 	}
 
 	@Override
@@ -25,10 +25,10 @@
 
 package net.imagej.omero.table;
 
-import java.util.Collection;
-import java.util.Iterator;
+import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.concurrent.ExecutorService;
 
 import net.imagej.omero.OMEROException;
 import net.imagej.omero.OMEROSession;
@@ -36,16 +36,27 @@ import net.imagej.omero.OMEROSession;
 import org.scijava.log.LogService;
 import org.scijava.table.Table;
 
+import omero.gateway.model.FileAnnotationData;
+import omero.gateway.model.TableData;
+
 /**
  * A {@code List
  * <Table>
  * } whose elements are downloaded lazily from an OMERO server.
+ * <p>
+ * The list of tables attached to the image is only retrieved once the list is
+ * first accessed, and the contents of each table only once that table is
+ * requested via {@link #get(int)}. Hence calls such as {@link #size()} or
+ * {@link #getName(int)} never download any table data. Use
+ * {@link #prefetch(ExecutorService)} to download the remaining tables in the
+ * background.
+ * </p>
  *
  * @author Alison Walter
  */
-public class LazyTableList implements List<Table<?, ?>> {
+public class LazyTableList extends AbstractList<Table<?, ?>> {
 
-	private List<Table<?, ?>> tables;
+	private List<Entry> entries;
 	private final long imageID;
 	private final OMEROSession session;
 	private final LogService log;
@@ -56,139 +67,175 @@ public class LazyTableList implements List<Table<?, ?>> {
 		log = session.log();
 	}
 
-	@Override
-	public int size() {
-		return getTables().size();
-	}
+	// -- LazyTableList methods --
 
-	@Override
-	public boolean isEmpty() {
-		return getTables().isEmpty();
+	/**
+	 * Gets the OMERO file annotation of the table at the given index, or
+	 * {@code null} if that table was added locally.
+	 */
+	public FileAnnotationData getFile(final int index) {
+		return getEntries().get(index).file;
 	}
 
-	@Override
-	public boolean contains(final Object o) {
-		return getTables().contains(o);
+	/**
+	 * Gets the name of the table at the given index, without downloading its
+	 * contents.
+	 */
+	public String getName(final int index) {
+		final FileAnnotationData file = getFile(index);
+		return file == null ? null : file.getFileName();
 	}
 
-	@Override
-	public Iterator<Table<?, ?>> iterator() {
-		return getTables().iterator();
+	/**
+	 * Gets the column headers and row count of the table at the given index,
+	 * without downloading its contents. Returns {@code null} for tables which
+	 * were added locally.
+	 */
+	public TableData getInfo(final int index) {
+		return getEntries().get(index).info();
 	}
 
-	@Override
-	public Object[] toArray() {
-		return getTables().toArray();
-	}
-
-	@Override
-	public <T> T[] toArray(final T[] a) {
-		return getTables().toArray(a);
+	/** Gets whether the contents of the table at the given index are loaded. */
+	public boolean isLoaded(final int index) {
+		return getEntries().get(index).table != null;
 	}
 
-	@Override
-	public boolean add(final Table<?, ?> e) {
-		return getTables().add(e);
+	/**
+	 * Downloads the contents of all tables which are not yet loaded, using the
+	 * session's {@link OMEROSession#executor() executor}.
+	 *
+	 * @see #prefetch(ExecutorService)
+	 */
+	public void prefetch() {
+		prefetch(session.executor());
 	}
 
-	@Override
-	public boolean remove(final Object o) {
-		return getTables().remove(o);
-	}
-
-	@Override
-	public boolean containsAll(final Collection<?> c) {
-		return getTables().containsAll(c);
-	}
-
-	@Override
-	public boolean addAll(final Collection<? extends Table<?, ?>> c) {
-		return getTables().addAll(c);
-	}
-
-	@Override
-	public boolean addAll(final int index,
-		final Collection<? extends Table<?, ?>> c)
-	{
-		return getTables().addAll(index, c);
-	}
-
-	@Override
-	public boolean removeAll(final Collection<?> c) {
-		return getTables().removeAll(c);
+	/**
+	 * Downloads the contents of all tables which are not yet loaded, using the
+	 * given executor. Subsequent calls to {@link #get(int)} wait for any
+	 * download already in progress rather than starting a new one.
+	 */
+	public void prefetch(final ExecutorService executor) {
+		for (final Entry entry : new ArrayList<>(getEntries())) {
+			if (entry.table == null) executor.submit(entry::table);
+		}
 	}
 
-	@Override
-	public boolean retainAll(final Collection<?> c) {
-		return getTables().retainAll(c);
-	}
+	// -- List methods --
 
 	@Override
-	public void clear() {
-		getTables().clear();
+	public int size() {
+		return getEntries().size();
 	}
 
 	@Override
 	public Table<?, ?> get(final int index) {
-		return getTables().get(index);
+		return getEntries().get(index).table();
 	}
 
+	/**
+	 * Replaces the table at the given index. The replaced table is not
+	 * downloaded just to be returned.
+	 *
+	 * @return The replaced table, or {@code null} if its contents were not
+	 *         loaded.
+	 */
 	@Override
 	public Table<?, ?> set(final int index, final Table<?, ?> element) {
-		return getTables().set(index, element);
+		return getEntries().set(index, new Entry(element)).table;
 	}
 
 	@Override
 	public void add(final int index, final Table<?, ?> element) {
-		getTables().add(index, element);
+		getEntries().add(index, new Entry(element));
 	}
 
+	/**
+	 * Removes the table at the given index. The removed table is not
+	 * downloaded just to be returned.
+	 *
+	 * @return The removed table, or {@code null} if its contents were not
+	 *         loaded.
+	 */
 	@Override
 	public Table<?, ?> remove(final int index) {
-		return getTables().remove(index);
-	}
-
-	@Override
-	public int indexOf(final Object o) {
-		return getTables().indexOf(o);
-	}
-
-	@Override
-	public int lastIndexOf(final Object o) {
-		return getTables().lastIndexOf(o);
-	}
-
-	@Override
-	public ListIterator<Table<?, ?>> listIterator() {
-		return getTables().listIterator();
+		modCount++;
+		return getEntries().remove(index).table;
 	}
 
 	@Override
-	public ListIterator<Table<?, ?>> listIterator(final int index) {
-		return getTables().listIterator(index);
+	public synchronized void clear() {
+		// NB: Neither the tables nor the list of them need to be downloaded.
+		modCount++;
+		entries = new ArrayList<>();
 	}
 
 	@Override
-	public List<Table<?, ?>> subList(final int fromIndex, final int toIndex) {
-		return getTables().subList(fromIndex, toIndex);
+	protected void removeRange(final int fromIndex, final int toIndex) {
+		modCount++;
+		getEntries().subList(fromIndex, toIndex).clear();
 	}
 
 	// -- Helper methods --
 
-	private List<Table<?, ?>> getTables() {
-		if (tables == null) retrieveTables();
-		return tables;
+	private List<Entry> getEntries() {
+		if (entries == null) retrieveEntries();
+		return entries;
 	}
 
-	private synchronized void retrieveTables() {
-		if (tables != null) return;
-		List<Table<?, ?>> t = null;
+	private synchronized void retrieveEntries() {
+		if (entries != null) return;
+		final List<Entry> e = new ArrayList<>();
 		try {
-			t = session.downloadTables(imageID);
+			for (final FileAnnotationData file : session.getAvailableTables(imageID))
+				e.add(new Entry(file));
 		}
 		catch (final OMEROException exc) {
 			log.error("Error retrieving tables", exc);
 		}
-		tables = t;
+		entries = e;
+	}
+
+	// -- Helper classes --
+
+	/** A table which is either loaded, or still on the server. */
+	private class Entry {
+
+		private final FileAnnotationData file;
+		private volatile Table<?, ?> table;
+		private TableData info;
+
+		private Entry(final FileAnnotationData file) {
+			this.file = file;
+		}
+
+		private Entry(final Table<?, ?> table) {
+			this.file = null;
+			this.table = table;
+		}
+
+		private synchronized Table<?, ?> table() {
+			if (table == null && file != null) {
+				try {
+					table = session.downloadTable(file.getFileID());
+				}
+				catch (final OMEROException exc) {
+					log.error("Error retrieving table " + file.getFileID(), exc);
+				}
+			}
+			return table;
+		}
+
+		private synchronized TableData info() {
+			if (info == null && file != null) {
+				try {
+					info = session.getTableInfo(file.getFileID());
+				}
+				catch (final OMEROException exc) {
+					log.error("Error retrieving table " + file.getFileID(), exc);
+				}
+			}
+			return info;
+		}
 	}
 }
@@ -0,0 +1,400 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.table;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+import net.imagej.omero.roi.mask.PackedMasks;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.roi.MaskInterval;
+import net.imglib2.roi.Masks;
+import net.imglib2.roi.mask.integer.RandomAccessibleIntervalAsMaskInterval;
+import net.imglib2.type.BooleanType;
+
+import org.scijava.table.Column;
+
+import omero.RLong;
+import omero.gateway.model.MaskData;
+import omero.model.ImageI;
+import omero.model.Roi;
+import omero.model.RoiI;
+import omero.model.Shape;
+
+/**
+ * A {@link Column} of OMERO masks, as stored in OMERO.tables mask columns.
+ * <p>
+ * Masks are not stored as {@link MaskData} objects, but as primitive arrays of
+ * their positions and sizes, plus their bits packed into {@code long} words
+ * (see {@link PackedMasks}). {@link MaskData} objects are only created on
+ * request by {@link #get(int)}; use {@link #getMaskInterval(int)} and
+ * {@link #add(MaskInterval, int, int)} to move masks from and to imglib2-roi
+ * without going through {@link MaskData} at all.
+ * </p>
+ *
+ * @author agent
+ */
+public class MaskColumn extends AbstractList<MaskData> implements
+	Column<MaskData>
+{
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private String header;
+	private int size;
+
+	private long[] imageIDs = new long[INITIAL_CAPACITY];
+	private int[] z = new int[INITIAL_CAPACITY];
+	private int[] t = new int[INITIAL_CAPACITY];
+	private double[] x = new double[INITIAL_CAPACITY];
+	private double[] y = new double[INITIAL_CAPACITY];
+	private double[] width = new double[INITIAL_CAPACITY];
+	private double[] height = new double[INITIAL_CAPACITY];
+	private int[] byteCounts = new int[INITIAL_CAPACITY];
+	private long[][] bits = new long[INITIAL_CAPACITY][];
+
+	public MaskColumn() {
+		this(null);
+	}
+
+	public MaskColumn(final String header) {
+		this.header = header;
+	}
+
+	// -- MaskColumn methods --
+
+	/**
+	 * Appends the given mask to this column, without creating a
+	 * {@link MaskData}.
+	 *
+	 * @param mask The two dimensional mask to append
+	 * @param theZ Z plane of the mask, or -1 if the mask spans all planes
+	 * @param theT Timepoint of the mask, or -1 if the mask spans all timepoints
+	 */
+	public <B extends BooleanType<B>> void add(final MaskInterval mask,
+		final int theZ, final int theT)
+	{
+		@SuppressWarnings("unchecked")
+		final RandomAccessibleInterval<B> rai =
+			mask instanceof RandomAccessibleIntervalAsMaskInterval ? //
+				((RandomAccessibleIntervalAsMaskInterval<B>) mask).getSource() : //
+				(RandomAccessibleInterval<B>) Masks.toRandomAccessibleInterval(mask);
+		final long w = rai.dimension(0);
+		final long h = rai.dimension(1);
+		final long[] packed = PackedMasks.pack(rai);
+		final int index = size;
+		insert(index);
+		imageIDs[index] = -1;
+		z[index] = theZ;
+		t[index] = theT;
+		x[index] = rai.min(0);
+		y[index] = rai.min(1);
+		width[index] = w;
+		height[index] = h;
+		byteCounts[index] = (int) ((w * h + 7) >>> 3);
+		bits[index] = packed;
+	}
+
+	/**
+	 * Gets the mask at the given index as a {@link MaskInterval}, without
+	 * creating a {@link MaskData}.
+	 */
+	public MaskInterval getMaskInterval(final int index) {
+		checkIndex(index);
+		return PackedMasks.toMaskInterval(bits[index], Math.round(x[index]), Math
+			.round(y[index]), Math.round(width[index]), Math.round(height[index]));
+	}
+
+	/**
+	 * Tests whether the pixel at the given position, relative to the top left
+	 * corner of the mask at the given index, is set.
+	 */
+	public boolean test(final int index, final long px, final long py) {
+		checkIndex(index);
+		final long w = Math.round(width[index]);
+		if (px < 0 || py < 0 || px >= w || py >= Math.round(height[index])) {
+			return false;
+		}
+		final long bit = py * w + px;
+		if (bit >= (long) byteCounts[index] << 3) return false;
+		return PackedMasks.get(bits[index], bit);
+	}
+
+	/** Gets the ID of the image the mask at the given index belongs to. */
+	public long getImageID(final int index) {
+		checkIndex(index);
+		return imageIDs[index];
+	}
+
+	/** Sets the ID of the image the mask at the given index belongs to. */
+	public void setImageID(final int index, final long imageID) {
+		checkIndex(index);
+		imageIDs[index] = imageID;
+	}
+
+	public int getZ(final int index) {
+		checkIndex(index);
+		return z[index];
+	}
+
+	public int getT(final int index) {
+		checkIndex(index);
+		return t[index];
+	}
+
+	public double getX(final int index) {
+		checkIndex(index);
+		return x[index];
+	}
+
+	public double getY(final int index) {
+		checkIndex(index);
+		return y[index];
+	}
+
+	public double getWidth(final int index) {
+		checkIndex(index);
+		return width[index];
+	}
+
+	public double getHeight(final int index) {
+		checkIndex(index);
+		return height[index];
+	}
+
+	/** Gets the bytes of the mask at the given index, as in {@link MaskData}. */
+	public byte[] getBytes(final int index) {
+		checkIndex(index);
+		return PackedMasks.unpack(bits[index], byteCounts[index]);
+	}
+
+	/** Copies the contents of this column into the given OMERO column. */
+	public omero.grid.MaskColumn toOMEROColumn(final String name,
+		final String description)
+	{
+		final byte[][] bytes = new byte[size][];
+		for (int i = 0; i < size; i++)
+			bytes[i] = getBytes(i);
+		return new omero.grid.MaskColumn(name, description, Arrays.copyOf(imageIDs,
+			size), Arrays.copyOf(z, size), Arrays.copyOf(t, size), Arrays.copyOf(x,
+				size), Arrays.copyOf(y, size), Arrays.copyOf(width, size), Arrays
+					.copyOf(height, size), bytes);
+	}
+
+	// -- Column methods --
+
+	@Override
+	public String getHeader() {
+		return header;
+	}
+
+	@Override
+	public void setHeader(final String header) {
+		this.header = header;
+	}
+
+	@Override
+	public Class<MaskData> getType() {
+		return MaskData.class;
+	}
+
+	@Override
+	public void fill(final MaskData[] values) {
+		clear();
+		for (final MaskData value : values)
+			add(value);
+	}
+
+	@Override
+	public void fill(final MaskData[] values, final int startIndex) {
+		for (int i = 0; i < values.length; i++) {
+			if (startIndex + i < size) set(startIndex + i, values[i]);
+			else add(values[i]);
+		}
+	}
+
+	// -- Sizable methods --
+
+	@Override
+	public void setSize(final int newSize) {
+		if (newSize < 0) throw new IllegalArgumentException("Negative size");
+		ensureCapacity(newSize);
+		for (int i = size; i < newSize; i++)
+			clear(i);
+		for (int i = newSize; i < size; i++)
+			bits[i] = null;
+		size = newSize;
+	}
+
+	// -- List methods --
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public MaskData get(final int index) {
+		checkIndex(index);
+		final MaskData mask = new MaskData(x[index], y[index], width[index],
+			height[index], getBytes(index));
+		mask.setZ(z[index]);
+		mask.setT(t[index]);
+		if (imageIDs[index] >= 0) {
+			// NB: The image is only reachable through the ROI of the mask.
+			final Roi roi = new RoiI();
+			roi.setImage(new ImageI(imageIDs[index], false));
+			((Shape) mask.asIObject()).setRoi(roi);
+		}
+		return mask;
+	}
+
+	@Override
+	public MaskData set(final int index, final MaskData element) {
+		final MaskData previous = get(index);
+		store(index, element);
+		return previous;
+	}
+
+	@Override
+	public void add(final int index, final MaskData element) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " +
+				size);
+		}
+		insert(index);
+		store(index, element);
+	}
+
+	@Override
+	public MaskData remove(final int index) {
+		final MaskData previous = get(index);
+		final int moved = size - index - 1;
+		System.arraycopy(imageIDs, index + 1, imageIDs, index, moved);
+		System.arraycopy(z, index + 1, z, index, moved);
+		System.arraycopy(t, index + 1, t, index, moved);
+		System.arraycopy(x, index + 1, x, index, moved);
+		System.arraycopy(y, index + 1, y, index, moved);
+		System.arraycopy(width, index + 1, width, index, moved);
+		System.arraycopy(height, index + 1, height, index, moved);
+		System.arraycopy(byteCounts, index + 1, byteCounts, index, moved);
+		System.arraycopy(bits, index + 1, bits, index, moved);
+		size--;
+		bits[size] = null;
+		modCount++;
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(bits, 0, size, null);
+		size = 0;
+		modCount++;
+	}
+
+	// -- Helper methods --
+
+	private void checkIndex(final int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " +
+				size);
+		}
+	}
+
+	/** Makes room for a new element at the given index. */
+	private void insert(final int index) {
+		ensureCapacity(size + 1);
+		final int moved = size - index;
+		System.arraycopy(imageIDs, index, imageIDs, index + 1, moved);
+		System.arraycopy(z, index, z, index + 1, moved);
+		System.arraycopy(t, index, t, index + 1, moved);
+		System.arraycopy(x, index, x, index + 1, moved);
+		System.arraycopy(y, index, y, index + 1, moved);
+		System.arraycopy(width, index, width, index + 1, moved);
+		System.arraycopy(height, index, height, index + 1, moved);
+		System.arraycopy(byteCounts, index, byteCounts, index + 1, moved);
+		System.arraycopy(bits, index, bits, index + 1, moved);
+		size++;
+		modCount++;
+		clear(index);
+	}
+
+	private void store(final int index, final MaskData mask) {
+		if (mask == null) {
+			clear(index);
+			return;
+		}
+		final byte[] bytes = mask.getMask();
+		// NB: Keep the image ID at this index if the mask does not name one.
+		final long imageID = imageID(mask);
+		if (imageID >= 0) imageIDs[index] = imageID;
+		z[index] = mask.getZ();
+		t[index] = mask.getT();
+		x[index] = mask.getX();
+		y[index] = mask.getY();
+		width[index] = mask.getWidth();
+		height[index] = mask.getHeight();
+		byteCounts[index] = bytes == null ? 0 : bytes.length;
+		bits[index] = PackedMasks.pack(bytes == null ? new byte[0] : bytes);
+	}
+
+	/**
+	 * Gets the ID of the image of the given mask, from its ROI, or -1 if the
+	 * mask does not belong to a loaded ROI with an image.
+	 */
+	private static long imageID(final MaskData mask) {
+		final Roi roi = ((Shape) mask.asIObject()).getRoi();
+		if (roi == null || !roi.isLoaded() || roi.getImage() == null) return -1;
+		final RLong id = roi.getImage().getId();
+		return id == null ? -1 : id.getValue();
+	}
+
+	private void clear(final int index) {
+		imageIDs[index] = -1;
+		z[index] = -1;
+		t[index] = -1;
+		x[index] = 0;
+		y[index] = 0;
+		width[index] = 0;
+		height[index] = 0;
+		byteCounts[index] = 0;
+		bits[index] = new long[0];
+	}
+
+	private void ensureCapacity(final int capacity) {
+		if (capacity <= bits.length) return;
+		final int newCapacity = Math.max(capacity, bits.length + (bits.length >> 1));
+		imageIDs = Arrays.copyOf(imageIDs, newCapacity);
+		z = Arrays.copyOf(z, newCapacity);
+		t = Arrays.copyOf(t, newCapacity);
+		x = Arrays.copyOf(x, newCapacity);
+		y = Arrays.copyOf(y, newCapacity);
+		width = Arrays.copyOf(width, newCapacity);
+		height = Arrays.copyOf(height, newCapacity);
+		byteCounts = Arrays.copyOf(byteCounts, newCapacity);
+		bits = Arrays.copyOf(bits, newCapacity);
+	}
+}
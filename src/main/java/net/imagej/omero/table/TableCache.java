@@ -0,0 +1,487 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.table;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import net.imagej.omero.OMERORef;
+import net.imagej.omero.OMERORefColumn;
+
+import org.scijava.table.BoolColumn;
+import org.scijava.table.Column;
+import org.scijava.table.DefaultBoolTable;
+import org.scijava.table.DefaultColumn;
+import org.scijava.table.DefaultDoubleTable;
+import org.scijava.table.DefaultGenericTable;
+import org.scijava.table.DefaultLongTable;
+import org.scijava.table.DoubleColumn;
+import org.scijava.table.GenericTable;
+import org.scijava.table.LongColumn;
+import org.scijava.table.Table;
+
+/**
+ * A local on-disk cache of downloaded OMERO tables.
+ * <p>
+ * Each table is stored in its own directory, named after its cache key (see
+ * {@link #key}), using a columnar binary layout: one {@code table.meta} file
+ * describing the table, plus one {@code col-<i>.bin} file per column holding
+ * that column's values back to back. Column files are memory-mapped when
+ * read, and bulk-copied into the backing arrays of SciJava primitive columns.
+ * </p>
+ * <p>
+ * Tables containing columns of other types than {@code double}, {@code long},
+ * {@code boolean}, {@link String} or OMERO references are not cached. Note
+ * that the original {@code DataObject}s of an {@link OMERORefColumn} are not
+ * preserved; only the referenced IDs are, from which unloaded objects are
+ * created when the table is uploaded again.
+ * </p>
+ *
+ * @author agent
+ */
+public class TableCache {
+
+	private static final int MAGIC = 0x494a4f54; // "IJOT"
+	private static final int VERSION = 1;
+
+	private static final String META_FILE = "table.meta";
+
+	private static final byte GENERIC_TABLE = 0;
+	private static final byte DOUBLE_TABLE = 1;
+	private static final byte LONG_TABLE = 2;
+	private static final byte BOOL_TABLE = 3;
+
+	private static final byte DOUBLE_COLUMN = 'D';
+	private static final byte LONG_COLUMN = 'L';
+	private static final byte BOOL_COLUMN = 'B';
+	private static final byte REF_COLUMN = 'R';
+	private static final byte STRING_COLUMN = 'S';
+
+	private final Path directory;
+
+	/**
+	 * Creates a table cache in the given directory, creating the directory if
+	 * necessary.
+	 *
+	 * @param directory Base directory of the cache
+	 * @throws IOException if the directory cannot be created
+	 */
+	public TableCache(final File directory) throws IOException {
+		this.directory = directory.toPath();
+		Files.createDirectories(this.directory);
+	}
+
+	// -- TableCache methods --
+
+	/**
+	 * Creates the cache key of an OMERO table. The key changes whenever the
+	 * content of the table on the server does, so stale entries are never read.
+	 *
+	 * @param fileID ID of the table's OMERO {@code OriginalFile}
+	 * @param size Size in bytes of the {@code OriginalFile}
+	 * @param hash Hash of the {@code OriginalFile}; may be {@code null}
+	 * @param updateEventID ID of the last update event of the
+	 *          {@code OriginalFile}
+	 * @return A key suitable for {@link #load} and {@link #store}
+	 */
+	public static String key(final long fileID, final long size,
+		final String hash, final long updateEventID)
+	{
+		final String key = fileID + "-" + size + "-" + updateEventID + "-" + //
+			(hash == null ? "" : hash);
+		return key.replaceAll("[^A-Za-z0-9._-]", "_");
+	}
+
+	/** Gets the base directory of this cache. */
+	public File getDirectory() {
+		return directory.toFile();
+	}
+
+	/** Gets whether a table is cached under the given key. */
+	public boolean contains(final String key) {
+		return Files.isRegularFile(directory.resolve(key).resolve(META_FILE));
+	}
+
+	/**
+	 * Reads the table cached under the given key. A cached table which cannot
+	 * be read is removed from the cache, so that it can be cached anew.
+	 *
+	 * @param key The cache key, as created by {@link #key}
+	 * @return The cached table, or {@code null} if no table is cached under the
+	 *         given key.
+	 * @throws IOException if the cached table cannot be read
+	 */
+	public Table<?, ?> load(final String key) throws IOException {
+		final Path dir = directory.resolve(key);
+		final Path metaFile = dir.resolve(META_FILE);
+		if (!Files.isRegularFile(metaFile)) return null;
+
+		try {
+			return read(dir, metaFile);
+		}
+		catch (final RuntimeException exc) {
+			// NB: A truncated or corrupt column file underflows its buffer.
+			throw discard(dir, new IOException("Corrupt cached table: " + dir,
+				exc));
+		}
+		catch (final IOException exc) {
+			throw discard(dir, exc);
+		}
+	}
+
+	/**
+	 * Caches the given table under the given key. Does nothing if a table is
+	 * already cached under that key.
+	 *
+	 * @param key The cache key, as created by {@link #key}
+	 * @param table The table to cache
+	 * @return {@code false} if the table contains columns which cannot be
+	 *         cached, in which case nothing is stored.
+	 * @throws IOException if the table cannot be written
+	 */
+	public boolean store(final String key, final Table<?, ?> table)
+		throws IOException
+	{
+		final byte[] columnTypes = new byte[table.getColumnCount()];
+		for (int c = 0; c < columnTypes.length; c++) {
+			columnTypes[c] = columnType(table.get(c));
+			if (columnTypes[c] < 0) return false;
+		}
+		final Path dir = directory.resolve(key);
+		if (Files.isDirectory(dir)) return true;
+
+		// NB: Write to a temporary directory first, then move it into place, so
+		// that concurrent readers never see a partially written table.
+		final Path tmp = directory.resolve(key + ".tmp-" + UUID.randomUUID());
+		Files.createDirectory(tmp);
+		try {
+			for (int c = 0; c < columnTypes.length; c++) {
+				writeColumn(tmp.resolve(columnFile(c)), columnTypes[c], table.get(c),
+					table.getRowCount());
+			}
+			try (final OutputStream out = Files.newOutputStream(tmp.resolve(
+				META_FILE)); final DataOutputStream meta = new DataOutputStream(out))
+			{
+				meta.writeInt(MAGIC);
+				meta.writeInt(VERSION);
+				meta.writeByte(tableType(table));
+				meta.writeInt(table.getRowCount());
+				meta.writeInt(columnTypes.length);
+				for (int c = 0; c < columnTypes.length; c++) {
+					final Column<?> column = table.get(c);
+					meta.writeByte(columnTypes[c]);
+					meta.writeBoolean(column.getHeader() != null);
+					if (column.getHeader() != null) meta.writeUTF(column.getHeader());
+					if (columnTypes[c] == REF_COLUMN) meta.writeUTF(
+						((OMERORefColumn) column).getOMERORef().name());
+				}
+			}
+			try {
+				Files.move(tmp, dir, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (final AtomicMoveNotSupportedException exc) {
+				Files.move(tmp, dir);
+			}
+		}
+		catch (final FileAlreadyExistsException exc) {
+			// NB: Another process cached the same table in the meantime.
+		}
+		finally {
+			if (Files.exists(tmp)) delete(tmp);
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the table cached under the given key, if any.
+	 *
+	 * @throws IOException if the cached table cannot be deleted
+	 */
+	public void remove(final String key) throws IOException {
+		final Path dir = directory.resolve(key);
+		if (Files.exists(dir)) delete(dir);
+	}
+
+	/**
+	 * Removes all cached tables.
+	 *
+	 * @throws IOException if a cached table cannot be deleted
+	 */
+	public void clear() throws IOException {
+		try (final Stream<Path> entries = Files.list(directory)) {
+			for (final Path entry : (Iterable<Path>) entries::iterator)
+				delete(entry);
+		}
+	}
+
+	// -- Helper methods --
+
+	private static Table<?, ?> read(final Path dir, final Path metaFile)
+		throws IOException
+	{
+		try (final InputStream in = Files.newInputStream(metaFile);
+				final DataInputStream meta = new DataInputStream(in))
+		{
+			if (meta.readInt() != MAGIC) throw new IOException(
+				"Not a cached table: " + dir);
+			final int version = meta.readInt();
+			if (version != VERSION) throw new IOException(
+				"Unsupported cached table version: " + version);
+
+			final byte tableType = meta.readByte();
+			final int rowCount = meta.readInt();
+			final int columnCount = meta.readInt();
+
+			final Table<?, ?> table = createTable(tableType);
+			if (!(table instanceof GenericTable)) table.appendColumns(columnCount);
+
+			for (int c = 0; c < columnCount; c++) {
+				final byte columnType = meta.readByte();
+				final String header = meta.readBoolean() ? meta.readUTF() : null;
+				final OMERORef ref = columnType == REF_COLUMN ? OMERORef.valueOf(meta
+					.readUTF()) : null;
+				final Column<?> column = table instanceof GenericTable ? createColumn(
+					columnType, header, ref) : table.get(c);
+				column.setHeader(header);
+				readColumn(dir.resolve(columnFile(c)), columnType, rowCount, column);
+				if (table instanceof GenericTable) ((GenericTable) table).add(column);
+			}
+			table.setRowCount(rowCount);
+			return table;
+		}
+	}
+
+	/**
+	 * Removes the unreadable entry in the given directory, returning the given
+	 * exception with any failure to remove it attached.
+	 */
+	private static IOException discard(final Path dir, final IOException exc) {
+		try {
+			delete(dir);
+		}
+		catch (final IOException deleteExc) {
+			exc.addSuppressed(deleteExc);
+		}
+		return exc;
+	}
+
+	private static String columnFile(final int index) {
+		return "col-" + index + ".bin";
+	}
+
+	private static byte tableType(final Table<?, ?> table) {
+		if (table instanceof DefaultDoubleTable) return DOUBLE_TABLE;
+		if (table instanceof DefaultLongTable) return LONG_TABLE;
+		if (table instanceof DefaultBoolTable) return BOOL_TABLE;
+		return GENERIC_TABLE;
+	}
+
+	private static Table<?, ?> createTable(final byte tableType)
+		throws IOException
+	{
+		switch (tableType) {
+			case GENERIC_TABLE:
+				return new DefaultGenericTable();
+			case DOUBLE_TABLE:
+				return new DefaultDoubleTable();
+			case LONG_TABLE:
+				return new DefaultLongTable();
+			case BOOL_TABLE:
+				return new DefaultBoolTable();
+			default:
+				throw new IOException("Unknown table type: " + tableType);
+		}
+	}
+
+	/** Gets the type of the given column, or -1 if it cannot be cached. */
+	private static byte columnType(final Column<?> column) {
+		if (column instanceof OMERORefColumn) return REF_COLUMN;
+		if (column instanceof DoubleColumn) return DOUBLE_COLUMN;
+		if (column instanceof LongColumn) return LONG_COLUMN;
+		if (column instanceof BoolColumn) return BOOL_COLUMN;
+		if (column.getType().equals(String.class)) return STRING_COLUMN;
+		return -1;
+	}
+
+	private static Column<?> createColumn(final byte columnType,
+		final String header, final OMERORef ref) throws IOException
+	{
+		switch (columnType) {
+			case DOUBLE_COLUMN:
+				return new DoubleColumn(header);
+			case LONG_COLUMN:
+				return new LongColumn(header);
+			case BOOL_COLUMN:
+				return new BoolColumn(header);
+			case REF_COLUMN:
+				return new OMERORefColumn(header, ref);
+			case STRING_COLUMN:
+				return new DefaultColumn<>(String.class, header);
+			default:
+				throw new IOException("Unknown column type: " + columnType);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void readColumn(final Path file, final byte columnType,
+		final int rowCount, final Column<?> column) throws IOException
+	{
+		try (final FileChannel channel = FileChannel.open(file,
+			StandardOpenOption.READ))
+		{
+			final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+				0, channel.size());
+			switch (columnType) {
+				case DOUBLE_COLUMN: {
+					final double[] values = new double[rowCount];
+					buffer.asDoubleBuffer().get(values);
+					((DoubleColumn) column).setArray(values);
+					((DoubleColumn) column).setSize(rowCount);
+					break;
+				}
+				case LONG_COLUMN:
+				case REF_COLUMN: {
+					final long[] values = new long[rowCount];
+					buffer.asLongBuffer().get(values);
+					((LongColumn) column).setArray(values);
+					((LongColumn) column).setSize(rowCount);
+					break;
+				}
+				case BOOL_COLUMN: {
+					final boolean[] values = new boolean[rowCount];
+					for (int i = 0; i < rowCount; i++)
+						values[i] = buffer.get(i) != 0;
+					((BoolColumn) column).setArray(values);
+					((BoolColumn) column).setSize(rowCount);
+					break;
+				}
+				case STRING_COLUMN: {
+					final String[] values = new String[rowCount];
+					for (int i = 0; i < rowCount; i++) {
+						final int length = buffer.getInt();
+						if (length < 0) continue;
+						final byte[] bytes = new byte[length];
+						buffer.get(bytes);
+						values[i] = new String(bytes, StandardCharsets.UTF_8);
+					}
+					((DefaultColumn<String>) column).setArray(values);
+					((DefaultColumn<String>) column).setSize(rowCount);
+					break;
+				}
+				default:
+					throw new IOException("Unknown column type: " + columnType);
+			}
+		}
+	}
+
+	private static void writeColumn(final Path file, final byte columnType,
+		final Column<?> column, final int rowCount) throws IOException
+	{
+		final ByteBuffer buffer;
+		switch (columnType) {
+			case DOUBLE_COLUMN: {
+				buffer = allocate((long) rowCount * Double.BYTES, file);
+				buffer.asDoubleBuffer().put(((DoubleColumn) column).getArray(), 0,
+					rowCount);
+				break;
+			}
+			case LONG_COLUMN:
+			case REF_COLUMN: {
+				buffer = allocate((long) rowCount * Long.BYTES, file);
+				buffer.asLongBuffer().put(((LongColumn) column).getArray(), 0,
+					rowCount);
+				break;
+			}
+			case BOOL_COLUMN: {
+				final boolean[] values = ((BoolColumn) column).getArray();
+				buffer = allocate(rowCount, file);
+				for (int i = 0; i < rowCount; i++)
+					buffer.put(i, values[i] ? (byte) 1 : 0);
+				break;
+			}
+			case STRING_COLUMN: {
+				final byte[][] values = new byte[rowCount][];
+				long size = 0;
+				for (int i = 0; i < rowCount; i++) {
+					final Object value = column.get(i);
+					if (value != null) values[i] = value.toString().getBytes(
+						StandardCharsets.UTF_8);
+					size += Integer.BYTES + (values[i] == null ? 0 : values[i].length);
+				}
+				buffer = allocate(size, file);
+				for (final byte[] value : values) {
+					buffer.putInt(value == null ? -1 : value.length);
+					if (value != null) buffer.put(value);
+				}
+				buffer.flip();
+				break;
+			}
+			default:
+				throw new IOException("Unknown column type: " + columnType);
+		}
+		try (final FileChannel channel = FileChannel.open(file,
+			StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))
+		{
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		}
+	}
+
+	private static ByteBuffer allocate(final long size, final Path file)
+		throws IOException
+	{
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Column too large to cache: " + file);
+		}
+		return ByteBuffer.allocate((int) size);
+	}
+
+	private static void delete(final Path path) throws IOException {
+		if (Files.isDirectory(path)) {
+			try (final Stream<Path> entries = Files.list(path)) {
+				for (final Path entry : (Iterable<Path>) entries::iterator)
+					delete(entry);
+			}
+		}
+		Files.deleteIfExists(path);
+	}
+}
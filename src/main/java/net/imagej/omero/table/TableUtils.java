@@ -25,6 +25,8 @@
 
 package net.imagej.omero.table;
 
+import java.lang.reflect.Array;
+
 import net.imagej.omero.OMERORef;
 import net.imagej.omero.OMERORefColumn;
 
@@ -58,6 +60,13 @@ import omero.gateway.model.ROIData;
 import omero.gateway.model.TableData;
 import omero.gateway.model.TableDataColumn;
 import omero.gateway.model.WellData;
+import omero.model.FileAnnotation;
+import omero.model.FileAnnotationI;
+import omero.model.ImageI;
+import omero.model.OriginalFileI;
+import omero.model.PlateI;
+import omero.model.RoiI;
+import omero.model.WellI;
 
 /**
  * Utility class for working with converting between ImageJ and OMERO tables.
@@ -101,6 +110,7 @@ public final class TableUtils {
 		final Class<?> omeroType;
 		if (OMERORefColumn.class.isInstance(imageJColumn)) omeroType =
 			createOMERORefColumn(((OMERORefColumn) imageJColumn).getOMERORef());
+		else if (type.equals(MaskData.class)) omeroType = MaskData.class;
 		else if (type.equals(Double.class) || type.equals(Float.class)) omeroType =
 			Double.class;
 		else if (type.equals(Boolean.class)) omeroType = Boolean.class;
@@ -120,9 +130,6 @@ public final class TableUtils {
 		else {
 			throw new UnsupportedOperationException("Not yet implemented: " + type
 				.getName());
-			/* TODO:
-			 * MaskColumn
-			 */
 		}
 		String header = imageJColumn.getHeader();
 		if (header == null) header = "" + index;
@@ -134,7 +141,9 @@ public final class TableUtils {
 	{
 		final Class<?> type = imageJColumn.getType();
 		if (OMERORefColumn.class.isInstance(imageJColumn))
-			return ((OMERORefColumn) imageJColumn).getOriginalData();
+			return getReferenceData((OMERORefColumn) imageJColumn);
+		if (type.equals(MaskData.class)) return imageJColumn.toArray(
+			new MaskData[imageJColumn.size()]);
 		if (type.equals(Boolean.class)) return imageJColumn.toArray();
 		if (type.equals(Double.class) || type.equals(Float.class))
 			return convertService.convert(imageJColumn.toArray(), Double[].class);
@@ -158,6 +167,51 @@ public final class TableUtils {
 			imageJColumn.getClass().getName());
 	}
 
+	/**
+	 * Populates the given OMERO table headers with the rows of the given ImageJ
+	 * table, so that they can be appended to an existing OMERO table.
+	 *
+	 * @param headers Column headers of the existing OMERO table
+	 * @param rows ImageJ table containing the rows to append
+	 * @param convertService Service used to convert the column values
+	 * @return Populated columns, suitable for
+	 *         {@link omero.grid.TablePrx#addData(omero.grid.Column[])}
+	 * @throws IllegalArgumentException if the columns of the given table do not
+	 *           match the given headers in number, name and type.
+	 */
+	public static omero.grid.Column[] populateOMEROColumns(
+		final omero.grid.Column[] headers, final Table<?, ?> rows,
+		final ConvertService convertService)
+	{
+		if (rows.getColumnCount() != headers.length) {
+			throw new IllegalArgumentException("Expected " + headers.length +
+				" columns but got " + rows.getColumnCount());
+		}
+		final omero.grid.Column[] populated = new omero.grid.Column[headers.length];
+		for (int c = 0; c < headers.length; c++) {
+			final omero.grid.Column header = headers[c];
+			final Column<?> column = rows.get(c);
+			final TableDataColumn omeroColumn = createOMEROColumn(column, c);
+			if (!header.name.equals(omeroColumn.getName())) {
+				throw new IllegalArgumentException("Column " + c + " is named '" +
+					omeroColumn.getName() + "' but the table expects '" + header.name +
+					"'");
+			}
+			if (column instanceof MaskColumn &&
+				header instanceof omero.grid.MaskColumn)
+			{
+				populated[c] = ((MaskColumn) column).toOMEROColumn(header.name,
+					header.description);
+				continue;
+			}
+			Object[] data = populateOMEROColumn(column, convertService);
+			// NB: Reference columns built in ImageJ have no original data.
+			if (data == null) data = column.toArray();
+			populated[c] = populateOMEROColumn(header, omeroColumn.getType(), data);
+		}
+		return populated;
+	}
+
 	@SuppressWarnings("unchecked")
 	public static void populateSciJavaColumn(final Class<?> type,
 		final Object[] omeroColumnData, final Column<?> imageJColumn)
@@ -184,6 +238,10 @@ public final class TableUtils {
 				((DefaultColumn<String>) imageJColumn).add(i,
 					(String) omeroColumnData[i]);
 		}
+		else if (type.equals(MaskData.class)) {
+			for (int i = 0; i < omeroColumnData.length; i++)
+				((MaskColumn) imageJColumn).add(i, (MaskData) omeroColumnData[i]);
+		}
 		else if (type.equals(FileAnnotationData.class) || type.equals(
 			ImageData.class) || type.equals(PlateData.class) || type.equals(
 				ROIData.class) || type.equals(WellData.class))
@@ -250,8 +308,7 @@ public final class TableUtils {
 			return new LongColumn(column.getName());
 		}
 		if (column.getType().equals(MaskData.class)) {
-			// TODO: Implement MaskColumn for efficiency.
-//		  return new GenericColumn(column.getName());
+			return new MaskColumn(column.getName());
 		}
 		if (column.getType().equals(PlateData.class)) {
 			return new OMERORefColumn(column.getName(), OMERORef.PLATE);
@@ -306,6 +363,172 @@ public final class TableUtils {
 		col.setOriginalData(data);
 	}
 
+	private static omero.grid.Column populateOMEROColumn(
+		final omero.grid.Column header, final Class<?> type, final Object[] data)
+	{
+		final String name = header.name;
+		final String desc = header.description;
+		if (header instanceof omero.grid.DoubleColumn && type.equals(
+			Double.class))
+		{
+			final double[] values = new double[data.length];
+			for (int i = 0; i < data.length; i++)
+				values[i] = (Double) data[i];
+			return new omero.grid.DoubleColumn(name, desc, values);
+		}
+		if (header instanceof omero.grid.LongColumn && type.equals(Long.class)) {
+			final long[] values = new long[data.length];
+			for (int i = 0; i < data.length; i++)
+				values[i] = (Long) data[i];
+			return new omero.grid.LongColumn(name, desc, values);
+		}
+		if (header instanceof omero.grid.BoolColumn && type.equals(
+			Boolean.class))
+		{
+			final boolean[] values = new boolean[data.length];
+			for (int i = 0; i < data.length; i++)
+				values[i] = (Boolean) data[i];
+			return new omero.grid.BoolColumn(name, desc, values);
+		}
+		if (header instanceof omero.grid.StringColumn && type.equals(
+			String.class))
+		{
+			final long size = ((omero.grid.StringColumn) header).size;
+			final String[] values = new String[data.length];
+			for (int i = 0; i < data.length; i++) {
+				values[i] = (String) data[i];
+				if (values[i] != null && values[i].length() > size) {
+					throw new IllegalArgumentException("Value '" + values[i] +
+						"' exceeds the maximum length (" + size + ") of column " + name);
+				}
+			}
+			return new omero.grid.StringColumn(name, desc, size, values);
+		}
+		if (header instanceof omero.grid.DoubleArrayColumn && type.equals(
+			Double[].class))
+		{
+			final int size = ((omero.grid.DoubleArrayColumn) header).size;
+			final double[][] values = new double[data.length][];
+			for (int i = 0; i < data.length; i++)
+				values[i] = checkSize(ArrayUtils.toPrimitive((Double[]) data[i]),
+					size, name);
+			return new omero.grid.DoubleArrayColumn(name, desc, size, values);
+		}
+		if (header instanceof omero.grid.FloatArrayColumn && type.equals(
+			Float[].class))
+		{
+			final int size = ((omero.grid.FloatArrayColumn) header).size;
+			final float[][] values = new float[data.length][];
+			for (int i = 0; i < data.length; i++)
+				values[i] = checkSize(ArrayUtils.toPrimitive((Float[]) data[i]), size,
+					name);
+			return new omero.grid.FloatArrayColumn(name, desc, size, values);
+		}
+		if (header instanceof omero.grid.LongArrayColumn && type.equals(
+			Long[].class))
+		{
+			final int size = ((omero.grid.LongArrayColumn) header).size;
+			final long[][] values = new long[data.length][];
+			for (int i = 0; i < data.length; i++)
+				values[i] = checkSize(ArrayUtils.toPrimitive((Long[]) data[i]), size,
+					name);
+			return new omero.grid.LongArrayColumn(name, desc, size, values);
+		}
+		if (header instanceof omero.grid.ImageColumn && type.equals(
+			ImageData.class))
+		{
+			return new omero.grid.ImageColumn(name, desc, ids(data));
+		}
+		if (header instanceof omero.grid.RoiColumn && type.equals(ROIData.class)) {
+			return new omero.grid.RoiColumn(name, desc, ids(data));
+		}
+		if (header instanceof omero.grid.FileColumn && type.equals(
+			FileAnnotationData.class))
+		{
+			return new omero.grid.FileColumn(name, desc, ids(data));
+		}
+		if (header instanceof omero.grid.WellColumn && type.equals(
+			WellData.class))
+		{
+			return new omero.grid.WellColumn(name, desc, ids(data));
+		}
+		if (header instanceof omero.grid.MaskColumn && type.equals(
+			MaskData.class))
+		{
+			final MaskColumn masks = new MaskColumn();
+			for (final Object mask : data)
+				masks.add((MaskData) mask);
+			return masks.toOMEROColumn(name, desc);
+		}
+		if (header instanceof omero.grid.PlateColumn && type.equals(
+			PlateData.class))
+		{
+			return new omero.grid.PlateColumn(name, desc, ids(data));
+		}
+		throw new IllegalArgumentException("Column " + name + " of type " + type
+			.getName() + " cannot be appended to a " + header.getClass()
+				.getSimpleName());
+	}
+
+	private static long[] ids(final Object[] data) {
+		final long[] ids = new long[data.length];
+		for (int i = 0; i < data.length; i++) {
+			ids[i] = data[i] instanceof DataObject ? ((DataObject) data[i]).getId()
+				: ((Number) data[i]).longValue();
+		}
+		return ids;
+	}
+
+	private static <A> A checkSize(final A array, final int size,
+		final String name)
+	{
+		final int length = Array.getLength(array);
+		if (length != size) {
+			throw new IllegalArgumentException("Column " + name + " expects arrays " +
+				"of length " + size + " but got " + length);
+		}
+		return array;
+	}
+
+	/**
+	 * Gets the {@link DataObject}s referenced by the given column. The original
+	 * data of the column is used if it matches the referenced IDs; otherwise,
+	 * for example for columns read from a {@link TableCache} or filled with IDs
+	 * directly, unloaded objects are created from the IDs.
+	 */
+	private static Object[] getReferenceData(final OMERORefColumn column) {
+		final Object[] original = column.getOriginalData();
+		if (original != null && original.length == column.size()) {
+			boolean matches = true;
+			for (int i = 0; i < original.length && matches; i++) {
+				matches = original[i] instanceof DataObject &&
+					((DataObject) original[i]).getId() == column.getValue(i);
+			}
+			if (matches) return original;
+		}
+		final Object[] data = new Object[column.size()];
+		for (int i = 0; i < data.length; i++)
+			data[i] = createReference(column.getOMERORef(), column.getValue(i));
+		return data;
+	}
+
+	private static DataObject createReference(final OMERORef refType,
+		final long id)
+	{
+		if (refType == OMERORef.FILE) {
+			final FileAnnotation annotation = new FileAnnotationI(id, false);
+			annotation.setFile(new OriginalFileI(id, false));
+			return new FileAnnotationData(annotation);
+		}
+		if (refType == OMERORef.IMAGE) return new ImageData(new ImageI(id, false));
+		if (refType == OMERORef.PLATE) return new PlateData(new PlateI(id, false));
+		// NB: ROIData reads the shapes of its Roi, so it cannot be unloaded
+		if (refType == OMERORef.ROI) return new ROIData(new RoiI(id, true));
+		if (refType == OMERORef.WELL) return new WellData(new WellI(id, false));
+		throw new UnsupportedOperationException(
+			"Not yet implemented reference column for " + refType.name());
+	}
+
 	private static Class<?> createOMERORefColumn(final OMERORef refType) {
 		if (refType == OMERORef.FILE) return FileAnnotationData.class;
 		if (refType == OMERORef.IMAGE) return ImageData.class;
@@ -0,0 +1,144 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import net.imagej.omero.table.TableUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.convert.ConvertService;
+import org.scijava.table.DefaultColumn;
+import org.scijava.table.DefaultGenericTable;
+import org.scijava.table.DoubleColumn;
+import org.scijava.table.GenericTable;
+import org.scijava.table.LongColumn;
+
+/**
+ * Tests {@link TableUtils#populateOMEROColumns}, which backs
+ * {@link OMEROSession#appendToTable}.
+ *
+ * @author agent
+ */
+public class AppendTableTest {
+
+	private Context context;
+	private ConvertService convert;
+
+	@Before
+	public void setUp() {
+		context = new Context(ConvertService.class);
+		convert = context.service(ConvertService.class);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testMatchingColumns() {
+		final omero.grid.Column[] headers = { //
+			new omero.grid.LongColumn("t", "", null), //
+			new omero.grid.DoubleColumn("mean", "", null), //
+			new omero.grid.StringColumn("label", "", 16, null), //
+			new omero.grid.RoiColumn("roi", "", null) };
+
+		final OMERORefColumn roi = new OMERORefColumn("roi", OMERORef.ROI);
+		roi.fill(new long[] { 11, 12 });
+		final GenericTable rows = createRows(roi);
+
+		final omero.grid.Column[] columns = TableUtils.populateOMEROColumns(
+			headers, rows, convert);
+
+		assertEquals(4, columns.length);
+		assertArrayEquals(new long[] { 7, 8 },
+			((omero.grid.LongColumn) columns[0]).values);
+		assertArrayEquals(new double[] { 0.5, -2.25 },
+			((omero.grid.DoubleColumn) columns[1]).values, 0);
+		assertArrayEquals(new String[] { "a", "b" },
+			((omero.grid.StringColumn) columns[2]).values);
+		assertEquals(16, ((omero.grid.StringColumn) columns[2]).size);
+		assertArrayEquals(new long[] { 11, 12 },
+			((omero.grid.RoiColumn) columns[3]).values);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWrongColumnCount() {
+		final omero.grid.Column[] headers = { //
+			new omero.grid.LongColumn("t", "", null) };
+		TableUtils.populateOMEROColumns(headers, createRows(null), convert);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWrongColumnName() {
+		final omero.grid.Column[] headers = { //
+			new omero.grid.LongColumn("t", "", null), //
+			new omero.grid.DoubleColumn("max", "", null), //
+			new omero.grid.StringColumn("label", "", 16, null) };
+		TableUtils.populateOMEROColumns(headers, createRows(null), convert);
+	}
+
+	@Test
+	public void testWrongColumnType() {
+		final omero.grid.Column[] headers = { //
+			new omero.grid.LongColumn("t", "", null), //
+			new omero.grid.LongColumn("mean", "", null), //
+			new omero.grid.StringColumn("label", "", 16, null) };
+		try {
+			TableUtils.populateOMEROColumns(headers, createRows(null), convert);
+		}
+		catch (final IllegalArgumentException exc) {
+			assertTrue(exc.getMessage().contains("mean"));
+			return;
+		}
+		throw new AssertionError("Expected IllegalArgumentException");
+	}
+
+	// -- Helper methods --
+
+	private GenericTable createRows(final OMERORefColumn extra) {
+		final GenericTable table = new DefaultGenericTable();
+		final LongColumn t = new LongColumn("t");
+		t.fill(new long[] { 7, 8 });
+		final DoubleColumn mean = new DoubleColumn("mean");
+		mean.fill(new double[] { 0.5, -2.25 });
+		final DefaultColumn<String> label = new DefaultColumn<>(String.class,
+			"label");
+		label.add("a");
+		label.add("b");
+		table.add(t);
+		table.add(mean);
+		table.add(label);
+		if (extra != null) table.add(extra);
+		return table;
+	}
+}
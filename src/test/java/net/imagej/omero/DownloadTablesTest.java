@@ -0,0 +1,172 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.table.Table;
+
+import mockit.Delegate;
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Mocked;
+import mockit.Tested;
+import omero.gateway.Gateway;
+import omero.gateway.SecurityContext;
+import omero.gateway.exception.DSAccessException;
+import omero.gateway.exception.DSOutOfServiceException;
+import omero.gateway.facility.TablesFacility;
+import omero.gateway.model.DataObject;
+import omero.gateway.model.FileAnnotationData;
+import omero.gateway.model.TableData;
+import omero.gateway.model.TableDataColumn;
+import omero.model.FileAnnotation;
+import omero.model.FileAnnotationI;
+import omero.model.OriginalFileI;
+
+/**
+ * Tests {@link OMEROSession#downloadTables(long, boolean)}.
+ *
+ * @author agent
+ */
+public class DownloadTablesTest {
+
+	private static final int TABLE_COUNT = 8;
+
+	private OMEROService service;
+
+	@Injectable
+	private Gateway gateway;
+
+	@Mocked
+	private TablesFacility tablesFacility;
+
+	@Tested
+	private OMEROSession session;
+
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicInteger maxActive = new AtomicInteger();
+
+	@Before
+	public void setUp() {
+		service = new Context(OMEROService.class).getService(OMEROService.class);
+	}
+
+	@After
+	public void tearDown() {
+		service.dispose();
+	}
+
+	@Test
+	public void testParallel() throws ExecutionException,
+		DSOutOfServiceException, DSAccessException, OMEROException
+	{
+		setUpMethodCalls();
+		session.setMaxConcurrentRequests(3);
+
+		assertTables(session.downloadTables(1, true));
+		assertTrue(maxActive.get() >= 1);
+		assertTrue("Too many concurrent requests: " + maxActive.get(), maxActive
+			.get() <= 3);
+	}
+
+	@Test
+	public void testSequential() throws ExecutionException,
+		DSOutOfServiceException, DSAccessException, OMEROException
+	{
+		setUpMethodCalls();
+
+		assertTables(session.downloadTables(1, false));
+		assertEquals(1, maxActive.get());
+	}
+
+	// -- Helper methods --
+
+	/** Checks that the tables are in the order they are attached. */
+	private void assertTables(final List<Table<?, ?>> tables) {
+		assertEquals(TABLE_COUNT, tables.size());
+		for (int i = 0; i < TABLE_COUNT; i++)
+			assertEquals(100L + i, tables.get(i).get(0, 0));
+	}
+
+	private void setUpMethodCalls() throws ExecutionException,
+		DSOutOfServiceException, DSAccessException
+	{
+		final List<FileAnnotationData> files = new ArrayList<>();
+		for (int i = 0; i < TABLE_COUNT; i++) {
+			final FileAnnotation annotation = new FileAnnotationI();
+			annotation.setFile(new OriginalFileI(100 + i, false));
+			files.add(new FileAnnotationData(annotation));
+		}
+
+		new Expectations() {
+
+			{
+				gateway.getFacility(TablesFacility.class);
+				result = tablesFacility;
+
+				tablesFacility.getAvailableTables((SecurityContext) any,
+					(DataObject) any);
+				result = files;
+
+				tablesFacility.getTable((SecurityContext) any, anyLong, anyLong,
+					anyLong);
+				result = new Delegate<TableData>() {
+
+					@SuppressWarnings("unused")
+					TableData getTable(final SecurityContext ctx, final long fileID,
+						final long rowFrom, final long rowTo) throws InterruptedException
+					{
+						final int now = active.incrementAndGet();
+						maxActive.accumulateAndGet(now, Math::max);
+						try {
+							// NB: Earlier tables take longer, so they finish out of order.
+							Thread.sleep(10 * (TABLE_COUNT - (fileID - 100)));
+						}
+						finally {
+							active.decrementAndGet();
+						}
+						final TableData table = new TableData(new TableDataColumn[] {
+							new TableDataColumn("id", 0, Long.class) }, new Object[][] {
+								new Long[] { fileID } });
+						table.setNumberOfRows(1);
+						return table;
+					}
+				};
+			}
+		};
+	}
+}
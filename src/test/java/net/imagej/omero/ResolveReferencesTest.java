@@ -0,0 +1,157 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Mocked;
+import mockit.Tested;
+import mockit.Verifications;
+import omero.ServerError;
+import omero.api.IQueryPrx;
+import omero.gateway.Gateway;
+import omero.gateway.SecurityContext;
+import omero.gateway.exception.DSOutOfServiceException;
+import omero.gateway.model.DataObject;
+import omero.gateway.model.FileAnnotationData;
+import omero.gateway.model.ImageData;
+import omero.model.IObject;
+import omero.model.ImageI;
+import omero.model.OriginalFileI;
+import omero.sys.Parameters;
+
+/**
+ * Tests {@link OMEROSession#resolveReferences(OMERORefColumn)}.
+ *
+ * @author agent
+ */
+public class ResolveReferencesTest {
+
+	private OMEROService service;
+
+	@Injectable
+	private Gateway gateway;
+
+	@Mocked
+	private IQueryPrx query;
+
+	@Tested
+	private OMEROSession session;
+
+	@Before
+	public void setUp() {
+		service = new Context(OMEROService.class).getService(OMEROService.class);
+	}
+
+	@After
+	public void tearDown() {
+		service.dispose();
+	}
+
+	@Test
+	public void testResolveImages() throws OMEROException, ServerError,
+		DSOutOfServiceException
+	{
+		final OMERORefColumn column = new OMERORefColumn("images",
+			OMERORef.IMAGE);
+		column.fill(new long[] { 3, 5, 3, 8 });
+
+		new Expectations() {
+
+			{
+				gateway.getQueryService((SecurityContext) any);
+				result = query;
+				query.findAllByQuery(anyString, (Parameters) any);
+				result = Arrays.<IObject> asList(new ImageI(3, true), new ImageI(5,
+					true), new ImageI(8, true));
+			}
+		};
+
+		final Map<Long, DataObject> images = session.resolveReferences(column);
+		assertEquals(3, images.size());
+		for (final long id : new long[] { 3, 5, 8 }) {
+			assertTrue(images.get(id) instanceof ImageData);
+			assertEquals(id, images.get(id).getId());
+		}
+
+		// Resolved objects are cached in the column
+		assertEquals(images, session.resolveReferences(column));
+
+		new Verifications() {
+
+			{
+				query.findAllByQuery(anyString, (Parameters) any);
+				times = 1;
+			}
+		};
+	}
+
+	@Test
+	public void testResolveFiles() throws OMEROException, ServerError,
+		DSOutOfServiceException
+	{
+		final OMERORefColumn column = new OMERORefColumn("files", OMERORef.FILE);
+		column.fill(new long[] { 21, 34 });
+
+		new Expectations() {
+
+			{
+				gateway.getQueryService((SecurityContext) any);
+				result = query;
+				query.findAllByQuery(anyString, (Parameters) any);
+				result = Arrays.<IObject> asList(new OriginalFileI(21, true),
+					new OriginalFileI(34, true));
+			}
+		};
+
+		final Map<Long, DataObject> files = session.resolveReferences(column);
+		assertEquals(2, files.size());
+		for (final long id : new long[] { 21, 34 }) {
+			assertTrue(files.get(id) instanceof FileAnnotationData);
+			assertEquals(id, ((FileAnnotationData) files.get(id)).getFileID());
+		}
+
+		new Verifications() {
+
+			{
+				String hql;
+				query.findAllByQuery(hql = withCapture(), (Parameters) any);
+				assertTrue(hql.contains("from OriginalFile"));
+			}
+		};
+	}
+}
@@ -26,17 +26,26 @@
 package net.imagej.omero;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.concurrent.ExecutionException;
 
+import net.imagej.omero.table.TableCache;
+import net.imagej.omero.table.TableUtils;
+
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.scijava.Context;
 import org.scijava.table.BoolColumn;
 import org.scijava.table.BoolTable;
 import org.scijava.table.CharTable;
+import org.scijava.table.Column;
 import org.scijava.table.DefaultBoolTable;
 import org.scijava.table.DefaultCharTable;
 import org.scijava.table.DefaultColumn;
@@ -72,6 +81,7 @@ import omero.gateway.model.ROIData;
 import omero.gateway.model.TableData;
 import omero.gateway.model.TableDataColumn;
 import omero.gateway.model.WellData;
+import omero.model.ImageI;
 import omero.model.RoiI;
 import omero.model.WellI;
 
@@ -82,6 +92,9 @@ import omero.model.WellI;
  */
 public class UploadTableTest {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	private OMEROService service;
 
 	@Mocked
@@ -383,6 +396,50 @@ public class UploadTableTest {
 		};
 	}
 
+	@Test
+	public void testCachedReferenceTable() throws ExecutionException,
+		DSOutOfServiceException, DSAccessException, OMEROException,
+		NoSuchFieldException, SecurityException, IllegalArgumentException,
+		IllegalAccessException, IOException
+	{
+		// Download a reference column as OMEROSession#downloadTable does
+		final TableDataColumn omeroColumn = new TableDataColumn("images", 0,
+			ImageData.class);
+		final Object[] images = new Object[3];
+		final long[] ids = { 12, 4567, 89 };
+		for (int r = 0; r < ids.length; r++)
+			images[r] = new ImageData(new ImageI(ids[r], false));
+		final Column<?> downloaded = TableUtils.createSciJavaColumn(omeroColumn);
+		TableUtils.populateSciJavaColumn(ImageData.class, images, downloaded);
+		final GenericTable table = new DefaultGenericTable();
+		table.add(downloaded);
+
+		final TableCache cache = new TableCache(folder.newFolder("tables"));
+		cache.store("key", table);
+		final Table<?, ?> cached = cache.load("key");
+		assertNull(((OMERORefColumn) cached.get(0)).getOriginalData());
+
+		// Create expectations
+		setUpMethodCalls();
+
+		final long id = session.uploadTable("table", cached, 0);
+		assertEquals(id, -1);
+
+		// NB: Can only capture in a Verifications block
+		new Verifications() {
+
+			{
+				TableData td;
+				tablesFacility.addTable((SecurityContext) any, (ImageData) any,
+					anyString, td = withCapture());
+
+				tableEquals(table, td, ImageData.class);
+				for (final Object image : td.getData()[0])
+					assertTrue(image instanceof ImageData);
+			}
+		};
+	}
+
 	@Test
 	public void testMixedTable() throws ExecutionException,
 		DSOutOfServiceException, DSAccessException, OMEROException,
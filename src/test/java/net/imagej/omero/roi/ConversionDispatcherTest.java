@@ -0,0 +1,106 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import net.imagej.omero.OMEROService;
+import net.imagej.omero.roi.rectangle.OMERORectangle;
+import net.imagej.omero.roi.transform.ShapeDataToTransformedOMERORealMaskRealInterval;
+import net.imagej.omero.roi.transform.TransformedOMERORealMaskRealInterval;
+import net.imglib2.roi.MaskPredicate;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.convert.ConvertService;
+import org.scijava.log.LogService;
+
+import omero.gateway.model.RectangleData;
+import omero.model.AffineTransformI;
+
+/**
+ * Tests {@link ConversionDispatcher}.
+ *
+ * @author agent
+ */
+public class ConversionDispatcherTest {
+
+	private ConvertService convert;
+	private ConversionDispatcher dispatcher;
+
+	@Before
+	public void setup() {
+		final Context c = new Context(ConvertService.class, OMEROService.class,
+			LogService.class);
+		convert = c.getService(ConvertService.class);
+		dispatcher = new ConversionDispatcher(convert);
+	}
+
+	@After
+	public void teardown() {
+		convert.getContext().dispose();
+	}
+
+	@Test
+	public void testMatchesConvertService() {
+		final RectangleData plain = new RectangleData(1, 2, 3, 4);
+		final RectangleData transformed = new RectangleData(1, 2, 3, 4);
+		final omero.model.AffineTransform transform = new AffineTransformI();
+		transform.setA00(omero.rtypes.rdouble(1));
+		transform.setA01(omero.rtypes.rdouble(0));
+		transform.setA02(omero.rtypes.rdouble(5));
+		transform.setA10(omero.rtypes.rdouble(0));
+		transform.setA11(omero.rtypes.rdouble(1));
+		transform.setA12(omero.rtypes.rdouble(-5));
+		transformed.setTransform(transform);
+
+		// NB: both shapes have the same class, but only one has a transform
+		for (int i = 0; i < 2; i++) {
+			assertSame(convert.getHandler(plain, MaskPredicate.class).getClass(),
+				dispatcher.getConverter(plain, MaskPredicate.class).getClass());
+			assertSame(convert.getHandler(transformed, MaskPredicate.class)
+				.getClass(), dispatcher.getConverter(transformed, MaskPredicate.class)
+					.getClass());
+		}
+		assertTrue(dispatcher.getConverter(transformed,
+			MaskPredicate.class) instanceof ShapeDataToTransformedOMERORealMaskRealInterval);
+		assertTrue(dispatcher.convert(plain,
+			MaskPredicate.class) instanceof OMERORectangle);
+		assertTrue(dispatcher.convert(transformed,
+			MaskPredicate.class) instanceof TransformedOMERORealMaskRealInterval);
+	}
+
+	@Test
+	public void testUnsupported() {
+		assertFalse(dispatcher.supports(new Object(), MaskPredicate.class));
+		assertNull(dispatcher.convert(new Object(), MaskPredicate.class));
+	}
+}
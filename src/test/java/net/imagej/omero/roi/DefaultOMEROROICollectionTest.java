@@ -0,0 +1,148 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import net.imagej.omero.OMEROService;
+import net.imagej.omero.roi.rectangle.OMERORectangle;
+import net.imglib2.roi.geom.GeomMasks;
+import net.imglib2.roi.geom.real.WritableBox;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.convert.ConvertService;
+import org.scijava.log.LogService;
+import org.scijava.util.DefaultTreeNode;
+
+import omero.gateway.model.ROIData;
+import omero.gateway.model.RectangleData;
+import omero.gateway.model.ShapeData;
+import omero.model.Roi;
+import omero.model.RoiI;
+import omero.model.Shape;
+
+/**
+ * Tests modification tracking of {@link DefaultOMEROROICollection}.
+ *
+ * @author agent
+ */
+public class DefaultOMEROROICollectionTest {
+
+	private ConvertService convert;
+	private OMEROROICollection orc;
+
+	@Before
+	public void setup() {
+		final Context c = new Context(ConvertService.class, OMEROService.class,
+			LogService.class);
+		convert = c.getService(ConvertService.class);
+
+		final Roi r = new RoiI(33, true);
+		for (int i = 0; i < 3; i++) {
+			final RectangleData rect = new RectangleData(10 * i, 5, 4, 6);
+			rect.setId(100 + i);
+			rect.setText(ROIConverters.CLOSED_BOUNDARY_TEXT);
+			r.addShape((Shape) rect.asIObject());
+		}
+		orc = new DefaultOMEROROICollection(null, new ROIData(r), convert);
+	}
+
+	@After
+	public void tearDown() {
+		convert.getContext().dispose();
+	}
+
+	@Test
+	public void testUnmodified() {
+		assertFalse(orc.isModified());
+		orc.children();
+		orc.data();
+		assertFalse(orc.isModified());
+	}
+
+	@Test
+	public void testModifiedShape() {
+		final OMERORectangle rect = (OMERORectangle) orc.children().get(1).data();
+		assertFalse(orc.isModified());
+
+		rect.setSideLength(0, 12);
+		assertTrue(orc.isModified());
+
+		orc.markSaved();
+		assertFalse(orc.isModified());
+	}
+
+	@Test
+	public void testRemovedShape() {
+		orc.children().remove(0);
+		assertTrue(orc.isModified());
+
+		orc.markSaved();
+		assertFalse(orc.isModified());
+	}
+
+	@Test
+	public void testModifiedNewChild() {
+		final WritableBox box = GeomMasks.closedBox(new double[] { 0, 0 },
+			new double[] { 2, 3 });
+		orc.addChildren(Collections.singletonList(new DefaultTreeNode<>(box,
+			null)));
+		assertTrue(orc.isModified());
+
+		orc.markSaved();
+		assertFalse(orc.isModified());
+
+		// moving the ImageJ box updates its shape on the next access
+		box.center().setPosition(20, 0);
+		assertTrue(orc.isModified());
+		assertEquals(4, orc.data().getShapeCount());
+		boolean moved = false;
+		final Iterator<List<ShapeData>> itr = orc.data().getIterator();
+		while (itr.hasNext()) {
+			for (final ShapeData s : itr.next())
+				moved |= ((RectangleData) s).getX() == 19;
+		}
+		assertTrue(moved);
+	}
+
+	@Test
+	public void testUnsavedROIIsModified() {
+		final ROIData rd = new ROIData();
+		rd.addShapeData(new RectangleData(0, 0, 5, 5));
+		final OMEROROICollection unsaved = new DefaultOMEROROICollection(null, rd,
+			convert);
+		assertTrue(unsaved.isModified());
+	}
+}
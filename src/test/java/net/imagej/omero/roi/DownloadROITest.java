@@ -26,18 +26,23 @@
 package net.imagej.omero.roi;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.lang.reflect.Field;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
 
 import net.imagej.omero.OMEROException;
 import net.imagej.omero.OMEROService;
 import net.imagej.omero.OMEROSession;
 import net.imagej.omero.roi.transform.TransformedOMERORealMaskRealInterval;
+import net.imglib2.roi.BoundaryType;
+import net.imglib2.roi.MaskPredicate;
 import net.imglib2.roi.geom.real.Box;
 import net.imglib2.roi.geom.real.Ellipsoid;
 import net.imglib2.roi.geom.real.PointMask;
@@ -55,6 +60,10 @@ import mockit.Expectations;
 import mockit.Injectable;
 import mockit.Mocked;
 import mockit.Tested;
+import mockit.Verifications;
+import omero.RType;
+import omero.ServerError;
+import omero.api.IQueryPrx;
 import omero.gateway.Gateway;
 import omero.gateway.SecurityContext;
 import omero.gateway.exception.DSAccessException;
@@ -70,9 +79,11 @@ import omero.gateway.model.TextData;
 import omero.model.AffineTransformI;
 import omero.model.Event;
 import omero.model.EventI;
+import omero.model.IObject;
 import omero.model.Roi;
 import omero.model.RoiI;
 import omero.model.Shape;
+import omero.sys.Parameters;
 
 /**
  * Tests {@link OMEROSession#downloadROIs(long)}. Note, that the actual data
@@ -96,6 +107,9 @@ public class DownloadROITest {
 	@Mocked
 	private ROIFacility roiFac;
 
+	@Mocked
+	private IQueryPrx query;
+
 	@Before
 	public void setup() {
 		service = new Context(OMEROService.class, ConvertService.class).getService(
@@ -240,6 +254,28 @@ public class DownloadROITest {
 		assertTrue(children.get(4).children().get(0).data() instanceof PointMask);
 	}
 
+	@Test
+	public void testDownloadManyROIsKeepsOrder() throws ExecutionException,
+		DSOutOfServiceException, DSAccessException, OMEROException,
+		IllegalArgumentException, IllegalAccessException, NoSuchFieldException,
+		SecurityException
+	{
+		setUpSession();
+		// NB: enough ROIs to be converted in parallel
+		final ROIData[] rois = new ROIData[500];
+		for (int i = 0; i < rois.length; i++)
+			rois[i] = createROIData(new RectangleData(i, i, 10, 10));
+		setUpMethodCalls(rois.length, createROIResult(rois));
+
+		final TreeNode<?> dn = session.downloadROIs(1);
+		assertEquals(rois.length, dn.children().size());
+		for (int i = 0; i < rois.length; i++) {
+			final TreeNode<?> node = dn.children().get(i);
+			assertTrue(node instanceof OMEROROICollection);
+			assertEquals(rois[i].getId(), ((ROIData) node.data()).getId());
+		}
+	}
+
 	@Test
 	public void testDownloadTransformedROIData() throws ExecutionException,
 		DSOutOfServiceException, DSAccessException, OMEROException,
@@ -289,6 +325,137 @@ public class DownloadROITest {
 		session.downloadROIs(1);
 	}
 
+	@Test
+	public void testDownloadTaggedBoundaryType() throws ExecutionException,
+		DSOutOfServiceException, DSAccessException, OMEROException, ServerError,
+		IllegalArgumentException, IllegalAccessException, NoSuchFieldException,
+		SecurityException
+	{
+		setUpSession();
+		final RectangleData tagged = new RectangleData(10, 10, 20, 20);
+		final RectangleData marked = new RectangleData(10, 10, 20, 20);
+		final RectangleData untagged = new RectangleData(10, 10, 20, 20);
+		final ROIResult rr = createROIResult(createROIData(tagged), createROIData(
+			marked), createROIData(untagged));
+		marked.setText(ROIConverters.UNSPECIFIED_BOUNDARY_TEXT);
+		tagged.setText("tagged");
+		setUpMethodCalls(3, rr);
+
+		final List<List<RType>> rows = Collections.singletonList(Arrays.asList(
+			omero.rtypes.rlong(tagged.getId()), omero.rtypes.rstring("open")));
+		new Expectations() {
+
+			{
+				gateway.getQueryService((SecurityContext) any);
+				result = query;
+
+				query.projection(anyString, (Parameters) any);
+				result = rows;
+				times = 1;
+			}
+		};
+
+		final TreeNode<?> dn = session.downloadROIs(1);
+
+		assertEquals(3, dn.children().size());
+		assertEquals(BoundaryType.OPEN, boundaryType(dn.children().get(0)));
+		assertEquals(BoundaryType.UNSPECIFIED, boundaryType(dn.children().get(1)));
+		assertEquals(BoundaryType.CLOSED, boundaryType(dn.children().get(2)));
+		assertEquals("tagged", tagged.getText());
+		assertEquals(ROIConverters.UNSPECIFIED_BOUNDARY_TEXT, marked.getText());
+	}
+
+	// -- test downloadROIs(imageID, z, t, c) --
+
+	@Test
+	public void testDownloadROIsOnPlane() throws ExecutionException,
+		DSOutOfServiceException, DSAccessException, OMEROException, ServerError,
+		IllegalArgumentException, IllegalAccessException, NoSuchFieldException,
+		SecurityException
+	{
+		setUpSession();
+		final ROIData roi = createROIData(new RectangleData(10, 10, 20, 20));
+		final List<IObject> loaded = Collections.singletonList(roi.asIObject());
+		new Expectations() {
+
+			{
+				gateway.getQueryService((SecurityContext) any);
+				result = query;
+
+				query.findAllByQuery(anyString, (Parameters) any);
+				result = loaded;
+			}
+		};
+
+		final TreeNode<?> dn = session.downloadROIs(1, 4, 7, -1);
+		assertEquals(1, dn.children().size());
+		assertTrue(dn.children().get(0) instanceof OMEROROICollection);
+		assertTrue(dn.children().get(0).children().get(0).data() instanceof Box);
+
+		new Verifications() {
+
+			{
+				String hql;
+				query.findAllByQuery(hql = withCapture(), (Parameters) any);
+				assertTrue(hql.contains("s.theZ = :z"));
+				assertTrue(hql.contains("s.theT = :t"));
+				assertFalse(hql.contains("theC"));
+			}
+		};
+	}
+
+	@Test
+	public void testDownloadROIsOnInvalidPlane() throws OMEROException {
+		exception.expect(IllegalArgumentException.class);
+		session.downloadROIs(1, 0, -2, 0);
+	}
+
+	// -- test streamROIs(...) --
+
+	@Test
+	public void testStreamROIs() throws ExecutionException,
+		DSOutOfServiceException, DSAccessException, ServerError,
+		IllegalArgumentException, IllegalAccessException, NoSuchFieldException,
+		SecurityException
+	{
+		setUpSession();
+		final ROIData one = createROIData(new RectangleData(10, 10, 20, 20));
+		final ROIData two = createROIData(new EllipseData(30, 32, 30.5, 78));
+		final ROIData three = createROIData(new PointData(12, 12));
+		one.setId(1);
+		two.setId(2);
+		three.setId(3);
+
+		new Expectations() {
+
+			{
+				gateway.getQueryService((SecurityContext) any);
+				result = query;
+
+				query.projection(withSubstring("select r.id"), (Parameters) any);
+				result = Arrays.asList(idRow(1), idRow(2));
+				result = Collections.singletonList(idRow(3));
+				times = 2;
+
+				query.findAllByQuery(anyString, (Parameters) any);
+				result = Arrays.asList(two.asIObject(), one.asIObject());
+				result = Collections.singletonList(three.asIObject());
+			}
+		};
+
+		final List<TreeNode<?>> rois = session.streamROIs(1, 2).collect(Collectors
+			.toList());
+
+		assertEquals(3, rois.size());
+		for (int i = 0; i < rois.size(); i++) {
+			assertTrue(rois.get(i) instanceof OMEROROICollection);
+			assertEquals(i + 1, ((OMEROROICollection) rois.get(i)).data().getId());
+		}
+		assertTrue(rois.get(0).children().get(0).data() instanceof Box);
+		assertTrue(rois.get(1).children().get(0).data() instanceof Ellipsoid);
+		assertTrue(rois.get(2).children().get(0).data() instanceof PointMask);
+	}
+
 	// -- test downloadROI(...) --
 
 	@Test
@@ -408,6 +575,14 @@ public class DownloadROITest {
 		return new ROIData(r);
 	}
 
+	private List<RType> idRow(final long id) {
+		return Collections.singletonList(omero.rtypes.rlong(id));
+	}
+
+	private BoundaryType boundaryType(final TreeNode<?> roi) {
+		return ((MaskPredicate<?>) roi.children().get(0).data()).boundaryType();
+	}
+
 	private ROIResult createROIResult(final ROIData... rois) {
 		final List<ROIData> rd = Arrays.asList(rois);
 		return new ROIResult(rd, 147);
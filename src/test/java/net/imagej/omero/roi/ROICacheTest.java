@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import omero.gateway.model.ROIData;
+import omero.model.RoiI;
+
+/**
+ * Tests {@link ROICache}.
+ *
+ * @author agent
+ */
+public class ROICacheTest {
+
+	@Test
+	public void testROIMappingIsByIdentity() {
+		final ROICache cache = new ROICache();
+		final String key = new String("roi");
+		final ROIData roi = roi(3);
+		cache.addROIMapping(key, roi);
+
+		assertSame(roi, cache.getROIMapping(key));
+		assertNull(cache.getROIMapping(new String("roi")));
+		assertEquals(1, cache.getROIMappingKeys().size());
+		assertTrue(cache.getROIMappingKeys().contains(key));
+	}
+
+	@Test
+	public void testRemoveSaved() {
+		final ROICache cache = new ROICache();
+		final Object a = new Object();
+		final Object b = new Object();
+		final Object c = new Object();
+		cache.addROIMapping(a, roi(1));
+		cache.addROIMapping(b, roi(1));
+		cache.addROIMapping(c, roi(2));
+
+		cache.removeSaved(1);
+		assertNull(cache.getROIMapping(a));
+		assertNull(cache.getROIMapping(b));
+		assertEquals(2, cache.getROIMapping(c).getId());
+		assertEquals(1, cache.getStatistics().getMappedROIs());
+	}
+
+	@Test
+	public void testRemappedROI() {
+		final ROICache cache = new ROICache();
+		final Object key = new Object();
+		cache.addROIMapping(key, roi(1));
+		cache.addROIMapping(key, roi(2));
+
+		// the previous ID no longer refers to the key
+		cache.removeSaved(1);
+		assertEquals(2, cache.getROIMapping(key).getId());
+
+		cache.removeROIMapping(key);
+		assertNull(cache.getROIMapping(key));
+		assertEquals(0, cache.getStatistics().getMappedROIs());
+	}
+
+	@Test
+	public void testDownloaded() {
+		final ROICache cache = new ROICache();
+		final ROIData one = roi(1);
+		cache.updateServerROIData(1, one);
+		cache.updateServerROIData(2, roi(2));
+		cache.removeDownloaded(2);
+
+		// NB: Server versions are never evicted, they cannot be recomputed
+		assertSame(one, cache.getUpdatedServerROIData(1));
+		assertNull(cache.getUpdatedServerROIData(2));
+
+		final ROICache.Statistics stats = cache.getStatistics();
+		assertEquals(1, stats.getDownloadedROIs());
+		assertEquals(0, stats.getEvictions());
+		assertEquals(1, stats.getHits());
+		assertEquals(1, stats.getMisses());
+	}
+
+	// -- Helper methods --
+
+	private static ROIData roi(final long id) {
+		return new ROIData(new RoiI(id, true));
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import omero.gateway.model.ROIData;
+import omero.gateway.model.RectangleData;
+import omero.gateway.model.ShapeData;
+import omero.model.ImageI;
+import omero.model.Roi;
+import omero.model.RoiI;
+import omero.model.Shape;
+
+/**
+ * Tests {@link ROIDownloadCache}.
+ *
+ * @author agent
+ */
+public class ROIDownloadCacheTest {
+
+	@Test
+	public void testHit() throws IOException {
+		final ROIDownloadCache cache = new ROIDownloadCache();
+		assertNull(cache.get(4, "4-1"));
+		assertTrue(cache.put(4, "4-1", rois(4)));
+		assertEquals(1, cache.size());
+
+		final List<ROIData> first = cache.get(4, "4-1");
+		final List<ROIData> second = cache.get(4, "4-1");
+		assertEquals(1, first.size());
+		assertEquals(40, first.get(0).getId());
+		assertNotSame(first.get(0), second.get(0));
+
+		// Modifying decoded ROIs must not affect the cache
+		final RectangleData rect = rectangle(first.get(0));
+		rect.setX(99);
+		assertEquals(1, rectangle(cache.get(4, "4-1").get(0)).getX(), 0);
+	}
+
+	@Test
+	public void testStaleKey() throws IOException {
+		final ROIDownloadCache cache = new ROIDownloadCache();
+		cache.put(4, "4-1", rois(4));
+		assertNull(cache.get(4, "4-2"));
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getByteCount());
+		assertNull(cache.get(4, "4-1"));
+	}
+
+	@Test
+	public void testInvalidate() throws IOException {
+		final ROIDownloadCache cache = new ROIDownloadCache();
+		cache.put(4, "4-1", rois(4));
+		cache.put(5, "5-1", rois(5));
+		cache.invalidate(4);
+		assertNull(cache.get(4, "4-1"));
+		assertNotNull(cache.get(5, "5-1"));
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getByteCount());
+	}
+
+	@Test
+	public void testEviction() throws IOException {
+		final long size = ROISnapshotCache.encode(rois(1)).length;
+		final ROIDownloadCache cache = new ROIDownloadCache(2 * size);
+		assertTrue(cache.put(1, "1-1", rois(1)));
+		assertTrue(cache.put(2, "2-1", rois(2)));
+		assertNotNull(cache.get(1, "1-1"));
+		assertTrue(cache.put(3, "3-1", rois(3)));
+
+		// Image 2 is the least recently used
+		assertEquals(2, cache.size());
+		assertEquals(2 * size, cache.getByteCount());
+		assertNull(cache.get(2, "2-1"));
+		assertNotNull(cache.get(1, "1-1"));
+		assertNotNull(cache.get(3, "3-1"));
+	}
+
+	@Test
+	public void testTooLarge() throws IOException {
+		final ROIDownloadCache cache = new ROIDownloadCache(8);
+		assertFalse(cache.put(1, "1-1", rois(1)));
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getByteCount());
+	}
+
+	// -- Helper methods --
+
+	private static List<ROIData> rois(final long imageID) {
+		final Roi roi = new RoiI(imageID * 10, true);
+		roi.setImage(new ImageI(imageID, false));
+		final Shape rect = (Shape) new RectangleData(1, 2, 3, 4).asIObject();
+		rect.setId(omero.rtypes.rlong(imageID * 100));
+		roi.addShape(rect);
+		return Collections.singletonList(new ROIData(roi));
+	}
+
+	private static RectangleData rectangle(final ROIData roi) {
+		final List<ShapeData> shapes = roi.getIterator().next();
+		return (RectangleData) shapes.get(0);
+	}
+}
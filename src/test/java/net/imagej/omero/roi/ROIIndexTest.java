@@ -0,0 +1,158 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.imagej.omero.roi.rectangle.ClosedOMERORectangle;
+import net.imglib2.FinalRealInterval;
+import net.imglib2.RealInterval;
+import net.imglib2.RealPoint;
+import net.imglib2.roi.util.RealLocalizableRealPositionable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.util.DefaultTreeNode;
+import org.scijava.util.TreeNode;
+
+import omero.gateway.model.RectangleData;
+
+/**
+ * Tests {@link ROIIndex}.
+ *
+ * @author agent
+ */
+public class ROIIndexTest {
+
+	private List<OMEROROIElement> elements;
+	private ROIIndex index;
+
+	@Before
+	public void setup() {
+		final Random rand = new Random(0xdeadbeef);
+		elements = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			final RectangleData rd = new RectangleData(rand.nextDouble() * 1000, rand
+				.nextDouble() * 1000, rand.nextDouble() * 50, rand.nextDouble() * 50);
+			rd.setZ(rand.nextInt(4) - 1);
+			rd.setT(rand.nextInt(3) - 1);
+			rd.setC(i % 7 == 0 ? -1 : 0);
+			elements.add(new DefaultOMEROROIElement(new ClosedOMERORectangle(rd),
+				null, null));
+		}
+		index = new ROIIndex(elements);
+	}
+
+	@Test
+	public void testSize() {
+		assertEquals(elements.size(), index.size());
+	}
+
+	@Test
+	public void testTreeConstructor() {
+		final TreeNode<Void> root = new DefaultTreeNode<>(null, null);
+		final TreeNode<Void> collection = new DefaultTreeNode<>(null, root);
+		root.children().add(collection);
+		collection.children().addAll(elements.subList(0, 10));
+		assertEquals(10, new ROIIndex(root).size());
+	}
+
+	@Test
+	public void testQueryInterval() {
+		final Random rand = new Random(42);
+		for (int q = 0; q < 100; q++) {
+			final double x = rand.nextDouble() * 1000;
+			final double y = rand.nextDouble() * 1000;
+			final RealInterval interval = new FinalRealInterval(new double[] { x,
+				y }, new double[] { x + rand.nextDouble() * 100, y + rand.nextDouble() *
+					100 });
+			final int z = rand.nextInt(4) - 1;
+			final int t = rand.nextInt(3) - 1;
+			assertEquals(bruteForce(interval, z, t, -1), index.query(interval, z, t,
+				-1));
+		}
+		final RealInterval all = new FinalRealInterval(new double[] { -1, -1 },
+			new double[] { 2000, 2000 });
+		assertEquals(elements, index.query(all));
+		assertTrue(index.query(new FinalRealInterval(new double[] { 5000, 5000 },
+			new double[] { 6000, 6000 })).isEmpty());
+	}
+
+	@Test
+	public void testQueryPoint() {
+		final Random rand = new Random(7);
+		for (int q = 0; q < 100; q++) {
+			final double[] position = { rand.nextDouble() * 1000, rand.nextDouble() *
+				1000 };
+			final RealPoint p = new RealPoint(position);
+			final int z = rand.nextInt(4) - 1;
+			final List<OMEROROIElement> expected = new ArrayList<>();
+			for (final OMEROROIElement e : bruteForce(new FinalRealInterval(position,
+				position), z, -1, 0))
+			{
+				if (e.data().test(p)) expected.add(e);
+			}
+			assertEquals(expected, index.query(p, z, -1, 0));
+		}
+	}
+
+	@Test
+	public void testQueryPointInside() {
+		final OMEROROIElement e = elements.get(123);
+		final RealLocalizableRealPositionable center = //
+			((ClosedOMERORectangle) e.data()).center();
+		assertTrue(index.query(center).contains(e));
+		assertTrue(index.query(center, e.data().getShape().getZ(), e.data()
+			.getShape().getT(), e.data().getShape().getC()).contains(e));
+	}
+
+	// -- Helper methods --
+
+	private List<OMEROROIElement> bruteForce(final RealInterval interval,
+		final int z, final int t, final int c)
+	{
+		final List<OMEROROIElement> result = new ArrayList<>();
+		for (final OMEROROIElement e : elements) {
+			final ClosedOMERORectangle r = (ClosedOMERORectangle) e.data();
+			if (r.realMin(0) > interval.realMax(0) || r.realMax(0) < interval
+				.realMin(0) || r.realMin(1) > interval.realMax(1) || r.realMax(
+					1) < interval.realMin(1)) continue;
+			if (!matches(r.getShape().getZ(), z) || !matches(r.getShape().getT(),
+				t) || !matches(r.getShape().getC(), c)) continue;
+			result.add(e);
+		}
+		return result;
+	}
+
+	private boolean matches(final int position, final int query) {
+		return position == -1 || query == -1 || position == query;
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imagej.omero.roi.ellipse.ClosedOMEROEllipse;
+import net.imagej.omero.roi.ellipse.OpenOMEROEllipse;
+import net.imagej.omero.roi.line.DefaultOMEROLine;
+import net.imagej.omero.roi.mask.DefaultOMEROMask;
+import net.imagej.omero.roi.polyshape.ClosedOMEROPolygon;
+import net.imagej.omero.roi.polyshape.DefaultOMEROPolygon;
+import net.imagej.omero.roi.polyshape.OpenOMEROPolygon;
+import net.imagej.omero.roi.rectangle.ClosedOMERORectangle;
+import net.imagej.omero.roi.rectangle.OpenOMERORectangle;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RealPoint;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypes.IntArray;
+import net.imglib2.roi.RealMask;
+import net.imglib2.type.numeric.integer.IntType;
+
+import org.junit.Test;
+import org.scijava.util.DefaultTreeNode;
+import org.scijava.util.TreeNode;
+
+import omero.gateway.model.EllipseData;
+import omero.gateway.model.LineData;
+import omero.gateway.model.MaskData;
+import omero.gateway.model.PolygonData;
+import omero.gateway.model.RectangleData;
+
+/**
+ * Tests {@link ROIRasterizer}.
+ *
+ * @author agent
+ */
+public class ROIRasterizerTest {
+
+	private final Interval interval = new FinalInterval(new long[] { -5, -5 },
+		new long[] { 120, 100 });
+
+	@Test
+	public void testRectangle() {
+		final RectangleData integral = new RectangleData(10, 12, 30, 20);
+		final RectangleData fractional = new RectangleData(10.5, 12.25, 30.5, 19.5);
+		assertRasterized(new ClosedOMERORectangle(integral));
+		assertRasterized(new OpenOMERORectangle(integral));
+		assertRasterized(new ClosedOMERORectangle(fractional));
+		assertRasterized(new OpenOMERORectangle(fractional));
+	}
+
+	@Test
+	public void testEllipse() {
+		assertRasterized(new ClosedOMEROEllipse(new EllipseData(50, 40, 30, 20)));
+		assertRasterized(new OpenOMEROEllipse(new EllipseData(50, 40, 30, 20)));
+		assertRasterized(new ClosedOMEROEllipse(new EllipseData(20.3, 30.7, 12.5,
+			40.1)));
+		// partially outside of the interval
+		assertRasterized(new ClosedOMEROEllipse(new EllipseData(0, 0, 25, 25)));
+	}
+
+	@Test
+	public void testPolygon() {
+		final List<Point2D.Double> pts = new ArrayList<>();
+		pts.add(new Point2D.Double(10, 10));
+		pts.add(new Point2D.Double(60, 10));
+		pts.add(new Point2D.Double(60, 50));
+		pts.add(new Point2D.Double(35, 25));
+		pts.add(new Point2D.Double(10, 50));
+		final PolygonData pd = new PolygonData(pts);
+		assertRasterized(new ClosedOMEROPolygon(pd));
+		assertRasterized(new OpenOMEROPolygon(pd));
+		assertRasterized(new DefaultOMEROPolygon(pd));
+
+		final Random rand = new Random(0xbeef);
+		for (int i = 0; i < 20; i++) {
+			final List<Point2D.Double> random = new ArrayList<>();
+			final int vertices = 3 + rand.nextInt(10);
+			for (int v = 0; v < vertices; v++) {
+				random.add(new Point2D.Double(rand.nextDouble() * 110, rand
+					.nextDouble() * 90));
+			}
+			assertRasterized(new ClosedOMEROPolygon(new PolygonData(random)));
+			assertRasterized(new OpenOMEROPolygon(new PolygonData(random)));
+		}
+	}
+
+	@Test
+	public void testLine() {
+		assertRasterized(new DefaultOMEROLine(new LineData(0, 0, 40, 40)));
+		assertRasterized(new DefaultOMEROLine(new LineData(3, 7, 93, 7)));
+		assertRasterized(new DefaultOMEROLine(new LineData(10, 5, 20, 95)));
+	}
+
+	@Test
+	public void testMask() {
+		final Random rand = new Random(42);
+		final byte[] bits = new byte[(70 * 45 + 7) / 8];
+		rand.nextBytes(bits);
+		// runs spanning several words
+		for (int i = 100; i < 140; i++)
+			bits[i] = (byte) 0xff;
+		assertRasterized(new DefaultOMEROMask(new MaskData(20, 15, 70, 45,
+			bits)));
+		// partially outside of the interval
+		assertRasterized(new DefaultOMEROMask(new MaskData(-30, 80, 70, 45,
+			bits)));
+		assertRasterized(new DefaultOMEROMask(new MaskData(10.5, 15.25, 70, 45,
+			bits)));
+	}
+
+	@Test
+	public void testRenderLabels() {
+		final TreeNode<Void> root = new DefaultTreeNode<>(null, null);
+		final Random rand = new Random(17);
+		final List<RealMask> masks = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			final RealMask m = i % 2 == 0 ? new ClosedOMEROEllipse(new EllipseData(
+				rand.nextDouble() * 120, rand.nextDouble() * 100, rand.nextDouble() *
+					20 + 1, rand.nextDouble() * 20 + 1)) : new ClosedOMERORectangle(
+						new RectangleData(rand.nextDouble() * 120, rand.nextDouble() * 100,
+							rand.nextDouble() * 30, rand.nextDouble() * 30));
+			masks.add(m);
+			root.children().add(new DefaultTreeNode<>(m, root));
+		}
+
+		final ArrayImg<IntType, IntArray> sequential = ArrayImgs.ints(128, 96);
+		ROIRasterizer.renderLabels(root, sequential, -1, -1, -1, null);
+
+		final ArrayImg<IntType, IntArray> parallel = ArrayImgs.ints(128, 96);
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			ROIRasterizer.renderLabels(root, parallel, -1, -1, -1, executor);
+		}
+		finally {
+			executor.shutdown();
+		}
+		assertArrayEquals(sequential.update(null).getCurrentStorageArray(),
+			parallel.update(null).getCurrentStorageArray());
+
+		// compare with testing each pixel, where the last ROI wins
+		final int[] labels = sequential.update(null).getCurrentStorageArray();
+		final RealPoint p = new RealPoint(2);
+		for (int y = 0; y < 96; y++) {
+			for (int x = 0; x < 128; x++) {
+				p.setPosition(x, 0);
+				p.setPosition(y, 1);
+				int expected = 0;
+				for (int i = 0; i < masks.size(); i++)
+					if (masks.get(i).test(p)) expected = i + 1;
+				assertEquals(expected, labels[y * 128 + x]);
+			}
+		}
+	}
+
+	// -- Helper methods --
+
+	private void assertRasterized(final RealMask m) {
+		final int w = (int) interval.dimension(0);
+		final int h = (int) interval.dimension(1);
+		final boolean[] actual = new boolean[w * h];
+		ROIRasterizer.rasterize(m, interval, (y, minX, maxX) -> {
+			for (long x = minX; x <= maxX; x++)
+				actual[(int) ((y - interval.min(1)) * w + x - interval.min(0))] = true;
+		});
+
+		final boolean[] expected = new boolean[w * h];
+		final RealPoint p = new RealPoint(2);
+		for (int y = 0; y < h; y++) {
+			for (int x = 0; x < w; x++) {
+				p.setPosition(x + interval.min(0), 0);
+				p.setPosition(y + interval.min(1), 1);
+				expected[y * w + x] = m.test(p);
+			}
+		}
+		assertArrayEquals(m.toString(), expected, actual);
+	}
+}
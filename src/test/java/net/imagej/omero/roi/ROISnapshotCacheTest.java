@@ -0,0 +1,252 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import net.imglib2.roi.BoundaryType;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import omero.gateway.model.EllipseData;
+import omero.gateway.model.LineData;
+import omero.gateway.model.MaskData;
+import omero.gateway.model.PointData;
+import omero.gateway.model.PolygonData;
+import omero.gateway.model.PolylineData;
+import omero.gateway.model.ROIData;
+import omero.gateway.model.RectangleData;
+import omero.gateway.model.ShapeData;
+import omero.gateway.model.TextData;
+import omero.model.AffineTransform;
+import omero.model.AffineTransformI;
+import omero.model.ImageI;
+import omero.model.LengthI;
+import omero.model.Line;
+import omero.model.Roi;
+import omero.model.RoiI;
+import omero.model.Shape;
+import omero.model.enums.UnitsLength;
+
+/**
+ * Tests {@link ROISnapshotCache}.
+ *
+ * @author agent
+ */
+public class ROISnapshotCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ROISnapshotCache cache;
+
+	@Before
+	public void setUp() throws IOException {
+		cache = new ROISnapshotCache(folder.newFolder("rois"));
+	}
+
+	@Test
+	public void testKey() {
+		assertEquals("12-3-40-n1", ROISnapshotCache.key(12, 3, 40, -1));
+		assertEquals("12", ROISnapshotCache.key(12));
+	}
+
+	@Test
+	public void testMissing() throws IOException {
+		assertFalse(cache.contains("nope"));
+		assertNull(cache.load("nope"));
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		final RectangleData rect = new RectangleData(1.5, 2, 30, 40.25);
+		rect.setText("rect " + ROIConverters.createBoundaryTypeString(
+			BoundaryType.OPEN));
+		final Shape iceRect = (Shape) rect.asIObject();
+		iceRect.setId(omero.rtypes.rlong(101));
+		iceRect.setVersion(omero.rtypes.rint(3));
+		iceRect.setTheZ(omero.rtypes.rint(2));
+		iceRect.setTheC(omero.rtypes.rint(1));
+		iceRect.setFillColor(omero.rtypes.rint(-1));
+		iceRect.setStrokeWidth(new LengthI(2.5, UnitsLength.PIXEL));
+		iceRect.setFontFamily(omero.rtypes.rstring("\u00b5-sans"));
+		iceRect.setLocked(omero.rtypes.rbool(true));
+		final AffineTransform transform = new AffineTransformI(77, true);
+		transform.setA00(omero.rtypes.rdouble(0));
+		transform.setA01(omero.rtypes.rdouble(-1));
+		transform.setA02(omero.rtypes.rdouble(10));
+		transform.setA10(omero.rtypes.rdouble(1));
+		transform.setA11(omero.rtypes.rdouble(0));
+		transform.setA12(omero.rtypes.rdouble(-5.5));
+		iceRect.setTransform(transform);
+
+		final LineData line = new LineData(0, 1, 2, 3);
+		((Line) line.asIObject()).setMarkerEnd(omero.rtypes.rstring("Arrow"));
+		final MaskData mask = new MaskData(4, 5, 9, 2, new byte[] { (byte) 0xa5,
+			0x0f, (byte) 0x80 });
+		final List<Point2D.Double> vertices = Arrays.asList(new Point2D.Double(0,
+			0), new Point2D.Double(10, 0.5), new Point2D.Double(3, 7));
+
+		final ROIData one = roi(7, 11, rect, new EllipseData(5, 6, 7, 8), line);
+		final ROIData two = roi(8, 11, mask, new PointData(9, 10),
+			new PolygonData(vertices), new PolylineData(vertices), new TextData(
+				"label", 12, 13));
+		((Roi) two.asIObject()).setName(omero.rtypes.rstring("second"));
+
+		assertTrue(cache.store("11-1", Arrays.asList(one, two)));
+		assertTrue(cache.contains("11-1"));
+		final List<ROIData> loaded = cache.load("11-1");
+		assertEquals(2, loaded.size());
+		assertRoi(one, loaded.get(0));
+		assertRoi(two, loaded.get(1));
+
+		final Shape loadedRect = (Shape) shapes(loaded.get(0)).get(101L)
+			.asIObject();
+		assertEquals(3, loadedRect.getVersion().getValue());
+		assertEquals(2, loadedRect.getTheZ().getValue());
+		assertNull(loadedRect.getTheT());
+		assertEquals(1, loadedRect.getTheC().getValue());
+		assertEquals(-1, loadedRect.getFillColor().getValue());
+		assertNull(loadedRect.getStrokeColor());
+		assertEquals(2.5, loadedRect.getStrokeWidth().getValue(), 0);
+		assertEquals(UnitsLength.PIXEL, loadedRect.getStrokeWidth().getUnit());
+		assertEquals("\u00b5-sans", loadedRect.getFontFamily().getValue());
+		assertTrue(loadedRect.getLocked().getValue());
+		final AffineTransform loadedTransform = loadedRect.getTransform();
+		assertEquals(77, loadedTransform.getId().getValue());
+		assertEquals(-1, loadedTransform.getA01().getValue(), 0);
+		assertEquals(-5.5, loadedTransform.getA12().getValue(), 0);
+
+		assertNull(((Roi) loaded.get(0).asIObject()).getName());
+		assertEquals("second", ((Roi) loaded.get(1).asIObject()).getName()
+			.getValue());
+		assertEquals(11, ((Roi) loaded.get(1).asIObject()).getImage().getId()
+			.getValue());
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		assertTrue(cache.store("3-0", Collections.emptyList()));
+		assertTrue(cache.load("3-0").isEmpty());
+	}
+
+	@Test
+	public void testStaleSnapshotsRemoved() throws IOException {
+		final List<ROIData> rois = Collections.singletonList(roi(1, 5,
+			new PointData(1, 2)));
+		assertTrue(cache.store("5-1", rois));
+		assertTrue(cache.store("50-1", rois));
+		assertTrue(cache.store("5-2", rois));
+		assertFalse(cache.contains("5-1"));
+		assertTrue(cache.contains("50-1"));
+		assertTrue(cache.contains("5-2"));
+	}
+
+	@Test
+	public void testCorrupt() throws IOException {
+		final List<ROIData> rois = Collections.singletonList(roi(1, 9,
+			new PointData(1, 2)));
+		assertTrue(cache.store("9-1", rois));
+		final Path file = cache.getDirectory().toPath().resolve("9-1.roi");
+		final byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+
+		try {
+			cache.load("9-1");
+			fail("Expected IOException");
+		}
+		catch (final IOException exc) {
+			// NB: The corrupt snapshot is removed, so it can be cached anew.
+			assertFalse(cache.contains("9-1"));
+		}
+		assertTrue(cache.store("9-1", rois));
+		assertEquals(1, cache.load("9-1").size());
+	}
+
+	// -- Helper methods --
+
+	private static ROIData roi(final long id, final long imageID,
+		final ShapeData... shapes)
+	{
+		final Roi roi = new RoiI(id, true);
+		roi.setImage(new ImageI(imageID, false));
+		long shapeID = id * 1000;
+		for (final ShapeData shape : shapes) {
+			final Shape iceShape = (Shape) shape.asIObject();
+			if (iceShape.getId() == null) iceShape.setId(omero.rtypes.rlong(
+				shapeID++));
+			roi.addShape(iceShape);
+		}
+		return new ROIData(roi);
+	}
+
+	private static Map<Long, ShapeData> shapes(final ROIData roi) {
+		final Map<Long, ShapeData> shapes = new HashMap<>();
+		final Iterator<List<ShapeData>> itr = roi.getIterator();
+		while (itr.hasNext()) {
+			for (final ShapeData shape : itr.next())
+				shapes.put(shape.getId(), shape);
+		}
+		return shapes;
+	}
+
+	private static void assertRoi(final ROIData expected, final ROIData actual) {
+		assertEquals(expected.getId(), actual.getId());
+		final Map<Long, ShapeData> expectedShapes = shapes(expected);
+		final Map<Long, ShapeData> actualShapes = shapes(actual);
+		assertEquals(expectedShapes.keySet(), actualShapes.keySet());
+		for (final Long id : expectedShapes.keySet()) {
+			final ShapeData e = expectedShapes.get(id);
+			final ShapeData a = actualShapes.get(id);
+			assertTrue("Shape " + id, ROIConverters.shapeDataEquals(e, a));
+			if (e instanceof MaskData) assertArrayEquals(((MaskData) e).getMask(),
+				((MaskData) a).getMask());
+			if (e instanceof LineData) assertEquals(((Line) e.asIObject())
+				.getMarkerEnd().getValue(), ((Line) a.asIObject()).getMarkerEnd()
+					.getValue());
+		}
+		assertEquals(expectedShapes.size(), actual.getShapeCount());
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imagej.omero.roi.ellipse.ClosedOMEROEllipse;
+import net.imagej.omero.roi.ellipse.EllipseKernel;
+import net.imagej.omero.roi.ellipse.OMEROEllipse;
+import net.imagej.omero.roi.ellipse.OpenOMEROEllipse;
+import net.imagej.omero.roi.line.DefaultOMEROLine;
+import net.imagej.omero.roi.line.OMEROLine;
+import net.imagej.omero.roi.rectangle.ClosedOMERORectangle;
+import net.imagej.omero.roi.rectangle.OMERORectangle;
+import net.imagej.omero.roi.rectangle.OpenOMERORectangle;
+import net.imglib2.RealPoint;
+import net.imglib2.roi.geom.GeomMaths;
+
+import org.junit.Test;
+
+import omero.gateway.model.EllipseData;
+import omero.gateway.model.LineData;
+import omero.gateway.model.RectangleData;
+
+/**
+ * Tests the {@link ShapeKernel}s of {@link OMEROEllipse},
+ * {@link OMERORectangle} and {@link OMEROLine}.
+ *
+ * @author agent
+ */
+public class ShapeKernelTest {
+
+	@Test
+	public void testEllipse() {
+		final EllipseData ed = new EllipseData(110, 62, 45, 20);
+		assertSameAsShape(new ClosedOMEROEllipse(ed), ed.getX(), ed.getY(), ed
+			.getRadiusX(), ed.getRadiusY(), true);
+		assertSameAsShape(new OpenOMEROEllipse(ed), ed.getX(), ed.getY(), ed
+			.getRadiusX(), ed.getRadiusY(), false);
+	}
+
+	@Test
+	public void testEllipseBoundary() {
+		// NB: 49 * (1 / 49) != 1, so boundary points must be tested exactly
+		final EllipseData ed = new EllipseData(0, 0, 49, 49);
+		final RealPoint p = new RealPoint(49, 0);
+		assertTrue(new ClosedOMEROEllipse(ed).test(p));
+		assertFalse(new OpenOMEROEllipse(ed).test(p));
+		assertTrue(new ClosedOMEROEllipse(ed).kernel().test(0, -49));
+		assertFalse(new OpenOMEROEllipse(ed).kernel().test(0, -49));
+	}
+
+	@Test
+	public void testRectangle() {
+		final RectangleData rd = new RectangleData(-10.5, 3, 20, 12.25);
+		assertSameAsShape(new ClosedOMERORectangle(rd), rd.getX(), rd.getY(), rd
+			.getWidth(), rd.getHeight(), true);
+		assertSameAsShape(new OpenOMERORectangle(rd), rd.getX(), rd.getY(), rd
+			.getWidth(), rd.getHeight(), false);
+	}
+
+	@Test
+	public void testLine() {
+		final LineData ld = new LineData(3, 4, 43, 34);
+		final OMEROLine line = new DefaultOMEROLine(ld);
+		final double[] xs = new double[200];
+		final double[] ys = new double[200];
+		for (int i = 0; i < xs.length; i++) {
+			// NB: Every other point lies on the line
+			final double t = i / (xs.length - 1.0);
+			xs[i] = 3 + 40 * t + (i % 2 == 0 ? 0 : 0.5);
+			ys[i] = 4 + 30 * t;
+		}
+		final long[] bits = new long[4];
+		line.kernel().test(xs, ys, bits);
+		final RealPoint p = new RealPoint(2);
+		for (int i = 0; i < xs.length; i++) {
+			p.setPosition(new double[] { xs[i], ys[i] });
+			final boolean expected = GeomMaths.lineContains(new double[] { 3, 4 },
+				new double[] { 43, 34 }, p, 2);
+			assertEquals(p.toString(), expected, bit(bits, i));
+			assertEquals(p.toString(), expected, line.test(p));
+			assertEquals(p.toString(), expected, line.kernel().test(xs[i], ys[i]));
+		}
+		assertTrue(bit(bits, 0));
+		assertFalse(bit(bits, 1));
+	}
+
+	@Test
+	public void testInvalidation() {
+		final EllipseData ed = new EllipseData(10, 10, 5, 5);
+		final OMEROEllipse ellipse = new ClosedOMEROEllipse(ed);
+		final EllipseKernel before = ellipse.kernel();
+		assertSame(before, ellipse.kernel());
+		assertTrue(ellipse.test(new RealPoint(14, 10)));
+
+		// mutating the wrapped shape directly
+		ed.setRadiusX(2);
+		assertNotSame(before, ellipse.kernel());
+		assertFalse(ellipse.test(new RealPoint(14, 10)));
+
+		// mutating through the ellipse
+		ellipse.center().setPosition(new double[] { 20, 10 });
+		assertTrue(ellipse.test(new RealPoint(21, 10)));
+		assertFalse(ellipse.test(new RealPoint(11, 10)));
+
+		final RectangleData rd = new RectangleData(0, 0, 10, 10);
+		final OMERORectangle rectangle = new ClosedOMERORectangle(rd);
+		assertTrue(rectangle.test(new RealPoint(10, 10)));
+		rectangle.setSideLength(0, 4);
+		assertFalse(rectangle.test(new RealPoint(10, 10)));
+		assertTrue(rectangle.test(new RealPoint(7, 10)));
+
+		final LineData ld = new LineData(0, 0, 10, 0);
+		final OMEROLine line = new DefaultOMEROLine(ld);
+		assertTrue(line.test(new RealPoint(5, 0)));
+		line.endpointTwo().setPosition(new double[] { 10, 10 });
+		assertFalse(line.test(new RealPoint(5, 0)));
+		assertTrue(line.test(new RealPoint(5, 5)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBatchTooSmall() {
+		new ClosedOMEROEllipse(new EllipseData(0, 0, 1, 1)).kernel().test(
+			new double[65], new double[65], new long[1]);
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Compares the kernel of the given ellipse or rectangle, both for single and
+	 * batch tests, to the shape's definition over random and boundary points.
+	 */
+	private void assertSameAsShape(final OMERORealMaskRealInterval<?> mask,
+		final double x, final double y, final double a, final double b,
+		final boolean closed)
+	{
+		final boolean ellipse = mask instanceof OMEROEllipse;
+		final ShapeKernel kernel = ellipse ? ((OMEROEllipse) mask).kernel()
+			: ((OMERORectangle) mask).kernel();
+		final Random r = new Random(42);
+		final int n = 1000;
+		final double[] xs = new double[n];
+		final double[] ys = new double[n];
+		for (int i = 0; i < n; i++) {
+			if (i % 4 == 0) {
+				// points on the boundary
+				xs[i] = ellipse ? x + a * Math.cos(i) : x + (i % 8 == 0 ? 0 : a);
+				ys[i] = ellipse ? y + b * Math.sin(i) : y + b * r.nextDouble();
+			}
+			else {
+				xs[i] = mask.realMin(0) - 5 + r.nextDouble() * (2 * a + 10);
+				ys[i] = mask.realMin(1) - 5 + r.nextDouble() * (2 * b + 10);
+			}
+		}
+		final long[] bits = new long[(n + 63) / 64];
+		kernel.test(xs, ys, bits);
+
+		final RealPoint p = new RealPoint(2);
+		for (int i = 0; i < n; i++) {
+			final boolean expected;
+			if (ellipse) {
+				final double dx = (xs[i] - x) / a, dy = (ys[i] - y) / b;
+				final double d = dx * dx + dy * dy;
+				expected = closed ? d <= 1 : d < 1;
+			}
+			else {
+				expected = closed ? xs[i] >= x && xs[i] <= x + a && ys[i] >= y &&
+					ys[i] <= y + b : xs[i] > x && xs[i] < x + a && ys[i] > y &&
+						ys[i] < y + b;
+			}
+			p.setPosition(new double[] { xs[i], ys[i] });
+			assertEquals(p.toString(), expected, mask.test(p));
+			assertEquals(p.toString(), expected, kernel.test(xs[i], ys[i]));
+			assertEquals(p.toString(), expected, bit(bits, i));
+		}
+	}
+
+	private static boolean bit(final long[] bits, final int i) {
+		return (bits[i >>> 6] & 1L << i) != 0;
+	}
+}
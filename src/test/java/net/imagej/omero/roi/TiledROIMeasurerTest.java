@@ -0,0 +1,202 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import net.imagej.omero.roi.ellipse.ClosedOMEROEllipse;
+import net.imagej.omero.roi.rectangle.ClosedOMERORectangle;
+import net.imglib2.RealPoint;
+import net.imglib2.roi.MaskPredicate;
+import net.imglib2.roi.RealMask;
+
+import org.junit.Test;
+import org.scijava.util.DefaultTreeNode;
+import org.scijava.util.TreeNode;
+
+import omero.gateway.model.EllipseData;
+import omero.gateway.model.RectangleData;
+
+/**
+ * Tests {@link TiledROIMeasurer} and {@link ROIStatistics}.
+ *
+ * @author agent
+ */
+public class TiledROIMeasurerTest {
+
+	private static final int SIZE_X = 100, SIZE_Y = 80, TILE = 16;
+
+	private final List<String> fetched = new ArrayList<>();
+
+	@Test
+	public void testMeasure() throws Exception {
+		final RectangleData rd = new RectangleData(10, 12, 30, 20);
+		final EllipseData ed = new EllipseData(35, 30, 12, 9);
+		rd.setZ(0);
+		ed.setZ(1);
+
+		// NB: The rectangle and the overlapping ellipse form a single ROI
+		final TreeNode<Void> union = new DefaultTreeNode<>(null, null);
+		union.children().add(new DefaultTreeNode<>(new ClosedOMERORectangle(rd),
+			union));
+		union.children().add(new DefaultTreeNode<>(new ClosedOMEROEllipse(ed),
+			union));
+		final TreeNode<?> ellipse = new DefaultTreeNode<>(new ClosedOMEROEllipse(
+			new EllipseData(90, 70, 20, 20)), null);
+		final TreeNode<?> outside = new DefaultTreeNode<>(new ClosedOMERORectangle(
+			new RectangleData(200, 200, 5, 5)), null);
+		final List<TreeNode<?>> rois = Arrays.asList(union, ellipse, outside);
+
+		final TiledROIMeasurer measurer = measurer(
+			TiledROIMeasurer.DEFAULT_CACHE_PIXELS);
+		final List<ROIStatistics> stats = measurer.measure(rois, -1, -1, -1,
+			ROIStatistics::new);
+		assertEquals(3, stats.size());
+		assertSame(expected(rois.get(0)), stats.get(0));
+		assertSame(expected(rois.get(1)), stats.get(1));
+		assertEquals(0, stats.get(2).count());
+		assertTrue(Double.isNaN(stats.get(2).mean()));
+
+		// each covered tile is fetched once
+		assertEquals(new HashSet<>(fetched).size(), fetched.size());
+		assertEquals(fetched.size(), measurer.tileFetches());
+		assertTrue(fetched.size() < tiles(SIZE_X) * tiles(SIZE_Y));
+
+		// only the rectangle lies on Z = 0
+		final List<ROIStatistics> plane = measurer(
+			TiledROIMeasurer.DEFAULT_CACHE_PIXELS).measure(Arrays.asList(union), 0,
+				-1, -1, ROIStatistics::new);
+		assertEquals(31 * 21, plane.get(0).count());
+	}
+
+	@Test
+	public void testSmallCache() throws Exception {
+		final TreeNode<?> roi = new DefaultTreeNode<>(new ClosedOMERORectangle(
+			new RectangleData(0, 0, 99, 79)), null);
+		final TiledROIMeasurer measurer = measurer(0);
+		final ROIStatistics stats = measurer.measure(Arrays.asList(roi, roi), -1,
+			-1, -1, ROIStatistics::new).get(1);
+		assertSame(expected(roi), stats);
+		// NB: Every row of pixels visits a row of tiles, which are not cached
+		assertTrue(measurer.tileFetches() > 2 * tiles(SIZE_X) * tiles(SIZE_Y));
+	}
+
+	@Test
+	public void testHistogram() {
+		final ROIStatistics stats = new ROIStatistics(4, 0, 8);
+		for (final double v : new double[] { -1, 0, 1.5, 2, 3, 7.9, 8, 9 })
+			stats.add(v);
+		assertArrayEquals(new long[] { 2, 2, 0, 2 }, stats.histogram());
+		assertEquals(8, stats.count());
+		assertEquals(-1, stats.min(), 0);
+		assertEquals(9, stats.max(), 0);
+		assertEquals(30.4 / 8, stats.mean(), 1e-12);
+	}
+
+	@Test
+	public void testDecode() {
+		assertArrayEquals(new double[] { 258, 65535 }, TiledROIMeasurer.decode(
+			new byte[] { 1, 2, -1, -1 }, "uint16", 2), 0);
+		assertArrayEquals(new double[] { -1, 127 }, TiledROIMeasurer.decode(
+			new byte[] { -1, 127 }, "int8", 2), 0);
+		assertArrayEquals(new double[] { 4294967295.0 }, TiledROIMeasurer.decode(
+			new byte[] { -1, -1, -1, -1 }, "uint32", 1), 0);
+		assertArrayEquals(new double[] { 1, 0, 1, 0, 0, 0, 0, 0, 1 },
+			TiledROIMeasurer.decode(new byte[] { (byte) 0xa0, (byte) 0x80 }, "bit",
+				9), 0);
+		assertArrayEquals(new double[] { 1.5 }, TiledROIMeasurer.decode(
+			new byte[] { 0x3f, (byte) 0xc0, 0, 0 }, "float", 1), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDecodeTooShort() {
+		TiledROIMeasurer.decode(new byte[3], "uint16", 2);
+	}
+
+	// -- Helper methods --
+
+	private static double value(final long x, final long y) {
+		return x + 1000 * y;
+	}
+
+	private static int tiles(final int size) {
+		return (size + TILE - 1) / TILE;
+	}
+
+	private TiledROIMeasurer measurer(final long cachePixels) {
+		fetched.clear();
+		return new TiledROIMeasurer((x, y, w, h) -> {
+			assertEquals(0, x % TILE);
+			assertEquals(0, y % TILE);
+			assertEquals(Math.min(TILE, SIZE_X - x), w);
+			assertEquals(Math.min(TILE, SIZE_Y - y), h);
+			fetched.add(x + "," + y);
+			final double[] tile = new double[w * h];
+			for (int j = 0; j < h; j++)
+				for (int i = 0; i < w; i++)
+					tile[j * w + i] = value(x + i, y + j);
+			return tile;
+		}, SIZE_X, SIZE_Y, TILE, TILE, cachePixels);
+	}
+
+	/** Measures the given ROI by testing every pixel of the plane. */
+	private static ROIStatistics expected(final TreeNode<?> roi) {
+		final List<MaskPredicate<?>> masks = new ArrayList<>();
+		ROIRasterizer.collectMasks(roi, -1, -1, -1, masks);
+		final ROIStatistics stats = new ROIStatistics();
+		final RealPoint p = new RealPoint(2);
+		for (int y = 0; y < SIZE_Y; y++) {
+			for (int x = 0; x < SIZE_X; x++) {
+				p.setPosition(new double[] { x, y });
+				boolean contained = false;
+				for (final MaskPredicate<?> m : masks)
+					contained |= ((RealMask) m).test(p);
+				if (contained) stats.add(value(x, y));
+			}
+		}
+		return stats;
+	}
+
+	private static void assertSame(final ROIStatistics expected,
+		final ROIStatistics actual)
+	{
+		assertTrue(expected.count() > 0);
+		assertEquals(expected.count(), actual.count());
+		assertEquals(expected.sum(), actual.sum(), 0);
+		assertEquals(expected.min(), actual.min(), 0);
+		assertEquals(expected.max(), actual.max(), 0);
+		assertEquals(expected.mean(), actual.mean(), 1e-9);
+		assertEquals(expected.standardDeviation(), actual.standardDeviation(),
+			1e-6);
+	}
+}
@@ -26,10 +26,11 @@
 package net.imagej.omero.roi;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -56,17 +57,22 @@ import org.scijava.convert.ConvertService;
 import org.scijava.util.DefaultTreeNode;
 import org.scijava.util.TreeNode;
 
+import mockit.Delegate;
 import mockit.Expectations;
 import mockit.Injectable;
 import mockit.Mocked;
 import mockit.Tested;
 import mockit.Verifications;
+import omero.RType;
+import omero.ServerError;
+import omero.api.IQueryPrx;
+import omero.api.IUpdatePrx;
 import omero.gateway.Gateway;
 import omero.gateway.SecurityContext;
 import omero.gateway.exception.DSAccessException;
 import omero.gateway.exception.DSOutOfServiceException;
 import omero.gateway.facility.BrowseFacility;
-import omero.gateway.facility.ROIFacility;
+import omero.gateway.facility.DataManagerFacility;
 import omero.gateway.model.ImageData;
 import omero.gateway.model.PixelsData;
 import omero.gateway.model.ROIData;
@@ -75,13 +81,17 @@ import omero.gateway.model.ShapeData;
 import omero.gateway.model.TagAnnotationData;
 import omero.model.Event;
 import omero.model.EventI;
+import omero.model.IObject;
+import omero.model.ImageI;
 import omero.model.Roi;
 import omero.model.RoiI;
 import omero.model.Shape;
+import omero.sys.Parameters;
 
 /**
- * Tests {@link OMEROSession#uploadROIs(TreeNode, long)}. Note, that the actual
- * data structure conversions are not tested here as they are tested elsewhere.
+ * Tests {@link OMEROSession#uploadROIs(TreeNode, long)} and
+ * {@link OMEROSession#updateROIs(TreeNode, long)}. Note, that the actual data
+ * structure conversions are not tested here as they are tested elsewhere.
  *
  * @author Alison Walter
  */
@@ -97,7 +107,7 @@ public class UploadROITest {
 	private Gateway gateway;
 
 	@Mocked
-	private ROIFacility roiFac;
+	private IUpdatePrx update;
 
 	@Mocked
 	private BrowseFacility browse;
@@ -108,6 +118,12 @@ public class UploadROITest {
 	@Mocked
 	private PixelsData pixels;
 
+	@Mocked
+	private IQueryPrx query;
+
+	@Mocked
+	private DataManagerFacility dm;
+
 	@Before
 	public void setUp() {
 		service = new Context(OMEROService.class, ConvertService.class).getService(
@@ -128,7 +144,7 @@ public class UploadROITest {
 	public void testUploadSingleRMRI() throws ExecutionException,
 		DSOutOfServiceException, DSAccessException, OMEROException,
 		NoSuchFieldException, SecurityException, IllegalArgumentException,
-		IllegalAccessException
+		IllegalAccessException, ServerError
 	{
 		final Box b = GeomMasks.closedBox(new double[] { 12.5, 16 }, new double[] {
 			83, 92 });
@@ -148,7 +164,7 @@ public class UploadROITest {
 	public void testUploadCompositeMaskPredicate() throws ExecutionException,
 		DSOutOfServiceException, DSAccessException, OMEROException,
 		NoSuchFieldException, SecurityException, IllegalArgumentException,
-		IllegalAccessException
+		IllegalAccessException, ServerError
 	{
 		final Box b = GeomMasks.openBox(new double[] { 10, 11.25 }, new double[] {
 			66, 92.5 });
@@ -171,7 +187,7 @@ public class UploadROITest {
 	public void testUploadOMERORoiCollecton() throws ExecutionException,
 		DSOutOfServiceException, DSAccessException, OMEROException,
 		NoSuchFieldException, SecurityException, IllegalArgumentException,
-		IllegalAccessException
+		IllegalAccessException, ServerError
 	{
 		final RectangleData rd = new RectangleData(12, 15.5, 4, 6);
 		rd.setId(122);
@@ -213,7 +229,7 @@ public class UploadROITest {
 	public void testUploadOMERORoiElement() throws ExecutionException,
 		DSOutOfServiceException, DSAccessException, OMEROException,
 		NoSuchFieldException, SecurityException, IllegalArgumentException,
-		IllegalAccessException
+		IllegalAccessException, ServerError
 	{
 		final RectangleData rd = new RectangleData(12, 15.5, 4, 6);
 		rd.setId(122);
@@ -256,7 +272,7 @@ public class UploadROITest {
 	public void testUploadUnboundedMaskPredicate() throws ExecutionException,
 		DSOutOfServiceException, DSAccessException, OMEROException,
 		NoSuchFieldException, SecurityException, IllegalArgumentException,
-		IllegalAccessException
+		IllegalAccessException, ServerError
 	{
 		final Ellipsoid e = GeomMasks.closedEllipsoid(new double[] { 14, 15.5 },
 			new double[] { 2, 3 });
@@ -277,7 +293,7 @@ public class UploadROITest {
 	public void testUploadMultipleRois() throws ExecutionException,
 		DSOutOfServiceException, DSAccessException, OMEROException,
 		NoSuchFieldException, SecurityException, IllegalArgumentException,
-		IllegalAccessException
+		IllegalAccessException, ServerError
 	{
 		final Ellipsoid e = GeomMasks.closedEllipsoid(new double[] { 33, 27 },
 			new double[] { 8, 3.5 });
@@ -319,13 +335,141 @@ public class UploadROITest {
 		checkROIData(ids.length, 1, 1, 1, 1, 1);
 	}
 
+	@Test
+	public void testUpdateROIs() throws ExecutionException,
+		DSOutOfServiceException, DSAccessException, OMEROException,
+		NoSuchFieldException, SecurityException, IllegalArgumentException,
+		IllegalAccessException, ServerError
+	{
+		// NB: Unchanged since it was downloaded from the image, so it is skipped
+		final OMEROROICollection unchanged = createOMEROROI(33, 13);
+		// NB: Downloaded from another image, so it is saved but keeps its image
+		final OMEROROICollection other = createOMEROROI(34, 7);
+		final Box b = GeomMasks.closedBox(new double[] { 12.5, 16 }, new double[] {
+			83, 92 });
+
+		final TreeNode<?> parent = new DefaultROITree();
+		parent.addChildren(Arrays.asList(unchanged, other, new DefaultTreeNode<>(
+			b, null)));
+		setUpUpdateMethodCalls(33, 34, 99);
+
+		final long[] ids = session.updateROIs(parent, 13);
+
+		assertEquals(1, ids.length);
+		assertEquals(60, ids[0]);
+		assertEquals(34, other.data().getId());
+		// NB: The saved version is kept by the collection, not the shared cache
+		assertEquals(34, other.serverData().getId());
+		assertNull(service.roiCache().getUpdatedServerROIData(34));
+
+		new Verifications() {
+
+			{
+				List<IObject> rois;
+				update.saveAndReturnArray(rois = withCapture());
+				times = 1;
+
+				assertEquals(2, rois.size());
+				assertEquals(34, rois.get(0).getId().getValue());
+				assertEquals(7, ((Roi) rois.get(0)).getImage().getId().getValue());
+				assertEquals(13, ((Roi) rois.get(1)).getImage().getId().getValue());
+
+				// NB: Only the ROI missing locally is deleted, in a single request
+				List<IObject> deleted;
+				dm.delete((SecurityContext) any, deleted = withCapture());
+				times = 1;
+
+				assertEquals(1, deleted.size());
+				assertEquals(99, deleted.get(0).getId().getValue());
+			}
+		};
+	}
+
 	// -- Helper Methods --
 
+	/**
+	 * Creates an {@link OMEROROICollection} as though it was downloaded from
+	 * the given image, i.e. with loaded shapes but unloaded annotations.
+	 */
+	private OMEROROICollection createOMEROROI(final long id,
+		final long imageID)
+	{
+		final RectangleData rd = new RectangleData(12, 15.5, 4, 6);
+		rd.setId(id * 10);
+		rd.setZ(0);
+		rd.setT(0);
+
+		final Roi r = new RoiI(id, true);
+		r.getDetails().setUpdateEvent(new EventI(24, true));
+		r.unloadAnnotationLinks();
+		r.setImage(new ImageI(imageID, false));
+		r.addShape((Shape) rd.asIObject());
+		return new DefaultOMEROROICollection(null, new ROIData(r), service
+			.getContext().getService(ConvertService.class));
+	}
+
+	@SuppressWarnings("unchecked")
+	private void setUpUpdateMethodCalls(final long... serverROIIDs)
+		throws ExecutionException, DSOutOfServiceException, DSAccessException,
+		NoSuchFieldException, SecurityException, IllegalArgumentException,
+		IllegalAccessException, ServerError
+	{
+		Field field = session.getClass().getDeclaredField("omeroService");
+		field.setAccessible(true);
+		field.set(session, service);
+
+		final List<List<RType>> rows = new ArrayList<>();
+		for (final long id : serverROIIDs)
+			rows.add(Collections.<RType> singletonList(omero.rtypes.rlong(id)));
+
+		new Expectations() {
+
+			{
+				gateway.getFacility(BrowseFacility.class);
+				result = browse;
+				browse.getImage((SecurityContext) any, anyLong);
+				result = image;
+				image.getDefaultPixels();
+				result = pixels;
+				pixels.getSizeX();
+				result = 120;
+				pixels.getSizeY();
+				result = 190;
+
+				gateway.getQueryService((SecurityContext) any);
+				result = query;
+				query.projection(anyString, (Parameters) any);
+				result = rows;
+
+				gateway.getFacility(DataManagerFacility.class);
+				result = dm;
+
+				// NB: The server assigns IDs to new ROIs, starting at 60
+				gateway.getUpdateService((SecurityContext) any);
+				result = update;
+				update.saveAndReturnArray((List<IObject>) any);
+				result = new Delegate<List<IObject>>() {
+
+					@SuppressWarnings("unused")
+					List<IObject> saveAndReturnArray(final List<IObject> rois) {
+						long id = 60;
+						for (final IObject roi : rois) {
+							if (roi.getId() == null) roi.setId(omero.rtypes.rlong(id++));
+						}
+						return new ArrayList<>(rois);
+					}
+				};
+			}
+		};
+	}
+
+
 	@SuppressWarnings({ "unchecked", "resource" })
 	private void setUpMethodCalls(final boolean needInterval,
 		final int numROIData, final List<ROIData> rois) throws ExecutionException,
 		DSOutOfServiceException, DSAccessException, NoSuchFieldException,
-		SecurityException, IllegalArgumentException, IllegalAccessException
+		SecurityException, IllegalArgumentException, IllegalAccessException,
+		ServerError
 	{
 
 		Field field = session.getClass().getDeclaredField("omeroService");
@@ -334,8 +478,8 @@ public class UploadROITest {
 		new Expectations() {
 
 			{
-				gateway.getFacility(ROIFacility.class);
-				result = roiFac;
+				gateway.getUpdateService((SecurityContext) any);
+				result = update;
 
 				if (needInterval) {
 					gateway.getFacility(BrowseFacility.class);
@@ -376,42 +520,32 @@ public class UploadROITest {
 						rd.add(temp);
 					}
 				}
-				for (int i = 0; i < numROIData; i++) {
-					roiFac.saveROIs((SecurityContext) any, anyLong,
-						(Collection<ROIData>) any);
-					result = rd;
-				}
+				// NB: All ROIs are saved in a single request
+				final List<IObject> saved = new ArrayList<>(numROIData);
+				for (final ROIData roi : rd)
+					saved.add(roi.asIObject());
+				update.saveAndReturnArray((List<IObject>) any);
+				result = saved;
 			}
 		};
 	}
 
 	private void checkROIData(final int numROIData, final int... numShapes)
-		throws DSOutOfServiceException, DSAccessException
+		throws DSOutOfServiceException, DSAccessException, ServerError
 	{
 		new Verifications() {
 
 			{
 
-				final Collection<ROIData> rois = new ArrayList<>(numROIData);
-				for (int i = 0; i < numROIData; i++) {
-					Collection<ROIData> rd;
-					roiFac.saveROIs((SecurityContext) any, anyLong, rd = withCapture());
-					rois.addAll(rd);
-				}
+				List<IObject> rois;
+				update.saveAndReturnArray(rois = withCapture());
+				times = 1;
 
 				assertEquals(numROIData, rois.size());
 
-				// HACK: Since this ROIData wasn't actually saved to the server, it has
-				// shapes in a TreeMap with null keys
-				final Iterator<ROIData> itrRD = rois.iterator();
-				int countRD = 0;
-				while (itrRD.hasNext()) {
-					final Iterator<List<ShapeData>> itrShape = itrRD.next().getIterator();
-					int countShape = 0;
-					while (itrShape.hasNext())
-						countShape += itrShape.next().size();
-					assertEquals(numShapes[countRD], countShape);
-					countRD++;
+				for (int i = 0; i < rois.size(); i++) {
+					final Roi roi = (Roi) rois.get(i);
+					assertEquals(numShapes[i], roi.sizeOfShapes());
 				}
 			}
 		};
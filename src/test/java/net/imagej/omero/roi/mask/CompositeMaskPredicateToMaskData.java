@@ -227,15 +227,15 @@ public class CompositeMaskPredicateToMaskData {
 	{
 		assertEquals(rai.min(0), md.getX(), 0);
 		assertEquals(rai.min(1), md.getY(), 0);
-		assertEquals(rai.dimension(0) - 1, md.getWidth(), 0);
-		assertEquals(rai.dimension(1) - 1, md.getHeight(), 0);
+		assertEquals(rai.dimension(0), md.getWidth(), 0);
+		assertEquals(rai.dimension(1), md.getHeight(), 0);
 
 		final RandomAccess<BoolType> ra = rai.randomAccess();
 		final byte[] bytes = md.getMask();
 
-		for (long r = rai.min(1); r < rai.max(1); r++) {
+		for (long r = rai.min(1); r <= rai.max(1); r++) {
 			ra.setPosition(r, 1);
-			for (long c = rai.min(0); c < rai.max(0); c++) {
+			for (long c = rai.min(0); c <= rai.max(0); c++) {
 				ra.setPosition(c, 0);
 				final int omeroBitPos = (int) (((r - md.getY()) * md.getWidth()) + (c -
 					md.getX()));
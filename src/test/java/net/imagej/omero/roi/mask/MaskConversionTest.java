@@ -138,14 +138,16 @@ public class MaskConversionTest {
 		assertEquals(ROIConverters.UNSPECIFIED_BOUNDARY_TEXT, omeroMask.getText());
 		assertEquals(ijMask.min(0), omeroMask.getX(), 0);
 		assertEquals(ijMask.min(1), omeroMask.getY(), 0);
-		assertEquals(ijMask.max(0), omeroMask.getX() + omeroMask.getWidth(), 0);
-		assertEquals(ijMask.max(1), omeroMask.getY() + omeroMask.getHeight(), 0);
+		assertEquals(ijMask.max(0) + 1, omeroMask.getX() + omeroMask.getWidth(),
+			0);
+		assertEquals(ijMask.max(1) + 1, omeroMask.getY() + omeroMask.getHeight(),
+			0);
 
 		final Point pt = new Point(2);
 		final byte[] data = omeroMask.getMask();
-		for (long r = ijMask.min(1); r < ijMask.max(1); r++) {
+		for (long r = ijMask.min(1); r <= ijMask.max(1); r++) {
 			pt.setPosition(r, 1);
-			for (long c = ijMask.min(0); c < ijMask.max(0); c++) {
+			for (long c = ijMask.min(0); c <= ijMask.max(0); c++) {
 				pt.setPosition(c, 0);
 				final int omeroBitPos = (int) (((r - omeroMask.getY()) * omeroMask
 					.getWidth()) + (c - omeroMask.getX()));
@@ -171,14 +173,16 @@ public class MaskConversionTest {
 		assertEquals(ROIConverters.UNSPECIFIED_BOUNDARY_TEXT, omeroMask.getText());
 		assertEquals(ijMask.min(0), omeroMask.getX(), 0);
 		assertEquals(ijMask.min(1), omeroMask.getY(), 0);
-		assertEquals(ijMask.max(0), omeroMask.getX() + omeroMask.getWidth(), 0);
-		assertEquals(ijMask.max(1), omeroMask.getY() + omeroMask.getHeight(), 0);
+		assertEquals(ijMask.max(0) + 1, omeroMask.getX() + omeroMask.getWidth(),
+			0);
+		assertEquals(ijMask.max(1) + 1, omeroMask.getY() + omeroMask.getHeight(),
+			0);
 
 		final Point pt = new Point(2);
 		final byte[] data = omeroMask.getMask();
-		for (long r = ijMask.min(1); r < ijMask.max(1); r++) {
+		for (long r = ijMask.min(1); r <= ijMask.max(1); r++) {
 			pt.setPosition(r, 1);
-			for (long c = ijMask.min(0); c < ijMask.max(0); c++) {
+			for (long c = ijMask.min(0); c <= ijMask.max(0); c++) {
 				pt.setPosition(c, 0);
 				final int omeroBitPos = (int) (((r - omeroMask.getY()) * omeroMask
 					.getWidth()) + (c - omeroMask.getX()));
@@ -114,4 +114,21 @@ public class OMEROMaskTest {
 		assertEquals(md.getX() + md.getWidth(), om.realMax(0), 0);
 		assertEquals(md.getY() + md.getHeight(), om.realMax(1), 0);
 	}
+
+	@Test
+	public void testReplacedMask() {
+		final MaskData replaced = new MaskData(0, 0, 10, 10, new byte[13]);
+		final OMEROMask mask = new DefaultOMEROMask(replaced);
+		final RealPoint test = new RealPoint(new double[] { 9, 9 });
+		assertFalse(mask.test(test));
+
+		// last bit of the mask, beyond the first packed word
+		final byte[] data = new byte[13];
+		data[12] = 16;
+		replaced.setMask(data);
+		assertTrue(mask.test(test));
+
+		test.setPosition(new double[] { 8, 9 });
+		assertFalse(mask.test(test));
+	}
 }
@@ -151,6 +151,44 @@ public class TreeNodeRPCToROIDataConversionTest {
 		checkShapeData(rd);
 	}
 
+	@Test
+	public void testUpdatePoints() {
+		omeroService.pushSession(session);
+		final ROIData prev = new ROIData();
+		prev.setId(7);
+		for (int i = 0; i < pts.size(); i++) {
+			final PointData pd = new PointData(pts.get(i).getDoublePosition(0), pts
+				.get(i).getDoublePosition(1));
+			pd.setText(ROIConverters.CLOSED_BOUNDARY_TEXT);
+			pd.setId(10 + i);
+			prev.addShapeData(pd);
+		}
+
+		// move one point, the others keep their IDs
+		final List<RealLocalizable> moved = new ArrayList<>(pts);
+		moved.set(2, new RealPoint(new double[] { 100, 100 }));
+		final RealPointCollection<?> rpc = new DefaultWritableRealPointCollection<>(
+			moved);
+		omeroService.addROIMapping(rpc, prev);
+
+		final ROIData rd = convert.convert(new DefaultTreeNode<>(rpc, null),
+			ROIData.class);
+		assertEquals(7, rd.getId());
+
+		final Iterator<List<ShapeData>> itr = rd.getIterator();
+		final boolean[] seen = new boolean[pts.size()];
+		while (itr.hasNext()) {
+			for (final ShapeData shape : itr.next()) {
+				final PointData pd = (PointData) shape;
+				final int index = (int) pd.getId() - 10;
+				assertTrue(index >= 0 && index < seen.length && !seen[index]);
+				seen[index] = true;
+				assertEquals(moved.get(index).getDoublePosition(0), pd.getX(), 0);
+				assertEquals(moved.get(index).getDoublePosition(1), pd.getY(), 0);
+			}
+		}
+	}
+
 	// -- Helper methods --
 
 	private void checkROIData(final ROIData rd) {
@@ -0,0 +1,156 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi.polyshape;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.imglib2.RealPoint;
+import net.imglib2.roi.geom.GeomMaths;
+
+import org.junit.Test;
+
+import omero.gateway.model.PolygonData;
+import omero.gateway.model.PolylineData;
+
+/**
+ * Tests {@link PolyshapeGeometry}, and its use by {@link OMEROPolygon} and
+ * {@link OMEROPolyline}.
+ *
+ * @author agent
+ */
+public class PolyshapeGeometryTest {
+
+	@Test
+	public void testSmallPolygon() {
+		assertSameAsPolyshapes(star(7, new Random(1)));
+	}
+
+	@Test
+	public void testLargePolygon() {
+		// NB: Large enough for edges to be bucketed into slabs
+		assertSameAsPolyshapes(star(500, new Random(2)));
+	}
+
+	@Test
+	public void testLargePolyline() {
+		final List<Point2D.Double> pts = star(300, new Random(3));
+		final OMEROPolyline polyline = new DefaultOMEROPolyline(new PolylineData(
+			pts));
+		for (final RealPoint p : testPoints(pts)) {
+			boolean expected = false;
+			for (int i = 1; i < pts.size(); i++) {
+				expected |= GeomMaths.lineContains(new double[] { pts.get(i - 1).getX(),
+					pts.get(i - 1).getY() }, new double[] { pts.get(i).getX(), pts.get(i)
+						.getY() }, p, 2);
+			}
+			assertEquals(p.toString(), expected, polyline.test(p));
+		}
+	}
+
+	@Test
+	public void testInvalidation() {
+		final List<Point2D.Double> pts = star(10, new Random(4));
+		final PolygonData pd = new PolygonData(pts);
+		final OMEROPolygon polygon = new ClosedOMEROPolygon(pd);
+		final PolyshapeGeometry before = polygon.geometry();
+		assertSame(before, polygon.geometry());
+
+		// mutating the wrapped shape directly
+		final List<Point2D.Double> moved = new ArrayList<>();
+		for (final Point2D.Double p : pts)
+			moved.add(new Point2D.Double(p.getX() + 1000, p.getY()));
+		pd.setPoints(moved);
+		assertNotSame(before, polygon.geometry());
+		assertEquals(before.realMin(0) + 1000, polygon.realMin(0), 1e-9);
+
+		// mutating through the polygon
+		polygon.removeVertex(0);
+		assertEquals(moved.size() - 1, polygon.numVertices());
+		polygon.vertex(0).setPosition(new double[] { -50, -500 });
+		assertEquals(-50, polygon.realMin(0), 0);
+		assertEquals(-500, polygon.realMin(1), 0);
+	}
+
+	// -- Helper methods --
+
+	private void assertSameAsPolyshapes(final List<Point2D.Double> pts) {
+		final PolygonData pd = new PolygonData(pts);
+		final OMEROPolygon closed = new ClosedOMEROPolygon(pd);
+		final OMEROPolygon open = new OpenOMEROPolygon(pd);
+		final OMEROPolygon unspecified = new DefaultOMEROPolygon(pd);
+
+		double minX = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (final Point2D.Double p : pts) {
+			minX = Math.min(minX, p.getX());
+			maxY = Math.max(maxY, p.getY());
+		}
+		assertEquals(minX, closed.realMin(0), 0);
+		assertEquals(maxY, closed.realMax(1), 0);
+
+		for (final RealPoint p : testPoints(pts)) {
+			assertEquals(p.toString(), Polyshapes.pnpolyWithBoundary(pts, p, true),
+				closed.test(p));
+			assertEquals(p.toString(), Polyshapes.pnpolyWithBoundary(pts, p, false),
+				open.test(p));
+			assertEquals(p.toString(), Polyshapes.pnpoly(pts, p), unspecified.test(
+				p));
+		}
+	}
+
+	/** Grid points, vertices and edge midpoints of the given polyshape. */
+	private List<RealPoint> testPoints(final List<Point2D.Double> pts) {
+		final List<RealPoint> points = new ArrayList<>();
+		for (double y = -110; y <= 110; y += 2.5)
+			for (double x = -110; x <= 110; x += 2.5)
+				points.add(new RealPoint(x, y));
+		for (int i = 0; i < pts.size(); i++) {
+			final Point2D.Double a = pts.get(i);
+			final Point2D.Double b = pts.get((i + 1) % pts.size());
+			points.add(new RealPoint(a.getX(), a.getY()));
+			points.add(new RealPoint((a.getX() + b.getX()) / 2, (a.getY() + b
+				.getY()) / 2));
+		}
+		return points;
+	}
+
+	/** A star shaped polygon around the origin with random radii. */
+	private List<Point2D.Double> star(final int vertices, final Random rand) {
+		final List<Point2D.Double> pts = new ArrayList<>();
+		for (int i = 0; i < vertices; i++) {
+			final double angle = 2 * Math.PI * i / vertices;
+			final double r = 20 + rand.nextDouble() * 80;
+			pts.add(new Point2D.Double(r * Math.cos(angle), r * Math.sin(angle)));
+		}
+		return pts;
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.roi.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import net.imagej.omero.roi.OMERORealMaskRealInterval;
+import net.imagej.omero.roi.ellipse.ClosedOMEROEllipse;
+import net.imagej.omero.roi.ellipse.OpenOMEROEllipse;
+import net.imagej.omero.roi.line.DefaultOMEROLine;
+import net.imagej.omero.roi.polyshape.ClosedOMEROPolygon;
+import net.imagej.omero.roi.rectangle.ClosedOMERORectangle;
+import net.imagej.omero.roi.rectangle.OMERORectangle;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPoint;
+import net.imglib2.realtransform.AffineTransform2D;
+import net.imglib2.roi.Bounds;
+import net.imglib2.roi.Operators.RealTransformMaskOperator;
+
+import org.junit.Test;
+
+import omero.gateway.model.EllipseData;
+import omero.gateway.model.LineData;
+import omero.gateway.model.PolygonData;
+import omero.gateway.model.RectangleData;
+
+/**
+ * Tests {@link TransformedOMERORealMaskRealInterval} and
+ * {@link AffineShapeBounds} with affine transforms.
+ *
+ * @author agent
+ */
+public class AffineTransformedShapeTest {
+
+	@Test
+	public void testEllipse() {
+		final EllipseData ed = new EllipseData(30, 20, 10, 5);
+		assertSameAsOperator(new ClosedOMEROEllipse(ed), rotation(Math.PI / 5));
+		assertSameAsOperator(new OpenOMEROEllipse(ed), rotation(Math.PI / 5));
+	}
+
+	@Test
+	public void testEllipseBounds() {
+		final TransformedOMERORealMaskRealInterval<?> t = transform(
+			new ClosedOMEROEllipse(new EllipseData(0, 0, 10, 5)), rotation(Math.PI /
+				4));
+		// NB: Tighter than the rotated bounding box, which has half-width 15/√2
+		final double half = Math.sqrt(50 + 12.5);
+		assertEquals(-half, t.realMin(0), 1e-9);
+		assertEquals(-half, t.realMin(1), 1e-9);
+		assertEquals(half, t.realMax(0), 1e-9);
+		assertEquals(half, t.realMax(1), 1e-9);
+	}
+
+	@Test
+	public void testRectangle() {
+		final RectangleData rd = new RectangleData(5, 8, 40, 12);
+		final AffineTransform2D toSource = rotation(-0.3);
+		toSource.translate(3, -7);
+		toSource.scale(1.5);
+		assertSameAsOperator(new ClosedOMERORectangle(rd), toSource);
+	}
+
+	@Test
+	public void testLineAndPolygon() {
+		assertSameAsOperator(new DefaultOMEROLine(new LineData(0, 0, 20, 10)),
+			rotation(Math.PI / 2));
+		assertSameAsOperator(new ClosedOMEROPolygon(new PolygonData(Arrays.asList(
+			new Point2D.Double(0, 0), new Point2D.Double(30, 5), new Point2D.Double(
+				10, 25)))), rotation(1));
+	}
+
+	@Test
+	public void testBoundsFollowShape() {
+		final RectangleData rd = new RectangleData(0, 0, 10, 10);
+		final OMERORectangle r = new ClosedOMERORectangle(rd);
+		final TransformedOMERORealMaskRealInterval<?> t = transform(r, rotation(
+			Math.PI / 2));
+		assertEquals(0, t.realMax(0), 1e-9);
+		assertEquals(-10, t.realMin(0), 1e-9);
+
+		rd.setWidth(20);
+		rd.setHeight(30);
+		assertEquals(-30, t.realMin(0), 1e-9);
+		assertEquals(20, t.realMax(1), 1e-9);
+		assertTrue(t.test(new RealPoint(-25, 15)));
+	}
+
+	// -- Helper methods --
+
+	private static AffineTransform2D rotation(final double theta) {
+		final AffineTransform2D t = new AffineTransform2D();
+		t.rotate(theta);
+		return t;
+	}
+
+	private static TransformedOMERORealMaskRealInterval<?> transform(
+		final OMERORealMaskRealInterval<?> source,
+		final AffineTransform2D fromSource)
+	{
+		final AffineTransform2D toSource = fromSource.inverse();
+		return new TransformedOMERORealMaskRealInterval<>(source,
+			new AffineShapeBounds(source, toSource), new RealTransformMaskOperator(
+				toSource));
+	}
+
+	/**
+	 * Compares the transformed shape to the generic predicate and bounds of the
+	 * transform operator, for random points and points on the source boundary.
+	 */
+	private static void assertSameAsOperator(
+		final OMERORealMaskRealInterval<?> source,
+		final AffineTransform2D fromSource)
+	{
+		final TransformedOMERORealMaskRealInterval<?> t = transform(source,
+			fromSource);
+		final RealTransformMaskOperator operator = new RealTransformMaskOperator(
+			fromSource.inverse());
+		final Predicate<? super RealLocalizable> expected = operator.predicate(
+			source);
+		final Bounds.RealTransformRealInterval loose =
+			new Bounds.RealTransformRealInterval(source, fromSource.inverse());
+		for (int d = 0; d < 2; d++) {
+			assertTrue(t.realMin(d) >= loose.realMin(d) - 1e-9);
+			assertTrue(t.realMax(d) <= loose.realMax(d) + 1e-9);
+		}
+
+		final Random r = new Random(7);
+		final RealPoint p = new RealPoint(2);
+		final double[] s = new double[2];
+		final double[] target = new double[2];
+		for (int i = 0; i < 2000; i++) {
+			if (i % 2 == 0) {
+				// NB: Transformed source bounds corners and edges
+				s[0] = source.realMin(0) + (source.realMax(0) - source.realMin(0)) * r
+					.nextInt(3) / 2;
+				s[1] = source.realMin(1) + (source.realMax(1) - source.realMin(1)) * r
+					.nextInt(3) / 2;
+				fromSource.apply(s, target);
+				p.setPosition(target);
+			}
+			else {
+				p.setPosition(new double[] { loose.realMin(0) - 5 + r.nextDouble() *
+					(loose.realMax(0) - loose.realMin(0) + 10), loose.realMin(1) - 5 + r
+						.nextDouble() * (loose.realMax(1) - loose.realMin(1) + 10) });
+			}
+			final boolean contained = expected.test(p);
+			assertEquals(p.toString(), contained, t.test(p));
+			if (contained) {
+				for (int d = 0; d < 2; d++) {
+					assertTrue(p.toString(), p.getDoublePosition(d) >= t.realMin(d) -
+						1e-9);
+					assertTrue(p.toString(), p.getDoublePosition(d) <= t.realMax(d) +
+						1e-9);
+				}
+			}
+		}
+	}
+}
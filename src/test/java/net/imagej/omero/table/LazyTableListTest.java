@@ -0,0 +1,206 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import net.imagej.omero.OMEROException;
+import net.imagej.omero.OMEROSession;
+
+import org.junit.Test;
+import org.scijava.table.DefaultGenericTable;
+import org.scijava.table.Table;
+
+import mockit.Expectations;
+import mockit.Mocked;
+import mockit.Verifications;
+import omero.gateway.model.FileAnnotationData;
+
+/**
+ * Tests {@link LazyTableList}.
+ *
+ * @author agent
+ */
+public class LazyTableListTest {
+
+	@Mocked
+	private OMEROSession session;
+
+	@Mocked
+	private FileAnnotationData file1;
+
+	@Mocked
+	private FileAnnotationData file2;
+
+	@Test
+	public void testNoAccess() throws OMEROException {
+		new LazyTableList(1, session);
+
+		new Verifications() {
+
+			{
+				session.getAvailableTables(anyLong);
+				times = 0;
+				session.downloadTable(anyLong);
+				times = 0;
+			}
+		};
+	}
+
+	@Test
+	public void testSizeDoesNotDownload() throws OMEROException {
+		setUpMethodCalls();
+
+		final LazyTableList tables = new LazyTableList(1, session);
+		assertEquals(2, tables.size());
+		assertFalse(tables.isEmpty());
+		assertEquals("a.h5", tables.getName(0));
+		assertFalse(tables.isLoaded(0));
+
+		new Verifications() {
+
+			{
+				session.getAvailableTables(1);
+				times = 1;
+				session.downloadTable(anyLong);
+				times = 0;
+			}
+		};
+	}
+
+	@Test
+	public void testGetDownloadsOnlyRequestedTable() throws OMEROException {
+		final Table<?, ?> table = new DefaultGenericTable();
+		setUpMethodCalls();
+		new Expectations() {
+
+			{
+				session.downloadTable(20);
+				result = table;
+			}
+		};
+
+		final LazyTableList tables = new LazyTableList(1, session);
+		assertSame(table, tables.get(1));
+		assertSame(table, tables.get(1));
+		assertTrue(tables.isLoaded(1));
+		assertFalse(tables.isLoaded(0));
+
+		new Verifications() {
+
+			{
+				session.downloadTable(20);
+				times = 1;
+				session.downloadTable(10);
+				times = 0;
+			}
+		};
+	}
+
+	@Test
+	public void testAddLocalTable() throws OMEROException {
+		setUpMethodCalls();
+
+		final Table<?, ?> table = new DefaultGenericTable();
+		final LazyTableList tables = new LazyTableList(1, session);
+		tables.add(table);
+		assertEquals(3, tables.size());
+		assertSame(table, tables.get(2));
+		assertEquals(null, tables.getFile(2));
+
+		new Verifications() {
+
+			{
+				session.downloadTable(anyLong);
+				times = 0;
+			}
+		};
+	}
+
+	@Test
+	public void testRemoveDoesNotDownload() throws OMEROException {
+		setUpMethodCalls();
+
+		final LazyTableList tables = new LazyTableList(1, session);
+		assertNull(tables.remove(0));
+		assertNull(tables.set(0, new DefaultGenericTable()));
+		assertEquals(1, tables.size());
+		tables.subList(0, 1).clear();
+		assertTrue(tables.isEmpty());
+
+		new Verifications() {
+
+			{
+				session.downloadTable(anyLong);
+				times = 0;
+			}
+		};
+	}
+
+	@Test
+	public void testClearDoesNotDownload() throws OMEROException {
+		final LazyTableList tables = new LazyTableList(1, session);
+		tables.clear();
+		assertTrue(tables.isEmpty());
+
+		new Verifications() {
+
+			{
+				session.getAvailableTables(anyLong);
+				times = 0;
+				session.downloadTable(anyLong);
+				times = 0;
+			}
+		};
+	}
+
+	// -- Helper methods --
+
+	private void setUpMethodCalls() throws OMEROException {
+		new Expectations() {
+
+			{
+				session.getAvailableTables(1);
+				result = Arrays.asList(file1, file2);
+				file1.getFileID();
+				result = 10L;
+				minTimes = 0;
+				file1.getFileName();
+				result = "a.h5";
+				minTimes = 0;
+				file2.getFileID();
+				result = 20L;
+				minTimes = 0;
+			}
+		};
+	}
+}
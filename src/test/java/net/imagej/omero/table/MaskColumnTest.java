@@ -0,0 +1,179 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.table;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.roi.MaskInterval;
+import net.imglib2.roi.mask.integer.RandomAccessibleIntervalAsMaskInterval;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+import omero.gateway.model.MaskData;
+import omero.model.ImageI;
+import omero.model.Roi;
+import omero.model.RoiI;
+import omero.model.Shape;
+
+/**
+ * Tests {@link MaskColumn}.
+ *
+ * @author agent
+ */
+public class MaskColumnTest {
+
+	// 1 0 0 0 1 1
+	// 1 0 0 0 0 0
+	// 0 0 1 0 0 0
+	// 0 0 0 0 1 1
+	private static final byte[] DATA = new byte[] { -114, 2, 3 };
+
+	private static final boolean[][] PIXELS = { //
+		{ true, false, false, false, true, true }, //
+		{ true, false, false, false, false, false }, //
+		{ false, false, true, false, false, false }, //
+		{ false, false, false, false, true, true } };
+
+	@Test
+	public void testMaskDataRoundTrip() {
+		final MaskData md = new MaskData(12, 34, 6, 4, DATA);
+		md.setZ(2);
+		md.setT(5);
+
+		final MaskColumn column = new MaskColumn("masks");
+		column.add(md);
+		column.add(new MaskData(0, 0, 1, 1, new byte[] { -128 }));
+
+		assertEquals(2, column.size());
+		assertEquals(MaskData.class, column.getType());
+		final MaskData result = column.get(0);
+		assertArrayEquals(DATA, result.getMask());
+		assertEquals(12, result.getX(), 0);
+		assertEquals(34, result.getY(), 0);
+		assertEquals(6, result.getWidth(), 0);
+		assertEquals(4, result.getHeight(), 0);
+		assertEquals(2, result.getZ());
+		assertEquals(5, result.getT());
+
+		column.remove(0);
+		assertEquals(1, column.size());
+		assertArrayEquals(new byte[] { -128 }, column.get(0).getMask());
+	}
+
+	@Test
+	public void testImageID() {
+		final MaskData md = new MaskData(12, 34, 6, 4, DATA);
+		final Roi roi = new RoiI(5, true);
+		roi.setImage(new ImageI(42, false));
+		((Shape) md.asIObject()).setRoi(roi);
+
+		final MaskColumn column = new MaskColumn();
+		column.add(md);
+		column.add(new MaskData(1, 2, 6, 4, DATA));
+		assertEquals(42, column.getImageID(0));
+		assertEquals(-1, column.getImageID(1));
+
+		// Replacing a mask without an image keeps the image ID
+		column.set(0, new MaskData(0, 0, 6, 4, DATA));
+		assertEquals(42, column.getImageID(0));
+		final MaskData copy = column.get(0);
+		assertEquals(42, ((Shape) copy.asIObject()).getRoi().getImage().getId()
+			.getValue());
+
+		assertArrayEquals(new long[] { 42, -1 }, column.toOMEROColumn("m",
+			"").imageId);
+	}
+
+	@Test
+	public void testTest() {
+		final MaskColumn column = new MaskColumn();
+		column.add(new MaskData(12, 34, 6, 4, DATA));
+
+		for (int y = 0; y < 4; y++) {
+			for (int x = 0; x < 6; x++)
+				assertEquals(PIXELS[y][x], column.test(0, x, y));
+		}
+		assertFalse(column.test(0, 6, 0));
+		assertFalse(column.test(0, -1, 0));
+	}
+
+	@Test
+	public void testGetMaskInterval() {
+		final MaskColumn column = new MaskColumn();
+		column.add(new MaskData(12, 34, 6, 4, DATA));
+
+		final MaskInterval mi = column.getMaskInterval(0);
+		assertEquals(12, mi.min(0));
+		assertEquals(34, mi.min(1));
+		assertEquals(17, mi.max(0));
+		assertEquals(37, mi.max(1));
+		final Point p = new Point(2);
+		for (int y = 0; y < 4; y++) {
+			for (int x = 0; x < 6; x++) {
+				p.setPosition(new long[] { x + 12, y + 34 });
+				assertEquals(PIXELS[y][x], mi.test(p));
+			}
+		}
+	}
+
+	@Test
+	public void testAddMaskInterval() {
+		final ArrayImg<BitType, LongArray> img = ArrayImgs.bits(6, 4);
+		for (int y = 0; y < 4; y++) {
+			for (int x = 0; x < 6; x++) {
+				final RandomAccess<BitType> ra = img.randomAccess();
+				ra.setPosition(new long[] { x, y });
+				ra.get().set(PIXELS[y][x]);
+			}
+		}
+
+		final MaskColumn column = new MaskColumn();
+		// Bit-typed ArrayImg
+		column.add(new RandomAccessibleIntervalAsMaskInterval<>(img), 0, 0);
+		// Translated view, i.e. not an ArrayImg
+		column.add(new RandomAccessibleIntervalAsMaskInterval<>(
+			Views.translate(img, 12, 34)), 1, -1);
+
+		assertArrayEquals(DATA, column.getBytes(0));
+		assertArrayEquals(DATA, column.getBytes(1));
+		assertEquals(0, column.getX(0), 0);
+		assertEquals(12, column.getX(1), 0);
+		assertEquals(34, column.getY(1), 0);
+		assertEquals(1, column.getZ(1));
+		assertEquals(-1, column.getT(1));
+		assertTrue(column.test(1, 0, 0));
+	}
+}
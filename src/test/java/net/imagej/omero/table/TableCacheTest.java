@@ -0,0 +1,180 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2023 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero.table;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import net.imagej.omero.OMERORef;
+import net.imagej.omero.OMERORefColumn;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.scijava.table.BoolColumn;
+import org.scijava.table.DefaultColumn;
+import org.scijava.table.DefaultDoubleTable;
+import org.scijava.table.DefaultGenericTable;
+import org.scijava.table.DoubleColumn;
+import org.scijava.table.DoubleTable;
+import org.scijava.table.GenericTable;
+import org.scijava.table.Table;
+import org.scijava.util.DoubleArray;
+
+/**
+ * Tests {@link TableCache}.
+ *
+ * @author agent
+ */
+public class TableCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private TableCache cache;
+
+	@Before
+	public void setUp() throws IOException {
+		cache = new TableCache(folder.newFolder("tables"));
+	}
+
+	@Test
+	public void testKey() {
+		assertEquals("12-3400-5-ab_cd", TableCache.key(12, 3400, "ab/cd", 5));
+		assertEquals("12-3400-5-", TableCache.key(12, 3400, null, 5));
+	}
+
+	@Test
+	public void testMissing() throws IOException {
+		assertFalse(cache.contains("nope"));
+		assertNull(cache.load("nope"));
+	}
+
+	@Test
+	public void testDoubleTable() throws IOException {
+		final DoubleTable table = new DefaultDoubleTable(2, 3);
+		table.get(0).fill(new double[] { 0.5, -1.25, Double.NaN });
+		table.get(1).fill(new double[] { 1e300, 0, -0.0625 });
+		table.get(0).setHeader("H1");
+		table.get(1).setHeader("H2");
+
+		assertTrue(cache.store("t", table));
+		assertTrue(cache.contains("t"));
+
+		final Table<?, ?> loaded = cache.load("t");
+		assertTrue(loaded instanceof DoubleTable);
+		assertEquals(2, loaded.getColumnCount());
+		assertEquals(3, loaded.getRowCount());
+		assertEquals("H1", loaded.getColumnHeader(0));
+		assertEquals("H2", loaded.getColumnHeader(1));
+		assertArrayEquals(table.get(0).copyArray(), ((DoubleColumn) loaded.get(0))
+			.copyArray(), 0);
+		assertArrayEquals(table.get(1).copyArray(), ((DoubleColumn) loaded.get(1))
+			.copyArray(), 0);
+	}
+
+	@Test
+	public void testGenericTable() throws IOException {
+		final GenericTable table = new DefaultGenericTable();
+		final BoolColumn bools = new BoolColumn("b");
+		bools.fill(new boolean[] { true, false });
+		final DefaultColumn<String> strings = new DefaultColumn<>(String.class,
+			"s");
+		strings.add("\u00b5m");
+		strings.add(null);
+		final OMERORefColumn refs = new OMERORefColumn("r", OMERORef.ROI);
+		refs.fill(new long[] { 7, 9 });
+		table.add(bools);
+		table.add(strings);
+		table.add(refs);
+
+		assertTrue(cache.store("g", table));
+		final Table<?, ?> loaded = cache.load("g");
+
+		assertTrue(loaded instanceof GenericTable);
+		assertEquals(3, loaded.getColumnCount());
+		assertEquals(2, loaded.getRowCount());
+		for (int c = 0; c < 3; c++) {
+			assertEquals(table.getColumnHeader(c), loaded.getColumnHeader(c));
+			for (int r = 0; r < 2; r++)
+				assertEquals(table.get(c, r), loaded.get(c, r));
+		}
+		assertTrue(loaded.get(2) instanceof OMERORefColumn);
+		assertEquals(OMERORef.ROI, ((OMERORefColumn) loaded.get(2))
+			.getOMERORef());
+	}
+
+	@Test
+	public void testUnsupportedColumn() throws IOException {
+		final GenericTable table = new DefaultGenericTable();
+		final DefaultColumn<DoubleArray> arrays = new DefaultColumn<>(
+			DoubleArray.class, "a");
+		arrays.add(new DoubleArray(new double[] { 1, 2 }));
+		table.add(arrays);
+
+		assertFalse(cache.store("a", table));
+		assertFalse(cache.contains("a"));
+	}
+
+	@Test
+	public void testCorrupt() throws IOException {
+		final DoubleTable table = new DefaultDoubleTable(1, 4);
+		table.get(0).fill(new double[] { 1, 2, 3, 4 });
+		assertTrue(cache.store("t", table));
+		final Path column = cache.getDirectory().toPath().resolve("t").resolve(
+			"col-0.bin");
+		Files.write(column, new byte[3]);
+
+		try {
+			cache.load("t");
+			fail("Expected IOException");
+		}
+		catch (final IOException exc) {
+			// NB: The corrupt entry is removed, so it can be cached anew.
+			assertFalse(cache.contains("t"));
+		}
+		assertTrue(cache.store("t", table));
+		assertArrayEquals(table.get(0).copyArray(), ((DoubleColumn) cache.load(
+			"t").get(0)).copyArray(), 0);
+	}
+
+	@Test
+	public void testClear() throws IOException {
+		final DoubleTable table = new DefaultDoubleTable(1, 1);
+		cache.store("t", table);
+		cache.clear();
+		assertFalse(cache.contains("t"));
+	}
+}